@@ -33,7 +33,8 @@
 package com.vividsolutions.jump.coordsys;
 
 import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.CoordinateFilter;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
 import org.locationtech.jts.geom.Geometry;
 
 
@@ -108,12 +109,21 @@ public class Reprojector {
             return;
         }
 
-        geometry.apply(new CoordinateFilter() {
-                public void filter(Coordinate coord) {
+        // a sequence filter also modifies packed coordinates in place
+        geometry.apply(new CoordinateSequenceFilter() {
+                public void filter(CoordinateSequence seq, int i) {
+                    Coordinate coord = new Coordinate(seq.getX(i), seq.getY(i));
                     reproject(coord, source, destination);
+                    seq.setOrdinate(i, CoordinateSequence.X, coord.x);
+                    seq.setOrdinate(i, CoordinateSequence.Y, coord.y);
+                }
+                public boolean isDone() {
+                    return false;
+                }
+                public boolean isGeometryChanged() {
+                    return true;
                 }
             });
         geometry.setSRID(destination.getEPSGCode());
-        geometry.geometryChanged();
     }
 }
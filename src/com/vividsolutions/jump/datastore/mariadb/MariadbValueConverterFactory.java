@@ -7,6 +7,7 @@ import com.vividsolutions.jump.datastore.jdbc.ValueConverter;
 import com.vividsolutions.jump.datastore.jdbc.ValueConverterFactory;
 import com.vividsolutions.jump.datastore.spatialdatabases.SpatialDatabasesValueConverterFactory;
 import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.geom.GeometryStoragePolicy;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.ResultSet;
@@ -67,7 +68,7 @@ public class MariadbValueConverterFactory extends SpatialDatabasesValueConverter
         geometry = wktReader.read("GEOMETRYCOLLECTION EMPTY");
       } else {
         boolean nativeFormat = appearsToBeNativeFormat(bytes);
-        WKBReader wr = new WKBReader();
+        WKBReader wr = new WKBReader(GeometryStoragePolicy.createGeometryFactory());
 
         if (nativeFormat) {
           //copy the byte array, removing the first four
@@ -7,6 +7,7 @@ import org.locationtech.jts.io.WKTReader;
 import java.sql.*;
 import com.vividsolutions.jump.datastore.jdbc.*;
 import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.geom.GeometryStoragePolicy;
 import com.vividsolutions.jump.workbench.JUMPWorkbench;
 import java.io.IOException;
 
@@ -19,8 +20,8 @@ public class SpatialDatabasesValueConverterFactory {
   protected final ValueConverter WKB_GEOMETRY_MAPPER = new SpatialDatabasesValueConverterFactory.WKBGeometryValueConverter();
   public final ValueConverter WKB_OBJECT_MAPPER = new SpatialDatabasesValueConverterFactory.WKBObjectValueConverter();
 
-  protected final WKBReader wkbReader = new WKBReader();
-  protected final WKTReader wktReader = new WKTReader();
+  protected final WKBReader wkbReader = new WKBReader(GeometryStoragePolicy.createGeometryFactory());
+  protected final WKTReader wktReader = new WKTReader(GeometryStoragePolicy.createGeometryFactory());
 
   protected final Connection conn;
 
@@ -10,6 +10,7 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import com.vividsolutions.jump.datastore.spatialdatabases.SpatialDatabasesValueConverterFactory;
 import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.geom.GeometryStoragePolicy;
 import java.io.IOException;
 import java.sql.ResultSet;
 
@@ -110,7 +111,7 @@ public class SpatialiteValueConverterFactory extends SpatialDatabasesValueConver
       //prepend byte-order byte
       wkb[0] = blobAsBytes[1];
 
-      WKBReader wkbReader = new WKBReader();
+      WKBReader wkbReader = new WKBReader(GeometryStoragePolicy.createGeometryFactory());
       setEwkbGeometryType(wkb);
       returnGeometry = wkbReader.read(wkb);
 
@@ -151,7 +152,7 @@ public class SpatialiteValueConverterFactory extends SpatialDatabasesValueConver
 
       byte[] wkb = new byte[blobAsBytes.length - headerSize];
       System.arraycopy(blobAsBytes, headerSize, wkb, 0, blobAsBytes.length - headerSize);
-      WKBReader wkbReader = new WKBReader();
+      WKBReader wkbReader = new WKBReader(GeometryStoragePolicy.createGeometryFactory());
       setEwkbGeometryType(wkb);
       returnGeometry = wkbReader.read(wkb);
 
@@ -34,8 +34,10 @@ import java.io.Serializable;
 
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.util.Assert;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Default implementation of the Feature interface. Subclasses need
@@ -53,11 +55,40 @@ public abstract class AbstractBasicFeature implements Feature, Serializable {
     // Access methods are not yet exposed in Feature interface.
     private Map<Object,Object> userData;
 
+    // values of dynamic attributes computed by CacheableOperations
+    private transient volatile ComputedValues computedValues;
+
+    private static final AtomicReferenceFieldUpdater<AbstractBasicFeature,ComputedValues> COMPUTED_VALUES =
+            AtomicReferenceFieldUpdater.newUpdater(AbstractBasicFeature.class, ComputedValues.class, "computedValues");
+
+    private static final Object NULL_VALUE = new Object();
+
+    // copy-on-write cache : values is never modified once published
+    private static final class ComputedValues {
+        // dependencies of the schema when the values were computed
+        final BitSet[] dependencies;
+        final Object[] values;
+        // incremented by each invalidation, so that a value computed before
+        // an invalidation is not stored after it
+        final int generation;
+        ComputedValues(BitSet[] dependencies, Object[] values, int generation) {
+            this.dependencies = dependencies;
+            this.values = values;
+            this.generation = generation;
+        }
+        ComputedValues with(int i, Object value) {
+            Object[] newValues = values.clone();
+            newValues[i] = value;
+            return new ComputedValues(dependencies, newValues, generation);
+        }
+    }
+
     /**
      * A low-level accessor that is not normally used.
      */
     public void setSchema(FeatureSchema schema) {
         this.schema = schema;
+        invalidateComputedAttributes(-1);
     }
 
     /**
@@ -70,6 +101,18 @@ public abstract class AbstractBasicFeature implements Feature, Serializable {
         this.schema = featureSchema;
     }
 
+    /**
+     * Creates a new Feature with a given ID, for features read back from a
+     * storage which must keep the ID they were first given.
+     *
+     *@param  featureSchema  the metadata containing information on each column
+     *@param  id  an ID obtained from FeatureUtil#nextID()
+     */
+    protected AbstractBasicFeature(FeatureSchema featureSchema, int id) {
+        this.id = id;
+        this.schema = featureSchema;
+    }
+
     /**
      * Returns a number that uniquely identifies this feature. This number is not
      * persistent.
@@ -265,6 +308,84 @@ public abstract class AbstractBasicFeature implements Feature, Serializable {
         return -1;        
     }
     
+    /**
+     * Returns the value of the dynamic attribute i, computed by the
+     * Operation of the schema. Values computed by a CacheableOperation are
+     * cached until {@link #invalidateComputedAttributes(int)} is called for
+     * one of the attributes they depend on.
+     * @return the value, or an Error wrapping the exception thrown by the
+     * operation
+     */
+    protected Object getComputedAttribute(int i) {
+        Operation operation = schema.getOperation(i);
+        BitSet[] dependencies = schema.getOperationDependencies();
+        if (dependencies[i] == null) {
+            try {
+                return operation.invoke(this);
+            } catch(Exception e) {
+                return new Error(e);
+            }
+        }
+        ComputedValues computed = computedValues;
+        while (computed == null || computed.dependencies != dependencies) {
+            ComputedValues empty = new ComputedValues(dependencies, new Object[dependencies.length],
+                    computed == null ? 0 : computed.generation + 1);
+            computed = COMPUTED_VALUES.compareAndSet(this, computed, empty) ? empty : computedValues;
+        }
+        Object value = computed.values[i];
+        if (value != null) return value == NULL_VALUE ? null : value;
+        final int generation = computed.generation;
+        try {
+            value = operation.invoke(this);
+        } catch(Exception e) {
+            return new Error(e);
+        }
+        // store the value unless the cache has been invalidated meanwhile,
+        // keeping the values stored for other attributes meanwhile
+        Object stored = value == null ? NULL_VALUE : value;
+        while (computed.generation == generation && computed.dependencies == dependencies &&
+                !COMPUTED_VALUES.compareAndSet(this, computed, computed.with(i, stored))) {
+            computed = computedValues;
+        }
+        return value;
+    }
+
+    /**
+     * Removes the cached values of the dynamic attributes depending on
+     * attribute attributeIndex, or all the cached values if attributeIndex
+     * is negative. Called when an attribute is set, and when a FeatureEvent
+     * reports that the feature has been modified.
+     */
+    public void invalidateComputedAttributes(int attributeIndex) {
+        ComputedValues computed;
+        ComputedValues invalidated;
+        do {
+            computed = computedValues;
+            // nothing has been cached or is being computed
+            if (computed == null) return;
+            Object[] values = computed.values;
+            if (attributeIndex < 0) {
+                values = new Object[values.length];
+            } else {
+                boolean dependent = false;
+                for (int i = 0; i < values.length; i++) {
+                    if (computed.dependencies[i] == null || !computed.dependencies[i].get(attributeIndex)) {
+                        continue;
+                    }
+                    dependent = true;
+                    if (computed.values[i] != null) {
+                        if (values == computed.values) values = values.clone();
+                        values[i] = null;
+                    }
+                }
+                if (!dependent) return;
+            }
+            // a new generation even if no value is removed, for the values
+            // being computed
+            invalidated = new ComputedValues(computed.dependencies, values, computed.generation + 1);
+        } while (!COMPUTED_VALUES.compareAndSet(this, computed, invalidated));
+    }
+
     /**
      * Sets a new value in userData replacing the old one for this key.
      */
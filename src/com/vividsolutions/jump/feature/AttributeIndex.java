@@ -0,0 +1,328 @@
+package com.vividsolutions.jump.feature;
+
+import java.util.*;
+
+/**
+ * An index of the Features of a FeatureCollection on the values of one
+ * attribute.
+ * <p>
+ * Equality queries use a hash map. Range and prefix queries use arrays of
+ * keys sorted on first use, which are sorted again after modifications.
+ * Values are normalized before indexing : numbers and dates are indexed
+ * as doubles (so that Integer 1, Long 1 and Double 1.0 share the same key),
+ * strings as strings, and other values as is.
+ * <p>
+ * The index is not maintained automatically, see
+ * {@link com.vividsolutions.jump.workbench.model.AttributeIndexManager}.
+ * It is thread-safe.
+ * <p>
+ * Features are identified by their ID, so that a feature can be removed or
+ * updated through another instance with the same ID (a collection such as
+ * DiskFeatureCollection may read a feature again as a new object). Queries
+ * return the instances which were indexed; the index references them, so a
+ * DiskFeatureCollection keeps them in memory.
+ */
+public class AttributeIndex {
+
+    private final FeatureCollection collection;
+    private final FeatureSchema schema;
+    private final String attribute;
+
+    // key -> Feature, or FeatureList if several features share the key
+    private final Map<Object,Object> features = new HashMap<>();
+    // feature ID -> key, to remove features whose attribute has changed
+    private final Map<Integer,Object> keys = new HashMap<>();
+
+    private int numericCount, stringCount, nullCount;
+
+    // sorted keys, built on demand
+    private double[] numericKeys;
+    private Feature[] numericFeatures;
+    private String[] stringKeys;
+    private Feature[] stringFeatures;
+
+    /**
+     * Creates the index of attribute for all the features of collection.
+     */
+    public AttributeIndex(FeatureCollection collection, String attribute) {
+        this.collection = collection;
+        this.schema = collection.getFeatureSchema();
+        this.attribute = attribute;
+        for (Feature feature : collection.getFeatures()) {
+            add(feature);
+        }
+    }
+
+    public FeatureCollection getFeatureCollection() {
+        return collection;
+    }
+
+    public FeatureSchema getFeatureSchema() {
+        return schema;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+
+    /**
+     * @return the number of indexed features
+     */
+    public synchronized int size() {
+        return keys.size();
+    }
+
+    /**
+     * @return true if all the non null values of the attribute are numbers
+     * or dates
+     */
+    public synchronized boolean isNumeric() {
+        return numericCount + nullCount == keys.size();
+    }
+
+    /**
+     * @return true if all the non null values of the attribute are strings
+     */
+    public synchronized boolean isString() {
+        return stringCount + nullCount == keys.size();
+    }
+
+    /**
+     * Returns the key used to index value : a Double for numbers and dates,
+     * the value itself otherwise.
+     */
+    public static Object key(Object value) {
+        if (value instanceof Number) {
+            double d = ((Number)value).doubleValue();
+            // -0.0 and 0.0 are different Doubles
+            return d == 0.0 ? 0.0 : d;
+        }
+        if (value instanceof Date) {
+            return (double)((Date)value).getTime();
+        }
+        return value;
+    }
+
+    public synchronized void add(Feature feature) {
+        if (keys.containsKey(feature.getID())) return;
+        Object key = key(feature.getAttribute(attribute));
+        keys.put(feature.getID(), key);
+        Object old = features.get(key);
+        if (old == null) {
+            features.put(key, feature);
+        } else if (old instanceof Feature) {
+            FeatureList list = new FeatureList();
+            list.add((Feature)old);
+            list.add(feature);
+            features.put(key, list);
+        } else {
+            ((FeatureList)old).add(feature);
+        }
+        count(key, 1);
+    }
+
+    /**
+     * Removes the feature having the ID of feature.
+     */
+    public synchronized void remove(Feature feature) {
+        int id = feature.getID();
+        if (!keys.containsKey(id)) return;
+        Object key = keys.remove(id);
+        Object old = features.get(key);
+        if (old instanceof Feature) {
+            features.remove(key);
+        } else if (old != null) {
+            FeatureList list = (FeatureList)old;
+            for (int i = 0; i < list.size(); i++) {
+                if (list.get(i).getID() == id) {
+                    list.remove(i);
+                    break;
+                }
+            }
+            if (list.size() == 1) features.put(key, list.get(0));
+        }
+        count(key, -1);
+    }
+
+    /**
+     * Re-indexes a feature whose attribute value may have changed.
+     */
+    public synchronized void update(Feature feature) {
+        Object key = key(feature.getAttribute(attribute));
+        Integer id = feature.getID();
+        if (keys.containsKey(id) && Objects.equals(key, keys.get(id))) return;
+        remove(feature);
+        add(feature);
+    }
+
+    private void count(Object key, int delta) {
+        if (key == null) {
+            nullCount += delta;
+        } else if (key instanceof Double) {
+            numericCount += delta;
+            numericKeys = null;
+            numericFeatures = null;
+        } else if (key instanceof String) {
+            stringCount += delta;
+            stringKeys = null;
+            stringFeatures = null;
+        }
+    }
+
+    /**
+     * @return the features whose attribute value equals value (null returns
+     * the features having no value)
+     */
+    public synchronized List<Feature> query(Object value) {
+        Object found = features.get(key(value));
+        if (found == null) return new ArrayList<>();
+        if (found instanceof Feature) {
+            List<Feature> list = new ArrayList<>(1);
+            list.add((Feature)found);
+            return list;
+        }
+        return new ArrayList<>((FeatureList)found);
+    }
+
+    /**
+     * Returns the features having a numeric or date value between min and
+     * max. A null bound means no limit.
+     */
+    public synchronized List<Feature> queryRange(Number min, boolean minInclusive,
+                                                 Number max, boolean maxInclusive) {
+        if (numericKeys == null) sortNumericKeys();
+        int from = 0, to = numericKeys.length;
+        if (min != null) {
+            double d = min.doubleValue();
+            from = minInclusive ? lowerBound(numericKeys, d) : upperBound(numericKeys, d);
+        }
+        if (max != null) {
+            double d = max.doubleValue();
+            to = maxInclusive ? upperBound(numericKeys, d) : lowerBound(numericKeys, d);
+        }
+        return from < to ?
+                new ArrayList<>(Arrays.asList(numericFeatures).subList(from, to)) :
+                new ArrayList<>();
+    }
+
+    /**
+     * Returns the features having a string value between min and max
+     * (compared with String#compareTo). A null bound means no limit.
+     */
+    public synchronized List<Feature> queryRange(String min, boolean minInclusive,
+                                                 String max, boolean maxInclusive) {
+        if (stringKeys == null) sortStringKeys();
+        int from = 0, to = stringKeys.length;
+        if (min != null) {
+            from = minInclusive ? lowerBound(stringKeys, min) : upperBound(stringKeys, min);
+        }
+        if (max != null) {
+            to = maxInclusive ? upperBound(stringKeys, max) : lowerBound(stringKeys, max);
+        }
+        return from < to ?
+                new ArrayList<>(Arrays.asList(stringFeatures).subList(from, to)) :
+                new ArrayList<>();
+    }
+
+    /**
+     * @return the features having a string value starting with prefix
+     */
+    public synchronized List<Feature> queryPrefix(String prefix) {
+        if (stringKeys == null) sortStringKeys();
+        int from = lowerBound(stringKeys, prefix);
+        int to = from;
+        while (to < stringKeys.length && stringKeys[to].startsWith(prefix)) to++;
+        return new ArrayList<>(Arrays.asList(stringFeatures).subList(from, to));
+    }
+
+    private void sortNumericKeys() {
+        List<Map.Entry<Object,Object>> entries = entries(Double.class);
+        entries.sort(Comparator.comparingDouble(e -> (Double)e.getKey()));
+        numericKeys = new double[numericCount];
+        numericFeatures = new Feature[numericCount];
+        int i = 0;
+        for (Map.Entry<Object,Object> entry : entries) {
+            for (Feature feature : features(entry.getValue())) {
+                numericKeys[i] = (Double)entry.getKey();
+                numericFeatures[i++] = feature;
+            }
+        }
+    }
+
+    private void sortStringKeys() {
+        List<Map.Entry<Object,Object>> entries = entries(String.class);
+        entries.sort(Comparator.comparing(e -> (String)e.getKey()));
+        stringKeys = new String[stringCount];
+        stringFeatures = new Feature[stringCount];
+        int i = 0;
+        for (Map.Entry<Object,Object> entry : entries) {
+            for (Feature feature : features(entry.getValue())) {
+                stringKeys[i] = (String)entry.getKey();
+                stringFeatures[i++] = feature;
+            }
+        }
+    }
+
+    // the entries of features whose key is an instance of keyClass
+    private List<Map.Entry<Object,Object>> entries(Class<?> keyClass) {
+        List<Map.Entry<Object,Object>> entries = new ArrayList<>();
+        for (Map.Entry<Object,Object> entry : features.entrySet()) {
+            if (keyClass.isInstance(entry.getKey())) entries.add(entry);
+        }
+        return entries;
+    }
+
+    private static List<Feature> features(Object value) {
+        return value instanceof Feature ?
+                Collections.singletonList((Feature)value) : (FeatureList)value;
+    }
+
+    // index of the first key >= value
+    private static int lowerBound(double[] keys, double value) {
+        int low = 0, high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < value) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // index of the first key > value
+    private static int upperBound(double[] keys, double value) {
+        int low = 0, high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] <= value) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private static int lowerBound(String[] keys, String value) {
+        int low = 0, high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(value) < 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private static int upperBound(String[] keys, String value) {
+        int low = 0, high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(value) <= 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // the features sharing a key
+    private static final class FeatureList extends ArrayList<Feature> {
+        FeatureList() {
+            super(2);
+        }
+    }
+}
@@ -56,6 +56,15 @@ public class BasicFeature extends AbstractBasicFeature implements Serializable {
         attributes = new Object[featureSchema.getAttributeCount()];        
     }
 
+    /**
+     * Constructs a BasicFeature keeping the ID of a feature read back from
+     * a storage.
+     */
+    protected BasicFeature(FeatureSchema featureSchema, int id) {
+        super(featureSchema, id);
+        attributes = new Object[featureSchema.getAttributeCount()];
+    }
+
 
     /**
      * A low-level accessor that is not normally used. It is called by
@@ -64,6 +73,7 @@ public class BasicFeature extends AbstractBasicFeature implements Serializable {
     public void setAttributes(Object[] attributes) {
       Object[] attributesOld = this.attributes;
       this.attributes = attributes;
+      invalidateComputedAttributes(-1);
       if (attributes != null)
         if (attributesOld.length != attributes.length)
           modified = true;
@@ -90,6 +100,7 @@ public class BasicFeature extends AbstractBasicFeature implements Serializable {
         modified = true;
       }
       attributes[attributeIndex] = newAttribute;
+      invalidateComputedAttributes(attributeIndex);
     }
 
     /**
@@ -101,11 +112,7 @@ public class BasicFeature extends AbstractBasicFeature implements Serializable {
     public Object getAttribute(int i) {
         // [mmichaud 2012-10-13] handle dynamic attributes
         if (getSchema().isOperation(i)) {
-            try {
-                return getSchema().getOperation(i).invoke(this);
-            } catch(Exception e) {
-                return new Error(e); // error is not catched
-            }
+            return getComputedAttribute(i); // error is not catched
         }
         else return attributes[i];
         //We used to eat ArrayOutOfBoundsExceptions here. I've removed this behaviour
@@ -0,0 +1,22 @@
+package com.vividsolutions.jump.feature;
+
+/**
+ * An Operation whose result depends only on some attributes of the feature
+ * it is invoked on. Values computed by such an operation are cached in the
+ * feature until one of these attributes is modified, so that a dynamic
+ * attribute costs about the same as a stored one.
+ */
+public interface CacheableOperation extends Operation {
+
+    /**
+     * Returns the indices of the attributes of schema read by
+     * {@link #invoke(Feature)}, including the geometry if it is used.
+     * Dynamic attributes may be part of the result : the attributes they
+     * depend on are added by the schema.
+     * @return the indices of the attributes the result depends on, or null
+     * if it also depends on something else (other features, current time...)
+     * and must not be cached
+     */
+    int[] getDependencies(FeatureSchema schema);
+
+}
@@ -0,0 +1,133 @@
+package com.vividsolutions.jump.feature;
+
+import java.io.Serializable;
+
+/**
+ * Feature whose attributes are stored in a row of a
+ * {@link ColumnarFeatureCollection}. Instances are created by
+ * {@link ColumnarFeatureCollection#createFeature()}.
+ * <p>
+ * If the schema of the feature is replaced by one which does not match the
+ * columns of its collection (see ViewSchemaPlugIn), the feature detaches
+ * from its row and keeps its attributes in its own array, like a
+ * BasicFeature.
+ */
+public class ColumnarFeature extends AbstractBasicFeature implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ColumnarFeatureCollection collection;
+    private final int row;
+    // attributes of a feature which no more matches its collection's columns
+    private Object[] detached = null;
+    private short modCount = 0;
+    private boolean modified = false;
+
+    ColumnarFeature(ColumnarFeatureCollection collection, int row) {
+        super(collection.getFeatureSchema());
+        this.collection = collection;
+        this.row = row;
+    }
+
+    /**
+     * @return the collection holding the attributes of this feature
+     */
+    public ColumnarFeatureCollection getCollection() {
+        return collection;
+    }
+
+    /**
+     * @return the index of this feature's values in the columns of its
+     * collection
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * @return true if the attributes of this feature are read from the
+     * columns of collection
+     */
+    public boolean isBackedBy(ColumnarFeatureCollection collection) {
+        return this.collection == collection && detached == null;
+    }
+
+    /**
+     * A low-level accessor that is not normally used. It is called by
+     * ViewSchemaPlugIn.
+     */
+    public void setSchema(FeatureSchema schema) {
+        if (detached == null && schema != collection.getFeatureSchema()) {
+            detached = getAttributes();
+        }
+        super.setSchema(schema);
+    }
+
+    /**
+     * A low-level accessor that is not normally used. It is called by
+     * ViewSchemaPlugIn.
+     */
+    public void setAttributes(Object[] attributes) {
+        if (detached == null && getSchema() == collection.getFeatureSchema()
+                && attributes.length == collection.getColumnCount()) {
+            for (int i = 0; i < attributes.length; i++) {
+                collection.set(row, i, attributes[i]);
+            }
+        } else {
+            detached = attributes;
+        }
+        invalidateComputedAttributes(-1);
+        modified = true;
+    }
+
+    public void setAttribute(int attributeIndex, Object newAttribute) {
+        modCount++;
+        if (storedAttribute(attributeIndex) != null || modCount > getSchema().getAttributeCount()) {
+            modified = true;
+        }
+        if (detached != null) {
+            detached[attributeIndex] = newAttribute;
+        } else {
+            collection.set(row, attributeIndex, newAttribute);
+        }
+        invalidateComputedAttributes(attributeIndex);
+    }
+
+    public Object getAttribute(int i) {
+        if (getSchema().isOperation(i)) {
+            return getComputedAttribute(i);
+        }
+        return storedAttribute(i);
+    }
+
+    private Object storedAttribute(int i) {
+        return detached != null ? detached[i] : collection.get(row, i);
+    }
+
+    /**
+     * A low-level accessor that is not normally used. It is called by
+     * ViewSchemaPlugIn. Unless the feature is detached from its collection,
+     * the returned array is a copy of the attributes.
+     */
+    public Object[] getAttributes() {
+        if (detached != null) return detached;
+        Object[] attributes = new Object[getSchema().getAttributeCount()];
+        for (int i = 0; i < attributes.length; i++) {
+            attributes[i] = storedAttribute(i);
+        }
+        return attributes;
+    }
+
+    /**
+     * @return true if any attribute of this Feature (including Geometry) has
+     * been set more than once.
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    public void setModified(boolean modified) {
+        this.modified = modified;
+        modCount = 0;
+    }
+}
@@ -0,0 +1,622 @@
+package com.vividsolutions.jump.feature;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.StampedLock;
+
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ * FeatureCollection storing attributes column by column rather than as one
+ * Object[] per Feature. Integer, long, double and boolean attributes are
+ * kept in primitive arrays with a bitmap for null values, strings are
+ * dictionary-encoded (repeated values like land-use codes are stored once),
+ * other attributes (geometries, dates...) in plain Object arrays.
+ * <p>
+ * Features are created by {@link #createFeature()} or
+ * {@link #createFeature(Feature)} and are lightweight {@link ColumnarFeature}
+ * row views reading and writing through the columns. Features of other
+ * classes can still be added, they are just kept as they are.
+ * <p>
+ * Rows of removed features are not reclaimed, as removed features may
+ * come back (undo) and must still be able to read their attributes.
+ * <p>
+ * Rows are created and features added by a single thread, but attributes
+ * of distinct rows may be written concurrently, as parallel attribute
+ * calculators do. Writes go to per-row slots without locking, columns
+ * are only replaced (widened, added or grown) under an exclusive lock, and
+ * writes racing with such a replacement are done again on the new column.
+ */
+public class ColumnarFeatureCollection implements FeatureCollection, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // whether file and database loaders create columnar collections
+    private static boolean enabledForLoaders = false;
+
+    private final FeatureSchema featureSchema;
+    private Column[] columns;
+    // held exclusively while columns are replaced, see set()
+    private transient StampedLock columnsLock = new StampedLock();
+    private int rowCount = 0;
+    private int capacity;
+
+    private List<Feature> features = new ArrayList<>();
+    private Envelope envelope = null;
+
+    /**
+     * @return true if loaders supporting it should create
+     * ColumnarFeatureCollections instead of FeatureDatasets
+     */
+    public static boolean isEnabledForLoaders() {
+        return enabledForLoaders;
+    }
+
+    public static void setEnabledForLoaders(boolean enabled) {
+        enabledForLoaders = enabled;
+    }
+
+    /**
+     * Returns the ColumnarFeatureCollection wrapped by fc, or null if fc is
+     * not backed by a ColumnarFeatureCollection.
+     */
+    public static ColumnarFeatureCollection unwrap(FeatureCollection fc) {
+        if (fc instanceof FeatureCollectionWrapper) {
+            fc = ((FeatureCollectionWrapper)fc).getUltimateWrappee();
+        }
+        return fc instanceof ColumnarFeatureCollection ?
+                (ColumnarFeatureCollection)fc : null;
+    }
+
+    public ColumnarFeatureCollection(FeatureSchema featureSchema) {
+        this(featureSchema, 16);
+    }
+
+    /**
+     * @param featureSchema the types of the attributes of the features in this collection
+     * @param initialCapacity expected number of features
+     */
+    public ColumnarFeatureCollection(FeatureSchema featureSchema, int initialCapacity) {
+        this.featureSchema = featureSchema;
+        this.capacity = Math.max(initialCapacity, 1);
+        this.columns = new Column[featureSchema.getAttributeCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = Column.create(featureSchema.getAttributeType(i), capacity);
+        }
+        ((ArrayList<Feature>)features).ensureCapacity(capacity);
+    }
+
+    /**
+     * Creates a new Feature backed by a new row of this collection. All
+     * attributes are null. The feature is not added to the collection.
+     */
+    public ColumnarFeature createFeature() {
+        if (rowCount == capacity) {
+            long stamp = columnsLock.writeLock();
+            try {
+                capacity = capacity + (capacity >> 1) + 1;
+                for (Column column : columns) column.grow(capacity);
+            } finally {
+                columnsLock.unlockWrite(stamp);
+            }
+        }
+        return new ColumnarFeature(this, rowCount++);
+    }
+
+    /**
+     * Creates a new Feature backed by a new row of this collection, with the
+     * attributes of source. The feature is not added to the collection.
+     */
+    public ColumnarFeature createFeature(Feature source) {
+        ColumnarFeature feature = createFeature();
+        int n = Math.min(columns.length, source.getSchema().getAttributeCount());
+        for (int i = 0; i < n; i++) {
+            set(feature.getRow(), i, source.getAttribute(i));
+        }
+        return feature;
+    }
+
+    /**
+     * Returns the column storing the given attribute. Columns may be replaced
+     * by more generic ones when values of an unexpected type are stored, so
+     * the column should not be kept.
+     */
+    public Column getColumn(int attributeIndex) {
+        return columns[attributeIndex];
+    }
+
+    /**
+     * Returns the values of a numeric attribute for all features of this
+     * collection, in feature order, null values being returned as NaN.
+     * This is a tight primitive loop, without boxing.
+     * @return the values or null if the attribute is not stored in a numeric
+     * column or if the collection contains features not backed by its rows
+     */
+    public double[] getNumericValues(int attributeIndex) {
+        if (attributeIndex >= columns.length || !columns[attributeIndex].isNumeric()) {
+            return null;
+        }
+        Column column = columns[attributeIndex];
+        double[] values = new double[features.size()];
+        int i = 0;
+        for (Feature feature : features) {
+            if (!isAttachedRow(feature)) return null;
+            int row = ((ColumnarFeature)feature).getRow();
+            values[i++] = column.isNull(row) ? Double.NaN : column.getDouble(row);
+        }
+        return values;
+    }
+
+    private boolean isAttachedRow(Feature feature) {
+        return feature instanceof ColumnarFeature &&
+                ((ColumnarFeature)feature).isBackedBy(this);
+    }
+
+    int getColumnCount() {
+        return columns.length;
+    }
+
+    Object get(int row, int attributeIndex) {
+        // attributes added to the schema after this collection was created
+        if (attributeIndex >= columns.length) return null;
+        return columns[attributeIndex].get(row);
+    }
+
+    void set(int row, int attributeIndex, Object value) {
+        // optimistic write: if a column was replaced meanwhile, the value
+        // may have been written after it was copied, so it is written again
+        long stamp = columnsLock.tryOptimisticRead();
+        Column[] columns = this.columns;
+        if (attributeIndex < columns.length && columns[attributeIndex].set(row, value)
+                && columnsLock.validate(stamp)) {
+            return;
+        }
+        stamp = columnsLock.writeLock();
+        try {
+            if (attributeIndex >= this.columns.length) {
+                ensureColumnCount(attributeIndex + 1);
+            }
+            columns = this.columns;
+            if (!columns[attributeIndex].set(row, value)) {
+                columns[attributeIndex] = columns[attributeIndex].toObjectColumn(rowCount, capacity);
+                columns[attributeIndex].set(row, value);
+            }
+        } finally {
+            columnsLock.unlockWrite(stamp);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        columnsLock = new StampedLock();
+    }
+
+    private void ensureColumnCount(int count) {
+        Column[] newColumns = new Column[count];
+        System.arraycopy(columns, 0, newColumns, 0, columns.length);
+        for (int i = columns.length; i < count; i++) {
+            newColumns[i] = new ObjectColumn(capacity);
+        }
+        columns = newColumns;
+    }
+
+    @Override
+    public FeatureSchema getFeatureSchema() {
+        return featureSchema;
+    }
+
+    /**
+     * Because the envelope is cached, the envelope may be incorrect if you
+     * later change a Feature's geometry using Feature#setGeometry.
+     */
+    @Override
+    public Envelope getEnvelope() {
+        if (envelope == null) {
+            envelope = new Envelope();
+            for (Feature feature : features) {
+                envelope.expandToInclude(feature.getGeometry().getEnvelopeInternal());
+            }
+        }
+        return envelope;
+    }
+
+    @Override
+    public int size() {
+        return features.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return features.isEmpty();
+    }
+
+    @Override
+    public List<Feature> getFeatures() {
+        return Collections.unmodifiableList(features);
+    }
+
+    @Override
+    public Iterator<Feature> iterator() {
+        return features.iterator();
+    }
+
+    @Override
+    public List<Feature> query(Envelope envelope) {
+        List<Feature> queryResult = new ArrayList<>();
+        if (!envelope.intersects(getEnvelope())) {
+            return queryResult;
+        }
+        for (Feature feature : features) {
+            if (feature.getGeometry().getEnvelopeInternal().intersects(envelope)) {
+                queryResult.add(feature);
+            }
+        }
+        return queryResult;
+    }
+
+    @Override
+    public void add(Feature feature) {
+        features.add(feature);
+        if (envelope != null) {
+            envelope.expandToInclude(feature.getGeometry().getEnvelopeInternal());
+        }
+    }
+
+    @Override
+    public void addAll(Collection<Feature> features) {
+        for (Feature feature : features) {
+            add(feature);
+        }
+    }
+
+    // same semantic as FeatureDataset#removeAll, features are identified by FID
+    @Override
+    public void removeAll(Collection<Feature> c) {
+        Map<Integer,Feature> map = new LinkedHashMap<>();
+        for (Feature feature : features) {
+            map.put(feature.getID(), feature);
+        }
+        for (Feature feature : c) {
+            map.remove(feature.getID());
+        }
+        features = new ArrayList<>(map.values());
+        envelope = null;
+    }
+
+    @Override
+    public void remove(Feature feature) {
+        features.remove(feature);
+        envelope = null;
+    }
+
+    @Override
+    public Collection<Feature> remove(Envelope env) {
+        Collection<Feature> features = query(env);
+        removeAll(features);
+        return features;
+    }
+
+    @Override
+    public void clear() {
+        features.clear();
+        envelope = null;
+    }
+
+
+    /**
+     * Storage of the values of one attribute, indexed by row.
+     */
+    public abstract static class Column implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        static Column create(AttributeType type, int capacity) {
+            Class<?> clazz = type.toJavaClass();
+            if (clazz == Integer.class) return new IntColumn(capacity);
+            if (clazz == Long.class) return new LongColumn(capacity);
+            if (clazz == Double.class) return new DoubleColumn(capacity);
+            if (clazz == Boolean.class) return new BooleanColumn(capacity);
+            if (clazz == String.class) return new StringColumn(capacity);
+            return new ObjectColumn(capacity);
+        }
+
+        public abstract Object get(int row);
+
+        public abstract boolean isNull(int row);
+
+        /**
+         * @return true if values are stored as primitive numbers and can be
+         * read with {@link #getDouble(int)}
+         */
+        public boolean isNumeric() {
+            return false;
+        }
+
+        /**
+         * Value of a non null row of a numeric column.
+         */
+        public double getDouble(int row) {
+            throw new UnsupportedOperationException(getClass().getSimpleName());
+        }
+
+        /**
+         * @return false if the value can't be stored by this column
+         */
+        abstract boolean set(int row, Object value);
+
+        abstract void grow(int capacity);
+
+        Column toObjectColumn(int rowCount, int capacity) {
+            ObjectColumn column = new ObjectColumn(capacity);
+            for (int i = 0; i < rowCount; i++) {
+                column.set(i, get(i));
+            }
+            return column;
+        }
+    }
+
+    /**
+     * Bitmap whose bits can be set concurrently, unlike a BitSet which loses
+     * the bits of neighbour rows written at the same time.
+     */
+    static final class AtomicBits implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private AtomicLongArray words;
+
+        AtomicBits(int capacity) {
+            words = new AtomicLongArray((capacity + 63) >>> 6);
+        }
+
+        boolean get(int i) {
+            return (words.get(i >>> 6) & (1L << i)) != 0;
+        }
+
+        void set(int i, boolean value) {
+            int word = i >>> 6;
+            long mask = 1L << i;
+            long old;
+            do {
+                old = words.get(word);
+            } while (!words.compareAndSet(word, old, value ? old | mask : old & ~mask));
+        }
+
+        void grow(int capacity) {
+            int length = (capacity + 63) >>> 6;
+            if (length > words.length()) {
+                AtomicLongArray newWords = new AtomicLongArray(length);
+                for (int i = 0; i < words.length(); i++) {
+                    newWords.set(i, words.get(i));
+                }
+                words = newWords;
+            }
+        }
+    }
+
+    /**
+     * Base class of columns storing primitive values, with a bitmap of the
+     * rows holding a (non null) value.
+     */
+    abstract static class PrimitiveColumn extends Column {
+        private static final long serialVersionUID = 1L;
+        final AtomicBits present;
+
+        PrimitiveColumn(int capacity) {
+            present = new AtomicBits(capacity);
+        }
+
+        public boolean isNull(int row) {
+            return !present.get(row);
+        }
+
+        void grow(int capacity) {
+            present.grow(capacity);
+        }
+    }
+
+    static class IntColumn extends PrimitiveColumn {
+        private static final long serialVersionUID = 1L;
+        private int[] values;
+        IntColumn(int capacity) {
+            super(capacity);
+            values = new int[capacity];
+        }
+        public Object get(int row) {
+            return present.get(row) ? Integer.valueOf(values[row]) : null;
+        }
+        public boolean isNumeric() { return true; }
+        public double getDouble(int row) { return values[row]; }
+        boolean set(int row, Object value) {
+            if (value == null) present.set(row, false);
+            else if (value.getClass() == Integer.class) {
+                values[row] = (Integer)value;
+                present.set(row, true);
+            }
+            else return false;
+            return true;
+        }
+        void grow(int capacity) {
+            super.grow(capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    static class LongColumn extends PrimitiveColumn {
+        private static final long serialVersionUID = 1L;
+        private long[] values;
+        LongColumn(int capacity) {
+            super(capacity);
+            values = new long[capacity];
+        }
+        public Object get(int row) {
+            return present.get(row) ? Long.valueOf(values[row]) : null;
+        }
+        public boolean isNumeric() { return true; }
+        public double getDouble(int row) { return values[row]; }
+        boolean set(int row, Object value) {
+            if (value == null) present.set(row, false);
+            else if (value.getClass() == Long.class) {
+                values[row] = (Long)value;
+                present.set(row, true);
+            }
+            else return false;
+            return true;
+        }
+        void grow(int capacity) {
+            super.grow(capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    static class DoubleColumn extends PrimitiveColumn {
+        private static final long serialVersionUID = 1L;
+        private double[] values;
+        DoubleColumn(int capacity) {
+            super(capacity);
+            values = new double[capacity];
+        }
+        public Object get(int row) {
+            return present.get(row) ? Double.valueOf(values[row]) : null;
+        }
+        public boolean isNumeric() { return true; }
+        public double getDouble(int row) { return values[row]; }
+        boolean set(int row, Object value) {
+            if (value == null) present.set(row, false);
+            else if (value.getClass() == Double.class) {
+                values[row] = (Double)value;
+                present.set(row, true);
+            }
+            else return false;
+            return true;
+        }
+        void grow(int capacity) {
+            super.grow(capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    static class BooleanColumn extends PrimitiveColumn {
+        private static final long serialVersionUID = 1L;
+        private final AtomicBits values;
+        BooleanColumn(int capacity) {
+            super(capacity);
+            values = new AtomicBits(capacity);
+        }
+        public Object get(int row) {
+            return present.get(row) ? Boolean.valueOf(values.get(row)) : null;
+        }
+        boolean set(int row, Object value) {
+            if (value == null) present.set(row, false);
+            else if (value.getClass() == Boolean.class) {
+                values.set(row, (Boolean)value);
+                present.set(row, true);
+            }
+            else return false;
+            return true;
+        }
+        void grow(int capacity) {
+            super.grow(capacity);
+            values.grow(capacity);
+        }
+    }
+
+    /**
+     * Dictionary-encoded strings. Each distinct value is stored once and rows
+     * hold its code in the dictionary (-1 for null). If most values turn out
+     * to be distinct, the column is replaced by a plain ObjectColumn.
+     * The dictionary is only modified under the lock of the column.
+     */
+    public static class StringColumn extends Column {
+        private static final long serialVersionUID = 1L;
+        private static final int MIN_DICTIONARY_SIZE_CHECK = 4096;
+        private int[] codes;
+        // replaced when full, so that readers always see a complete array
+        private volatile String[] dictionary = new String[16];
+        private int dictionarySize = 0;
+        private final Map<String,Integer> lookup = new HashMap<>();
+        private int assigned = 0;
+
+        StringColumn(int capacity) {
+            codes = new int[capacity];
+            Arrays.fill(codes, -1);
+        }
+        public Object get(int row) {
+            int code = codes[row];
+            return code < 0 ? null : dictionary[code];
+        }
+        public boolean isNull(int row) {
+            return codes[row] < 0;
+        }
+        /**
+         * @return the code of the value of row in the dictionary, -1 for null
+         */
+        public int getCode(int row) {
+            return codes[row];
+        }
+        /**
+         * @return the distinct values of this column, indexed by code
+         */
+        public synchronized List<String> getDictionary() {
+            return Collections.unmodifiableList(
+                    Arrays.asList(dictionary).subList(0, dictionarySize));
+        }
+        synchronized boolean set(int row, Object value) {
+            if (value == null) {
+                codes[row] = -1;
+                return true;
+            }
+            if (value.getClass() != String.class) return false;
+            Integer code = lookup.get(value);
+            if (code == null) {
+                // mostly distinct values: a dictionary costs more than it saves
+                if (dictionarySize >= MIN_DICTIONARY_SIZE_CHECK &&
+                        dictionarySize * 2 > assigned) {
+                    return false;
+                }
+                code = dictionarySize;
+                if (code == dictionary.length) {
+                    dictionary = Arrays.copyOf(dictionary, code * 2);
+                }
+                dictionary[code] = (String)value;
+                dictionarySize++;
+                lookup.put((String)value, code);
+            }
+            codes[row] = code;
+            assigned++;
+            return true;
+        }
+        void grow(int capacity) {
+            int oldLength = codes.length;
+            codes = Arrays.copyOf(codes, capacity);
+            Arrays.fill(codes, oldLength, capacity, -1);
+        }
+    }
+
+    static class ObjectColumn extends Column {
+        private static final long serialVersionUID = 1L;
+        private Object[] values;
+        ObjectColumn(int capacity) { values = new Object[capacity]; }
+        public Object get(int row) { return values[row]; }
+        public boolean isNull(int row) { return values[row] == null; }
+        boolean set(int row, Object value) {
+            values[row] = value;
+            return true;
+        }
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+        Column toObjectColumn(int rowCount, int capacity) {
+            return this;
+        }
+    }
+}
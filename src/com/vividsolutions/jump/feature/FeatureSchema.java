@@ -57,6 +57,8 @@ public class FeatureSchema implements Cloneable, Serializable {
     protected List<Boolean> attributeReadOnly = new ArrayList<>();
     // [mmichaud 2012-10-13] add Operation capability for dynamic attributes 
     protected ArrayList<Operation> operations = new ArrayList<>();
+    // attributes read by CacheableOperations, computed on demand
+    private transient volatile BitSet[] operationDependencies;
 
     public FeatureSchema() {
     }
@@ -195,6 +197,7 @@ public class FeatureSchema implements Cloneable, Serializable {
         attributeReadOnly.add(false);
         operations.add(null);
         attributeCount++;
+        operationDependencies = null;
     }
 
     /**
@@ -212,7 +215,7 @@ public class FeatureSchema implements Cloneable, Serializable {
         attributeReadOnly.add(true);
         operations.add(operation);
         attributeCount++;
-    
+        operationDependencies = null;
     }
 
     /**
@@ -323,6 +326,7 @@ public class FeatureSchema implements Cloneable, Serializable {
 	 */
 	 public void setOperation(int attributeIndex, Operation operation) {
 	     operations.set(attributeIndex, operation);
+	     operationDependencies = null;
 	 }
 	 
 	/**
@@ -333,6 +337,50 @@ public class FeatureSchema implements Cloneable, Serializable {
 	     return operations.get(attributeIndex);
 	 }
 
+    /**
+     * Returns, for each attribute computed by a {@link CacheableOperation},
+     * all the attributes its value depends on, directly or through other
+     * dynamic attributes. Other attributes, and dynamic attributes which
+     * cannot be cached, have a null entry. The array is replaced when an
+     * operation or an attribute is added or modified.
+     */
+    BitSet[] getOperationDependencies() {
+        BitSet[] dependencies = operationDependencies;
+        if (dependencies == null) {
+            dependencies = new BitSet[attributeCount];
+            int[][] direct = new int[attributeCount][];
+            for (int i = 0; i < attributeCount; i++) {
+                if (operations.get(i) instanceof CacheableOperation) {
+                    direct[i] = ((CacheableOperation)operations.get(i)).getDependencies(this);
+                }
+            }
+            for (int i = 0; i < attributeCount; i++) {
+                if (direct[i] == null) continue;
+                BitSet bitSet = new BitSet(attributeCount);
+                if (addDependencies(i, direct, bitSet, new BitSet(attributeCount))) {
+                    dependencies[i] = bitSet;
+                }
+            }
+            operationDependencies = dependencies;
+        }
+        return dependencies;
+    }
+
+    // adds the dependencies of attribute i to bitSet and returns false if one
+    // of them is a dynamic attribute which cannot be cached
+    private boolean addDependencies(int i, int[][] direct, BitSet bitSet, BitSet visited) {
+        visited.set(i);
+        for (int j : direct[i]) {
+            if (j < 0 || j >= attributeCount) continue;
+            bitSet.set(j);
+            if (operations.get(j) == null || visited.get(j)) continue;
+            if (direct[j] == null || !addDependencies(j, direct, bitSet, visited)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Returns the attribute index of the externalId attribute, or -1 if there is no
      * externalId.
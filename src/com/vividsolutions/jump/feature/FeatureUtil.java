@@ -35,6 +35,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.locationtech.jts.geom.Geometry;
 
@@ -92,13 +93,39 @@ public class FeatureUtil {
 		}
 	}	
 	
-	private static int lastID = 0;
-	
+	// number of IDs reserved at once by a thread
+	private static final int ID_BLOCK_SIZE = 1024;
+
+	// last ID reserved by any thread
+	private static final AtomicLong lastID = new AtomicLong(0);
+
+	// per thread range of reserved IDs, {next, last}
+	private static final ThreadLocal<long[]> idBlock = new ThreadLocal<long[]>() {
+		protected long[] initialValue() {
+			return new long[]{1, 0};
+		}
+	};
+
     /**
-     * Increments and returns the feature-ID counter
+     * Increments and returns the feature-ID counter.
+     * <p>
+     * IDs are unique across threads. Each thread reserves blocks of
+     * consecutive IDs from a global atomic counter, so features can be
+     * created concurrently without locking. IDs increase within a thread,
+     * but features created by different threads are not numbered in
+     * creation order. As Feature#getID() is an int, IDs wrap around after
+     * Integer.MAX_VALUE like the former int counter did.
      * @see Feature#getID()
      */
-	public static int nextID() { return ++lastID; }
+	public static int nextID() {
+		long[] block = idBlock.get();
+		if (block[0] > block[1]) {
+			long last = lastID.addAndGet(ID_BLOCK_SIZE);
+			block[0] = last - ID_BLOCK_SIZE + 1;
+			block[1] = last;
+		}
+		return (int) block[0]++;
+	}
 
     /**
      * Although Feature implements Cloneable, this method is useful
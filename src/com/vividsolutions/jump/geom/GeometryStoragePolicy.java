@@ -0,0 +1,178 @@
+package com.vividsolutions.jump.geom;
+
+import java.io.Serializable;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFactory;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.impl.CoordinateArraySequenceFactory;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+
+/**
+ * Project-wide policy defining how readers store the coordinates of the
+ * geometries they create.
+ * <ul>
+ * <li>{@link Storage#COORDINATE_ARRAY} is the JTS default, one
+ * {@link Coordinate} object per vertex (about 40 bytes plus a reference)</li>
+ * <li>{@link Storage#PACKED_DOUBLE} stores the ordinates of each sequence
+ * in a single double[] (8 bytes per ordinate)</li>
+ * <li>{@link Storage#PACKED_FLOAT} stores them in a float[] (4 bytes per
+ * ordinate, about 7 significant digits)</li>
+ * </ul>
+ * With packed storage, the two-dimensional mode additionally drops z (and m).
+ * <p>
+ * Packed coordinates can't be modified in place through
+ * {@link Geometry#apply(org.locationtech.jts.geom.CoordinateFilter)}, which
+ * many editing tools do on a copy of the geometry. Such copies must be
+ * obtained from {@link #editableCopy(Geometry)}.
+ */
+public class GeometryStoragePolicy {
+
+  public enum Storage { COORDINATE_ARRAY, PACKED_DOUBLE, PACKED_FLOAT }
+
+  private static Storage storage = Storage.COORDINATE_ARRAY;
+
+  private static boolean twoDimensional = false;
+
+  private static CoordinateSequenceFactory sequenceFactory =
+      CoordinateArraySequenceFactory.instance();
+
+  /**
+   * Change the storage policy. Geometries already loaded are not converted.
+   * @param storage the storage to use for newly read geometries
+   * @param twoDimensional whether z is dropped (packed storage only)
+   */
+  public static synchronized void setPolicy(Storage storage, boolean twoDimensional) {
+    GeometryStoragePolicy.storage = storage;
+    GeometryStoragePolicy.twoDimensional = twoDimensional;
+    switch (storage) {
+      case PACKED_DOUBLE:
+        sequenceFactory = twoDimensional
+            ? new TwoDimensionalPackedFactory(PackedCoordinateSequenceFactory.DOUBLE)
+            : PackedCoordinateSequenceFactory.DOUBLE_FACTORY;
+        break;
+      case PACKED_FLOAT:
+        sequenceFactory = twoDimensional
+            ? new TwoDimensionalPackedFactory(PackedCoordinateSequenceFactory.FLOAT)
+            : PackedCoordinateSequenceFactory.FLOAT_FACTORY;
+        break;
+      default:
+        sequenceFactory = CoordinateArraySequenceFactory.instance();
+    }
+  }
+
+  public static synchronized Storage getStorage() {
+    return storage;
+  }
+
+  public static synchronized boolean isTwoDimensional() {
+    return twoDimensional;
+  }
+
+  public static synchronized CoordinateSequenceFactory getCoordinateSequenceFactory() {
+    return sequenceFactory;
+  }
+
+  /**
+   * @return a GeometryFactory with a floating PrecisionModel and srid 0
+   * creating geometries according to the current policy
+   */
+  public static GeometryFactory createGeometryFactory() {
+    return createGeometryFactory(new PrecisionModel(), 0);
+  }
+
+  /**
+   * @return a GeometryFactory creating geometries according to the current
+   * policy
+   */
+  public static GeometryFactory createGeometryFactory(PrecisionModel precisionModel, int srid) {
+    return new GeometryFactory(precisionModel, srid, getCoordinateSequenceFactory());
+  }
+
+  /**
+   * Returns a copy of geometry whose coordinates can be modified in place.
+   * Geometries using Coordinate arrays are simply copied, others are
+   * converted to Coordinate arrays.
+   */
+  public static Geometry editableCopy(Geometry geometry) {
+    if (geometry.getFactory().getCoordinateSequenceFactory()
+        instanceof CoordinateArraySequenceFactory) {
+      return geometry.copy();
+    }
+    GeometryFactory factory = new GeometryFactory(
+        geometry.getPrecisionModel(), geometry.getSRID());
+    Geometry copy = factory.createGeometry(geometry);
+    copy.setUserData(geometry.getUserData());
+    return copy;
+  }
+
+  /**
+   * PackedCoordinateSequenceFactory keeps the dimension of the input
+   * coordinates, this one always creates x,y sequences. Readers ask for
+   * sequences of the dimension found in the data and set all ordinates,
+   * so ordinates beyond x,y (z and m) are silently ignored.
+   */
+  private static class TwoDimensionalPackedFactory
+      implements CoordinateSequenceFactory, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int type;
+
+    TwoDimensionalPackedFactory(int type) {
+      this.type = type;
+    }
+
+    public CoordinateSequence create(Coordinate[] coordinates) {
+      if (coordinates == null) coordinates = new Coordinate[0];
+      CoordinateSequence seq = create(coordinates.length, 2);
+      for (int i = 0; i < coordinates.length; i++) {
+        seq.setOrdinate(i, 0, coordinates[i].x);
+        seq.setOrdinate(i, 1, coordinates[i].y);
+      }
+      return seq;
+    }
+
+    public CoordinateSequence create(CoordinateSequence coordSeq) {
+      CoordinateSequence seq = create(coordSeq.size(), 2);
+      for (int i = 0, size = coordSeq.size(); i < size; i++) {
+        seq.setOrdinate(i, 0, coordSeq.getX(i));
+        seq.setOrdinate(i, 1, coordSeq.getY(i));
+      }
+      return seq;
+    }
+
+    public CoordinateSequence create(int size, int dimension) {
+      return type == PackedCoordinateSequenceFactory.DOUBLE
+          ? new Double2D(size) : new Float2D(size);
+    }
+
+    public CoordinateSequence create(int size, int dimension, int measures) {
+      return create(size, dimension);
+    }
+  }
+
+  private static class Double2D extends PackedCoordinateSequence.Double {
+    private static final long serialVersionUID = 1L;
+    Double2D(int size) {
+      super(size, 2, 0);
+    }
+    public void setOrdinate(int index, int ordinate, double value) {
+      if (ordinate < 2) super.setOrdinate(index, ordinate, value);
+    }
+  }
+
+  private static class Float2D extends PackedCoordinateSequence.Float {
+    private static final long serialVersionUID = 1L;
+    Float2D(int size) {
+      super(size, 2, 0);
+    }
+    public void setOrdinate(int index, int ordinate, double value) {
+      if (ordinate < 2) super.setOrdinate(index, ordinate, value);
+    }
+  }
+}
@@ -0,0 +1,271 @@
+package com.vividsolutions.jump.geom;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.index.hprtree.HilbertEncoder;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+import org.locationtech.jts.operation.union.UnaryUnionOp;
+
+import com.vividsolutions.jump.task.TaskMonitor;
+import com.vividsolutions.jump.util.ParallelUtil;
+
+/**
+ * Unions a large collection of geometries using several threads.
+ * <p>
+ * Geometries are sorted along a Hilbert curve and split into partitions
+ * of neighbouring geometries, which are unioned in parallel with
+ * {@link UnaryUnionOp}. Partition results are then merged pairwise, level
+ * by level, up to a single geometry. When two results are merged, only
+ * their components intersecting the envelope of the other result are
+ * unioned, the other components are copied as is, so that each merge only
+ * processes the boundary between two partitions.
+ * <p>
+ * If the free memory gets low between two levels, intermediate results
+ * are written to temporary files in WKB format and read back when they are
+ * merged.
+ */
+public class ParallelUnionOp {
+
+    private static final int PARTITION_SIZE = 2048;
+    private static final int HILBERT_LEVEL = 12;
+    // intermediate results are spilled if free memory is below this ratio
+    private static final double LOW_MEMORY_RATIO = 0.2;
+
+    private final List<Geometry> geometries;
+    private final GeometryFactory factory;
+    private TaskMonitor monitor;
+    private String description;
+    private final AtomicInteger done = new AtomicInteger();
+    private int total;
+    private double lowMemoryRatio = LOW_MEMORY_RATIO;
+
+    /**
+     * @param geometries the geometries to union
+     * @param factory the factory used for an empty result, or null to use
+     * the factory of the first geometry
+     */
+    public ParallelUnionOp(Collection<? extends Geometry> geometries, GeometryFactory factory) {
+        this.geometries = new ArrayList<>(geometries);
+        this.factory = factory != null ? factory :
+                this.geometries.isEmpty() ? new GeometryFactory() : this.geometries.get(0).getFactory();
+    }
+
+    /**
+     * Sets the ratio of the maximum memory under which the free memory is
+     * considered low, and intermediate results are written to temporary
+     * files (0.2 by default). 0 never writes them, 1 always writes them.
+     */
+    public void setLowMemoryRatio(double lowMemoryRatio) {
+        this.lowMemoryRatio = lowMemoryRatio;
+    }
+
+    /**
+     * Computes the union of geometries.
+     */
+    public static Geometry union(Collection<? extends Geometry> geometries) throws Exception {
+        return new ParallelUnionOp(geometries, null).union(null, null);
+    }
+
+    /**
+     * Computes the union.
+     * @param monitor a monitor to report progress and check for cancellation,
+     * or null
+     * @param description the description of the processed partitions for
+     * monitor
+     * @return the union, or null if cancellation has been requested
+     */
+    public Geometry union(TaskMonitor monitor, String description) throws Exception {
+        this.monitor = monitor;
+        this.description = description;
+        if (geometries.size() <= PARTITION_SIZE) {
+            Geometry union = UnaryUnionOp.union(geometries, factory);
+            return union == null ? factory.createGeometryCollection() : union;
+        }
+        List<Part> parts = partition();
+        // partitions, then one merge per pair at each level
+        total = 2 * parts.size() - 1;
+        List<Part> level = unionPartitions(parts);
+        while (level != null && level.size() > 1) {
+            if (isMemoryLow()) spill(level);
+            level = mergeLevel(level);
+        }
+        if (level == null) return null;
+        return level.get(0).getGeometry();
+    }
+
+    private boolean isCancelled() {
+        return monitor != null && monitor.isCancelRequested();
+    }
+
+    private void reportProgress() {
+        if (monitor != null) monitor.report(done.incrementAndGet(), total, description);
+    }
+
+    // sorts geometries along a Hilbert curve and splits them into partitions
+    private List<Part> partition() {
+        Envelope extent = new Envelope();
+        for (Geometry g : geometries) extent.expandToInclude(g.getEnvelopeInternal());
+        HilbertEncoder encoder = new HilbertEncoder(HILBERT_LEVEL, extent);
+        int size = geometries.size();
+        long[] sortKeys = new long[size];
+        for (int i = 0; i < size; i++) {
+            Envelope env = geometries.get(i).getEnvelopeInternal();
+            int code = env.isNull() ? 0 : encoder.encode(env);
+            sortKeys[i] = ((long)code << 32) | i;
+        }
+        java.util.Arrays.sort(sortKeys);
+        int partitionCount = (size + PARTITION_SIZE - 1) / PARTITION_SIZE;
+        List<Part> parts = new ArrayList<>(partitionCount);
+        for (int p = 0; p < partitionCount; p++) {
+            int from = (int)((long)size * p / partitionCount);
+            int to = (int)((long)size * (p + 1) / partitionCount);
+            List<Geometry> list = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) list.add(geometries.get((int)sortKeys[i]));
+            parts.add(new Part(list));
+        }
+        return parts;
+    }
+
+    private List<Part> unionPartitions(final List<Part> parts) throws Exception {
+        final List<Part> results = new ArrayList<>(parts.size());
+        for (int i = 0; i < parts.size(); i++) results.add(null);
+        ParallelUtil.processRanges(parts.size(), 1, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                if (isCancelled()) return;
+                Geometry union = UnaryUnionOp.union(parts.get(i).input, factory);
+                parts.set(i, null);
+                results.set(i, new Part(union == null ? factory.createGeometryCollection() : union));
+                reportProgress();
+            }
+        });
+        return isCancelled() ? null : results;
+    }
+
+    private List<Part> mergeLevel(final List<Part> level) throws Exception {
+        final int pairs = level.size() / 2;
+        final List<Part> results = new ArrayList<>(pairs + 1);
+        for (int i = 0; i < pairs; i++) results.add(null);
+        if (level.size() % 2 == 1) results.add(level.get(level.size() - 1));
+        ParallelUtil.processRanges(pairs, 1, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                if (isCancelled()) return;
+                Geometry merged = merge(level.get(2 * i).getGeometry(), level.get(2 * i + 1).getGeometry());
+                results.set(i, new Part(merged));
+                reportProgress();
+            }
+        });
+        return isCancelled() ? null : results;
+    }
+
+    /**
+     * Unions a and b, which are already unioned. Components of a and b which
+     * are not in the envelope of the other geometry can not interact with it
+     * and are kept unchanged.
+     */
+    Geometry merge(Geometry a, Geometry b) {
+        if (a.isEmpty()) return b;
+        if (b.isEmpty()) return a;
+        Envelope envA = a.getEnvelopeInternal();
+        Envelope envB = b.getEnvelopeInternal();
+        List<Geometry> kept = new ArrayList<>();
+        List<Geometry> interacting = new ArrayList<>();
+        split(a, envB, kept, interacting);
+        split(b, envA, kept, interacting);
+        if (!interacting.isEmpty()) {
+            Geometry union = UnaryUnionOp.union(interacting, factory);
+            for (int i = 0; i < union.getNumGeometries(); i++) kept.add(union.getGeometryN(i));
+        }
+        return factory.buildGeometry(kept);
+    }
+
+    private static void split(Geometry g, Envelope other, List<Geometry> kept, List<Geometry> interacting) {
+        for (int i = 0; i < g.getNumGeometries(); i++) {
+            Geometry component = g.getGeometryN(i);
+            if (component.getEnvelopeInternal().intersects(other)) interacting.add(component);
+            else kept.add(component);
+        }
+    }
+
+    private boolean isMemoryLow() {
+        Runtime runtime = Runtime.getRuntime();
+        long free = runtime.maxMemory() - runtime.totalMemory() + runtime.freeMemory();
+        return free < runtime.maxMemory() * lowMemoryRatio;
+    }
+
+    private void spill(List<Part> level) throws IOException {
+        for (Part part : level) part.spill();
+    }
+
+    /**
+     * An input partition or an intermediate result, possibly stored in a
+     * temporary file.
+     */
+    private final class Part {
+
+        List<Geometry> input;
+        Geometry geometry;
+        File file;
+
+        Part(List<Geometry> input) {
+            this.input = input;
+        }
+
+        Part(Geometry geometry) {
+            this.geometry = geometry;
+        }
+
+        void spill() throws IOException {
+            if (geometry == null) return;
+            file = File.createTempFile("union", ".wkb");
+            file.deleteOnExit();
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                out.write(new WKBWriter(geometryDimension(geometry)).write(geometry));
+            }
+            geometry = null;
+        }
+
+        Geometry getGeometry() throws IOException {
+            if (geometry != null) return geometry;
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream((int)file.length());
+                byte[] buffer = new byte[65536];
+                int n;
+                while ((n = in.read(buffer)) > 0) bytes.write(buffer, 0, n);
+                return new WKBReader(factory).read(bytes.toByteArray());
+            } catch (ParseException e) {
+                throw new IOException(e);
+            } finally {
+                file.delete();
+                file = null;
+            }
+        }
+    }
+
+    // 3 if any coordinate of geometry has a z, so that it is kept in WKB
+    private static int geometryDimension(Geometry geometry) {
+        final boolean[] hasZ = new boolean[1];
+        geometry.apply(new CoordinateSequenceFilter() {
+            public void filter(CoordinateSequence seq, int i) {
+                if (!Double.isNaN(seq.getZ(i))) hasZ[0] = true;
+            }
+            public boolean isDone() {
+                return hasZ[0];
+            }
+            public boolean isGeometryChanged() {
+                return false;
+            }
+        });
+        return hasZ[0] ? 3 : 2;
+    }
+}
@@ -67,6 +67,7 @@ import com.vividsolutions.jump.feature.FeatureCollection;
 import com.vividsolutions.jump.feature.FeatureDataset;
 import com.vividsolutions.jump.feature.FeatureSchema;
 import com.vividsolutions.jump.feature.FlexibleFeature;
+import com.vividsolutions.jump.geom.GeometryStoragePolicy;
 import com.vividsolutions.jump.task.DummyTaskMonitor;
 import com.vividsolutions.jump.task.TaskMonitor;
 import com.vividsolutions.jump.task.TaskMonitorSupport;
@@ -294,7 +295,7 @@ public class GMLReader extends DefaultHandler implements JUMPReader, TaskMonitor
                           // geometry
   private String current_geom_qname = "";
   private ArrayList<Geometry> geometry;
-  private GeometryFactory geometryFactory = new GeometryFactory(); // this might get
+  private GeometryFactory geometryFactory = GeometryStoragePolicy.createGeometryFactory(); // this might get
                                                            // replaced if
                                                            // there's an SRID
                                                            // change
@@ -679,7 +680,7 @@ public class GMLReader extends DefaultHandler implements JUMPReader, TaskMonitor
         if (newSRID != 0) {
           SRID = newSRID;
           if (geometryFactory.getSRID() != SRID)
-            geometryFactory = new GeometryFactory(new PrecisionModel(), SRID);
+            geometryFactory = GeometryStoragePolicy.createGeometryFactory(new PrecisionModel(), SRID);
         }
       }
 
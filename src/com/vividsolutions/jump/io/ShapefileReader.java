@@ -56,9 +56,12 @@ import com.vividsolutions.jump.feature.AttributeType;
 import com.vividsolutions.jump.feature.BasicFeature;
 import com.vividsolutions.jump.feature.Feature;
 import com.vividsolutions.jump.feature.FeatureCollection;
+import com.vividsolutions.jump.feature.ColumnarFeatureCollection;
 import com.vividsolutions.jump.feature.FeatureDataset;
 import com.vividsolutions.jump.feature.FeatureSchema;
+import com.vividsolutions.jump.geom.GeometryStoragePolicy;
 import com.vividsolutions.jump.workbench.Logger;
+import com.vividsolutions.jump.workbench.model.cache.DiskFeatureCollection;
 
 /**
  * ShapefileReader is a {@link JUMPReader} specialized to read Shapefiles.
@@ -145,7 +148,15 @@ public class ShapefileReader extends AbstractJUMPReader {
 
         try(InputStream shx = getShx(shpFileName, dp.getProperty(DataSource.COMPRESSED_KEY))) {
 
-            GeometryFactory factory = new GeometryFactory();
+            GeometryFactory factory = GeometryStoragePolicy.createGeometryFactory();
+
+            // shapefiles which would not fit in memory are streamed to disk
+            File shpFile = new File(shpFileName);
+            if (dp.getProperty(DataSource.COMPRESSED_KEY) == null && shpFile.isFile() &&
+                    DiskFeatureCollection.isKeptOnDisk(shpFile.length())) {
+                return readToDisk(myshape, mydbf, factory);
+            }
+
             GeometryCollection collection;
             // Read the shapefile either from shx (if provided) or directly from shp
             collection = shx == null ? myshape.read(factory) : myshape.readFromIndex(factory, shx);
@@ -158,12 +169,12 @@ public class ShapefileReader extends AbstractJUMPReader {
 
             if ( mydbf == null ) {
                 // handle shapefiles without dbf files.
-                featureCollection = new FeatureDataset(fs);
+                featureCollection = createFeatureCollection(fs, collection.getNumGeometries());
 
                 int numGeometries = collection.getNumGeometries();
 
                 for (int x = 0; x < numGeometries; x++) {
-                    Feature feature = new BasicFeature(fs);
+                    Feature feature = createFeature(featureCollection, fs);
                     Geometry geo = collection.getGeometryN(x);
 
                     feature.setGeometry(geo);
@@ -180,7 +191,7 @@ public class ShapefileReader extends AbstractJUMPReader {
                     fs.addAttribute( mydbf.getFieldName(j), type );
                 }
 
-                featureCollection = new FeatureDataset(fs);
+                featureCollection = createFeatureCollection(fs, collection.getNumGeometries());
 
                 for (int x = 0; x < Math.min(mydbf.getLastRec(), collection.getNumGeometries()); x++) {
 
@@ -191,7 +202,7 @@ public class ShapefileReader extends AbstractJUMPReader {
                         Logger.debug("Skip deleted dbf record " + x);
                         continue;
                     }
-                    Feature feature = new BasicFeature(fs);
+                    Feature feature = createFeature(featureCollection, fs);
                     Geometry geo = collection.getGeometryN(x);
                     for (int y = 0; y < numfields; y++) {
                         feature.setAttribute(y + 1, mydbf.ParseRecordColumn(s, y));
@@ -209,7 +220,7 @@ public class ShapefileReader extends AbstractJUMPReader {
                     Logger.error(message);
                     getExceptions().add(new Exception(message));
                     for (int x = mydbf.getLastRec() ; x < collection.getNumGeometries() ; x++) {
-                        Feature feature = new BasicFeature(fs);
+                        Feature feature = createFeature(featureCollection, fs);
                         Geometry geo = collection.getGeometryN(x);
                         feature.setGeometry(geo);
                         featureCollection.add(feature);
@@ -222,7 +233,7 @@ public class ShapefileReader extends AbstractJUMPReader {
                     getExceptions().add(new Exception(message));
                     List emptyList = new ArrayList();
                     for (int x = collection.getNumGeometries() ; x < mydbf.getLastRec() ; x++) {
-                        Feature feature = new BasicFeature(fs);
+                        Feature feature = createFeature(featureCollection, fs);
                         Geometry geo = factory.buildGeometry(emptyList);
                         byte[] s = mydbf.GetDbfRec(x); //[sstein 9.Sept.08]
                         // [mmichaud 2017-06-10] skip deleted records
@@ -248,6 +259,75 @@ public class ShapefileReader extends AbstractJUMPReader {
         }
     }
 
+    /**
+     * Reads shapes and dbf records one at a time and appends them to a
+     * DiskFeatureCollection, so that the shapefile never has to fit in memory.
+     */
+    private FeatureCollection readToDisk(Shapefile myshape, final DbfFile mydbf,
+                                         GeometryFactory factory) throws Exception {
+        final FeatureSchema fs = new FeatureSchema();
+        fs.addAttribute("GEOMETRY", AttributeType.GEOMETRY);
+        final int numfields = mydbf == null ? 0 : mydbf.getNumFields();
+        for (int j = 0; j < numfields; j++) {
+            fs.addAttribute(mydbf.getFieldName(j),
+                    AttributeType.toAttributeType(mydbf.getFieldType(j)));
+        }
+        final DiskFeatureCollection featureCollection = new DiskFeatureCollection(fs);
+        final int[] record = new int[]{0};
+        try {
+            myshape.read(factory, geometry -> {
+                try {
+                    Feature feature = new BasicFeature(fs);
+                    feature.setGeometry(geometry);
+                    int x = record[0]++;
+                    if (mydbf != null && x < mydbf.getLastRec()) {
+                        byte[] s = mydbf.GetDbfRec(x);
+                        // [mmichaud 2017-06-10] skip deleted records
+                        if (s[0] == (byte)0x2A && System.getProperty("dbf.deleted.on")==null) {
+                            return;
+                        }
+                        for (int y = 0; y < numfields; y++) {
+                            feature.setAttribute(y + 1, mydbf.ParseRecordColumn(s, y));
+                        }
+                    }
+                    featureCollection.append(feature);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            // records without shape get an empty geometry
+            List emptyList = new ArrayList();
+            for (int x = record[0]; mydbf != null && x < mydbf.getLastRec(); x++) {
+                byte[] s = mydbf.GetDbfRec(x);
+                if (s[0] == (byte)0x2A && System.getProperty("dbf.deleted.on")==null) {
+                    continue;
+                }
+                Feature feature = new BasicFeature(fs);
+                feature.setGeometry(factory.buildGeometry(emptyList));
+                for (int y = 0; y < numfields; y++) {
+                    feature.setAttribute(y + 1, mydbf.ParseRecordColumn(s, y));
+                }
+                featureCollection.append(feature);
+            }
+            featureCollection.buildIndex();
+        } catch (Exception e) {
+            featureCollection.dispose();
+            throw e;
+        }
+        return featureCollection;
+    }
+
+    // large layers may be stored column by column (see DatasetOptionsPanel)
+    private static FeatureCollection createFeatureCollection(FeatureSchema fs, int size) {
+        return ColumnarFeatureCollection.isEnabledForLoaders() ?
+                new ColumnarFeatureCollection(fs, size) : new FeatureDataset(fs);
+    }
+
+    private static Feature createFeature(FeatureCollection fc, FeatureSchema fs) {
+        return fc instanceof ColumnarFeatureCollection ?
+                ((ColumnarFeatureCollection)fc).createFeature() : new BasicFeature(fs);
+    }
+
 
     protected Shapefile getShapefile(String shpfileName, String compressedFname)
                 throws Exception {
@@ -38,6 +38,7 @@ import java.io.*;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.io.ParseException;
 import com.vividsolutions.jump.feature.*;
+import com.vividsolutions.jump.geom.GeometryStoragePolicy;
 import com.vividsolutions.jump.io.datasource.DataSource;
 
 
@@ -68,7 +69,7 @@ import com.vividsolutions.jump.io.datasource.DataSource;
  */
 public class WKTReader extends AbstractJUMPReader {
 
-    private GeometryFactory geometryFactory = new GeometryFactory();
+    private GeometryFactory geometryFactory = GeometryStoragePolicy.createGeometryFactory();
     private org.locationtech.jts.io.WKTReader wktReader = new org.locationtech.jts.io.WKTReader(geometryFactory);
 
     /**constructor**/
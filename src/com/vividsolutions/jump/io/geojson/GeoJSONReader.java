@@ -26,6 +26,7 @@ import org.locationtech.jts.io.geojson.GeoJsonConstants;
 import org.locationtech.jts.io.geojson.GeoJsonReader;
 import com.vividsolutions.jump.I18N;
 import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.geom.GeometryStoragePolicy;
 import com.vividsolutions.jump.feature.FeatureCollection;
 import com.vividsolutions.jump.feature.FeatureSchema;
 import com.vividsolutions.jump.io.AbstractJUMPReader;
@@ -277,7 +278,10 @@ class MapGeoJsonGeometryReader extends
       IllegalArgumentException, InvocationTargetException,
       org.locationtech.jts.io.ParseException, ClassNotFoundException {
     if (this.geometryFactory == null) {
-      geometryFactory = (GeometryFactory) m2.invoke(this, geometryMap);
+      GeometryFactory factory = (GeometryFactory) m2.invoke(this, geometryMap);
+      // keep the srid found, but store coordinates as configured
+      geometryFactory = GeometryStoragePolicy.createGeometryFactory(
+          factory.getPrecisionModel(), factory.getSRID());
     }
 
     // GeomColls have no coord list, but list geoms instead, so we skip this
@@ -307,7 +311,7 @@ class MapGeoJsonGeometryReader extends
  */
 class FlexibleFeatureSchema extends FeatureSchema {
   Class<? extends Geometry> geometryClass = null;
-  GeometryFactory geometryFactory = new GeometryFactory();
+  GeometryFactory geometryFactory = GeometryStoragePolicy.createGeometryFactory();
 
   public FlexibleFeatureSchema() {
   }
@@ -34,6 +34,12 @@
 package com.vividsolutions.jump.qa;
 
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.locationtech.jts.algorithm.Orientation;
 import org.locationtech.jts.geom.*;
@@ -45,14 +51,20 @@ import com.vividsolutions.jump.geom.Angle;
 import com.vividsolutions.jump.geom.CoordUtil;
 import com.vividsolutions.jump.task.TaskMonitor;
 import com.vividsolutions.jump.util.CoordinateArrays;
+import com.vividsolutions.jump.util.ParallelUtil;
 
 
 /**
  * Performs basic JTS validation, and additional validation like checking polygon
  * orientation.
+ * <p>
+ * Features are checked by batches, in several threads: subclasses overriding
+ * the validation methods must be thread-safe.
  */
 public class Validator {
 
+    private static final int BATCH_SIZE = 1024;
+
     private boolean checkingBasicTopology = true;
     private boolean checkingPolygonOrientation = false;
     private boolean checkingGeometriesSimple = false;
@@ -65,7 +77,6 @@ public class Validator {
     private double minAngle = 0;
     private double minPolygonArea = 0;
     private Collection<String> disallowedGeometryClassNames = new ArrayList<>();
-    private RepeatedPointTester repeatedPointTester = new RepeatedPointTester();
 
     //<<TODO:REFACTORING>> Move this class and associated classes to JTS [Jon Aquino]
     public Validator() {
@@ -194,26 +205,101 @@ public class Validator {
         }
     }
 
+    /**
+     * Receives the validation errors as soon as they are found.
+     */
+    public interface ErrorListener {
+        /**
+         * Called from the thread calling validate, with the errors found in a
+         * batch of features. Batches may be delivered out of order.
+         * @param errors the ValidationErrors of the batch
+         */
+        void errorsFound(List<ValidationError> errors);
+    }
+
     /**
      * Checks a collection of features.
      * @param features the Feature's to validate
      * @return a List of ValidationErrors; if all features are valid, the list
      * will be empty
      */
-    public List validate(Collection features, TaskMonitor monitor) {
+    public List<ValidationError> validate(Collection<? extends Feature> features,
+                                          TaskMonitor monitor) {
+        return validate(features, monitor, null);
+    }
+
+    /**
+     * Checks a collection of features, several batches of features at a time.
+     * @param features the Feature's to validate
+     * @param listener notified of the errors of each batch of features as
+     * soon as it has been checked, or null
+     * @return a List of ValidationErrors, in the order of features; if all
+     * features are valid, the list will be empty
+     */
+    public List<ValidationError> validate(Collection<? extends Feature> features,
+                                          final TaskMonitor monitor,
+                                          final ErrorListener listener) {
         monitor.allowCancellationRequests();
-        int validatedFeatureCount = 0;
         monitor.report(I18N.get("qa.Validator.validating"));
 
-        List<Object> validationErrors = new ArrayList<>();
-        int totalFeatures = features.size();
+        final List<Feature> list = new ArrayList<>(features);
+        final int totalFeatures = list.size();
+        final int batchCount = (totalFeatures + BATCH_SIZE - 1) / BATCH_SIZE;
+        final List<List<ValidationError>> batchErrors = new ArrayList<>(batchCount);
+        for (int i = 0; i < batchCount; i++) batchErrors.add(null);
+        final AtomicInteger validatedFeatureCount = new AtomicInteger();
+        // batches with errors, handed over to the thread calling the listener
+        final BlockingQueue<List<ValidationError>> foundErrors = new LinkedBlockingQueue<>();
+
+        final ParallelUtil.RangeProcessor processor = (from, to) -> {
+            for (int b = from; b < to && !monitor.isCancelRequested(); b++) {
+                List<Object> errors = new ArrayList<>();
+                int end = Math.min((b + 1) * BATCH_SIZE, totalFeatures);
+                for (int i = b * BATCH_SIZE; i < end; i++) {
+                    validate(list.get(i), errors);
+                }
+                List<ValidationError> batch = new ArrayList<>(errors.size());
+                for (Object error : errors) batch.add((ValidationError) error);
+                batchErrors.set(b, batch);
+                if (listener != null && !batch.isEmpty()) foundErrors.add(batch);
+                monitor.report(validatedFeatureCount.addAndGet(end - b * BATCH_SIZE),
+                        totalFeatures, "features");
+            }
+        };
+
+        try {
+            if (listener == null) {
+                ParallelUtil.processRanges(batchCount, 1, processor);
+            } else {
+                // the batches are checked by another thread, so that this
+                // thread can notify the listener while they are checked
+                FutureTask<Void> task = new FutureTask<>(() -> {
+                    ParallelUtil.processRanges(batchCount, 1, processor);
+                    return null;
+                });
+                Thread thread = new Thread(task, "Validator");
+                thread.setDaemon(true);
+                thread.start();
+                while (!task.isDone() || !foundErrors.isEmpty()) {
+                    List<ValidationError> errors = foundErrors.poll(100, TimeUnit.MILLISECONDS);
+                    if (errors != null) listener.errorsFound(errors);
+                }
+                task.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
 
-        for (Iterator i = features.iterator();
-                i.hasNext() && !monitor.isCancelRequested();) {
-            Feature feature = (Feature) i.next();
-            validate(feature, validationErrors);
-            validatedFeatureCount++;
-            monitor.report(validatedFeatureCount, totalFeatures, "features");
+        List<ValidationError> validationErrors = new ArrayList<>();
+        for (List<ValidationError> errors : batchErrors) {
+            if (errors != null) validationErrors.addAll(errors);
         }
 
         return validationErrors;
@@ -295,6 +381,8 @@ public class Validator {
 
     protected ValidationError validateNoRepeatedConsecutivePoints(
         Feature feature) {
+        // a tester per call, as features may be checked by several threads
+        RepeatedPointTester repeatedPointTester = new RepeatedPointTester();
         if (repeatedPointTester.hasRepeatedPoint(feature.getGeometry())) {
             return new ValidationError(ValidationErrorType.REPEATED_CONSECUTIVE_POINTS,
                 feature, repeatedPointTester.getCoordinate());
@@ -0,0 +1,124 @@
+package com.vividsolutions.jump.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+
+/**
+ * Helpers to split work over a range of indices between worker threads.
+ * <p>
+ * Workers belong to a shared pool of daemon threads, one per processor,
+ * running with a priority slightly below normal to keep the GUI responsive.
+ * Work submitted from a worker thread is executed by the same pool without
+ * risk of deadlock.
+ */
+public class ParallelUtil {
+
+  private static volatile ForkJoinPool pool;
+
+  /**
+   * Processes the items of the range [from, to).
+   */
+  public interface RangeProcessor {
+    void process(int from, int to) throws Exception;
+  }
+
+  public interface Filter<T> {
+    boolean accept(T item) throws Exception;
+  }
+
+  /**
+   * @return the number of worker threads
+   */
+  public static int getParallelism() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  private static ForkJoinPool getPool() {
+    if (pool == null) {
+      synchronized (ParallelUtil.class) {
+        if (pool == null) {
+          pool = new ForkJoinPool(getParallelism(), p -> {
+            ForkJoinWorkerThread thread =
+                ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("OpenJUMP worker " + thread.getPoolIndex());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+          }, null, false);
+        }
+      }
+    }
+    return pool;
+  }
+
+  /**
+   * Splits [0, size) into ranges of at least minRangeSize items and processes
+   * them in parallel. Returns when all ranges have been processed. Small
+   * sizes are processed in the calling thread.
+   * @throws Exception the first exception thrown by processor
+   */
+  public static void processRanges(int size, int minRangeSize, final RangeProcessor processor)
+      throws Exception {
+    int parallelism = getParallelism();
+    if (size <= minRangeSize || parallelism == 1) {
+      if (size > 0) processor.process(0, size);
+      return;
+    }
+    // a few ranges per thread, so that threads finishing early can help
+    int rangeCount = (int)Math.min(parallelism * 4L, (size + minRangeSize - 1L) / minRangeSize);
+    List<Callable<Void>> tasks = new ArrayList<>(rangeCount);
+    for (int i = 0; i < rangeCount; i++) {
+      final int from = (int)((long)size * i / rangeCount);
+      final int to = (int)((long)size * (i + 1) / rangeCount);
+      tasks.add(() -> {
+        processor.process(from, to);
+        return null;
+      });
+    }
+    for (Future<Void> future : getPool().invokeAll(tasks)) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Exception) throw (Exception)cause;
+        if (cause instanceof Error) throw (Error)cause;
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Returns the items accepted by filter, in their original order, testing
+   * them in parallel.
+   */
+  public static <T> List<T> filter(List<T> items, int minRangeSize, final Filter<T> filter)
+      throws Exception {
+    final List<T> list = items instanceof RandomAccess ? items : new ArrayList<>(items);
+    int size = list.size();
+    int rangeCount = Math.max(1, (size + minRangeSize - 1) / minRangeSize);
+    // one result list per range of minRangeSize items, concatenated in order
+    final List<List<T>> results = new ArrayList<>(rangeCount);
+    for (int i = 0; i < rangeCount; i++) results.add(null);
+    final int chunk = minRangeSize;
+    processRanges(rangeCount, 1, (from, to) -> {
+      for (int r = from; r < to; r++) {
+        List<T> accepted = new ArrayList<>();
+        for (int i = r * chunk, end = Math.min(i + chunk, size); i < end; i++) {
+          T item = list.get(i);
+          if (filter.accept(item)) accepted.add(item);
+        }
+        results.set(r, accepted);
+      }
+    });
+    List<T> result = new ArrayList<>();
+    for (List<T> accepted : results) {
+      if (accepted != null) result.addAll(accepted);
+    }
+    return result;
+  }
+}
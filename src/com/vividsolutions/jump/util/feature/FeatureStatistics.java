@@ -34,6 +34,7 @@ package com.vividsolutions.jump.util.feature;
 
 import java.util.List;
 
+import com.vividsolutions.jump.feature.ColumnarFeatureCollection;
 import com.vividsolutions.jump.feature.Feature;
 import com.vividsolutions.jump.feature.FeatureCollection;
 
@@ -46,6 +47,21 @@ public class FeatureStatistics {
         double[] minMax = new double[] { 0.0, 0.0 };
         int adjDistanceIndex = -1;
 
+        // columnar collections can be scanned without touching features
+        ColumnarFeatureCollection columnar = ColumnarFeatureCollection.unwrap(fc);
+        double[] values = columnar == null ? null :
+                columnar.getNumericValues(fc.getFeatureSchema().getAttributeIndex(col));
+        if (values != null) {
+            boolean first = true;
+            for (double value : values) {
+                if (Double.isNaN(value)) continue;
+                if (first || value < minMax[0]) minMax[0] = value;
+                if (first || value > minMax[1]) minMax[1] = value;
+                first = false;
+            }
+            return minMax;
+        }
+
         List features = fc.getFeatures();
 
         for (int i = 0; i < features.size(); i++) {
@@ -42,6 +42,7 @@ import com.vividsolutions.jump.JUMPException;
 import com.vividsolutions.jump.feature.Feature;
 import com.vividsolutions.jump.feature.FeatureCollection;
 import com.vividsolutions.jump.feature.FeatureDataset;
+import com.vividsolutions.jump.geom.GeometryStoragePolicy;
 
 
 /**
@@ -77,7 +78,7 @@ public abstract class CoordinateTransform {
     }
 
     public Geometry transform(Geometry oldGeometry) {
-        Geometry newGeometry = (Geometry) oldGeometry.copy();
+        Geometry newGeometry = GeometryStoragePolicy.editableCopy(oldGeometry);
         newGeometry.apply(coordinateFilter);
         newGeometry.geometryChanged();
 
@@ -68,6 +68,8 @@ import com.vividsolutions.jump.workbench.ui.network.ProxySettingsOptionsPanel;
 import com.vividsolutions.jump.workbench.ui.plugin.PersistentBlackboardPlugIn;
 import com.vividsolutions.jump.workbench.ui.plugin.skin.InstallSkinsPlugIn;
 
+import org.openjump.core.ui.DatasetOptionsPanel;
+
 /**
  * This class is responsible for setting up and displaying the main JUMP
  * workbench window.
@@ -438,6 +440,9 @@ public class JUMPWorkbench {
     // restore proxy settings TODO: write a hook routine for this
     ProxySettingsOptionsPanel.restoreSystemSettings(PersistentBlackboardPlugIn
         .get(workbench.context.getWorkbench().getBlackboard()));
+    // restore how readers store coordinates and attributes, before any dataset is loaded
+    DatasetOptionsPanel.restoreStorageOptions(PersistentBlackboardPlugIn
+        .get(workbench.context.getWorkbench().getBlackboard()));
 
     // now setup our configuration
     // TODO: clean up and merge with postExtensionInitialization below or even better put into xml config
@@ -457,6 +462,8 @@ public class JUMPWorkbench {
     frame.restore();
     taskMonitor.report(I18N.get("JUMPWorkbench.status.show-workbench"));
     frame.setVisible(true);
+    // initialize plugins configured with initialize="lazy" in the background
+    workbench.getPlugInManager().initializeDeferredPlugIns();
     // Activate SelectFeaturesTool cursor after opening a new session.
     // See also JUMPConfiguration.configureToolBar() where the select
     // button has been selected.
@@ -67,6 +67,8 @@ public interface WorkbenchProperties {
 
   String ATTR_VALUE_FALSE = "false";
   String ATTR_VALUE_TRUE = "true";
+  // initialize="lazy" defers plugin initialization until first use
+  String ATTR_VALUE_LAZY = "lazy";
 
   List getSettingsList(String[] strings);
   Map getSettings(String[] keys);
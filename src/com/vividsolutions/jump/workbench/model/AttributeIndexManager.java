@@ -0,0 +1,192 @@
+package com.vividsolutions.jump.workbench.model;
+
+import java.util.*;
+
+import javax.xml.namespace.QName;
+
+import com.vividsolutions.jump.feature.AttributeIndex;
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.feature.FeatureCollection;
+import com.vividsolutions.jump.feature.FeatureSchema;
+
+/**
+ * Keeps the attribute indexes created by the user on the layers of a
+ * LayerManager.
+ * <p>
+ * Indexes are built on first use and maintained from FeatureEvents. The
+ * list of indexed attributes is stored in the task properties, so that it
+ * is saved with the project and the indexes are rebuilt lazily when the
+ * project is opened again.
+ * <p>
+ * Changes made while the LayerManager is not firing events are not seen :
+ * an index is rebuilt if the size or the FeatureCollection of its layer
+ * has changed, but values modified silently may be missed. Tools using an
+ * index should test the features it returns.
+ */
+public class AttributeIndexManager implements LayerListener {
+
+    private static final String KEY = AttributeIndexManager.class.getName();
+
+    /**
+     * Task property listing indexed attributes, one line per layer : the
+     * layer name followed by the indexed attribute names, separated by tabs.
+     */
+    public static final QName ATTRIBUTE_INDEXES_KEY = new QName("Attribute Indexes");
+
+    private final LayerManager layerManager;
+    private final Map<Layer,Map<String,AttributeIndex>> indexes = new IdentityHashMap<>();
+    // indexes read from the task, for layers which have not been used yet
+    private final Map<String,Set<String>> declaredIndexes = new HashMap<>();
+
+    private AttributeIndexManager(LayerManager layerManager) {
+        this.layerManager = layerManager;
+        Task task = layerManager.getTask();
+        Object property = task == null ? null : task.getProperty(ATTRIBUTE_INDEXES_KEY);
+        if (property != null) {
+            for (String line : property.toString().split("\n")) {
+                String[] names = line.split("\t");
+                if (names.length < 2) continue;
+                declaredIndexes.put(names[0], new LinkedHashSet<>(
+                        Arrays.asList(names).subList(1, names.length)));
+            }
+        }
+        layerManager.addLayerListener(this);
+    }
+
+    /**
+     * @return the AttributeIndexManager of layerManager
+     */
+    public static AttributeIndexManager get(LayerManager layerManager) {
+        synchronized (layerManager.getBlackboard()) {
+            AttributeIndexManager manager =
+                    (AttributeIndexManager)layerManager.getBlackboard().get(KEY);
+            if (manager == null) {
+                manager = new AttributeIndexManager(layerManager);
+                layerManager.getBlackboard().put(KEY, manager);
+            }
+            return manager;
+        }
+    }
+
+    /**
+     * @return the index of attribute in layer, or null if this attribute is
+     * not indexed
+     */
+    public static AttributeIndex getIndex(Layer layer, String attribute) {
+        LayerManager layerManager = layer.getLayerManager();
+        return layerManager == null ? null : get(layerManager).findIndex(layer, attribute);
+    }
+
+    private Map<String,AttributeIndex> layerIndexes(Layer layer) {
+        Map<String,AttributeIndex> map = indexes.get(layer);
+        if (map == null) {
+            map = new LinkedHashMap<>();
+            Set<String> declared = declaredIndexes.remove(layer.getName());
+            if (declared != null) {
+                for (String attribute : declared) map.put(attribute, null);
+            }
+            indexes.put(layer, map);
+        }
+        return map;
+    }
+
+    /**
+     * @return the names of the indexed attributes of layer
+     */
+    public synchronized Set<String> getIndexedAttributes(Layer layer) {
+        return new LinkedHashSet<>(layerIndexes(layer).keySet());
+    }
+
+    /**
+     * Declares an index on attribute. The index is built on first use.
+     */
+    public synchronized void createIndex(Layer layer, String attribute) {
+        Map<String,AttributeIndex> map = layerIndexes(layer);
+        if (!map.containsKey(attribute)) {
+            map.put(attribute, null);
+            saveToTask();
+        }
+    }
+
+    public synchronized void dropIndex(Layer layer, String attribute) {
+        Map<String,AttributeIndex> map = layerIndexes(layer);
+        if (map.containsKey(attribute)) {
+            map.remove(attribute);
+            saveToTask();
+        }
+    }
+
+    /**
+     * Returns the index of attribute in layer, building it if needed.
+     * @return the index, or null if attribute is not indexed or is no more
+     * an attribute of the layer
+     */
+    public synchronized AttributeIndex findIndex(Layer layer, String attribute) {
+        Map<String,AttributeIndex> map = layerIndexes(layer);
+        if (!map.containsKey(attribute)) return null;
+        FeatureCollection fc = layer.getFeatureCollectionWrapper().getUltimateWrappee();
+        FeatureSchema schema = fc.getFeatureSchema();
+        if (!schema.hasAttribute(attribute)) return null;
+        AttributeIndex index = map.get(attribute);
+        // layer data or schema replaced, or modified without firing events
+        if (index == null || index.getFeatureCollection() != fc ||
+                index.getFeatureSchema() != schema || index.size() != fc.size()) {
+            index = new AttributeIndex(fc, attribute);
+            map.put(attribute, index);
+        }
+        return index;
+    }
+
+    private void saveToTask() {
+        Task task = layerManager.getTask();
+        if (task == null) return;
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String,Set<String>> entry : declaredIndexes.entrySet()) {
+            appendLine(sb, entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<Layer,Map<String,AttributeIndex>> entry : indexes.entrySet()) {
+            appendLine(sb, entry.getKey().getName(), entry.getValue().keySet());
+        }
+        if (sb.length() == 0) task.getProperties().remove(ATTRIBUTE_INDEXES_KEY);
+        else task.setProperty(ATTRIBUTE_INDEXES_KEY, sb.toString());
+    }
+
+    private static void appendLine(StringBuilder sb, String layerName, Set<String> attributes) {
+        if (attributes.isEmpty()) return;
+        if (sb.length() > 0) sb.append('\n');
+        sb.append(layerName);
+        for (String attribute : attributes) sb.append('\t').append(attribute);
+    }
+
+    public synchronized void featuresChanged(FeatureEvent e) {
+        Map<String,AttributeIndex> map = indexes.get(e.getLayer());
+        if (map == null) return;
+        for (AttributeIndex index : map.values()) {
+            if (index == null) continue;
+            for (Feature feature : e.getFeatures()) {
+                if (e.getType() == FeatureEventType.ADDED) index.add(feature);
+                else if (e.getType() == FeatureEventType.DELETED) index.remove(feature);
+                else if (e.getType() == FeatureEventType.ATTRIBUTES_MODIFIED) index.update(feature);
+            }
+        }
+    }
+
+    public synchronized void layerChanged(LayerEvent e) {
+        if (!(e.getLayerable() instanceof Layer)) return;
+        Layer layer = (Layer)e.getLayerable();
+        // keep the declarations, the layer may be added again (undo, move)
+        if (e.getType() == LayerEventType.REMOVED) {
+            Map<String,AttributeIndex> map = indexes.remove(layer);
+            if (map != null && !map.isEmpty()) {
+                declaredIndexes.put(layer.getName(), new LinkedHashSet<>(map.keySet()));
+            }
+        }
+        // layer renamed
+        else if (e.getType() == LayerEventType.METADATA_CHANGED) {
+            if (indexes.containsKey(layer)) saveToTask();
+        }
+    }
+
+    public void categoryChanged(CategoryEvent e) {
+    }
+}
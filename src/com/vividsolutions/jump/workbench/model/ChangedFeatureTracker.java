@@ -0,0 +1,159 @@
+package com.vividsolutions.jump.workbench.model;
+
+import java.util.*;
+
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.feature.FeatureCollection;
+
+/**
+ * Records the features added or modified in the layers of a LayerManager
+ * since a checkpoint, so that a process (e.g. validation) can be run again
+ * on changed features only.
+ * <p>
+ * A process takes a {@link Checkpoint} of the layer before it starts, and
+ * commits it once it has completed. Changes made while the process runs
+ * are kept for the next one, and a process which fails or is cancelled
+ * does not commit its checkpoint, so that its features are processed again
+ * next time.
+ * <p>
+ * Layers are tracked from their first committed checkpoint, using
+ * FeatureEvents. Changes made while the LayerManager is not firing events
+ * are not seen, and tracking of a layer stops if its FeatureCollection is
+ * replaced.
+ */
+public class ChangedFeatureTracker implements LayerListener {
+
+    private static final String KEY = ChangedFeatureTracker.class.getName();
+
+    // for each recorded layer, the changed features and the stamp of their
+    // last change
+    private final Map<Layer,Map<Feature,Long>> changedFeatures = new IdentityHashMap<>();
+    // the FeatureCollection of each layer at its last committed checkpoint
+    private final Map<Layer,FeatureCollection> trackedCollections = new IdentityHashMap<>();
+    private long stamp = 0;
+
+    /**
+     * The state of a layer when a process started.
+     */
+    public static final class Checkpoint {
+
+        private final Layer layer;
+        private final FeatureCollection featureCollection;
+        private final long stamp;
+        private final boolean tracking;
+        private final List<Feature> features;
+
+        private Checkpoint(Layer layer, FeatureCollection featureCollection, long stamp,
+                           boolean tracking, List<Feature> features) {
+            this.layer = layer;
+            this.featureCollection = featureCollection;
+            this.stamp = stamp;
+            this.tracking = tracking;
+            this.features = features;
+        }
+
+        /**
+         * @return true if the changes of the layer had been recorded since
+         * its last committed checkpoint
+         */
+        public boolean isTracking() {
+            return tracking;
+        }
+
+        /**
+         * @return the features of the layer added or modified between the
+         * last committed checkpoint and this one, and not deleted since
+         */
+        public List<Feature> getChangedFeatures() {
+            return new ArrayList<>(features);
+        }
+    }
+
+    private ChangedFeatureTracker(LayerManager layerManager) {
+        layerManager.addLayerListener(this);
+    }
+
+    /**
+     * @return the ChangedFeatureTracker of layerManager
+     */
+    public static ChangedFeatureTracker get(LayerManager layerManager) {
+        synchronized (layerManager.getBlackboard()) {
+            ChangedFeatureTracker tracker =
+                    (ChangedFeatureTracker)layerManager.getBlackboard().get(KEY);
+            if (tracker == null) {
+                tracker = new ChangedFeatureTracker(layerManager);
+                layerManager.getBlackboard().put(KEY, tracker);
+            }
+            return tracker;
+        }
+    }
+
+    /**
+     * Takes a checkpoint of layer, and starts recording its changes if it
+     * was not recorded yet. Nothing is forgotten until the checkpoint is
+     * committed.
+     */
+    public synchronized Checkpoint checkpoint(Layer layer) {
+        Map<Feature,Long> features = changedFeatures.get(layer);
+        if (features == null) {
+            features = new LinkedHashMap<>();
+            changedFeatures.put(layer, features);
+        }
+        return new Checkpoint(layer, layer.getFeatureCollectionWrapper().getUltimateWrappee(),
+                stamp, isTracking(layer), new ArrayList<>(features.keySet()));
+    }
+
+    /**
+     * Forgets the changes of the layer of checkpoint recorded before it, and
+     * tracks the layer from this checkpoint. Changes recorded after the
+     * checkpoint are kept.
+     */
+    public synchronized void commit(Checkpoint checkpoint) {
+        Map<Feature,Long> features = changedFeatures.get(checkpoint.layer);
+        // the layer has been removed meanwhile
+        if (features == null) return;
+        features.values().removeIf(featureStamp -> featureStamp <= checkpoint.stamp);
+        trackedCollections.put(checkpoint.layer, checkpoint.featureCollection);
+    }
+
+    /**
+     * @return true if the changes of layer have been recorded since its last
+     * committed checkpoint
+     */
+    public synchronized boolean isTracking(Layer layer) {
+        FeatureCollection fc = trackedCollections.get(layer);
+        return fc != null && fc == layer.getFeatureCollectionWrapper().getUltimateWrappee();
+    }
+
+    /**
+     * @return the features of layer added or modified since its last
+     * committed checkpoint, and not deleted since
+     */
+    public synchronized List<Feature> getChangedFeatures(Layer layer) {
+        Map<Feature,Long> features = changedFeatures.get(layer);
+        return features == null ? new ArrayList<Feature>() : new ArrayList<>(features.keySet());
+    }
+
+    public synchronized void featuresChanged(FeatureEvent e) {
+        Map<Feature,Long> features = changedFeatures.get(e.getLayer());
+        if (features == null) return;
+        if (e.getType() == FeatureEventType.DELETED) {
+            features.keySet().removeAll(e.getFeatures());
+        } else {
+            stamp++;
+            for (Feature feature : e.getFeatures()) {
+                features.put(feature, stamp);
+            }
+        }
+    }
+
+    public synchronized void layerChanged(LayerEvent e) {
+        if (e.getType() == LayerEventType.REMOVED) {
+            changedFeatures.remove(e.getLayerable());
+            trackedCollections.remove(e.getLayerable());
+        }
+    }
+
+    public void categoryChanged(CategoryEvent e) {
+    }
+}
@@ -351,11 +351,17 @@ public class Layer extends GeoReferencedLayerable implements Disposable {
    * rather than waiting for the internal frame to be closed.
    */
   public void dispose() {
-    // dispose features if disposable nature
-    Collection<Feature> features = getFeatureCollectionWrapper().getFeatures();
-    for (Feature feature : features) {
-      if (feature instanceof Disposable) {
-        ((Disposable) feature).dispose();
+    // dispose the collection itself (e.g. disk-backed) or its features if
+    // disposable nature
+    FeatureCollection featureCollection = getFeatureCollectionWrapper().getUltimateWrappee();
+    if (featureCollection instanceof Disposable) {
+      ((Disposable) featureCollection).dispose();
+    } else {
+      Collection<Feature> features = getFeatureCollectionWrapper().getFeatures();
+      for (Feature feature : features) {
+        if (feature instanceof Disposable) {
+          ((Disposable) feature).dispose();
+        }
       }
     }
     // Don't just call FeatureCollection#removeAll, because it may be a
@@ -43,9 +43,11 @@ import org.openjump.core.rasterimage.RasterImageLayer;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.util.Assert;
 import com.vividsolutions.jump.coordsys.CoordinateSystem;
+import com.vividsolutions.jump.feature.AbstractBasicFeature;
 import com.vividsolutions.jump.feature.Feature;
 import com.vividsolutions.jump.feature.FeatureCollection;
 import com.vividsolutions.jump.util.Blackboard;
+import com.vividsolutions.jump.workbench.model.cache.DiskFeatureCollection;
 import com.vividsolutions.jump.workbench.ui.GUIUtil;
 import com.vividsolutions.jump.workbench.ui.renderer.style.BasicStyle;
 import com.vividsolutions.jump.workbench.ui.style.AbstractPalettePanel;
@@ -77,6 +79,8 @@ public class LayerManager {
     private final List<WeakReference<Layerable>> layerReferencesToDispose = new ArrayList<>();
 
     private final List<LayerListener> layerListeners = new ArrayList<>();
+    // events held by the batch opened in the current thread, if any
+    private final ThreadLocal<Batch> batches = new ThreadLocal<>();
     private final Iterator<Color> firstColors;
     private final Blackboard blackboard = new Blackboard();
 
@@ -413,16 +417,17 @@ public class LayerManager {
             return;
         }
 
-        // [sstein 2.Feb.2007] old line results sometimes in
-        // ConcurrentModificationException
-        // for (Iterator i = layerListeners.iterator(); i.hasNext();) {
-        // [sstein 2.Feb.2007] new line by Larry
-        for (final LayerListener layerListener : new ArrayList<>(layerListeners)) {// LDB
-                                                                                   // added
-            fireLayerEvent(() ->
-                layerListener.categoryChanged(new CategoryEvent(category, type, categoryIndex))
-            );
-        }
+        final CategoryEvent event = new CategoryEvent(category, type, categoryIndex);
+        fireLayerEvent(() -> {
+            // [sstein 2.Feb.2007] old line results sometimes in
+            // ConcurrentModificationException
+            // for (Iterator i = layerListeners.iterator(); i.hasNext();) {
+            // [sstein 2.Feb.2007] new line by Larry
+            for (LayerListener layerListener : new ArrayList<>(layerListeners)) {// LDB
+                                                                                 // added
+                layerListener.categoryChanged(event);
+            }
+        });
     }
 
     public void fireFeaturesChanged(final Collection<Feature> features,
@@ -441,19 +446,98 @@ public class LayerManager {
     private void fireFeaturesChanged(final Collection<Feature> features,
             final FeatureEventType type, final Layer layer,
             final Collection<Feature> oldFeatureClones) {
+        // cached values of dynamic attributes are invalidated before listeners
+        // (renderer, attribute table) read them, even if events are disabled
+        if (type == FeatureEventType.GEOMETRY_MODIFIED ||
+                type == FeatureEventType.ATTRIBUTES_MODIFIED) {
+            for (Feature feature : features) {
+                if (!(feature instanceof AbstractBasicFeature)) continue;
+                int index = type == FeatureEventType.GEOMETRY_MODIFIED ?
+                        feature.getSchema().getGeometryIndex() : -1;
+                ((AbstractBasicFeature)feature).invalidateComputedAttributes(index);
+            }
+            // features of disk collections modified in place must stay in memory
+            if (layer != null && layer.getFeatureCollectionWrapper() != null) {
+                FeatureCollection fc = layer.getFeatureCollectionWrapper().getUltimateWrappee();
+                if (fc instanceof DiskFeatureCollection) {
+                    ((DiskFeatureCollection)fc).featuresModified(features);
+                }
+            }
+        }
         if (!firingEvents) {
             return;
         }
 
-        // New ArrayList to avoid ConcurrentModificationException [Jon Aquino]
-        for (final LayerListener layerListener : new ArrayList<>(layerListeners)) {
-            fireLayerEvent(() ->
-                layerListener.featuresChanged(new FeatureEvent(features, type, layer, oldFeatureClones))
-            );
+        Batch batch = batches.get();
+        if (batch != null) {
+            batch.addFeatureEvent(features, type, layer, oldFeatureClones);
+            return;
+        }
+        fireFeatureEvent(new FeatureEvent(features, type, layer, oldFeatureClones));
+    }
+
+    private void fireFeatureEvent(final FeatureEvent event) {
+        fireLayerEvent(() -> {
+            // New ArrayList to avoid ConcurrentModificationException [Jon Aquino]
+            for (LayerListener layerListener : new ArrayList<>(layerListeners)) {
+                layerListener.featuresChanged(event);
+            }
+        });
+    }
+
+    /**
+     * Starts holding the events fired by the current thread, until the
+     * matching call to {@link #endBatch()}. Consecutive FeatureEvents of the
+     * same type on the same layer are then merged, so that a process
+     * modifying features one at a time notifies listeners (attribute
+     * tables, renderers, caches...) once, with all the features.
+     * <p>
+     * Batches can be nested; events are fired when the outermost batch
+     * ends. Always call endBatch in a finally block.
+     */
+    public void beginBatch() {
+        Batch batch = batches.get();
+        if (batch == null) {
+            batch = new Batch();
+            batches.set(batch);
+        }
+        batch.depth++;
+    }
+
+    /**
+     * Ends a batch started with {@link #beginBatch()}, firing the held
+     * events if it is the outermost one.
+     */
+    public void endBatch() {
+        Batch batch = batches.get();
+        Assert.isTrue(batch != null, "endBatch called without beginBatch");
+        if (--batch.depth > 0) {
+            return;
+        }
+        batches.remove();
+        for (Object event : batch.events) {
+            if (event instanceof PendingFeatureEvent) {
+                fireFeatureEvent(((PendingFeatureEvent) event).toFeatureEvent());
+            } else {
+                fireLayerEvent((Runnable) event);
+            }
         }
     }
 
+    /**
+     * @return true if the events fired by the current thread are held by a
+     * batch
+     */
+    public boolean isBatching() {
+        return batches.get() != null;
+    }
+
     private void fireLayerEvent(Runnable eventFirer) {
+        Batch batch = batches.get();
+        if (batch != null) {
+            batch.events.add(eventFirer);
+            return;
+        }
         // In general, LayerListeners are GUI components. Therefore, notify
         // them on the event dispatching thread.[Jon Aquino]
         try {
@@ -490,14 +574,13 @@ public class LayerManager {
             return;
         }
 
-        // New ArrayList to avoid ConcurrentModificationException [Jon Aquino]
-        for (final LayerListener layerListener : new ArrayList<>(layerListeners)) {
-            fireLayerEvent(() ->
-                layerListener.layerChanged(
-                    new LayerEvent(layerable, layerChangeType, category, layerIndex)
-                )
-            );
-        }
+        final LayerEvent event = new LayerEvent(layerable, layerChangeType, category, layerIndex);
+        fireLayerEvent(() -> {
+            // New ArrayList to avoid ConcurrentModificationException [Jon Aquino]
+            for (LayerListener layerListener : new ArrayList<>(layerListeners)) {
+                layerListener.layerChanged(event);
+            }
+        });
     }
 
     // <<TODO:DESIGN>> Most callers of #fireLayerChanged(Layer, LayerChangeType,
@@ -859,4 +942,55 @@ public class LayerManager {
     public Task getTask() {
         return task;
     }
+
+    /**
+     * The events held while a thread is in a batch, in firing order: merged
+     * FeatureEvents, and Runnables firing other events.
+     */
+    private static class Batch {
+
+        int depth = 0;
+        final List<Object> events = new ArrayList<>();
+
+        void addFeatureEvent(Collection<Feature> features, FeatureEventType type,
+                Layer layer, Collection<Feature> oldFeatureClones) {
+            // merge with the last event of the same type on this layer, unless
+            // another event on this layer (or on the layer tree) came after it
+            for (int i = events.size() - 1; i >= 0; i--) {
+                if (!(events.get(i) instanceof PendingFeatureEvent)) break;
+                PendingFeatureEvent pending = (PendingFeatureEvent) events.get(i);
+                if (pending.layer != layer) continue;
+                if (pending.type == type &&
+                        (pending.oldFeatureClones == null) == (oldFeatureClones == null)) {
+                    pending.features.addAll(features);
+                    if (oldFeatureClones != null) {
+                        pending.oldFeatureClones.addAll(oldFeatureClones);
+                    }
+                    return;
+                }
+                break;
+            }
+            events.add(new PendingFeatureEvent(features, type, layer, oldFeatureClones));
+        }
+    }
+
+    private static class PendingFeatureEvent {
+
+        final Collection<Feature> features;
+        final FeatureEventType type;
+        final Layer layer;
+        final Collection<Feature> oldFeatureClones;
+
+        PendingFeatureEvent(Collection<Feature> features, FeatureEventType type,
+                Layer layer, Collection<Feature> oldFeatureClones) {
+            this.features = new ArrayList<>(features);
+            this.type = type;
+            this.layer = layer;
+            this.oldFeatureClones = oldFeatureClones == null ? null : new ArrayList<>(oldFeatureClones);
+        }
+
+        FeatureEvent toFeatureEvent() {
+            return new FeatureEvent(features, type, layer, oldFeatureClones);
+        }
+    }
 }
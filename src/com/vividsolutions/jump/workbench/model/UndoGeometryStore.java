@@ -0,0 +1,573 @@
+package com.vividsolutions.jump.workbench.model;
+
+import java.io.*;
+import java.util.*;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+/**
+ * Stores the geometries needed to undo and redo edits in a compact form,
+ * within a memory budget.
+ * <p>
+ * Each {@link Record} holds two states of a set of features (before and
+ * after an edit), keyed by feature id. The geometries of the first state are
+ * encoded in a binary form keeping the geometry classes (LinearRings stay
+ * LinearRings) and the dimension and measures of coordinate sequences; a
+ * geometry of the second state having the same structure as its first state
+ * (same type and number of coordinates) is encoded as the list of its
+ * modified coordinates, so that moving a vertex of a large polygon costs a
+ * few bytes. Geometries are decoded each time a record is read, so that undo
+ * and redo always get fresh geometries.
+ * <p>
+ * When the encoded records exceed the memory budget, the oldest ones are
+ * written to a temporary file, and read back when they are needed. The file
+ * is compacted when more than half of it is taken by released records.
+ */
+public class UndoGeometryStore {
+
+    private static long defaultMemoryBudget = Runtime.getRuntime().maxMemory() / 10;
+
+    // the records kept in memory, oldest first
+    private final LinkedHashSet<Record> inMemory = new LinkedHashSet<>();
+    private long memoryUsage = 0;
+    private long memoryBudget = defaultMemoryBudget;
+    private RandomAccessFile spillFile;
+    private File spillFilePath;
+    // the records written in the spill file, in file order
+    private final LinkedHashSet<Record> spilled = new LinkedHashSet<>();
+    private long spilledBytes = 0;
+
+    /**
+     * Sets the memory budget of the stores created afterwards.
+     * @param bytes the maximum size of the records kept in memory
+     */
+    public static void setDefaultMemoryBudget(long bytes) {
+        defaultMemoryBudget = bytes;
+    }
+
+    public static long getDefaultMemoryBudget() {
+        return defaultMemoryBudget;
+    }
+
+    public synchronized void setMemoryBudget(long bytes) {
+        memoryBudget = bytes;
+        trim();
+    }
+
+    public synchronized long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * @return the size of the records kept in memory
+     */
+    public synchronized long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    /**
+     * @return the size of the temporary file holding the records which do
+     * not fit the memory budget, 0 if there is none
+     */
+    public synchronized long getSpillFileSize() {
+        try {
+            return spillFile == null ? 0 : spillFile.length();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Encodes the two states of a set of features.
+     * @param before the geometries before the edit, by feature id
+     * @param after the geometries after the edit, by feature id, with the
+     * same keys as before
+     */
+    public Record record(Map<Integer,Geometry> before, Map<Integer,Geometry> after) {
+        try {
+            Context context = new Context();
+            Record record = new Record(encode(before, after, context));
+            record.factories = context.factories.toArray(new GeometryFactory[0]);
+            record.userData = context.userData.toArray();
+            synchronized (this) {
+                inMemory.add(record);
+                memoryUsage += record.length;
+                trim();
+            }
+            return record;
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw IOException
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // spills the oldest records until memory usage fits the budget
+    private void trim() {
+        Iterator<Record> it = inMemory.iterator();
+        while (memoryUsage > memoryBudget && it.hasNext()) {
+            Record record = it.next();
+            try {
+                if (spillFile == null) {
+                    spillFilePath = File.createTempFile("undo", ".bin");
+                    spillFilePath.deleteOnExit();
+                    spillFile = new RandomAccessFile(spillFilePath, "rw");
+                }
+                record.offset = spillFile.length();
+                spillFile.seek(record.offset);
+                spillFile.write(record.data);
+            } catch (IOException e) {
+                // keep the remaining records in memory
+                return;
+            }
+            record.data = null;
+            memoryUsage -= record.length;
+            spilled.add(record);
+            spilledBytes += record.length;
+            it.remove();
+        }
+    }
+
+    private synchronized byte[] read(Record record) throws IOException {
+        if (record.data != null) return record.data;
+        byte[] data = new byte[record.length];
+        spillFile.seek(record.offset);
+        spillFile.readFully(data);
+        return data;
+    }
+
+    private synchronized void release(Record record) {
+        if (record.disposed) return;
+        record.disposed = true;
+        if (record.data != null) {
+            inMemory.remove(record);
+            memoryUsage -= record.length;
+            record.data = null;
+        } else if (spilled.remove(record)) {
+            spilledBytes -= record.length;
+            if (spilled.isEmpty()) {
+                deleteSpillFile();
+            } else if (getSpillFileSize() > 2 * spilledBytes) {
+                compact();
+            }
+        }
+    }
+
+    private void deleteSpillFile() {
+        try {
+            spillFile.close();
+        } catch (IOException e) {
+            // the file is deleted anyway
+        }
+        spillFilePath.delete();
+        spillFile = null;
+        spillFilePath = null;
+    }
+
+    // copies the live spilled records to a new file, the cost of a copy being
+    // covered by the released records since the previous one
+    private void compact() {
+        File newPath = null;
+        RandomAccessFile newFile = null;
+        try {
+            newPath = File.createTempFile("undo", ".bin");
+            newPath.deleteOnExit();
+            newFile = new RandomAccessFile(newPath, "rw");
+            long[] offsets = new long[spilled.size()];
+            int k = 0;
+            for (Record record : spilled) {
+                offsets[k++] = newFile.getFilePointer();
+                newFile.write(read(record));
+            }
+            k = 0;
+            for (Record record : spilled) record.offset = offsets[k++];
+        } catch (IOException e) {
+            // keep the current file
+            if (newFile != null) {
+                try {
+                    newFile.close();
+                } catch (IOException e2) {
+                    // the file is deleted anyway
+                }
+            }
+            if (newPath != null) newPath.delete();
+            return;
+        }
+        deleteSpillFile();
+        spillFile = newFile;
+        spillFilePath = newPath;
+    }
+
+    /**
+     * The encoded geometries of an edit.
+     */
+    public final class Record {
+
+        private byte[] data;
+        private final int length;
+        private long offset = -1;
+        private boolean disposed = false;
+        private GeometryFactory[] factories;
+        private Object[] userData;
+
+        private Record(byte[] data) {
+            this.data = data;
+            this.length = data.length;
+        }
+
+        /**
+         * @return new copies of the geometries before the edit, by feature id
+         */
+        public Map<Integer,Geometry> getBefore() {
+            return decode(true);
+        }
+
+        /**
+         * @return new copies of the geometries after the edit, by feature id
+         */
+        public Map<Integer,Geometry> getAfter() {
+            return decode(false);
+        }
+
+        /**
+         * Releases the memory or disk space used by this record.
+         */
+        public void dispose() {
+            release(this);
+        }
+
+        private Map<Integer,Geometry> decode(boolean before) {
+            if (disposed) throw new IllegalStateException("Record has been disposed");
+            try {
+                return UndoGeometryStore.this.decode(this, read(this), before);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static final byte FULL = 0;
+    private static final byte DIFF = 1;
+
+    private static final byte POINT = 0;
+    private static final byte LINESTRING = 1;
+    private static final byte LINEARRING = 2;
+    private static final byte POLYGON = 3;
+    private static final byte MULTIPOINT = 4;
+    private static final byte MULTILINESTRING = 5;
+    private static final byte MULTIPOLYGON = 6;
+    private static final byte GEOMETRYCOLLECTION = 7;
+
+    // factories and user data are not encoded, they are kept in the record
+    private static final class Context {
+        final List<GeometryFactory> factories = new ArrayList<>();
+        final List<Object> userData = new ArrayList<>();
+        // equivalent factories are stored once, as some copies of geometries
+        // get their own factory
+        final Map<List<Object>,Integer> factoryIndices = new HashMap<>();
+
+        int factoryIndex(GeometryFactory factory) {
+            List<Object> key = Arrays.asList(factory.getPrecisionModel(),
+                    factory.getSRID(), factory.getCoordinateSequenceFactory());
+            Integer index = factoryIndices.get(key);
+            if (index == null) {
+                index = factories.size();
+                factories.add(factory);
+                factoryIndices.put(key, index);
+            }
+            return index;
+        }
+
+        int userDataIndex(Object object) {
+            if (object == null) return -1;
+            userData.add(object);
+            return userData.size() - 1;
+        }
+    }
+
+    private byte[] encode(Map<Integer,Geometry> before, Map<Integer,Geometry> after,
+            Context context) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(before.size());
+        for (Map.Entry<Integer,Geometry> entry : before.entrySet()) {
+            Geometry geometryBefore = entry.getValue();
+            Geometry geometryAfter = after.get(entry.getKey());
+            out.writeInt(entry.getKey());
+            writeFull(out, geometryBefore, context);
+            List<double[]> diff = diff(geometryBefore, geometryAfter);
+            if (diff == null) {
+                writeFull(out, geometryAfter, context);
+            } else {
+                out.writeByte(DIFF);
+                out.writeInt(context.factoryIndex(geometryAfter.getFactory()));
+                out.writeInt(context.userDataIndex(geometryAfter.getUserData()));
+                out.writeInt(diff.size());
+                for (double[] d : diff) {
+                    out.writeInt((int)d[0]);
+                    out.writeInt((int)d[1]);
+                    out.writeByte(d.length - 2);
+                    for (int i = 2; i < d.length; i++) out.writeDouble(d[i]);
+                }
+            }
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private void writeFull(DataOutputStream out, Geometry geometry, Context context) throws IOException {
+        out.writeByte(FULL);
+        out.writeInt(context.factoryIndex(geometry.getFactory()));
+        out.writeInt(context.userDataIndex(geometry.getUserData()));
+        out.writeInt(geometry.getSRID());
+        writeGeometry(out, geometry);
+    }
+
+    private static void writeGeometry(DataOutputStream out, Geometry geometry) throws IOException {
+        if (geometry instanceof Point) {
+            out.writeByte(POINT);
+            writeSequence(out, ((Point)geometry).getCoordinateSequence());
+        } else if (geometry instanceof LinearRing) {
+            out.writeByte(LINEARRING);
+            writeSequence(out, ((LinearRing)geometry).getCoordinateSequence());
+        } else if (geometry instanceof LineString) {
+            out.writeByte(LINESTRING);
+            writeSequence(out, ((LineString)geometry).getCoordinateSequence());
+        } else if (geometry instanceof Polygon) {
+            Polygon polygon = (Polygon)geometry;
+            out.writeByte(POLYGON);
+            writeSequence(out, polygon.getExteriorRing().getCoordinateSequence());
+            out.writeInt(polygon.getNumInteriorRing());
+            for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                writeSequence(out, polygon.getInteriorRingN(i).getCoordinateSequence());
+            }
+        } else if (geometry instanceof GeometryCollection) {
+            out.writeByte(geometry instanceof MultiPoint ? MULTIPOINT :
+                    geometry instanceof MultiLineString ? MULTILINESTRING :
+                    geometry instanceof MultiPolygon ? MULTIPOLYGON : GEOMETRYCOLLECTION);
+            out.writeInt(geometry.getNumGeometries());
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                writeGeometry(out, geometry.getGeometryN(i));
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported geometry type " + geometry.getGeometryType());
+        }
+    }
+
+    // ordinates having NaN values only (typically z) are not written
+    private static void writeSequence(DataOutputStream out, CoordinateSequence seq) throws IOException {
+        int size = seq.size();
+        int dimension = seq.getDimension();
+        out.writeInt(size);
+        out.writeByte(dimension);
+        out.writeByte(seq.getMeasures());
+        int nanOrdinates = 0;
+        for (int d = 0; d < dimension; d++) {
+            boolean nan = true;
+            for (int i = 0; i < size && nan; i++) nan = Double.isNaN(seq.getOrdinate(i, d));
+            if (nan) nanOrdinates |= 1 << d;
+        }
+        out.writeByte(nanOrdinates);
+        for (int i = 0; i < size; i++) {
+            for (int d = 0; d < dimension; d++) {
+                if ((nanOrdinates & 1 << d) == 0) out.writeDouble(seq.getOrdinate(i, d));
+            }
+        }
+    }
+
+    /**
+     * @return the coordinates of after differing from before, as
+     * {sequence index, coordinate index, ordinates...} arrays, or null if
+     * the geometries do not have the same structure or if most coordinates
+     * differ
+     */
+    private static List<double[]> diff(Geometry before, Geometry after) {
+        if (before.getClass() != after.getClass() ||
+                before.getNumPoints() != after.getNumPoints() ||
+                before.getSRID() != after.getSRID()) {
+            return null;
+        }
+        List<CoordinateSequence> sequencesBefore = sequences(before);
+        List<CoordinateSequence> sequencesAfter = sequences(after);
+        if (sequencesBefore.size() != sequencesAfter.size()) return null;
+        List<double[]> diff = new ArrayList<>();
+        int maxDiff = before.getNumPoints() / 2;
+        for (int s = 0; s < sequencesBefore.size(); s++) {
+            CoordinateSequence a = sequencesBefore.get(s);
+            CoordinateSequence b = sequencesAfter.get(s);
+            if (a.size() != b.size() || a.getDimension() != b.getDimension() ||
+                    a.getMeasures() != b.getMeasures()) {
+                return null;
+            }
+            int dimension = b.getDimension();
+            for (int i = 0; i < a.size(); i++) {
+                boolean same = true;
+                for (int d = 0; d < dimension && same; d++) {
+                    same = sameOrdinate(a.getOrdinate(i, d), b.getOrdinate(i, d));
+                }
+                if (same) continue;
+                if (diff.size() == maxDiff) return null;
+                double[] d = new double[2 + dimension];
+                d[0] = s;
+                d[1] = i;
+                for (int k = 0; k < dimension; k++) d[2 + k] = b.getOrdinate(i, k);
+                diff.add(d);
+            }
+        }
+        return diff;
+    }
+
+    private static boolean sameOrdinate(double a, double b) {
+        return a == b || (Double.isNaN(a) && Double.isNaN(b));
+    }
+
+    // the non empty coordinate sequences of geometry, in traversal order
+    private static List<CoordinateSequence> sequences(Geometry geometry) {
+        final List<CoordinateSequence> sequences = new ArrayList<>();
+        geometry.apply(new CoordinateSequenceFilter() {
+            public void filter(CoordinateSequence seq, int i) {
+                if (i == 0) sequences.add(seq);
+            }
+            public boolean isDone() {
+                return false;
+            }
+            public boolean isGeometryChanged() {
+                return false;
+            }
+        });
+        return sequences;
+    }
+
+    private Map<Integer,Geometry> decode(Record record, byte[] data, boolean before)
+            throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int size = in.readInt();
+        Map<Integer,Geometry> geometries = new LinkedHashMap<>(size * 2);
+        for (int k = 0; k < size; k++) {
+            int id = in.readInt();
+            // the geometry before the edit is always read, as the diff applies to it
+            in.readByte();
+            GeometryFactory factoryBefore = record.factories[in.readInt()];
+            Object userDataBefore = userData(record, in.readInt());
+            int sridBefore = in.readInt();
+            in.mark(Integer.MAX_VALUE);
+            Geometry geometryBefore = readGeometry(in, factoryBefore);
+            geometryBefore.setSRID(sridBefore);
+            geometryBefore.setUserData(userDataBefore);
+            byte kind = in.readByte();
+            GeometryFactory factoryAfter = record.factories[in.readInt()];
+            Object userDataAfter = userData(record, in.readInt());
+            Geometry geometryAfter;
+            if (kind == FULL) {
+                int sridAfter = in.readInt();
+                geometryAfter = readGeometry(in, factoryAfter);
+                geometryAfter.setSRID(sridAfter);
+            } else {
+                int n = in.readInt();
+                double[][] diff = new double[n][];
+                for (int i = 0; i < n; i++) {
+                    int s = in.readInt();
+                    int index = in.readInt();
+                    diff[i] = new double[2 + in.readByte()];
+                    diff[i][0] = s;
+                    diff[i][1] = index;
+                    for (int j = 2; j < diff[i].length; j++) diff[i][j] = in.readDouble();
+                }
+                if (before) {
+                    geometryAfter = null;
+                } else {
+                    // the geometry before is decoded again with the factory after
+                    int position = data.length - in.available();
+                    in.reset();
+                    geometryAfter = readGeometry(in, factoryAfter);
+                    geometryAfter.setSRID(sridBefore);
+                    applyDiff(geometryAfter, diff);
+                    in.skip(position - (data.length - in.available()));
+                }
+            }
+            if (before) {
+                geometries.put(id, geometryBefore);
+            } else {
+                geometryAfter.setUserData(userDataAfter);
+                geometries.put(id, geometryAfter);
+            }
+        }
+        return geometries;
+    }
+
+    private static Geometry readGeometry(DataInputStream in, GeometryFactory factory) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case POINT:
+                return factory.createPoint(readSequence(in, factory));
+            case LINESTRING:
+                return factory.createLineString(readSequence(in, factory));
+            case LINEARRING:
+                return factory.createLinearRing(readSequence(in, factory));
+            case POLYGON: {
+                LinearRing shell = factory.createLinearRing(readSequence(in, factory));
+                LinearRing[] holes = new LinearRing[in.readInt()];
+                for (int i = 0; i < holes.length; i++) {
+                    holes[i] = factory.createLinearRing(readSequence(in, factory));
+                }
+                return factory.createPolygon(shell, holes);
+            }
+            default: {
+                Geometry[] components = new Geometry[in.readInt()];
+                for (int i = 0; i < components.length; i++) {
+                    components[i] = readGeometry(in, factory);
+                }
+                if (type == MULTIPOINT) {
+                    return factory.createMultiPoint(Arrays.copyOf(components, components.length, Point[].class));
+                } else if (type == MULTILINESTRING) {
+                    return factory.createMultiLineString(
+                            Arrays.copyOf(components, components.length, LineString[].class));
+                } else if (type == MULTIPOLYGON) {
+                    return factory.createMultiPolygon(
+                            Arrays.copyOf(components, components.length, Polygon[].class));
+                }
+                return factory.createGeometryCollection(components);
+            }
+        }
+    }
+
+    private static CoordinateSequence readSequence(DataInputStream in, GeometryFactory factory) throws IOException {
+        int size = in.readInt();
+        int dimension = in.readByte();
+        int measures = in.readByte();
+        int nanOrdinates = in.readByte();
+        CoordinateSequence seq = factory.getCoordinateSequenceFactory().create(size, dimension, measures);
+        for (int i = 0; i < size; i++) {
+            for (int d = 0; d < dimension; d++) {
+                seq.setOrdinate(i, d, (nanOrdinates & 1 << d) == 0 ? in.readDouble() : Double.NaN);
+            }
+        }
+        return seq;
+    }
+
+    private static Object userData(Record record, int index) {
+        return index < 0 ? null : record.userData[index];
+    }
+
+    private static void applyDiff(Geometry geometry, double[][] diff) {
+        List<CoordinateSequence> sequences = sequences(geometry);
+        for (double[] d : diff) {
+            CoordinateSequence seq = sequences.get((int)d[0]);
+            int i = (int)d[1];
+            for (int k = 2; k < d.length && k - 2 < seq.getDimension(); k++) {
+                seq.setOrdinate(i, k - 2, d[k]);
+            }
+        }
+        geometry.geometryChanged();
+    }
+}
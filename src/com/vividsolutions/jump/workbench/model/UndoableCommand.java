@@ -108,7 +108,12 @@ public abstract class UndoableCommand {
 
             public void redo() {
                 if (isCanceled()) return;
-                execute();
+                LayerManager layerManager = batchLayerManager();
+                try {
+                    execute();
+                } finally {
+                    if (layerManager != null) layerManager.endBatch();
+                }
                 super.redo();
             }
 
@@ -120,7 +125,12 @@ public abstract class UndoableCommand {
             public void undo() {
                 if (isCanceled()) return;
                 super.undo();
-                unexecute();
+                LayerManager layerManager = batchLayerManager();
+                try {
+                    unexecute();
+                } finally {
+                    if (layerManager != null) layerManager.endBatch();
+                }
             }
             
             public boolean isSignificant() {
@@ -128,6 +138,19 @@ public abstract class UndoableCommand {
             } 
         };
     }
+
+    /**
+     * Begins a batch of events on the LayerManager of the layer of this
+     * command, so that undoing or redoing a command modifying features one
+     * at a time fires merged events.
+     * @return the LayerManager to end the batch on, or null
+     */
+    private LayerManager batchLayerManager() {
+        LayerManager layerManager = layer == null ? null : layer.getLayerManager();
+        if (layerManager != null) layerManager.beginBatch();
+        return layerManager;
+    }
+
     public String getName() {
         return name;
     }
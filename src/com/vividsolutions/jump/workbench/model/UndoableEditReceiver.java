@@ -61,6 +61,7 @@ public class UndoableEditReceiver {
     private boolean irreversibleChangeReported = false;
     private boolean undoManagerCouldUndoAtStart = false;
     private ArrayList<Listener> listeners = new ArrayList<>();
+    private UndoGeometryStore geometryStore = new UndoGeometryStore();
     
     public UndoableEditReceiver() {
     }
@@ -152,6 +153,14 @@ public class UndoableEditReceiver {
         return undoManager;
     }
 
+    /**
+     * Returns the store where UndoableCommands can keep the geometries they
+     * need to undo and redo an edit, within a memory budget.
+     */
+    public UndoGeometryStore getGeometryStore() {
+        return geometryStore;
+    }
+
     private void setNothingToUndoReported(boolean nothingToUndoReported) {
         this.nothingToUndoReported = nothingToUndoReported;
     }
@@ -32,8 +32,11 @@
 
 package com.vividsolutions.jump.workbench.model;
 
+import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.MediaTracker;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
@@ -41,6 +44,10 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.swing.JButton;
 
@@ -70,6 +77,7 @@ public class WMSLayer
   private MapStyle style;
   private String moreParameters;
   private int alpha = 255;
+  private boolean tiled = false;
 
   private Reference oldImage;
   private URL oldURL;
@@ -148,8 +156,43 @@ public class WMSLayer
     this.alpha = alpha;
   }
 
+  /**
+   * @return true if the map is requested as tiles of a fixed grid, which
+   * are cached and reused from a view to another
+   */
+  public boolean isTiled() {
+    return tiled;
+  }
+
+  public void setTiled(boolean tiled) {
+    this.tiled = tiled;
+  }
+
   public Image createImage(LayerViewPanel panel) throws IOException {
 
+    if (tiled) {
+      final BufferedImage image = new BufferedImage(panel.getWidth(),
+          panel.getHeight(), BufferedImage.TYPE_INT_ARGB);
+      final Graphics2D g = image.createGraphics();
+      try {
+        drawTiles(panel, new TileConsumer() {
+          public void tile(Image tile, Rectangle bounds) {
+            g.drawImage(tile, bounds.x, bounds.y, bounds.width, bounds.height, null);
+          }
+          public boolean isCancelled() {
+            return false;
+          }
+        });
+      } catch (IOException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IOException(e);
+      } finally {
+        g.dispose();
+      }
+      return image;
+    }
+
     MapRequest request = createRequest(panel);
     URL newURL = request.getURL();
 
@@ -175,6 +218,76 @@ public class WMSLayer
     return image;
   }
 
+  /**
+   * Receives the tiles of a tiled WMSLayer as they become available.
+   */
+  public interface TileConsumer {
+    /**
+     * @param bounds where tile goes in the view, in pixels
+     */
+    void tile(Image tile, Rectangle bounds) throws Exception;
+    boolean isCancelled();
+  }
+
+  /**
+   * Passes the tiles covering the view of panel to consumer: the cached
+   * ones first, then the other ones as soon as they are fetched.
+   * Fetching goes on if consumer is cancelled, so that tiles are ready for
+   * the next view.
+   */
+  public void drawTiles(LayerViewPanel panel, TileConsumer consumer) throws Exception {
+    Envelope envelope = panel.getViewport().getEnvelopeInModelCoordinates();
+    TileGrid grid = new TileGrid(panel.getViewport().getScale());
+    WMSTileCache cache = WMSTileCache.getDefault();
+    List<Envelope> missing = new ArrayList<>();
+    List<Future<BufferedImage>> futures = new ArrayList<>();
+    for (Envelope tile : grid.getTiles(envelope)) {
+      MapRequest request = createTileRequest(tile);
+      String key = request.getURL().toString();
+      Image image = cache.getCached(key);
+      if (image != null) {
+        consumer.tile(image, grid.toView(tile, envelope));
+      } else {
+        missing.add(tile);
+        futures.add(cache.get(key, request::getImage));
+      }
+    }
+    Exception failure = null;
+    for (int i = 0; i < futures.size(); i++) {
+      Image image = null;
+      boolean done = false;
+      while (!done) {
+        if (consumer.isCancelled()) return;
+        try {
+          image = futures.get(i).get(100, TimeUnit.MILLISECONDS);
+          done = true;
+        } catch (TimeoutException e) {
+          // check for cancellation and wait again
+        } catch (ExecutionException e) {
+          // a failing tile does not prevent the other ones from being drawn
+          if (failure == null) {
+            failure = e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+          }
+          done = true;
+        }
+      }
+      if (image != null) consumer.tile(image, grid.toView(missing.get(i), envelope));
+    }
+    if (failure != null) throw failure;
+  }
+
+  private MapRequest createTileRequest(Envelope tile) throws IOException {
+    MapRequest request = getService().createMapRequest();
+    request.setBoundingBox(toBoundingBox(srs, tile));
+    request.setFormat(format);
+    request.setStyle(style);
+    request.setMoreParameters(moreParameters);
+    request.setImageSize(TileGrid.TILE_SIZE, TileGrid.TILE_SIZE);
+    request.setLayerNames(layerNames);
+    request.setTransparent(true);
+    return request;
+  }
+
   private BoundingBox toBoundingBox(String srs, Envelope e) {
     return new BoundingBox(srs, e);
   }
@@ -0,0 +1,702 @@
+package com.vividsolutions.jump.workbench.model.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+
+import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.feature.BasicFeature;
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.feature.FeatureCollection;
+import com.vividsolutions.jump.feature.FeatureSchema;
+import com.vividsolutions.jump.feature.FeatureUtil;
+import com.vividsolutions.jump.geom.GeometryStoragePolicy;
+import com.vividsolutions.jump.workbench.Logger;
+import com.vividsolutions.jump.workbench.model.Disposable;
+
+/**
+ * FeatureCollection keeping its features in a page file rather than in the
+ * heap, for datasets which do not fit in memory.
+ * <p>
+ * Each feature is written once as a record (WKB geometry followed by its
+ * attributes) appended to the page file, which is read through memory-mapped
+ * segments. Only the offset and the (float) envelope of each record stay in
+ * memory, about 24 bytes per feature, together with a packed R-tree used by
+ * {@link #query(Envelope)}. Features are materialized when they are queried
+ * or iterated over and the most recently used ones are kept in a bounded
+ * cache. A materialized feature keeps its identity as long as it is
+ * referenced (e.g. selected), and its ID, which is stored with its record,
+ * even when it is read again.
+ * <p>
+ * The page file is append-only: features added with {@link #add(Feature)}
+ * and materialized features which are modified are kept in memory, so edits
+ * are possible but should remain small compared to the dataset. Features
+ * whose geometry is modified in place must be passed to
+ * {@link #featuresModified(Collection)}, which LayerManager does for
+ * GEOMETRY_MODIFIED and ATTRIBUTES_MODIFIED events. Bulk loaders use
+ * {@link #append(Feature)} which does not keep the feature.
+ * <p>
+ * {@link #saveIndex()} writes the record table and the spatial index next to
+ * the page file, so that the collection can be re-opened later with
+ * {@link #open(File)} without reading the records again.
+ */
+public class DiskFeatureCollection implements FeatureCollection, Disposable {
+
+  // records never span two mapped segments
+  private static final int SEGMENT_SIZE = 1 << 28;
+
+  private static final int INDEX_FILE_VERSION = 1;
+
+  private static final int DEFAULT_CACHE_SIZE = 50000;
+
+  // attribute value tags
+  private static final byte NULL = 0, STRING = 1, INTEGER = 2, LONG = 3,
+      DOUBLE = 4, BOOLEAN = 5, DATE = 6, GEOMETRY = 7, DECIMAL = 8, OBJECT = 9;
+
+  // whether file loaders keep datasets which don't fit in memory on disk
+  private static boolean enabledForLoaders = false;
+
+  private final FeatureSchema schema;
+  private final File pageFile;
+  private final RandomAccessFile raf;
+  private final FileChannel channel;
+  private final boolean temporary;
+  private long writePosition = 0;
+  private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+  private int count = 0;
+  private long[] offsets = new long[1024];
+  private float[] envelopes = new float[1024 * 4];
+  // feature ID of each record, and whether they are in increasing order
+  private int[] featureIDs = new int[1024];
+  private boolean featureIDsSorted = true;
+  private final BitSet removed = new BitSet();
+  private int removedCount = 0;
+  private int[] liveRecords = null;
+  private Envelope envelope = new Envelope();
+
+  private PackedEnvelopeIndex index = null;
+
+  // features added in memory or modified since they were read
+  private final Map<Integer,Feature> pinned = new HashMap<>();
+  private final Map<Integer,Integer> recordsByFeatureID = new HashMap<>();
+  // identity of materialized features, as long as they are referenced
+  private final Map<Integer,FeatureReference> materialized = new HashMap<>();
+  private final ReferenceQueue<DiskFeature> collected = new ReferenceQueue<>();
+  private final Map<Integer,Feature> cache;
+
+  private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream();
+  private final WKBWriter wkbWriter2D = new WKBWriter(2, true);
+  private final WKBWriter wkbWriter3D = new WKBWriter(3, true);
+
+  public static boolean isEnabledForLoaders() {
+    return enabledForLoaders;
+  }
+
+  public static void setEnabledForLoaders(boolean enabled) {
+    enabledForLoaders = enabled;
+  }
+
+  /**
+   * Whether a loader should read a dataset into a DiskFeatureCollection.
+   * Geometries take several times their file size once loaded, so datasets
+   * whose file exceeds 1/8 of the maximum heap size are kept on disk.
+   * @param fileSize size of the dataset file in bytes
+   */
+  public static boolean isKeptOnDisk(long fileSize) {
+    return enabledForLoaders && fileSize > Runtime.getRuntime().maxMemory() / 8;
+  }
+
+  /**
+   * Creates a collection backed by a temporary page file, deleted when the
+   * collection is disposed or when the application exits.
+   */
+  public DiskFeatureCollection(FeatureSchema schema) throws IOException {
+    this(schema, File.createTempFile("openjump", ".features"), true, DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Creates a collection backed by pageFile, which is overwritten.
+   * @param cacheSize maximum number of features kept in the cache
+   */
+  public DiskFeatureCollection(FeatureSchema schema, File pageFile, int cacheSize)
+      throws IOException {
+    this(schema, pageFile, false, cacheSize);
+    raf.setLength(0);
+  }
+
+  private DiskFeatureCollection(FeatureSchema schema, File pageFile,
+                                boolean temporary, final int cacheSize) throws IOException {
+    this.schema = schema;
+    this.pageFile = pageFile;
+    this.temporary = temporary;
+    if (temporary) pageFile.deleteOnExit();
+    this.raf = new RandomAccessFile(pageFile, "rw");
+    this.channel = raf.getChannel();
+    this.cache = new LinkedHashMap<Integer,Feature>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<Integer,Feature> eldest) {
+        return size() > cacheSize;
+      }
+    };
+  }
+
+  /**
+   * Re-opens a collection whose index was saved with {@link #saveIndex()}.
+   */
+  public static DiskFeatureCollection open(File pageFile) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+        new FileInputStream(getIndexFile(pageFile)), 1 << 16))) {
+      if (in.readInt() != INDEX_FILE_VERSION) {
+        throw new IOException("Unsupported index version in " + getIndexFile(pageFile));
+      }
+      FeatureSchema schema = new FeatureSchema();
+      for (int i = 0, n = in.readInt(); i < n; i++) {
+        String name = in.readUTF();
+        schema.addAttribute(name, AttributeType.toAttributeType(in.readUTF()));
+      }
+      DiskFeatureCollection fc = new DiskFeatureCollection(schema, pageFile, false,
+          DEFAULT_CACHE_SIZE);
+      fc.writePosition = in.readLong();
+      if (fc.writePosition != fc.channel.size()) {
+        fc.dispose();
+        throw new IOException("Index does not match " + pageFile);
+      }
+      fc.count = in.readInt();
+      fc.offsets = new long[Math.max(fc.count, 1024)];
+      fc.envelopes = new float[fc.offsets.length * 4];
+      fc.featureIDs = new int[fc.offsets.length];
+      for (int i = 0; i < fc.count; i++) {
+        fc.offsets[i] = in.readLong();
+        for (int j = 0; j < 4; j++) fc.envelopes[i * 4 + j] = in.readFloat();
+        // IDs are not persistent, records get new ones in this session
+        fc.featureIDs[i] = FeatureUtil.nextID();
+      }
+      for (int i = 0, n = in.readInt(); i < n; i++) {
+        fc.removed.set(in.readInt());
+      }
+      fc.removedCount = fc.removed.cardinality();
+      if (in.readBoolean()) {
+        fc.envelope = new Envelope(in.readDouble(), in.readDouble(),
+            in.readDouble(), in.readDouble());
+      }
+      if (in.readBoolean()) fc.index = PackedEnvelopeIndex.read(in);
+      return fc;
+    }
+  }
+
+  /**
+   * Writes the record table and the spatial index next to the page file.
+   * Features kept in memory (added with {@link #add(Feature)} or modified)
+   * are not saved.
+   */
+  public synchronized void saveIndex() throws IOException {
+    buildIndex();
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(getIndexFile(pageFile)), 1 << 16))) {
+      out.writeInt(INDEX_FILE_VERSION);
+      out.writeInt(schema.getAttributeCount());
+      for (int i = 0; i < schema.getAttributeCount(); i++) {
+        out.writeUTF(schema.getAttributeName(i));
+        out.writeUTF(schema.getAttributeType(i).toString());
+      }
+      out.writeLong(writePosition);
+      out.writeInt(count);
+      for (int i = 0; i < count; i++) {
+        out.writeLong(offsets[i]);
+        for (int j = 0; j < 4; j++) out.writeFloat(envelopes[i * 4 + j]);
+      }
+      out.writeInt(removedCount);
+      for (int i = removed.nextSetBit(0); i >= 0; i = removed.nextSetBit(i + 1)) {
+        out.writeInt(i);
+      }
+      out.writeBoolean(!envelope.isNull());
+      if (!envelope.isNull()) {
+        out.writeDouble(envelope.getMinX());
+        out.writeDouble(envelope.getMaxX());
+        out.writeDouble(envelope.getMinY());
+        out.writeDouble(envelope.getMaxY());
+      }
+      out.writeBoolean(index != null);
+      if (index != null) index.write(out);
+    }
+  }
+
+  private static File getIndexFile(File pageFile) {
+    return new File(pageFile.getPath() + ".idx");
+  }
+
+  public FeatureSchema getFeatureSchema() {
+    return schema;
+  }
+
+  public synchronized Envelope getEnvelope() {
+    Envelope env = new Envelope(envelope);
+    for (Feature feature : pinned.values()) {
+      env.expandToInclude(feature.getGeometry().getEnvelopeInternal());
+    }
+    return env;
+  }
+
+  public synchronized int size() {
+    return count - removedCount;
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Returns a read-only view of the features, materialized on access.
+   */
+  public List<Feature> getFeatures() {
+    return new AbstractList<Feature>() {
+      public Feature get(int i) {
+        synchronized (DiskFeatureCollection.this) {
+          return getFeature(liveRecord(i));
+        }
+      }
+      public int size() {
+        return DiskFeatureCollection.this.size();
+      }
+      public Iterator<Feature> iterator() {
+        return DiskFeatureCollection.this.iterator();
+      }
+    };
+  }
+
+  public Iterator<Feature> iterator() {
+    return new Iterator<Feature>() {
+      private int next = nextLive(0);
+      public boolean hasNext() {
+        return next < count;
+      }
+      public Feature next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        synchronized (DiskFeatureCollection.this) {
+          Feature feature = getFeature(next);
+          next = nextLive(next + 1);
+          return feature;
+        }
+      }
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  private synchronized int nextLive(int record) {
+    int next = removed.nextClearBit(record);
+    return Math.min(next, count);
+  }
+
+  public synchronized List<Feature> query(Envelope env) {
+    final List<Feature> result = new ArrayList<>();
+    if (count == 0 || !env.intersects(getEnvelope())) return result;
+    // rebuild the index when many records were appended since it was built
+    int indexed = index == null ? 0 : index.size();
+    if (count - indexed > Math.max(1024, indexed / 4)) buildIndex();
+    PackedEnvelopeIndex.ItemVisitor visitor = record -> {
+      if (!removed.get(record) && !pinned.containsKey(record)) {
+        result.add(getFeature(record));
+      }
+    };
+    if (index != null) index.query(env, envelopes, visitor);
+    for (int record = index == null ? 0 : index.size(); record < count; record++) {
+      if (PackedEnvelopeIndex.intersects(envelopes, record, env)) visitor.visit(record);
+    }
+    // pinned features may have been moved
+    for (Feature feature : pinned.values()) {
+      if (feature.getGeometry().getEnvelopeInternal().intersects(env)) {
+        result.add(feature);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Builds the spatial index of all the records. Called by bulk loaders once
+   * all the features have been appended, later appends are indexed again
+   * when needed.
+   */
+  public synchronized void buildIndex() {
+    index = new PackedEnvelopeIndex(envelopes, count);
+  }
+
+  /**
+   * Writes feature to the page file without keeping it in memory. Used to
+   * load large datasets.
+   */
+  public synchronized void append(Feature feature) {
+    try {
+      writeRecord(feature);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Writes feature to the page file and keeps it in memory, so that it can
+   * be edited and removed.
+   */
+  public synchronized void add(Feature feature) {
+    int record = count;
+    append(feature);
+    pinned.put(record, feature);
+    recordsByFeatureID.put(feature.getID(), record);
+  }
+
+  public void addAll(Collection<Feature> features) {
+    for (Feature feature : features) add(feature);
+  }
+
+  public synchronized void remove(Feature feature) {
+    int record = recordOf(feature);
+    if (record < 0 || removed.get(record)) return;
+    removed.set(record);
+    removedCount++;
+    liveRecords = null;
+    pinned.remove(record);
+    recordsByFeatureID.remove(feature.getID());
+    cache.remove(record);
+    materialized.remove(record);
+  }
+
+  public synchronized void removeAll(Collection<Feature> features) {
+    for (Feature feature : features) remove(feature);
+  }
+
+  public synchronized Collection<Feature> remove(Envelope env) {
+    List<Feature> features = query(env);
+    removeAll(features);
+    return features;
+  }
+
+  public synchronized void clear() {
+    removed.set(0, count);
+    removedCount = count;
+    liveRecords = null;
+    pinned.clear();
+    recordsByFeatureID.clear();
+    cache.clear();
+    materialized.clear();
+  }
+
+  /**
+   * Closes the page file, and deletes it if it is a temporary one.
+   */
+  public synchronized void dispose() {
+    segments.clear();
+    cache.clear();
+    materialized.clear();
+    pinned.clear();
+    try {
+      raf.close();
+    } catch (IOException e) {
+      Logger.warn("Could not close " + pageFile, e);
+    }
+    if (temporary && !pageFile.delete()) {
+      // mapped segments are only released once garbage collected (Windows)
+      Logger.debug("Could not delete " + pageFile + ", deleted on exit");
+    }
+  }
+
+  private int recordOf(Feature feature) {
+    if (feature instanceof DiskFeature && ((DiskFeature)feature).collection == this) {
+      return ((DiskFeature)feature).record;
+    }
+    Integer record = recordsByFeatureID.get(feature.getID());
+    if (record != null) return record;
+    // another instance of a feature of this collection (a clone)
+    int id = feature.getID();
+    if (featureIDsSorted) {
+      int i = java.util.Arrays.binarySearch(featureIDs, 0, count, id);
+      return i < 0 ? -1 : i;
+    }
+    for (int i = 0; i < count; i++) {
+      if (featureIDs[i] == id) return i;
+    }
+    return -1;
+  }
+
+  private int liveRecord(int i) {
+    if (removedCount == 0) return i;
+    if (liveRecords == null) {
+      liveRecords = new int[size()];
+      for (int r = removed.nextClearBit(0), k = 0; r < count; r = removed.nextClearBit(r + 1)) {
+        liveRecords[k++] = r;
+      }
+    }
+    return liveRecords[i];
+  }
+
+  private Feature getFeature(int record) {
+    Feature feature = pinned.get(record);
+    if (feature != null) return feature;
+    feature = cache.get(record);
+    if (feature != null) return feature;
+    expungeCollected();
+    FeatureReference ref = materialized.get(record);
+    DiskFeature diskFeature = ref == null ? null : ref.get();
+    if (diskFeature == null) {
+      try {
+        diskFeature = readRecord(record);
+      } catch (IOException | ParseException | ClassNotFoundException e) {
+        throw new RuntimeException("Could not read feature " + record + " from " + pageFile, e);
+      }
+      materialized.put(record, new FeatureReference(diskFeature, record, collected));
+    }
+    cache.put(record, diskFeature);
+    return diskFeature;
+  }
+
+  private void expungeCollected() {
+    for (Object ref; (ref = collected.poll()) != null;) {
+      int record = ((FeatureReference)ref).record;
+      if (materialized.get(record) == ref) materialized.remove(record);
+    }
+  }
+
+  // called by materialized features when they are modified
+  private synchronized void pin(DiskFeature feature) {
+    if (feature.collection == this && !removed.get(feature.record)) {
+      pinned.put(feature.record, feature);
+      recordsByFeatureID.put(feature.getID(), feature.record);
+    }
+  }
+
+  /**
+   * Keeps in memory the features of this collection which were modified
+   * in place (e.g. through a CoordinateFilter applied to their geometry),
+   * so that their changes are not lost when they are evicted from the
+   * cache. The envelopes used by {@link #query(Envelope)} are those of the
+   * modified features.
+   */
+  public synchronized void featuresModified(Collection<Feature> features) {
+    for (Feature feature : features) {
+      if (feature instanceof DiskFeature) pin((DiskFeature)feature);
+    }
+  }
+
+  // Page file
+
+  private void writeRecord(Feature feature) throws IOException {
+    recordBuffer.reset();
+    DataOutputStream out = new DataOutputStream(recordBuffer);
+    out.writeInt(0); // length, set below
+    for (int i = 0; i < schema.getAttributeCount(); i++) {
+      writeValue(out, schema.isOperation(i) ? null : feature.getAttribute(i));
+    }
+    out.flush();
+    byte[] bytes = recordBuffer.toByteArray();
+    int length = bytes.length;
+    if (length > SEGMENT_SIZE) {
+      throw new IOException("Feature too large to be stored on disk (" + length + " bytes)");
+    }
+    ByteBuffer.wrap(bytes).putInt(0, length - 4);
+    long segmentEnd = (writePosition / SEGMENT_SIZE + 1) * SEGMENT_SIZE;
+    if (writePosition + length > segmentEnd) writePosition = segmentEnd;
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    for (long position = writePosition; buffer.hasRemaining();) {
+      position += channel.write(buffer, position);
+    }
+    if (count == offsets.length) {
+      offsets = java.util.Arrays.copyOf(offsets, count + (count >> 1));
+      envelopes = java.util.Arrays.copyOf(envelopes, offsets.length * 4);
+      featureIDs = java.util.Arrays.copyOf(featureIDs, offsets.length);
+    }
+    offsets[count] = writePosition;
+    if (count > 0 && feature.getID() <= featureIDs[count - 1]) featureIDsSorted = false;
+    featureIDs[count] = feature.getID();
+    Envelope env = feature.getGeometry() == null ? new Envelope() :
+        feature.getGeometry().getEnvelopeInternal();
+    PackedEnvelopeIndex.setEnvelope(envelopes, count, env);
+    envelope.expandToInclude(env);
+    writePosition += length;
+    count++;
+    liveRecords = null;
+  }
+
+  private DiskFeature readRecord(int record)
+      throws IOException, ParseException, ClassNotFoundException {
+    long offset = offsets[record];
+    int s = (int)(offset / SEGMENT_SIZE);
+    int position = (int)(offset % SEGMENT_SIZE);
+    MappedByteBuffer segment = s < segments.size() ? segments.get(s) : null;
+    // writes go straight to the channel, segments mapped before the record
+    // was appended are mapped again
+    if (segment == null || segment.capacity() < position + 4 ||
+        segment.capacity() < position + 4 + segment.getInt(position)) {
+      long size = Math.min(SEGMENT_SIZE, writePosition - (long)s * SEGMENT_SIZE);
+      segment = channel.map(FileChannel.MapMode.READ_ONLY, (long)s * SEGMENT_SIZE, size);
+      while (segments.size() <= s) segments.add(null);
+      segments.set(s, segment);
+    }
+    ByteBuffer buffer = segment.duplicate();
+    buffer.position(position);
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    DiskFeature feature = new DiskFeature(this, record, featureIDs[record]);
+    Object[] attributes = new Object[schema.getAttributeCount()];
+    WKBReader wkbReader = new WKBReader(GeometryStoragePolicy.createGeometryFactory());
+    for (int i = 0; i < attributes.length; i++) {
+      attributes[i] = readValue(in, wkbReader);
+    }
+    feature.load(attributes);
+    return feature;
+  }
+
+  private void writeValue(DataOutputStream out, Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof String) {
+      byte[] bytes = ((String)value).getBytes(StandardCharsets.UTF_8);
+      out.writeByte(STRING);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    } else if (value instanceof Integer) {
+      out.writeByte(INTEGER);
+      out.writeInt((Integer)value);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long)value);
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double)value);
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean)value);
+    } else if (value.getClass() == Date.class) {
+      out.writeByte(DATE);
+      out.writeLong(((Date)value).getTime());
+    } else if (value instanceof Geometry) {
+      Coordinate first = ((Geometry)value).getCoordinate();
+      WKBWriter writer = first == null || Double.isNaN(first.getZ()) ? wkbWriter2D : wkbWriter3D;
+      byte[] bytes = writer.write((Geometry)value);
+      out.writeByte(GEOMETRY);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    } else if (value instanceof BigDecimal) {
+      out.writeByte(DECIMAL);
+      out.writeUTF(value.toString());
+    } else {
+      // other types (timestamps, float...) through java serialization
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+        oos.writeObject(value);
+      }
+      out.writeByte(OBJECT);
+      out.writeInt(bytes.size());
+      bytes.writeTo(out);
+    }
+  }
+
+  private Object readValue(DataInputStream in, WKBReader wkbReader)
+      throws IOException, ParseException, ClassNotFoundException {
+    byte tag = in.readByte();
+    switch (tag) {
+      case NULL: return null;
+      case STRING: return new String(readBytes(in), StandardCharsets.UTF_8);
+      case INTEGER: return in.readInt();
+      case LONG: return in.readLong();
+      case DOUBLE: return in.readDouble();
+      case BOOLEAN: return in.readBoolean();
+      case DATE: return new Date(in.readLong());
+      case GEOMETRY: return wkbReader.read(readBytes(in));
+      case DECIMAL: return new BigDecimal(in.readUTF());
+      case OBJECT:
+        try (ObjectInputStream ois = new ObjectInputStream(
+            new ByteArrayInputStream(readBytes(in)))) {
+          return ois.readObject();
+        }
+      default: throw new IOException("Unknown value type " + tag);
+    }
+  }
+
+  private static byte[] readBytes(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  private static class FeatureReference extends WeakReference<DiskFeature> {
+    final int record;
+    FeatureReference(DiskFeature feature, int record, ReferenceQueue<DiskFeature> queue) {
+      super(feature, queue);
+      this.record = record;
+    }
+  }
+
+  /**
+   * Feature materialized from a record, which stays in memory once modified.
+   */
+  private static class DiskFeature extends BasicFeature {
+
+    private static final long serialVersionUID = 1L;
+    private final transient DiskFeatureCollection collection;
+    private final int record;
+    private boolean loaded = false;
+
+    DiskFeature(DiskFeatureCollection collection, int record, int id) {
+      super(collection.getFeatureSchema(), id);
+      this.collection = collection;
+      this.record = record;
+    }
+
+    void load(Object[] attributes) {
+      super.setAttributes(attributes);
+      setModified(false);
+      loaded = true;
+    }
+
+    public void setAttribute(int attributeIndex, Object newAttribute) {
+      super.setAttribute(attributeIndex, newAttribute);
+      if (loaded) collection.pin(this);
+    }
+
+    public void setAttributes(Object[] attributes) {
+      super.setAttributes(attributes);
+      if (loaded) collection.pin(this);
+    }
+
+    public void setSchema(FeatureSchema schema) {
+      super.setSchema(schema);
+      if (loaded) collection.pin(this);
+    }
+  }
+}
@@ -0,0 +1,200 @@
+package com.vividsolutions.jump.workbench.model.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ * Static R-tree over item envelopes, packed with the Sort-Tile-Recursive
+ * algorithm into a few primitive arrays (no object per item or per node),
+ * so that it can index hundreds of millions of items and be written to and
+ * read from a file as is.
+ * <p>
+ * Item envelopes are stored as floats (minx, miny, maxx, maxy), rounded
+ * outwards, in an array owned by the caller.
+ */
+class PackedEnvelopeIndex {
+
+  private static final int NODE_CAPACITY = 32;
+
+  // item numbers in leaf order
+  private final int[] items;
+  // levels[0] groups items, levels[i] groups nodes of levels[i-1]
+  private final float[][] levels;
+
+  /**
+   * Builds the index of the size first items of envelopes.
+   */
+  PackedEnvelopeIndex(float[] envelopes, int size) {
+    items = sortTileRecursive(envelopes, size);
+    int levelCount = 0;
+    for (int n = size; n > NODE_CAPACITY || levelCount == 0; n = nodeCount(n)) {
+      levelCount++;
+    }
+    levels = new float[levelCount][];
+    float[] children = null;
+    int childCount = size;
+    for (int level = 0; level < levelCount; level++) {
+      int count = nodeCount(childCount);
+      float[] bounds = new float[count * 4];
+      for (int node = 0; node < count; node++) {
+        float minx = Float.POSITIVE_INFINITY, miny = Float.POSITIVE_INFINITY;
+        float maxx = Float.NEGATIVE_INFINITY, maxy = Float.NEGATIVE_INFINITY;
+        for (int c = node * NODE_CAPACITY, end = Math.min(c + NODE_CAPACITY, childCount); c < end; c++) {
+          float[] array = level == 0 ? envelopes : children;
+          int i = (level == 0 ? items[c] : c) * 4;
+          minx = Math.min(minx, array[i]);
+          miny = Math.min(miny, array[i + 1]);
+          maxx = Math.max(maxx, array[i + 2]);
+          maxy = Math.max(maxy, array[i + 3]);
+        }
+        bounds[node * 4] = minx;
+        bounds[node * 4 + 1] = miny;
+        bounds[node * 4 + 2] = maxx;
+        bounds[node * 4 + 3] = maxy;
+      }
+      levels[level] = bounds;
+      children = bounds;
+      childCount = count;
+    }
+  }
+
+  private PackedEnvelopeIndex(int[] items, float[][] levels) {
+    this.items = items;
+    this.levels = levels;
+  }
+
+  /**
+   * Number of items in the index.
+   */
+  int size() {
+    return items.length;
+  }
+
+  interface ItemVisitor {
+    void visit(int item);
+  }
+
+  /**
+   * Calls visitor for each item whose envelope intersects searchEnv.
+   */
+  void query(Envelope searchEnv, float[] envelopes, ItemVisitor visitor) {
+    if (items.length == 0) return;
+    int top = levels.length - 1;
+    for (int node = 0, n = levels[top].length / 4; node < n; node++) {
+      query(top, node, searchEnv, envelopes, visitor);
+    }
+  }
+
+  private void query(int level, int node, Envelope searchEnv, float[] envelopes,
+                     ItemVisitor visitor) {
+    if (!intersects(levels[level], node, searchEnv)) return;
+    int first = node * NODE_CAPACITY;
+    if (level == 0) {
+      for (int c = first, end = Math.min(first + NODE_CAPACITY, items.length); c < end; c++) {
+        if (intersects(envelopes, items[c], searchEnv)) visitor.visit(items[c]);
+      }
+    } else {
+      for (int c = first, end = Math.min(first + NODE_CAPACITY, levels[level - 1].length / 4); c < end; c++) {
+        query(level - 1, c, searchEnv, envelopes, visitor);
+      }
+    }
+  }
+
+  static boolean intersects(float[] bounds, int i, Envelope env) {
+    i *= 4;
+    return !(bounds[i] > env.getMaxX() || bounds[i + 2] < env.getMinX()
+        || bounds[i + 1] > env.getMaxY() || bounds[i + 3] < env.getMinY());
+  }
+
+  /**
+   * Stores the envelope of an item in envelopes, rounding outwards so that
+   * the float envelope contains the double one.
+   */
+  static void setEnvelope(float[] envelopes, int item, Envelope env) {
+    int i = item * 4;
+    if (env.isNull()) {
+      // matches nothing
+      envelopes[i] = envelopes[i + 1] = Float.POSITIVE_INFINITY;
+      envelopes[i + 2] = envelopes[i + 3] = Float.NEGATIVE_INFINITY;
+      return;
+    }
+    envelopes[i] = floor(env.getMinX());
+    envelopes[i + 1] = floor(env.getMinY());
+    envelopes[i + 2] = ceil(env.getMaxX());
+    envelopes[i + 3] = ceil(env.getMaxY());
+  }
+
+  private static float floor(double d) {
+    float f = (float)d;
+    return f > d ? Math.nextDown(f) : f;
+  }
+
+  private static float ceil(double d) {
+    float f = (float)d;
+    return f < d ? Math.nextUp(f) : f;
+  }
+
+  private static int nodeCount(int childCount) {
+    return Math.max(1, (childCount + NODE_CAPACITY - 1) / NODE_CAPACITY);
+  }
+
+  // Sort by x center, cut in vertical slices, sort each slice by y center.
+  // Sorting is done on longs combining a sortable form of the key with the
+  // item number, to avoid boxing.
+  private static int[] sortTileRecursive(float[] envelopes, int size) {
+    long[] keys = new long[size];
+    for (int i = 0; i < size; i++) {
+      keys[i] = key(envelopes[i * 4] / 2f + envelopes[i * 4 + 2] / 2f, i);
+    }
+    Arrays.sort(keys);
+    int leafCount = nodeCount(size);
+    int sliceCount = (int)Math.ceil(Math.sqrt(leafCount));
+    int sliceSize = NODE_CAPACITY * (int)Math.ceil((double)leafCount / sliceCount);
+    for (int start = 0; start < size; start += sliceSize) {
+      int end = Math.min(start + sliceSize, size);
+      for (int k = start; k < end; k++) {
+        int i = (int)keys[k];
+        keys[k] = key(envelopes[i * 4 + 1] / 2f + envelopes[i * 4 + 3] / 2f, i);
+      }
+      Arrays.sort(keys, start, end);
+    }
+    int[] items = new int[size];
+    for (int k = 0; k < size; k++) {
+      items[k] = (int)keys[k];
+    }
+    return items;
+  }
+
+  private static long key(float value, int item) {
+    // NaN (empty envelopes) sort last
+    if (Float.isNaN(value)) value = Float.POSITIVE_INFINITY;
+    int bits = Float.floatToIntBits(value);
+    bits ^= (bits >> 31) & 0x7fffffff;
+    return ((long)bits << 32) | (item & 0xffffffffL);
+  }
+
+  void write(DataOutput out) throws IOException {
+    out.writeInt(items.length);
+    for (int item : items) out.writeInt(item);
+    out.writeInt(levels.length);
+    for (float[] level : levels) {
+      out.writeInt(level.length);
+      for (float f : level) out.writeFloat(f);
+    }
+  }
+
+  static PackedEnvelopeIndex read(DataInput in) throws IOException {
+    int[] items = new int[in.readInt()];
+    for (int i = 0; i < items.length; i++) items[i] = in.readInt();
+    float[][] levels = new float[in.readInt()][];
+    for (int l = 0; l < levels.length; l++) {
+      levels[l] = new float[in.readInt()];
+      for (int i = 0; i < levels[l].length; i++) levels[l][i] = in.readFloat();
+    }
+    return new PackedEnvelopeIndex(items, levels);
+  }
+}
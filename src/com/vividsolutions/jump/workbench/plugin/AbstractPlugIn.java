@@ -337,6 +337,11 @@ public abstract class AbstractPlugIn implements PlugIn, ShortcutEnabled, EnableC
           if (workbenchContext.getWorkbench() != null) {
             workbenchContext.getWorkbench().getFrame().setStatusMessage("");
             Logger.info(I18N.get("plugin.AbstractPlugIn.executing") + " " + plugIn.getName());
+            // plugins with initialize="lazy" may not be initialized yet
+            if (!workbenchContext.getWorkbench().getPlugInManager()
+                .initializeIfDeferred(plugIn)) {
+              return;
+            }
           }
 
           PlugInContext plugInContext = workbenchContext.createPlugInContext();
@@ -0,0 +1,152 @@
+/*
+ * The Unified Mapping Platform (JUMP) is an extensible, interactive GUI for
+ * visualizing and manipulating spatial features with geometry and attributes.
+ *
+ * Copyright (C) 2003 Vivid Solutions
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place - Suite 330, Boston, MA 02111-1307, USA.
+ *
+ * For more information, contact:
+ *
+ * Vivid Solutions Suite #1A 2328 Government Street Victoria BC V8T 5G5 Canada
+ *
+ * (250)385-6040 www.vividsolutions.com
+ */
+package com.vividsolutions.jump.workbench.plugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.vividsolutions.jump.util.StringUtil;
+import com.vividsolutions.jump.workbench.Logger;
+
+/**
+ * Persistent index of the Extension/Configuration class names contained in
+ * extension jars. An entry is keyed by the jar's absolute path and is only
+ * reused as long as the jar's size and modification time are unchanged, so
+ * extension jars are scanned once and not on every start.
+ */
+class ExtensionIndex {
+
+  // no $ ensures that inner classes are ignored as well [ede]
+  // Include "Configuration" for backwards compatibility. [Jon Aquino]
+  private static final Pattern CONFIGURATION_ENTRY =
+      Pattern.compile("[^$]+(Extension|Configuration)\\.class");
+
+  private static final String SEPARATOR = ";";
+
+  private final File indexFile;
+  private final Properties entries = new Properties();
+  private final Set<String> visited = new HashSet<>();
+  private boolean modified = false;
+
+  /**
+   * @param indexFile file to read the index from and store it to, may not
+   *        exist yet
+   */
+  ExtensionIndex(File indexFile) {
+    this.indexFile = indexFile;
+    if (!indexFile.isFile())
+      return;
+    try (InputStream in = new FileInputStream(indexFile)) {
+      entries.load(in);
+    } catch (IOException e) {
+      Logger.warn("Could not read extension index " + indexFile, e);
+      entries.clear();
+    }
+  }
+
+  /**
+   * List all class names in the jar/zip file that end with Extension or
+   * Configuration, from the index if the file is unchanged since it was
+   * last scanned.
+   *
+   * @throws IOException if the file is no zip file
+   */
+  synchronized List<String> classNames(File file) throws IOException {
+    String key = file.getAbsolutePath();
+    String stamp = file.length() + SEPARATOR + file.lastModified();
+    visited.add(key);
+
+    String entry = entries.getProperty(key);
+    if (entry != null && entry.startsWith(stamp + SEPARATOR)) {
+      String names = entry.substring(stamp.length() + SEPARATOR.length());
+      return names.isEmpty() ? new ArrayList<String>()
+          : new ArrayList<>(Arrays.asList(names.split(",")));
+    }
+
+    List<String> classNames = scan(file);
+    entries.setProperty(key,
+        stamp + SEPARATOR + StringUtil.toDelimitedString(classNames, ","));
+    modified = true;
+    return classNames;
+  }
+
+  /**
+   * Store the index if it changed, dropping entries of jars which were not
+   * asked for since the index was loaded (removed or moved extensions).
+   */
+  synchronized void save() {
+    for (Iterator<Object> i = entries.keySet().iterator(); i.hasNext();) {
+      if (!visited.contains(i.next())) {
+        i.remove();
+        modified = true;
+      }
+    }
+    if (!modified)
+      return;
+    try (OutputStream out = new FileOutputStream(indexFile)) {
+      entries.store(out, "OpenJUMP extension index, regenerated automatically");
+      modified = false;
+    } catch (IOException e) {
+      Logger.warn("Could not write extension index " + indexFile, e);
+    }
+  }
+
+  private static List<String> scan(File file) throws IOException {
+    List<String> classNames = new ArrayList<>();
+    try (ZipFile zipFile = new ZipFile(file)) {
+      for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements();) {
+        ZipEntry entry = e.nextElement();
+        // Filter by filename; otherwise we'll be loading all the classes,
+        // which takes significantly longer [Jon Aquino]
+        if (entry.isDirectory()
+            || !CONFIGURATION_ENTRY.matcher(entry.getName()).matches()) {
+          continue;
+        }
+        String className = entry.getName();
+        className = className.substring(0, className.length()
+            - ".class".length());
+        classNames.add(StringUtil.replaceAll(className, "/", "."));
+      }
+    }
+    return classNames;
+  }
+}
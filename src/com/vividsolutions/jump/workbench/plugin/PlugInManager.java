@@ -34,13 +34,16 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.ZipEntry;
+import java.util.Set;
 import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
 
 import org.locationtech.jts.util.Assert;
 import com.vividsolutions.jump.I18N;
@@ -54,6 +57,7 @@ import com.vividsolutions.jump.workbench.WorkbenchProperties;
 import com.vividsolutions.jump.workbench.ui.cursortool.CursorTool;
 import com.vividsolutions.jump.workbench.ui.cursortool.CursorToolPluginWrapper;
 import com.vividsolutions.jump.workbench.ui.plugin.FeatureInstaller;
+import com.vividsolutions.jump.workbench.ui.plugin.PersistentBlackboardPlugIn;
 
 /**
  * Loads plug-ins (or more precisely, Extensions), and any JAR files that they
@@ -62,7 +66,6 @@ import com.vividsolutions.jump.workbench.ui.plugin.FeatureInstaller;
 public class PlugInManager {
     private static final String NOT_INITIALIZED = "com.vividsolutions.jump.workbench.plugin.PlugInManager.could-not-be-initialized";
     private static final String LOADING = "com.vividsolutions.jump.workbench.plugin.PlugInManager.loading";
-    private static final String LOADING_ERROR = "com.vividsolutions.jump.workbench.plugin.PlugInManager.throwable-encountered-loading";
 
     private TaskMonitor monitor;
     private WorkbenchContext context;
@@ -71,6 +74,14 @@ public class PlugInManager {
     private List<File> extensionDirs = new ArrayList<File>();
     private PlugInClassLoader classLoader;
 
+    // name of the file caching the extension class names found in jar files
+    private static final String EXTENSION_INDEX_FILE = "extension-index.properties";
+
+    // plug-ins configured with initialize="lazy" waiting to be initialized
+    private final Map<PlugIn, PlugInContext> deferredPlugIns = new LinkedHashMap<>();
+    // lazy plug-ins whose initialization failed, never to be run
+    private final Set<PlugIn> failedPlugIns = new HashSet<>();
+
     /**
      * @param plugInDirectory
      *            null to leave unspecified
@@ -175,9 +186,13 @@ public class PlugInManager {
       // screen ASAP. [Jon Aquino]
       if (!extensionDirs.isEmpty()) {
         start = Timer.milliSecondsSince(0);
+        ExtensionIndex index = new ExtensionIndex(new File(
+            PersistentBlackboardPlugIn.getPersistenceDirectory(),
+            EXTENSION_INDEX_FILE));
         for (File dir : extensionDirs) {
-          configurations.addAll(findConfigurations(dir));
+          configurations.addAll(findConfigurations(dir, index));
         }
+        index.save();
         Logger.info("Finding all OJ extensions took "
             + Timer.secondsSinceString(start) + "s");
       }
@@ -233,6 +248,7 @@ public class PlugInManager {
         if (initSetting instanceof String
             && initSetting.equals(WorkbenchProperties.ATTR_VALUE_FALSE))
           continue;
+        boolean lazy = WorkbenchProperties.ATTR_VALUE_LAZY.equals(initSetting);
 
         monitor.report(I18N.get(LOADING) + " " + className);
 
@@ -253,13 +269,28 @@ public class PlugInManager {
             plugIn = (PlugIn) o;
           }
 
-          plugIn.initialize(pc);
-
           // get plugin's menu settings
           Map<String, Map> menuSettings = props.getSettings(new String[] {
               WorkbenchProperties.KEY_PLUGIN, className,
               WorkbenchProperties.KEY_MENUS});
 
+          // a plugin installing its own menus in initialize() would have no
+          // menu entry until it is initialized
+          if (lazy && menuSettings.isEmpty()) {
+            Logger.warn(className + " declares no menus and can not be initialized lazily");
+            lazy = false;
+          }
+
+          // lazy plugins are installed right away but initialized on first
+          // use or when the workbench is idle after startup
+          if (lazy) {
+            synchronized (deferredPlugIns) {
+              deferredPlugIns.put(plugIn, pc);
+            }
+          } else {
+            plugIn.initialize(pc);
+          }
+
           // interpret menu settings
           for (Map.Entry<String, Map> entry : menuSettings.entrySet()) {
 
@@ -290,12 +321,20 @@ public class PlugInManager {
 //                    "install " + className + " to " + menuKey + " = "
 //                        + installSetting + " with orderid = " + orderSetting);
             // install, or not
-            if (installSetting.equals(WorkbenchProperties.ATTR_VALUE_TRUE))
-              pc.getFeatureInstaller().addMenuPlugin(menuKey, plugIn);
+            if (installSetting.equals(WorkbenchProperties.ATTR_VALUE_TRUE)) {
+              if (lazy)
+                pc.getFeatureInstaller().addMenuPlugin(menuKey, plugIn,
+                    createDeferredEnableCheck(plugIn, plugIn));
+              else
+                pc.getFeatureInstaller().addMenuPlugin(menuKey, plugIn);
+            }
           }
 
           // register shortcuts of plugins
-          AbstractPlugIn.registerShortcuts(plugIn);
+          if (lazy)
+            registerDeferredShortcuts(plugIn);
+          else
+            AbstractPlugIn.registerShortcuts(plugIn);
           
           context
               .getWorkbench()
@@ -312,6 +351,95 @@ public class PlugInManager {
       }
     }
 
+    /**
+     * Initialize the given plug-in now if its initialization was deferred
+     * with initialize="lazy" and did not run yet. Called before a plug-in
+     * is executed, so it is always initialized on first use.
+     * 
+     * @return false if the deferred initialization failed
+     */
+    public boolean initializeIfDeferred(PlugIn plugIn) {
+      PlugInContext pc;
+      synchronized (deferredPlugIns) {
+        if (failedPlugIns.contains(plugIn))
+          return false;
+        pc = deferredPlugIns.remove(plugIn);
+      }
+      if (pc == null)
+        return true;
+
+      long start = Timer.milliSecondsSince(0);
+      try {
+        plugIn.initialize(pc);
+        Logger.info("Deferred initialization of " + plugIn.getClass().getName()
+            + " took " + Timer.secondsSinceString(start) + "s");
+        return true;
+      } catch (Throwable e) {
+        synchronized (deferredPlugIns) {
+          failedPlugIns.add(plugIn);
+        }
+        context.getErrorHandler().handleThrowable(e);
+        context.getWorkbench().getFrame()
+            .log(plugIn.getClass().getName() + " " + I18N.get(NOT_INITIALIZED), this.getClass());
+        return false;
+      }
+    }
+
+    /**
+     * Create the EnableCheck of a plug-in whose initialization may be
+     * deferred. Menu items and shortcuts query it before the plug-in is
+     * run, so it initializes lazyPlugIn first, then delegates to the
+     * EnableCheck of plugIn, which is lazyPlugIn itself or one of its
+     * shortcut enabled plug-ins.
+     */
+    public EnableCheck createDeferredEnableCheck(final PlugIn lazyPlugIn,
+        final PlugIn plugIn) {
+      return new EnableCheck() {
+        private EnableCheck check;
+        public String check(JComponent component) {
+          if (!initializeIfDeferred(lazyPlugIn))
+            return lazyPlugIn.getName() + " " + I18N.get(NOT_INITIALIZED);
+          // fetched once initialized, the plug-in may create it in initialize()
+          if (check == null)
+            check = AbstractPlugIn.getEnableCheck(plugIn);
+          return check == null ? null : check.check(component);
+        }
+      };
+    }
+
+    /**
+     * Same as AbstractPlugIn#registerShortcuts, but with EnableChecks
+     * initializing the lazy plug-in before the shortcut is checked and run.
+     */
+    private void registerDeferredShortcuts(PlugIn lazyPlugIn) {
+      for (PlugIn p : AbstractPlugIn.fetchShortcutEnabledPlugins(lazyPlugIn)) {
+        context.getWorkbench().getFrame().addKeyboardShortcut(
+            ((ShortcutEnabled) p).getShortcutKeys(),
+            ((ShortcutEnabled) p).getShortcutModifiers(), p,
+            createDeferredEnableCheck(lazyPlugIn, p));
+      }
+    }
+
+    /**
+     * Schedule the initialization of all plug-ins deferred so far on the
+     * event dispatch thread, one plug-in per event so the gui stays
+     * responsive in between. Most plug-ins touch swing components in
+     * initialize(), so this can't be moved to a worker thread.
+     */
+    public void initializeDeferredPlugIns() {
+      List<PlugIn> plugIns;
+      synchronized (deferredPlugIns) {
+        plugIns = new ArrayList<>(deferredPlugIns.keySet());
+      }
+      for (final PlugIn plugIn : plugIns) {
+        SwingUtilities.invokeLater(new Runnable() {
+          public void run() {
+            initializeIfDeferred(plugIn);
+          }
+        });
+      }
+    }
+
     public static String name(Configuration configuration) {
         if (configuration instanceof Extension) {
             return ((Extension) configuration).getName();
@@ -387,7 +515,8 @@ public class PlugInManager {
         return files;
     }
 
-    private Collection findConfigurations(File plugInDirectory) throws Exception {
+    private Collection findConfigurations(File plugInDirectory,
+        ExtensionIndex index) throws Exception {
       ArrayList configurations = new ArrayList();
       long start;
       for (Iterator i = findFilesRecursively( plugInDirectory, false ).iterator(); i.hasNext();) {
@@ -399,7 +528,7 @@ public class PlugInManager {
         monitor.report(msg);
         try {
           // add all extensions contained in this zip file
-          configurations.addAll(findConfigurations(classNames(new ZipFile(file))));
+          configurations.addAll(findConfigurations(index.classNames(file)));
         } catch (ZipException e) {
           // Might not be a zipfile. Eat it. [Jon Aquino]
         }
@@ -426,84 +555,6 @@ public class PlugInManager {
       return urls;
     }
 
-    private List classes(ZipFile zipFile, ClassLoader classLoader) 
-    {
-        ArrayList classes = new ArrayList();
-        for (Enumeration e = zipFile.entries(); e.hasMoreElements();) {
-            ZipEntry entry = (ZipEntry) e.nextElement();
-            // Filter by filename; otherwise we'll be loading all the classes,
-            // which takes significantly longer [Jon Aquino]
-            // no $ ensures that inner classes are ignored as well [ede]
-            // Include "Configuration" for backwards compatibility. [Jon Aquino]
-            if (!(entry.getName().matches("[^$]+(Extension|Configuration)\\.class"))
-                  || entry.isDirectory()) {
-                continue;
-            }
-            Class c = toClass(entry, classLoader);
-            if (c != null) {
-                classes.add(c);
-            }
-        }
-        
-        return classes;
-    }
-
-    /**
-     * list all class names in the zip file that end with Extension or Configuration
-     */
-    private List<String> classNames(ZipFile zipFile) 
-    {
-        ArrayList<String> classNames = new ArrayList();
-        for (Enumeration e = zipFile.entries(); e.hasMoreElements();) {
-            ZipEntry entry = (ZipEntry) e.nextElement();
-            // Filter by filename; otherwise we'll be loading all the classes,
-            // which takes significantly longer [Jon Aquino]
-            // no $ ensures that inner classes are ignored as well [ede]
-            // Include "Configuration" for backwards compatibility. [Jon Aquino]
-            if (!(entry.getName().matches("[^$]+(Extension|Configuration)\\.class"))
-                  || entry.isDirectory()) {
-                continue;
-            }
-            String name = toClassName(entry, classLoader);
-            classNames.add(name);
-        }
-        
-        return classNames;
-    }
-
-    private Class toClass(ZipEntry entry, ClassLoader classLoader) 
-    {
-        String className = entry.getName();
-        className = className.substring(0, className.length()
-                - ".class".length());
-        className = StringUtil.replaceAll(className, "/", ".");
-        Class candidate;
-        try {
-          candidate = classLoader.loadClass(className);
-        } catch (ClassNotFoundException e) {
-            Assert.shouldNeverReachHere("Class not found: " + className
-                    + ". Refine class name algorithm.");
-            return null;
-        } catch (Throwable t) {
-            Logger.error(I18N.get(LOADING_ERROR) + " " + className + ":");
-            //e.g. java.lang.VerifyError: class
-            // org.apache.xml.serialize.XML11Serializer
-            //overrides final method [Jon Aquino]
-            return null;
-        }
-        return candidate;
-    }
-
-    private String toClassName(ZipEntry entry, ClassLoader classLoader) 
-    {
-        String className = entry.getName();
-        className = className.substring(0, className.length()
-                - ".class".length());
-        className = StringUtil.replaceAll(className, "/", ".");
-
-        return className;
-    }
-
     public Collection getConfigurations() {
         return Collections.unmodifiableCollection(configurations);
     }
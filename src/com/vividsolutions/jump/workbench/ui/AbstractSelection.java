@@ -32,7 +32,10 @@
 
 package com.vividsolutions.jump.workbench.ui;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -49,12 +52,25 @@ import com.vividsolutions.jump.workbench.model.Layer;
 
 /**
  * Superclass for holding a user-selected collection of {@link Feature} items.
+ * <p>
+ * For each selected feature, the selection keeps either the number of items
+ * of the feature if all its items are selected (the common case of a whole
+ * feature selection, which needs no item comparison and no per feature
+ * collection), or a bitmap of the indices of the selected items. The number
+ * of selected features and items is maintained, so that counting them does
+ * not require to build the selected items.
  */
 // [mmichaud 2011-09-20] use generics and improve memory usage (initialize
 // lists with size 1 only)
 public abstract class AbstractSelection {
-    
-    private Map<Layer,Map<Feature,Set<Integer>>> layerMap = new HashMap<>();
+
+    // for each feature with selected items : an Integer (the item count, if
+    // all items are selected) or a BitSet of selected item indices
+    private Map<Layer,Map<Feature,Object>> layerMap = new HashMap<>();
+
+    private int featureCount = 0;
+
+    private int itemCount = 0;
 
     public abstract String getRendererContentID();
 
@@ -74,6 +90,13 @@ public abstract class AbstractSelection {
      */
     public abstract List<Geometry> items(Geometry geometry);
 
+    /**
+     * Returns the number of items composing geometry.
+     */
+    protected int itemCount(Geometry geometry) {
+        return items(geometry).size();
+    }
+
     /**
      * Returns items having these indices in geometry.
      * @param geometry geometry to analyse
@@ -88,24 +111,127 @@ public abstract class AbstractSelection {
         return items;
     }
 
+    private Map<Feature,Object> selectedFeatures(Layer layer) {
+        Map<Feature,Object> map = layerMap.get(layer);
+        if (map == null) {
+            map = new LinkedHashMap<>();
+            layerMap.put(layer, map);
+        }
+        return map;
+    }
+
     /**
      * Returns a mapping of each feature to indices of selected items in this
-     * feature.
-     * Note that some features in the map may not have selected items.
+     * feature. The map is a read-only view of the selection.
      */
     public Map<Feature,Set<Integer>> getFeatureToSelectedItemIndexCollectionMap(Layer layer) {
-        if (!layerMap.containsKey(layer)) {
-            layerMap.put(layer, new LinkedHashMap<Feature,Set<Integer>>());
+        final Map<Feature,Object> map = layerMap.containsKey(layer) ?
+                layerMap.get(layer) : Collections.<Feature,Object>emptyMap();
+        return new AbstractMap<Feature,Set<Integer>>() {
+            public Set<Integer> get(Object feature) {
+                Object value = map.get(feature);
+                return value == null ? null : toIndexSet(value);
+            }
+            public boolean containsKey(Object feature) {
+                return map.containsKey(feature);
+            }
+            public Set<Feature> keySet() {
+                return Collections.unmodifiableSet(map.keySet());
+            }
+            public int size() {
+                return map.size();
+            }
+            public Set<Map.Entry<Feature,Set<Integer>>> entrySet() {
+                return new AbstractSet<Map.Entry<Feature,Set<Integer>>>() {
+                    public int size() {
+                        return map.size();
+                    }
+                    public Iterator<Map.Entry<Feature,Set<Integer>>> iterator() {
+                        final Iterator<Map.Entry<Feature,Object>> it = map.entrySet().iterator();
+                        return new Iterator<Map.Entry<Feature,Set<Integer>>>() {
+                            public boolean hasNext() {
+                                return it.hasNext();
+                            }
+                            public Map.Entry<Feature,Set<Integer>> next() {
+                                Map.Entry<Feature,Object> entry = it.next();
+                                return new SimpleImmutableEntry<>(
+                                        entry.getKey(), toIndexSet(entry.getValue()));
+                            }
+                        };
+                    }
+                };
+            }
+        };
+    }
+
+    private static Set<Integer> toIndexSet(Object value) {
+        if (value instanceof Integer) {
+            int count = (Integer)value;
+            if (count == 1) return Collections.singleton(0);
+            Set<Integer> indices = new LinkedHashSet<>(count);
+            for (int i = 0; i < count; i++) indices.add(i);
+            return Collections.unmodifiableSet(indices);
         }
-        return layerMap.get(layer);
+        BitSet bits = (BitSet)value;
+        Set<Integer> indices = new LinkedHashSet<>(bits.cardinality());
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) indices.add(i);
+        return Collections.unmodifiableSet(indices);
+    }
+
+    private static int cardinality(Object value) {
+        return value instanceof Integer ? (Integer)value : ((BitSet)value).cardinality();
     }
 
     /**
      * Returns indices of selected items in this feature.
      */
     public Set<Integer> getSelectedItemIndices(Layer layer, Feature feature) {
-        Set<Integer> indices = getFeatureToSelectedItemIndexCollectionMap(layer).get(feature);
-        return indices == null ? Collections.<Integer>emptySet() : indices;
+        Map<Feature,Object> map = layerMap.get(layer);
+        Object value = map == null ? null : map.get(feature);
+        return value == null ? Collections.<Integer>emptySet() : toIndexSet(value);
+    }
+
+    /**
+     * Returns true if some items of feature are selected.
+     */
+    public boolean hasSelectedItems(Layer layer, Feature feature) {
+        Map<Feature,Object> map = layerMap.get(layer);
+        return map != null && map.containsKey(feature);
+    }
+
+    /**
+     * Returns the number of features with selected items.
+     */
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    /**
+     * Returns the number of selected items.
+     */
+    public int getSelectedItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Returns the IDs of the features of layer with selected items.
+     * Features with a negative ID (IDs allocated after the int range has
+     * been exhausted wrap to negative values), which a BitSet can not hold,
+     * are added to negativeIds.
+     * @param negativeIds the set receiving negative IDs, or null to ignore
+     * them
+     */
+    public BitSet getSelectedFeatureIds(Layer layer, Set<Integer> negativeIds) {
+        BitSet ids = new BitSet();
+        Map<Feature,Object> map = layerMap.get(layer);
+        if (map != null) {
+            for (Feature feature : map.keySet()) {
+                int id = feature.getID();
+                if (id >= 0) ids.set(id);
+                else if (negativeIds != null) negativeIds.add(id);
+            }
+        }
+        return ids;
     }
 
     /**
@@ -113,45 +239,47 @@ public abstract class AbstractSelection {
      */
     public Map<Feature,List<Geometry>> getFeatureToSelectedItemCollectionMap(Layer layer) {
         Map<Feature,List<Geometry>> collectionMap = new LinkedHashMap<>();
-        for (Feature feature : getFeatureToSelectedItemIndexCollectionMap(layer).keySet()) {
-            Set<Integer> set = getSelectedItemIndices(layer, feature);
-            if (set != null) {
-                collectionMap.put(feature, items(feature.getGeometry(), set));
-            }
+        Map<Feature,Object> map = layerMap.get(layer);
+        if (map == null) return collectionMap;
+        for (Map.Entry<Feature,Object> entry : map.entrySet()) {
+            Feature feature = entry.getKey();
+            collectionMap.put(feature, selectedItems(feature.getGeometry(), entry.getValue()));
         }
         return collectionMap;
     }
 
+    private List<Geometry> selectedItems(Geometry geometry, Object value) {
+        if (value instanceof Integer) {
+            return items(geometry);
+        }
+        return items(geometry, toIndexSet(value));
+    }
+
     public Collection<Layer> getLayersWithSelectedItems() {
         List<Layer> layersWithSelectedItems = new ArrayList<>();
-        for (Layer layer : layerMap.keySet()) {
-            if (!getFeaturesWithSelectedItems(layer).isEmpty()) {
-                layersWithSelectedItems.add(layer);
+        for (Map.Entry<Layer,Map<Feature,Object>> entry : layerMap.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                layersWithSelectedItems.add(entry.getKey());
             }
         }
         return layersWithSelectedItems;
     }
 
     public Collection<Feature> getFeaturesWithSelectedItems() {
-        List<Feature> featuresWithSelectedItems = new ArrayList<>();
-        for (Layer layer : layerMap.keySet()) {
-            featuresWithSelectedItems.addAll(getFeaturesWithSelectedItems(layer));
+        List<Feature> featuresWithSelectedItems = new ArrayList<>(featureCount);
+        for (Map<Feature,Object> map : layerMap.values()) {
+            featuresWithSelectedItems.addAll(map.keySet());
         }
         return featuresWithSelectedItems;
     }
 
     public Collection<Feature> getFeaturesWithSelectedItems(Layer layer) {
-        List<Feature> featuresWithSelectedItems = new ArrayList<>();
-        for (Feature feature : getFeatureToSelectedItemIndexCollectionMap(layer).keySet()) {
-            if (!getFeatureToSelectedItemIndexCollectionMap(layer).get(feature).isEmpty()) {
-                featuresWithSelectedItems.add(feature);
-            }
-        }
-        return featuresWithSelectedItems;
+        Map<Feature,Object> map = layerMap.get(layer);
+        return map == null ? new ArrayList<Feature>() : new ArrayList<>(map.keySet());
     }
 
     public Collection<Geometry> getSelectedItems() {
-        ArrayList<Geometry> selectedItems = new ArrayList<>(1);
+        ArrayList<Geometry> selectedItems = new ArrayList<>(itemCount);
         for (Layer layer : layerMap.keySet()) {
             selectedItems.addAll(getSelectedItems(layer));
         }
@@ -160,8 +288,10 @@ public abstract class AbstractSelection {
 
     public Collection<Geometry> getSelectedItems(Layer layer) {
         List<Geometry> selectedItems = new ArrayList<>(1);
-        for (Feature feature : getFeatureToSelectedItemIndexCollectionMap(layer).keySet()) {
-            selectedItems.addAll(getSelectedItems(layer, feature));
+        Map<Feature,Object> map = layerMap.get(layer);
+        if (map == null) return selectedItems;
+        for (Map.Entry<Feature,Object> entry : map.entrySet()) {
+            selectedItems.addAll(selectedItems(entry.getKey().getGeometry(), entry.getValue()));
         }
         return selectedItems;
     }
@@ -176,9 +306,10 @@ public abstract class AbstractSelection {
      * the selection indices.
      */
     public Collection<Geometry> getSelectedItems(Layer layer, Feature feature, Geometry geometry) {
-        Set<Integer> indices = getFeatureToSelectedItemIndexCollectionMap(layer).get(feature);
-        if (indices == null) indices = Collections.emptySet();
-        return items(geometry, indices);
+        Map<Feature,Object> map = layerMap.get(layer);
+        Object value = map == null ? null : map.get(feature);
+        if (value == null) return new ArrayList<>(1);
+        return selectedItems(geometry, value);
     }
 
     /**
@@ -227,14 +358,26 @@ public abstract class AbstractSelection {
         selectionManager.setPanelUpdatesEnabled(false);
         try {
             unselectInDescendants(layer, feature, itemsToSelect);
-            Set<Integer> featureIndices = getFeatureToSelectedItemIndexCollectionMap(layer).get(feature);
-            if (featureIndices == null) {
-                featureIndices = new LinkedHashSet<Integer>(1);
-                getFeatureToSelectedItemIndexCollectionMap(layer).put(feature, featureIndices);
-            }
             Set<Integer> itemIndices = indices(feature.getGeometry(), itemsToSelect);
-            if (itemIndices != null) {
-                featureIndices.addAll(itemIndices);
+            if (itemIndices != null && !itemIndices.isEmpty()) {
+                Map<Feature,Object> map = selectedFeatures(layer);
+                Object value = map.get(feature);
+                if (!(value instanceof Integer)) {
+                    BitSet bits = (BitSet)value;
+                    int oldCount = 0;
+                    if (bits == null) {
+                        bits = new BitSet();
+                        featureCount++;
+                    } else {
+                        oldCount = bits.cardinality();
+                    }
+                    for (Integer index : itemIndices) {
+                        if (index >= 0) bits.set(index);
+                    }
+                    itemCount += bits.cardinality() - oldCount;
+                    if (bits.isEmpty()) featureCount--;
+                    else map.put(feature, bits);
+                }
             }
         } finally {
             selectionManager.setPanelUpdatesEnabled(originalPanelUpdatesEnabled);
@@ -246,14 +389,16 @@ public abstract class AbstractSelection {
         boolean originalPanelUpdatesEnabled = selectionManager.arePanelUpdatesEnabled();
         selectionManager.setPanelUpdatesEnabled(false);
         try {
+            Map<Feature,Object> map = layerMap.get(layer);
+            Object value = map == null ? null : map.get(feature);
             Set<Integer> itemsIndices = indices(feature.getGeometry(), items);
-            Set<Integer> featureIndices = getFeatureToSelectedItemIndexCollectionMap(layer).get(feature);
-            if (featureIndices != null && itemsIndices != null) {
-                featureIndices.removeAll(itemsIndices);
-                // [mmichaud 2013-01-10] remove feature from layerMap if no more item is selected
-                if (featureIndices.isEmpty()) {
-                    getFeatureToSelectedItemIndexCollectionMap(layer).remove(feature);
+            if (value != null && itemsIndices != null) {
+                int oldCount = cardinality(value);
+                BitSet bits = toBitSet(value);
+                for (Integer index : itemsIndices) {
+                    if (index >= 0) bits.clear(index);
                 }
+                setSelectedItems(map, feature, oldCount, bits);
             }
         } finally {
             selectionManager.setPanelUpdatesEnabled(originalPanelUpdatesEnabled);
@@ -261,6 +406,29 @@ public abstract class AbstractSelection {
         updatePanel();
     }
 
+    private static BitSet toBitSet(Object value) {
+        if (value instanceof Integer) {
+            BitSet bits = new BitSet();
+            bits.set(0, (Integer)value);
+            return bits;
+        }
+        return (BitSet)value;
+    }
+
+    // replaces the selected items of feature, and updates counts
+    private void setSelectedItems(Map<Feature,Object> map, Feature feature,
+                                  int oldCount, BitSet bits) {
+        itemCount -= oldCount;
+        if (bits.isEmpty()) {
+            // [mmichaud 2013-01-10] remove feature from layerMap if no more item is selected
+            map.remove(feature);
+            featureCount--;
+        } else {
+            map.put(feature, bits);
+            itemCount += bits.cardinality();
+        }
+    }
+
     public Collection<Geometry> itemsNotSelectedInAncestors(Layer layer, Feature feature, Collection<Geometry> items) {
         ArrayList<Geometry> itemsNotSelectedInAncestors = new ArrayList<>(1);
         if (layer.isSelectable()) {
@@ -277,8 +445,53 @@ public abstract class AbstractSelection {
 
     protected abstract void unselectInDescendants(Layer layer, Feature feature, Collection<Geometry> items);
 
+    private boolean hasSelectedItemsInAncestors(Layer layer, Feature feature) {
+        for (AbstractSelection ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+            if (ancestor.hasSelectedItems(layer, feature)) return true;
+        }
+        return false;
+    }
+
     public void selectItems(Layer layer, Feature feature) {
-        selectItems(layer, feature, items(feature.getGeometry()));
+        boolean originalPanelUpdatesEnabled = selectionManager.arePanelUpdatesEnabled();
+        selectionManager.setPanelUpdatesEnabled(false);
+        try {
+            selectAllItems(layer, feature);
+        } finally {
+            selectionManager.setPanelUpdatesEnabled(originalPanelUpdatesEnabled);
+        }
+        updatePanel();
+    }
+
+    /**
+     * Selects all the items of feature. If no ancestor selection has items
+     * of this feature, the feature is selected as a whole, without comparing
+     * its items one by one.
+     */
+    private void selectAllItems(Layer layer, Feature feature) {
+        if (hasSelectedItemsInAncestors(layer, feature)) {
+            selectItems(layer, feature, items(feature.getGeometry()));
+            return;
+        }
+        if (!layer.isSelectable()) return;
+        // all the items of descendant selections belong to the selected items
+        for (AbstractSelection descendant = child; descendant != null; descendant = descendant.child) {
+            descendant.unselectItems(layer, feature);
+        }
+        int count = itemCount(feature.getGeometry());
+        Map<Feature,Object> map = selectedFeatures(layer);
+        Object oldValue = map.get(feature);
+        if (oldValue != null) {
+            itemCount -= cardinality(oldValue);
+            featureCount--;
+        }
+        if (count > 0) {
+            map.put(feature, count);
+            itemCount += count;
+            featureCount++;
+        } else if (oldValue != null) {
+            map.remove(feature);
+        }
     }
 
     public void selectItems(Layer layer, Collection features) {
@@ -286,8 +499,7 @@ public abstract class AbstractSelection {
         selectionManager.setPanelUpdatesEnabled(false);
         try {
             for (Object object : features) {
-                Feature feature = (Feature) object;
-                selectItems(layer, feature);
+                selectAllItems(layer, (Feature) object);
             }
         } finally {
             selectionManager.setPanelUpdatesEnabled(originalPanelUpdatesEnabled);
@@ -304,8 +516,8 @@ public abstract class AbstractSelection {
         j.hasNext();
         for (Feature feature : features) {
             Feature oldFeatureClone = (Feature) j.next();
-            if (items(feature.getGeometry()).size()
-                != items(oldFeatureClone.getGeometry()).size()) {
+            if (hasSelectedItems(layer, feature) &&
+                    itemCount(feature.getGeometry()) != itemCount(oldFeatureClone.getGeometry())) {
                 featuresToUnselect.add(feature);
             }
         }
@@ -314,11 +526,17 @@ public abstract class AbstractSelection {
 
     public void unselectItems() {
         layerMap.clear();
+        featureCount = 0;
+        itemCount = 0;
         updatePanel();
     }
 
     public void unselectItems(Layer layer) {
-        layerMap.remove(layer);
+        Map<Feature,Object> map = layerMap.remove(layer);
+        if (map != null) {
+            for (Object value : map.values()) itemCount -= cardinality(value);
+            featureCount -= map.size();
+        }
         updatePanel();
     }
 
@@ -336,18 +554,24 @@ public abstract class AbstractSelection {
     }
 
     public void unselectItems(Layer layer, Feature feature) {
-        getFeatureToSelectedItemIndexCollectionMap(layer).remove(feature);
+        Map<Feature,Object> map = layerMap.get(layer);
+        Object value = map == null ? null : map.remove(feature);
+        if (value != null) {
+            itemCount -= cardinality(value);
+            featureCount--;
+        }
         // [mmichaud 2011-09-24 : fix 2792806]
         //updatePanel();
     }
 
     public void unselectItem(Layer layer, Feature feature, int selectedItemIndex) {
-        Set<Integer> indices = getFeatureToSelectedItemIndexCollectionMap(layer).get(feature);
-        if (indices != null) {
-            indices.remove(selectedItemIndex);
-            if (indices.isEmpty()) {
-                getFeatureToSelectedItemIndexCollectionMap(layer).remove(feature);
-            }
+        Map<Feature,Object> map = layerMap.get(layer);
+        Object value = map == null ? null : map.get(feature);
+        if (value != null) {
+            int oldCount = cardinality(value);
+            BitSet bits = toBitSet(value);
+            bits.clear(selectedItemIndex);
+            setSelectedItems(map, feature, oldCount, bits);
         }
     }
 
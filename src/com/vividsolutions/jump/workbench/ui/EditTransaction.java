@@ -37,7 +37,9 @@ import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.util.Assert;
 import com.vividsolutions.jump.I18N;
 import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.geom.GeometryStoragePolicy;
 import com.vividsolutions.jump.workbench.model.Layer;
+import com.vividsolutions.jump.workbench.model.UndoGeometryStore;
 import com.vividsolutions.jump.workbench.model.UndoableCommand;
 
 import java.util.*;
@@ -180,7 +182,7 @@ public class EditTransaction {
         for (Iterator i = selectionManager.getFeaturesWithSelectedItems(layer)
                                                    .iterator(); i.hasNext(); ) {
             Feature feature = (Feature) i.next();
-            Geometry newGeometry = (Geometry) feature.getGeometry().clone();
+            Geometry newGeometry = GeometryStoragePolicy.editableCopy(feature.getGeometry());
             ArrayList selectedItems = new ArrayList();
             for (Iterator j = selectionManager.getSelections().iterator(); j.hasNext(); ) {
                 AbstractSelection selection = (AbstractSelection) j.next();
@@ -354,22 +356,73 @@ public class EditTransaction {
     }
 
     protected UndoableCommand createCommand() {
-        UndoableCommand command = new UndoableCommand(name, layer) {
-            public void dispose() {
-                super.dispose();
-                features.clear();
-                proposedGeometries.clear();
-                originalGeometries.clear();
+        return new GeometryCommand(name, layer, features, allowAddingAndRemovingFeatures,
+            originalGeometries, proposedGeometries);
+    }
+
+    /**
+     * Switches the geometries of the features of a transaction. The
+     * geometries of the transaction are used for the first execution only;
+     * the undo history keeps them encoded in the UndoGeometryStore of the
+     * LayerManager, which bounds the memory they use.
+     */
+    private static class GeometryCommand extends UndoableCommand {
+
+        private final Set features;
+        private final boolean allowAddingAndRemovingFeatures;
+        private Map<Integer,Geometry> originalGeometries;
+        private Map<Integer,Geometry> proposedGeometries;
+        private UndoGeometryStore.Record record;
+
+        GeometryCommand(String name, Layer layer, Set features,
+                        boolean allowAddingAndRemovingFeatures,
+                        Map<Integer,Geometry> originalGeometries,
+                        Map<Integer,Geometry> proposedGeometries) {
+            super(name, layer);
+            this.features = features;
+            this.allowAddingAndRemovingFeatures = allowAddingAndRemovingFeatures;
+            this.originalGeometries = originalGeometries;
+            this.proposedGeometries = proposedGeometries;
+            if (layer.getLayerManager() != null) {
+                record = layer.getLayerManager().getUndoableEditReceiver()
+                    .getGeometryStore().record(originalGeometries, proposedGeometries);
             }
-            public void execute() {
-                changeGeometries(proposedGeometries, originalGeometries, layer);
+        }
+
+        public void dispose() {
+            super.dispose();
+            features.clear();
+            originalGeometries = null;
+            proposedGeometries = null;
+            if (record != null) {
+                record.dispose();
+                record = null;
             }
+        }
 
-            public void unexecute() {
-                changeGeometries(originalGeometries, proposedGeometries, layer);
+        public void execute() {
+            if (record == null || proposedGeometries != null) {
+                changeGeometries(features, allowAddingAndRemovingFeatures,
+                    proposedGeometries, originalGeometries, getLayer());
+                if (record != null) {
+                    originalGeometries = null;
+                    proposedGeometries = null;
+                }
+            } else {
+                changeGeometries(features, allowAddingAndRemovingFeatures,
+                    record.getAfter(), record.getBefore(), getLayer());
             }
-        };
-        return command;
+        }
+
+        public void unexecute() {
+            if (record == null) {
+                changeGeometries(features, allowAddingAndRemovingFeatures,
+                    originalGeometries, proposedGeometries, getLayer());
+            } else {
+                changeGeometries(features, allowAddingAndRemovingFeatures,
+                    record.getBefore(), record.getAfter(), getLayer());
+            }
+        }
     }
 
     private Map<Integer,Geometry> geometryClones(Collection features) {
@@ -378,7 +431,7 @@ public class EditTransaction {
             Feature feature = (Feature) i.next();
             // [mmichaud 2011-09-17] Tried to get rid of clone, but some
             // transactions need that (ex. SnapVerticesOp)
-            geometryClones.put(feature.getID(), (Geometry)feature.getGeometry().clone());
+            geometryClones.put(feature.getID(), GeometryStoragePolicy.editableCopy(feature.getGeometry()));
             //geometryClones.put(feature.getID(), feature.getGeometry());
         }
         return geometryClones;
@@ -386,13 +439,18 @@ public class EditTransaction {
 
     /**
      * Switch features between old geometries and new Geometries
+     * @param features the features of the transaction
+     * @param allowAddingAndRemovingFeatures whether empty geometries mean
+     * that features are added or removed
      * @param newGeometries an empty geometry indicates that we should remove 
      * the feature to the layer
      * @param oldGeometries an empty geometry indicates that we should add
      * the feature to the layer
      * @param layer the layer where edit operations take place
      */
-    private void changeGeometries(Map<Integer,Geometry> newGeometries, 
+    private static void changeGeometries(Collection features,
+                                  boolean allowAddingAndRemovingFeatures,
+                                  Map<Integer,Geometry> newGeometries, 
                                   Map<Integer,Geometry> oldGeometries, 
                                   Layer layer) {
         ArrayList modifiedFeatures = new ArrayList();
@@ -51,6 +51,10 @@ public class FeatureSelection extends AbstractSelection {
         return items;
     }
     
+    protected int itemCount(Geometry geometry) {
+        return 1;
+    }
+    
     public FeatureSelection(SelectionManager selectionManager) {
         super(selectionManager);
     }
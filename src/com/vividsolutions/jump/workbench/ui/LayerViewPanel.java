@@ -74,6 +74,7 @@ import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryCollection;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.util.Assert;
+import org.openjump.core.ui.plugin.cts.DisplayReprojection;
 import com.vividsolutions.jump.feature.Feature;
 import com.vividsolutions.jump.util.Blackboard;
 import com.vividsolutions.jump.workbench.JUMPWorkbench;
@@ -341,12 +342,13 @@ public class LayerViewPanel extends JPanel
 
 			HashSet features = new HashSet();
 
-			for (Iterator j = layer.getFeatureCollectionWrapper().query(
-					fence.getEnvelopeInternal()).iterator(); j.hasNext();) {
+			// layers reprojected for display are picked where they are drawn
+			for (Iterator j = DisplayReprojection.get(getLayerManager()).getFeatures(
+					layer, fence.getEnvelopeInternal()).iterator(); j.hasNext();) {
 				Feature candidate = (Feature) j.next();
 
 				if (intersects(candidate.getGeometry(), fence)) {
-					features.add(candidate);
+					features.add(DisplayReprojection.getSourceFeature(candidate));
 				}
 			}
 
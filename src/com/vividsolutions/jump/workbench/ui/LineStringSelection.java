@@ -90,7 +90,7 @@ public class LineStringSelection extends AbstractSelection {
     protected boolean selectedInAncestors(Layer layer, Feature feature, Geometry item) {
         Assert.isTrue(getParent().getParent() instanceof FeatureSelection);
         Assert.isTrue(getParent() instanceof PartSelection);        
-        if (getParent().getParent().getFeaturesWithSelectedItems().contains(feature)) { return true; }
+        if (getParent().getParent().hasSelectedItems(layer, feature)) { return true; }
         for (Geometry selectedPart : getParent().getSelectedItems(layer, feature)) {
             if (items(selectedPart).contains(item)) { return true; }
         }
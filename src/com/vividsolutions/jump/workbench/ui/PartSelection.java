@@ -78,7 +78,7 @@ public class PartSelection extends AbstractSelection {
 
     protected boolean selectedInAncestors(Layer layer, Feature feature, Geometry item) {
         Assert.isTrue(getParent() instanceof FeatureSelection);
-        return getParent().getFeaturesWithSelectedItems().contains(feature);
+        return getParent().hasSelectedItems(layer, feature);
     }
 
     protected void unselectInDescendants(Layer layer, Feature feature, Collection<Geometry> items) {
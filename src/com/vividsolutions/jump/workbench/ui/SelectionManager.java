@@ -170,10 +170,11 @@ public class SelectionManager {
             for (AbstractSelection selection : selections) {
                 selection.unselectItems();
             }
-            updatePanel();
         } finally {
             setPanelUpdatesEnabled(originalPanelUpdatesEnabled);
         }
+        // after updates are enabled again, or the counts would be kept
+        updatePanel();
     }
 
     public FeatureSelection getFeatureSelection() {
@@ -255,8 +256,12 @@ public class SelectionManager {
         if (!panelUpdatesEnabled) {
             return;
         }
-    	selectedItems = this.getSelectedItems().size(); //need to cache these to optimize size checks
-    	featuresWithSelectedItemsCount = this.getFeaturesWithSelectedItems().size();  
+    	//need to cache these to optimize size checks
+    	selectedItems = 0;
+    	for (AbstractSelection selection : selections) {
+    	    selectedItems += selection.getSelectedItemCount();
+    	}
+    	featuresWithSelectedItemsCount = countFeaturesWithSelectedItems();
 
         panel.fireSelectionChanged();
         panel.getRenderingManager().render(SelectionBackgroundRenderer.CONTENT_ID);
@@ -265,6 +270,24 @@ public class SelectionManager {
         }
     }
 
+    /**
+     * A feature with selected items in the feature selection has no selected
+     * items in the part and linestring selections, and a feature with
+     * selected parts may also have selected linestrings in other parts.
+     */
+    private int countFeaturesWithSelectedItems() {
+        int count = featureSelection.getFeatureCount() + partSelection.getFeatureCount();
+        if (lineStringSelection.getFeatureCount() == 0) {
+            return count;
+        }
+        for (Layer layer : lineStringSelection.getLayersWithSelectedItems()) {
+            for (Feature feature : lineStringSelection.getFeaturesWithSelectedItems(layer)) {
+                if (!partSelection.hasSelectedItems(layer, feature)) count++;
+            }
+        }
+        return count;
+    }
+
     public void setPanelUpdatesEnabled(boolean panelUpdatesEnabled) {
         this.panelUpdatesEnabled = panelUpdatesEnabled;
     }
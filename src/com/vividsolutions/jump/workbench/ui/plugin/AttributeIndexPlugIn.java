@@ -0,0 +1,63 @@
+package com.vividsolutions.jump.workbench.ui.plugin;
+
+import java.util.Set;
+
+import com.vividsolutions.jump.I18N;
+import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.feature.FeatureSchema;
+import com.vividsolutions.jump.workbench.model.AttributeIndexManager;
+import com.vividsolutions.jump.workbench.model.Layer;
+import com.vividsolutions.jump.workbench.plugin.AbstractPlugIn;
+import com.vividsolutions.jump.workbench.plugin.EnableCheck;
+import com.vividsolutions.jump.workbench.plugin.EnableCheckFactory;
+import com.vividsolutions.jump.workbench.plugin.PlugInContext;
+import com.vividsolutions.jump.workbench.ui.GUIUtil;
+import com.vividsolutions.jump.workbench.ui.MultiInputDialog;
+
+/**
+ * Lets the user choose the attributes of a layer to index. Indexed
+ * attributes are used by query tools to find features by value without
+ * scanning the whole layer.
+ */
+public class AttributeIndexPlugIn extends AbstractPlugIn {
+
+  public boolean execute(PlugInContext context) throws Exception {
+    reportNothingToUndoYet(context);
+    @SuppressWarnings( "deprecation" )
+    Layer[] layers = context.getLayerNamePanel().getSelectedLayers();
+    if (layers.length != 1) return false;
+    Layer layer = layers[0];
+    AttributeIndexManager manager =
+        AttributeIndexManager.get(context.getLayerManager());
+    Set<String> indexed = manager.getIndexedAttributes(layer);
+    FeatureSchema schema = layer.getFeatureCollectionWrapper().getFeatureSchema();
+
+    MultiInputDialog dialog = new MultiInputDialog(
+        context.getWorkbenchFrame(), getName(), true);
+    dialog.setSideBarDescription(
+        I18N.get("ui.plugin.AttributeIndexPlugIn.description"));
+    for (int i = 0; i < schema.getAttributeCount(); i++) {
+      if (schema.getAttributeType(i) == AttributeType.GEOMETRY) continue;
+      String name = schema.getAttributeName(i);
+      dialog.addCheckBox(name, indexed.contains(name));
+    }
+    GUIUtil.centreOnWindow(dialog);
+    dialog.setVisible(true);
+    if (!dialog.wasOKPressed()) return false;
+
+    for (int i = 0; i < schema.getAttributeCount(); i++) {
+      if (schema.getAttributeType(i) == AttributeType.GEOMETRY) continue;
+      String name = schema.getAttributeName(i);
+      if (dialog.getBoolean(name)) manager.createIndex(layer, name);
+      else manager.dropIndex(layer, name);
+    }
+    return true;
+  }
+
+  @Override
+  public EnableCheck getEnableCheck() {
+    return EnableCheckFactory.getInstance()
+            .createExactlyNLayersMustBeSelectedCheck(1);
+  }
+
+}
@@ -380,6 +380,21 @@ public class FeatureInstaller {
    * @return a new JMenuItem
    */
   public JMenuItem addMenuPlugin(String menuKey, PlugIn plugin) {
+    return addMenuPlugin(menuKey, plugin, null);
+  }
+
+  /**
+   * Same as {@link #addMenuPlugin(String, PlugIn)}, with an EnableCheck
+   * replacing the one of the plugin.
+   * 
+   * @param menuKey the key of the Menu to add this PlugIn to
+   * @param plugin a PlugIn
+   * @param enableCheck conditions making the plugin enabled, null to use
+   *          the plugin's own EnableCheck
+   * @return a new JMenuItem
+   */
+  public JMenuItem addMenuPlugin(String menuKey, PlugIn plugin,
+      EnableCheck enableCheck) {
     Menu menu = fetchMenuForKey(menuKey);
     if (menu == null)
       throw new IllegalArgumentException("Menu key '" + menuKey
@@ -396,7 +411,8 @@ public class FeatureInstaller {
       checkBox = true;
 
     JMenuItem menuItem = createMenuItem(plugin.getName(), checkBox, null);
-    return addMenuPluginItem(menu, plugin, new String[] {}, menuItem, null, null);
+    return addMenuPluginItem(menu, plugin, new String[] {}, menuItem, null,
+        enableCheck);
 
   }
 
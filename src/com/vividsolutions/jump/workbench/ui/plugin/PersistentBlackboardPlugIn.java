@@ -52,6 +52,10 @@ public class PersistentBlackboardPlugIn extends AbstractPlugIn {
         persistenceDirectory = value;
     }
 
+    public static String getPersistenceDirectory() {
+        return persistenceDirectory;
+    }
+
     public static void setFileName(String value) {
         fileName = value;
     }
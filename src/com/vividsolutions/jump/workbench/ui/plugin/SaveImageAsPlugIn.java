@@ -8,7 +8,12 @@ import java.io.File;
 import java.io.IOException;
 import java.util.*;
 
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.ImageIcon;
@@ -18,15 +23,29 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.filechooser.FileFilter;
 
+import org.cts.crs.CoordinateReferenceSystem;
+import org.cts.crs.Geographic2DCRS;
+import org.cts.crs.ProjectedCRS;
+import org.openjump.core.ccordsys.srid.SRIDStyle;
+import org.openjump.core.rasterimage.GeoTiffConstants;
+import org.openjump.core.ui.plugin.cts.DisplayReprojection;
+import org.openjump.core.ui.plugin.cts.Reprojector;
 import org.openjump.core.ui.plugin.file.LayerPrinter2;
+import org.openjump.core.ui.plugin.file.TiledMapImage;
 import org.openjump.core.ui.plugin.file.WorldFileWriter;
 
+import com.github.jaiimageio.impl.plugins.tiff.TIFFImageWriterSpi;
+import com.github.jaiimageio.plugins.tiff.TIFFDirectory;
+import com.github.jaiimageio.plugins.tiff.TIFFField;
+import com.github.jaiimageio.plugins.tiff.TIFFTag;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.util.Assert;
 import com.vividsolutions.jump.I18N;
+import com.vividsolutions.jump.workbench.Logger;
 import com.vividsolutions.jump.workbench.WorkbenchContext;
 import com.vividsolutions.jump.workbench.model.Layer;
+import com.vividsolutions.jump.workbench.model.LayerManager;
 import com.vividsolutions.jump.workbench.model.Layerable;
 import com.vividsolutions.jump.workbench.plugin.EnableCheckFactory;
 import com.vividsolutions.jump.workbench.plugin.MultiEnableCheck;
@@ -38,8 +57,10 @@ import com.vividsolutions.jump.workbench.ui.ValidatingTextField;
 import com.vividsolutions.jump.workbench.ui.images.IconLoader;
 
 /**
- * Save the view to a PNG or a JPG image file.
+ * Save the view to a PNG, a JPG or a GeoTIFF image file.
  * The exported image can have a size different from the original view.
+ * PNG and GeoTIFF images are rendered and written tile by tile, so that
+ * their size is not limited by the available memory.
  */
 public class SaveImageAsPlugIn extends ExportImagePlugIn {
     //ImageIO doesn't know about the "gif" format. I guess it's a copyright
@@ -53,6 +74,8 @@ public class SaveImageAsPlugIn extends ExportImagePlugIn {
         createFileFilter("PNG - Portable Network Graphics", "png",
                 BufferedImage.TYPE_INT_ARGB),
         createFileFilter("JPEG - Joint Photographic Experts Group", "jpg",
+                BufferedImage.TYPE_INT_RGB),
+        createFileFilter("GeoTIFF - Tagged Image File Format", "tif",
                 BufferedImage.TYPE_INT_RGB));
                 
                 
@@ -71,6 +94,10 @@ public class SaveImageAsPlugIn extends ExportImagePlugIn {
     		}
     		try {
     			int i = Integer.parseInt(text);
+                if (fileChooser != null && isStreamed(
+                        ((MyFileFilter)fileChooser.getFileFilter()).getFormat())) {
+                    return i <= MAX_STREAMED_SIZE;
+                }
                 long maxMemory = Runtime.getRuntime().maxMemory();
                 // max = 5000 px for 1 G
                 // max = 10000 px for 4 G
@@ -82,6 +109,13 @@ public class SaveImageAsPlugIn extends ExportImagePlugIn {
     	}
     });
 
+    // images written tile by tile only need a few strips in memory
+    private static final int MAX_STREAMED_SIZE = 100000;
+
+    private static boolean isStreamed(String format) {
+        return format.equals("png") || format.equals("tif");
+    }
+
     private JFileChooser getFileChooser() {
         if (fileChooser == null) {
             fileChooser = new GUIUtil.FileChooserWithOverwritePrompting() {
@@ -197,8 +231,10 @@ public class SaveImageAsPlugIn extends ExportImagePlugIn {
            return false;
         }
         MyFileFilter fileFilter = (MyFileFilter) getFileChooser().getFileFilter();
-        BufferedImage image;
+        RenderedImage image;
         LayerViewPanel viewPanel = context.getLayerViewPanel();
+        Envelope imageEnvelope = viewPanel.getViewport().getEnvelopeInModelCoordinates();
+        double imageScale = viewPanel.getViewport().getScale();
 
         Envelope envelope;
         if (!fenceFound && (getPixelSize() == context.getLayerViewPanel().getWidth())) {
@@ -218,34 +254,165 @@ public class SaveImageAsPlugIn extends ExportImagePlugIn {
 				envelope = workbenchContext.getLayerViewPanel()
                         .getViewport().getEnvelopeInModelCoordinates();
 			}
-			image = layerPrinter.print(context.getLayerManager()
-                    .getLayerables(Layerable.class), envelope, getPixelSize());
-        	viewPanel = layerPrinter.getLayerViewPanel();
+			if (isStreamed(fileFilter.getFormat())) {
+				TiledMapImage tiledImage = layerPrinter.printTiled(context.getLayerManager()
+						.getLayerables(Layerable.class), envelope, getPixelSize());
+				image = tiledImage;
+				imageEnvelope = tiledImage.getEnvelope();
+				imageScale = tiledImage.getScale();
+			}
+			else {
+				image = layerPrinter.print(context.getLayerManager()
+						.getLayerables(Layerable.class), envelope, getPixelSize());
+				viewPanel = layerPrinter.getLayerViewPanel();
+				imageEnvelope = viewPanel.getViewport().getEnvelopeInModelCoordinates();
+				imageScale = viewPanel.getViewport().getScale();
+			}
         }
 
         String filename = addExtension(getFileChooser().getSelectedFile()
                 .getPath(), fileFilter.getFormat());
         File imageFile = new File(filename);
-        save(image, fileFilter.getFormat(), imageFile);
+        try {
+            save(image, fileFilter.getFormat(), imageFile, imageEnvelope, imageScale,
+                    getSRID(context.getLayerManager()));
+        } finally {
+            if (image instanceof TiledMapImage) ((TiledMapImage)image).dispose();
+        }
         PersistentBlackboardPlugIn.get(workbenchContext)
                 .put(FORMAT_KEY, fileFilter.getFormat());
         PersistentBlackboardPlugIn.get(workbenchContext)
                 .put(LAST_FILENAME_KEY, filename);
         if ((worldFileCheckBox != null) && (worldFileCheckBox.isSelected()))
-        	WorldFileWriter.writeWorldFile( imageFile,  viewPanel );
+        	WorldFileWriter.writeWorldFile( imageFile,  imageEnvelope, imageScale );
         fileChooser = null; //rebuild next invocation
         return true;
     }
 
     
-    private void save(RenderedImage image, String format, File file)
-            throws IOException {
+    private void save(RenderedImage image, String format, File file,
+            Envelope envelope, double scale, int srid) throws IOException {
+        if (format.equals("tif")) {
+            saveGeoTIFF(image, file, envelope, scale, srid);
+            return;
+        }
         boolean writerFound = ImageIO.write(image, format, file);
         Assert.isTrue( writerFound, I18N.get("ui.plugin.SaveImageAsPlugIn.cannot-find-writer-for-image-format")+" '"
                 + format + "'");
     }
 
 
+    /**
+     * @return the EPSG code of the coordinates of the image : the CRS the
+     * view is reprojected to, or else the SRID shared by the visible layers,
+     * or 0 if it is unknown
+     */
+    private static int getSRID(LayerManager layerManager) {
+        CoordinateReferenceSystem crs = DisplayReprojection.get(layerManager).getTargetCRS();
+        if (crs != null) {
+            return "EPSG".equalsIgnoreCase(crs.getAuthorityName()) ?
+                    Integer.parseInt(crs.getAuthorityKey()) : 0;
+        }
+        int srid = 0;
+        for (Layer layer : layerManager.getVisibleLayers(false)) {
+            SRIDStyle sridStyle = (SRIDStyle) layer.getStyle(SRIDStyle.class);
+            int layerSRID = sridStyle == null ? 0 : sridStyle.getSRID();
+            if (layerSRID <= 0) {
+                continue;
+            }
+            if (srid != 0 && layerSRID != srid) {
+                return 0;
+            }
+            srid = layerSRID;
+        }
+        return srid;
+    }
+
+    /**
+     * @return the GeoKeyDirectoryTag of an image whose pixels are areas, in
+     * the CRS of EPSG code srid if it is known
+     */
+    private static char[] geoKeyDirectory(int srid) {
+        int modelType = 0;
+        int crsKey = 0;
+        // GeoKeys are unsigned shorts
+        if (srid > 0 && srid < 1 << 16) {
+            try {
+                CoordinateReferenceSystem crs = Reprojector.getEPSGCRS(srid);
+                if (crs instanceof ProjectedCRS) {
+                    modelType = GeoTiffConstants.ModelTypeProjected;
+                    crsKey = GeoTiffConstants.ProjectedCSTypeGeoKey;
+                } else if (crs instanceof Geographic2DCRS) {
+                    modelType = GeoTiffConstants.ModelTypeGeographic;
+                    crsKey = GeoTiffConstants.GeographicTypeGeoKey;
+                }
+            } catch (Exception e) {
+                Logger.warn("EPSG:" + srid + " can not be written in GeoTIFF keys", e);
+            }
+        }
+        // version 1.1.0, number of keys, then the keys in increasing order, as
+        // {key, location (0 : value inline), count, value}
+        int keys = modelType == 0 ? 1 : 3;
+        char[] directory = new char[4 * (keys + 1)];
+        int i = 0;
+        directory[i++] = 1;
+        directory[i++] = 1;
+        directory[i++] = 0;
+        directory[i++] = (char) keys;
+        if (modelType != 0) {
+            i = geoKey(directory, i, GeoTiffConstants.GTModelTypeGeoKey, modelType);
+        }
+        i = geoKey(directory, i, GeoTiffConstants.GTRasterTypeGeoKey,
+                GeoTiffConstants.RasterPixelIsArea);
+        if (modelType != 0) {
+            geoKey(directory, i, crsKey, srid);
+        }
+        return directory;
+    }
+
+    private static int geoKey(char[] directory, int i, int key, int value) {
+        directory[i++] = (char) key;
+        directory[i++] = 0;
+        directory[i++] = 1;
+        directory[i++] = (char) value;
+        return i;
+    }
+
+    /**
+     * Writes image as a tiled GeoTIFF, reading it tile by tile.
+     * @param srid the EPSG code of the CRS of envelope, or 0 if it is unknown
+     */
+    private void saveGeoTIFF(RenderedImage image, File file, Envelope envelope,
+            double scale, int srid) throws IOException {
+        ImageWriter writer = new TIFFImageWriterSpi().createWriterInstance();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setTiling(TiledMapImage.TILE_SIZE, TiledMapImage.TILE_SIZE, 0, 0);
+        TIFFDirectory directory = TIFFDirectory.createFromMetadata(
+                writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), param));
+        directory.addTIFFField(new TIFFField(
+                new TIFFTag("ModelPixelScaleTag", GeoTiffConstants.ModelPixelScaleTag,
+                        1 << TIFFTag.TIFF_DOUBLE),
+                TIFFTag.TIFF_DOUBLE, 3, new double[] { 1 / scale, 1 / scale, 0 }));
+        directory.addTIFFField(new TIFFField(
+                new TIFFTag("ModelTiepointTag", GeoTiffConstants.ModelTiepointTag,
+                        1 << TIFFTag.TIFF_DOUBLE),
+                TIFFTag.TIFF_DOUBLE, 6, new double[] { 0, 0, 0,
+                    envelope.getMinX(), envelope.getMaxY(), 0 }));
+        char[] geoKeys = geoKeyDirectory(srid);
+        directory.addTIFFField(new TIFFField(
+                new TIFFTag("GeoKeyDirectoryTag", GeoTiffConstants.GeoKeyDirectoryTag,
+                        1 << TIFFTag.TIFF_SHORT),
+                TIFFTag.TIFF_SHORT, geoKeys.length, geoKeys));
+        file.delete();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file)) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, directory.getAsMetadata()), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
     public static MultiEnableCheck createEnableCheck(WorkbenchContext workbenchContext) {
         EnableCheckFactory checkFactory = new EnableCheckFactory(workbenchContext);
         return new MultiEnableCheck().add(checkFactory.createTaskWindowMustBeActiveCheck());
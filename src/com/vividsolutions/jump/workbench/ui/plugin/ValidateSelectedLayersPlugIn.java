@@ -35,6 +35,7 @@ package com.vividsolutions.jump.workbench.ui.plugin;
 
 import java.awt.Color;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
@@ -58,6 +59,7 @@ import com.vividsolutions.jump.qa.Validator;
 import com.vividsolutions.jump.task.TaskMonitor;
 import com.vividsolutions.jump.util.CollectionMap;
 import com.vividsolutions.jump.workbench.WorkbenchContext;
+import com.vividsolutions.jump.workbench.model.ChangedFeatureTracker;
 import com.vividsolutions.jump.workbench.model.Layer;
 import com.vividsolutions.jump.workbench.model.StandardCategoryNames;
 import com.vividsolutions.jump.workbench.plugin.AbstractPlugIn;
@@ -94,6 +96,7 @@ public class ValidateSelectedLayersPlugIn extends AbstractPlugIn
     private final static String DISALLOW_MULTILINESTRINGS = I18N.get("ui.plugin.ValidateSelectedLayersPlugIn.disallow-multilinestrings");
     private final static String DISALLOW_MULTIPOLYGONS = I18N.get("ui.plugin.ValidateSelectedLayersPlugIn.disallow-multipolygons");
     private final static String DISALLOW_GEOMETRYCOLLECTIONS = I18N.get("ui.plugin.ValidateSelectedLayersPlugIn.disallow-geometrycollections");
+    private final static String ONLY_MODIFIED_FEATURES = I18N.get("ui.plugin.ValidateSelectedLayersPlugIn.only-modified-features");
     private static final String ERROR = "ERROR";
     private static final String SOURCE_FID = "SOURCE_FID";
     private static final String GEOMETRY = "GEOMETRY";
@@ -102,6 +105,7 @@ public class ValidateSelectedLayersPlugIn extends AbstractPlugIn
     private GeometryFactory geometryFactory = new GeometryFactory();
     private Color GOLD = new Color(255, 192, 0, 150);
     private Validator validator;
+    private boolean onlyModifiedFeatures = false;
 
     public ValidateSelectedLayersPlugIn() {
         initFeatureSchema();
@@ -216,24 +220,46 @@ public class ValidateSelectedLayersPlugIn extends AbstractPlugIn
         }
 
         validator.setDisallowedGeometryClasses(disallowedGeometryClasses);
+        onlyModifiedFeatures = dialog.getBoolean(ONLY_MODIFIED_FEATURES);
 
         return validator;
     }
 
     private void validate(final Layer layer, final Validator validator,
-        PlugInContext context, TaskMonitor monitor) {
-        List validationErrors = validator.validate(layer.getFeatureCollectionWrapper()
-                                                        .getFeatures(), monitor);
-
-        if (!validationErrors.isEmpty()) {
-            addLayer(toLayer(I18N.get("ui.plugin.ValidateSelectedLayersPlugIn.error-locations")+" - " + layer.getName(),
-                    toLocationFeatures(validationErrors, layer), layer, true,
-                    context), context);
-            addLayer(toLayer(I18N.get("ui.plugin.ValidateSelectedLayersPlugIn.bad-features")+" - " + layer.getName(),
-                    toFeatures(validationErrors, layer), layer, false, context),
-                context);
+        final PlugInContext context, TaskMonitor monitor) {
+        // Features modified during the validation will be validated by the
+        // next incremental validation
+        ChangedFeatureTracker tracker = ChangedFeatureTracker.get(context.getLayerManager());
+        ChangedFeatureTracker.Checkpoint checkpoint = tracker.checkpoint(layer);
+        Collection<Feature> features = onlyModifiedFeatures && checkpoint.isTracking() ?
+                checkpoint.getChangedFeatures() :
+                layer.getFeatureCollectionWrapper().getFeatures();
+
+        // Errors are added to the result layers as soon as they are found, by
+        // this thread
+        final Layer[] errorLayers = new Layer[2];
+        List<ValidationError> validationErrors = validator.validate(features, monitor,
+            new Validator.ErrorListener() {
+                public void errorsFound(List<ValidationError> errors) {
+                    if (errorLayers[0] == null) {
+                        errorLayers[0] = toLayer(I18N.get("ui.plugin.ValidateSelectedLayersPlugIn.error-locations")+" - " + layer.getName(),
+                                new ArrayList<Feature>(), layer, true, context);
+                        errorLayers[1] = toLayer(I18N.get("ui.plugin.ValidateSelectedLayersPlugIn.bad-features")+" - " + layer.getName(),
+                                new ArrayList<Feature>(), layer, false, context);
+                        addLayer(errorLayers[0], context);
+                        addLayer(errorLayers[1], context);
+                    }
+                    errorLayers[0].getFeatureCollectionWrapper().addAll(
+                            toLocationFeatures(errors, layer));
+                    errorLayers[1].getFeatureCollectionWrapper().addAll(
+                            toFeatures(errors, layer));
+                }
+            });
+
+        // an interrupted validation will be done again by the next one
+        if (!monitor.isCancelRequested()) {
+            tracker.commit(checkpoint);
         }
-
         outputSummary(context, layer, validationErrors);
     }
 
@@ -262,11 +288,10 @@ public class ValidateSelectedLayersPlugIn extends AbstractPlugIn
         }
     }
 
-    private List toFeatures(List validationErrors, Layer sourceLayer) {
-        ArrayList features = new ArrayList();
+    private List<Feature> toFeatures(List<ValidationError> validationErrors, Layer sourceLayer) {
+        List<Feature> features = new ArrayList<>();
 
-        for (Iterator i = validationErrors.iterator(); i.hasNext();) {
-            ValidationError error = (ValidationError) i.next();
+        for (ValidationError error : validationErrors) {
             features.add(toFeature(error, sourceLayer,
                     (Geometry) error.getFeature().getGeometry().clone()));
         }
@@ -274,11 +299,10 @@ public class ValidateSelectedLayersPlugIn extends AbstractPlugIn
         return features;
     }
 
-    private List toLocationFeatures(List validationErrors, Layer sourceLayer) {
-        ArrayList features = new ArrayList();
+    private List<Feature> toLocationFeatures(List<ValidationError> validationErrors, Layer sourceLayer) {
+        List<Feature> features = new ArrayList<>();
 
-        for (Iterator i = validationErrors.iterator(); i.hasNext();) {
-            ValidationError error = (ValidationError) i.next();
+        for (ValidationError error : validationErrors) {
             Geometry geometry = geometryFactory.createPoint(error.getLocation());
             features.add(toFeature(error, sourceLayer, geometry));
         }
@@ -370,6 +394,8 @@ public class ValidateSelectedLayersPlugIn extends AbstractPlugIn
             5);
         dialog.addCheckBox(CHECK_GEOMETRIES_SIMPLE, false,
         		I18N.get("ui.plugin.ValidateSelectedLayersPlugIn.check-that-geometries-are-simple"));
+        dialog.addSeparator();
+        dialog.addCheckBox(ONLY_MODIFIED_FEATURES, false);
         //dialog.startNewColumn();
         dialog.setRightPane();
         dialog.addLabel("<HTML><STRONG>"+I18N.get("ui.plugin.ValidateSelectedLayersPlugIn.geometry-types-validation")+"</STRONG></HTML>");
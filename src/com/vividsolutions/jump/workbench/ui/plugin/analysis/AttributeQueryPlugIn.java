@@ -52,6 +52,7 @@ import com.vividsolutions.jump.feature.*;
 import com.vividsolutions.jump.task.TaskMonitor;
 import com.vividsolutions.jump.util.StringUtil;
 import com.vividsolutions.jump.workbench.WorkbenchContext;
+import com.vividsolutions.jump.workbench.model.AttributeIndexManager;
 import com.vividsolutions.jump.workbench.model.Layer;
 import com.vividsolutions.jump.workbench.model.StandardCategoryNames;
 import com.vividsolutions.jump.workbench.plugin.*;
@@ -179,7 +180,7 @@ public class AttributeQueryPlugIn extends AbstractPlugIn
     AttributePredicate pred = AttributePredicate.getPredicate(funcNameToRun,caseInsensitive);
     FeatureCollection resultFC = new FeatureDataset(sourceFC.getFeatureSchema());
 
-    for (Iterator i = sourceFC.iterator(); i.hasNext(); ) {
+    for (Iterator i = candidates(sourceFC, attrName, value).iterator(); i.hasNext(); ) {
       Feature f = (Feature) i.next();
       Object fVal = getValue(f, attrName);
 
@@ -201,6 +202,31 @@ public class AttributeQueryPlugIn extends AbstractPlugIn
   }
 
 
+  // Features to test : if the attribute is indexed and the predicate is an
+  // equality, features having the value in the index, else all the features
+  private Collection<Feature> candidates(FeatureCollection sourceFC,
+                                         String attrName, String value) {
+    FeatureSchema schema = sourceFC.getFeatureSchema();
+    if (complementResult || !funcNameToRun.equals("=") ||
+            !schema.hasAttribute(attrName)) {
+      return sourceFC.getFeatures();
+    }
+    AttributeType type = schema.getAttributeType(attrName);
+    if (!(type == AttributeType.STRING && !caseInsensitive) &&
+            type != AttributeType.INTEGER && type != AttributeType.DOUBLE) {
+      return sourceFC.getFeatures();
+    }
+    AttributeIndex index = AttributeIndexManager.getIndex(srcLayer, attrName);
+    if (index == null) return sourceFC.getFeatures();
+    List<Feature> candidates = index.query(value);
+    try {
+      candidates.addAll(index.query(Double.valueOf(value)));
+    } catch (NumberFormatException e) {
+      // not a number
+    }
+    return candidates;
+  }
+
   private Object getValue(Feature f, String attrName) {
     if (attrName.equals(ATTR_GEOMETRY_AREA)) {
       Geometry g = f.getGeometry();
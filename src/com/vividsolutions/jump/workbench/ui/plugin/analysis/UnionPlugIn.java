@@ -45,7 +45,6 @@ import javax.swing.JMenuItem;
 
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.operation.union.UnaryUnionOp;
 import com.vividsolutions.jump.I18N;
 import com.vividsolutions.jump.feature.AttributeType;
 import com.vividsolutions.jump.feature.Feature;
@@ -54,6 +53,7 @@ import com.vividsolutions.jump.feature.FeatureDataset;
 import com.vividsolutions.jump.feature.FeatureDatasetFactory;
 import com.vividsolutions.jump.feature.FeatureSchema;
 import com.vividsolutions.jump.feature.FeatureUtil;
+import com.vividsolutions.jump.geom.ParallelUnionOp;
 import com.vividsolutions.jump.task.TaskMonitor;
 import com.vividsolutions.jump.workbench.WorkbenchContext;
 import com.vividsolutions.jump.workbench.model.StandardCategoryNames;
@@ -153,7 +153,9 @@ public class UnionPlugIn extends AbstractPlugIn implements ThreadedPlugIn {
         }
         
         Collection geoms = FeatureUtil.toGeometries(a.getFeatures());
-        Geometry g = UnaryUnionOp.union(geoms);
+        Geometry g = new ParallelUnionOp(geoms, null).union(monitor,
+                I18N.get("ui.plugin.analysis.UnionPlugIn.union"));
+        if (g == null) return;
         geoms.clear();
         geoms.add(g);
         FeatureCollection fc = FeatureDatasetFactory.createFromGeometry(geoms);
@@ -4,6 +4,7 @@ import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.operation.union.UnaryUnionOp;
 import com.vividsolutions.jump.datastore.AdhocQuery;
+import com.vividsolutions.jump.feature.ColumnarFeatureCollection;
 import com.vividsolutions.jump.feature.Feature;
 import com.vividsolutions.jump.feature.FeatureCollection;
 import com.vividsolutions.jump.feature.FeatureDataset;
@@ -114,7 +115,7 @@ public class DataStoreQueryDataSource extends com.vividsolutions.jump.io.datasou
 
     protected FeatureCollection createFeatureCollection() throws Exception {
         FeatureInputStream featureInputStream = null;
-        FeatureDataset featureDataset = null;
+        FeatureCollection featureDataset = null;
         
         ConnectionDescriptor connectionDescriptor =
             (ConnectionDescriptor)getProperties().get(CONNECTION_DESCRIPTOR_KEY);
@@ -130,8 +131,15 @@ public class DataStoreQueryDataSource extends com.vividsolutions.jump.io.datasou
         try {
             featureInputStream = ConnectionManager.instance(context)
                 .getOpenConnection(connectionDescriptor).execute(adhocQuery);
-            featureDataset = new FeatureDataset(featureInputStream.getFeatureSchema());
-            int i = 0;
+            FeatureSchema schema = featureInputStream.getFeatureSchema();
+            if (ColumnarFeatureCollection.isEnabledForLoaders()) {
+                ColumnarFeatureCollection columnar = new ColumnarFeatureCollection(schema);
+                while (featureInputStream.hasNext()) {
+                    columnar.add(columnar.createFeature(featureInputStream.next()));
+                }
+                return columnar;
+            }
+            featureDataset = new FeatureDataset(schema);
             while (featureInputStream.hasNext()) {
                 featureDataset.add( featureInputStream.next() );
             }
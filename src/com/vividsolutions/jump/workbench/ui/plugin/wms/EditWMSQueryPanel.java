@@ -40,6 +40,7 @@ import javax.swing.AbstractButton;
 import javax.swing.BorderFactory;
 import javax.swing.DefaultComboBoxModel;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -77,6 +78,8 @@ public class EditWMSQueryPanel extends JPanel {
   private final JComboBox<MapStyle> styleComboBox = new JComboBox<>();
   private final JTextField moreParametersTextField = new JTextField(16);
   private final TransparencyPanel transparencyPanel = new TransparencyPanel();
+  private final JCheckBox tiledCheckBox =
+      new JCheckBox(I18N.get("ui.plugin.wms.EditWMSQueryPanel.tiled"));
 
   private SelectUrlWithAuthPanel urlPanel;
   String[] savedUrlList;
@@ -108,6 +111,7 @@ public class EditWMSQueryPanel extends JPanel {
         refreshParamCombos();
         mapLayerPanel.add(this::refreshParamCombos);
         setAlpha(layer.getAlpha());
+        tiledCheckBox.setSelected(layer.isTiled());
       }
     } catch (Exception e) {
       Logger.warn(e);
@@ -221,6 +225,10 @@ public class EditWMSQueryPanel extends JPanel {
     transparencyPanel.getSlider().setValue(255 - alpha);
   }
 
+  public boolean isTiled() {
+    return tiledCheckBox.isSelected();
+  }
+
   public String getSRS() {
     int index = srsComboBox.getSelectedIndex();
     // Return selected srs code
@@ -302,6 +310,8 @@ public class EditWMSQueryPanel extends JPanel {
     this.add(transparencyPanel, new GridBagConstraints(2, 5, 5, 1, 1.0, 0.0,
         GridBagConstraints.WEST, GridBagConstraints.HORIZONTAL, defaultInsets,
         0, 0));
+    this.add(tiledCheckBox, new GridBagConstraints(1, 6, 6, 1, 0.0, 0.0,
+        GridBagConstraints.WEST, GridBagConstraints.NONE, defaultInsets, 0, 0));
 
     // retrieve persistently saved url list
     String urlString = (String) PersistentBlackboardPlugIn.getInstance().get(
@@ -114,6 +114,7 @@ public class EditWMSQueryPlugIn extends AbstractPlugIn {
             layer.setFormat(panel.getFormat());
             layer.setStyle(panel.getStyle());
             layer.setAlpha(panel.getAlpha());
+            layer.setTiled(panel.isTiled());
             layer.setWmsVersion(panel.getService().getVersion());
             layer.setName(panel.getChosenMapLayers().get(0).getTitle());
 
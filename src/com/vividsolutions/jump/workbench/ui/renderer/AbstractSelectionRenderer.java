@@ -35,6 +35,7 @@ package com.vividsolutions.jump.workbench.ui.renderer;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.util.Assert;
+import org.openjump.core.ui.plugin.cts.DisplayReprojection;
 import com.vividsolutions.jump.feature.Feature;
 import com.vividsolutions.jump.workbench.model.Layer;
 import com.vividsolutions.jump.workbench.model.LayerView;
@@ -177,17 +178,23 @@ public abstract class AbstractSelectionRenderer extends FeatureCollectionRendere
     protected Map layerToFeaturesMap() {
         featureToSelectedItemsMap = new HashMap<>();
 		    Map<Layer,List<Feature>> layerToFeaturesMap = new HashMap();
+        DisplayReprojection reprojection = DisplayReprojection.get(panel.getLayerManager());
         for (Iterator<Layer> i = panel.getLayerManager().iterator(Layer.class); i.hasNext();) {
             Layer layer = i.next();
             if (layer instanceof LayerView) continue;
             Map<Feature,List<Geometry>> featureToSelectedItemsMapForLayer = featureToSelectedItemsMap(layer);
+            boolean reprojected = reprojection.isReprojected(layer);
             // For each feature of layer, put selected items into a general
             // featureToSelectedItemsMap
             for (Feature feature : featureToSelectedItemsMapForLayer.keySet()) {
                 List<Geometry> list = new ArrayList<>(1);
                 List<Geometry> selectedItems = featureToSelectedItemsMapForLayer.get(feature);
                 if (selectedItems != null) {
-                  list.addAll(selectedItems);
+                  // selections of layers reprojected for display are drawn
+                  // where the layer is drawn
+                  for (Geometry item : selectedItems) {
+                    list.add(reprojected ? reprojection.toDisplay(layer, item) : item);
+                  }
                 }
                 featureToSelectedItemsMap.put(feature, list);
             }
@@ -0,0 +1,173 @@
+package com.vividsolutions.jump.workbench.ui.renderer;
+
+import java.util.Arrays;
+
+/**
+ * The labels placed in a view, indexed by a uniform grid of square cells,
+ * to find out quickly whether a new label overlaps a label already placed.
+ * <p>
+ * Labels are (possibly rotated) rectangles given by their four corners in
+ * view coordinates. Two labels which only touch each other do not overlap.
+ * Labels partly or totally outside the view are indexed in the border
+ * cells.
+ */
+public class LabelCollisionIndex {
+
+    private final int cellSize;
+    private final int columns;
+    private final int rows;
+
+    // label indices, cell by cell
+    private final int[][] cells;
+    private final int[] cellCounts;
+
+    // corners and bounds (minX, minY, maxX, maxY) of the labels
+    private double[] corners = new double[8 * 64];
+    private double[] bounds = new double[4 * 64];
+    private int count = 0;
+
+    // labels already tested for the current query
+    private int[] visits = new int[64];
+    private int visit = 0;
+
+    /**
+     * @param width the width of the view, in pixels
+     * @param height the height of the view, in pixels
+     * @param cellSize the size of the cells of the grid, in pixels
+     */
+    public LabelCollisionIndex(int width, int height, int cellSize) {
+        this.cellSize = cellSize;
+        this.columns = Math.max(1, (width + cellSize - 1) / cellSize);
+        this.rows = Math.max(1, (height + cellSize - 1) / cellSize);
+        this.cells = new int[columns * rows][];
+        this.cellCounts = new int[columns * rows];
+    }
+
+    /**
+     * @return the number of labels in the index
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Inserts a label unless it overlaps a label of the index.
+     * @param labelCorners the corners of the label (x0, y0, ..., x3, y3)
+     * @return true if the label has been inserted
+     */
+    public boolean insertIfFree(double[] labelCorners) {
+        if (collides(labelCorners)) {
+            return false;
+        }
+        insert(labelCorners);
+        return true;
+    }
+
+    /**
+     * @param labelCorners the corners of a label (x0, y0, ..., x3, y3)
+     * @return true if the label overlaps a label of the index
+     */
+    public boolean collides(double[] labelCorners) {
+        double minX = min(labelCorners, 0), maxX = max(labelCorners, 0);
+        double minY = min(labelCorners, 1), maxY = max(labelCorners, 1);
+        if (++visit == 0) {
+            Arrays.fill(visits, 0);
+            visit = 1;
+        }
+        for (int row = row(minY); row <= row(maxY); row++) {
+            for (int column = column(minX); column <= column(maxX); column++) {
+                int cell = row * columns + column;
+                for (int i = 0; i < cellCounts[cell]; i++) {
+                    int label = cells[cell][i];
+                    if (visits[label] == visit) continue;
+                    visits[label] = visit;
+                    if (bounds[4 * label] >= maxX || bounds[4 * label + 2] <= minX ||
+                            bounds[4 * label + 1] >= maxY || bounds[4 * label + 3] <= minY) {
+                        continue;
+                    }
+                    if (overlap(labelCorners, 0, corners, 8 * label)) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Inserts a label, whether it overlaps other labels or not.
+     * @param labelCorners the corners of the label (x0, y0, ..., x3, y3)
+     */
+    public void insert(double[] labelCorners) {
+        if (count * 8 == corners.length) {
+            corners = Arrays.copyOf(corners, corners.length * 2);
+            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            visits = Arrays.copyOf(visits, visits.length * 2);
+        }
+        System.arraycopy(labelCorners, 0, corners, 8 * count, 8);
+        double minX = min(labelCorners, 0), maxX = max(labelCorners, 0);
+        double minY = min(labelCorners, 1), maxY = max(labelCorners, 1);
+        bounds[4 * count] = minX;
+        bounds[4 * count + 1] = minY;
+        bounds[4 * count + 2] = maxX;
+        bounds[4 * count + 3] = maxY;
+        for (int row = row(minY); row <= row(maxY); row++) {
+            for (int column = column(minX); column <= column(maxX); column++) {
+                int cell = row * columns + column;
+                if (cells[cell] == null) {
+                    cells[cell] = new int[4];
+                } else if (cellCounts[cell] == cells[cell].length) {
+                    cells[cell] = Arrays.copyOf(cells[cell], cells[cell].length * 2);
+                }
+                cells[cell][cellCounts[cell]++] = count;
+            }
+        }
+        count++;
+    }
+
+    private int column(double x) {
+        return Math.max(0, Math.min(columns - 1, (int)Math.floor(x / cellSize)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int)Math.floor(y / cellSize)));
+    }
+
+    private static double min(double[] c, int offset) {
+        return Math.min(Math.min(c[offset], c[offset + 2]), Math.min(c[offset + 4], c[offset + 6]));
+    }
+
+    private static double max(double[] c, int offset) {
+        return Math.max(Math.max(c[offset], c[offset + 2]), Math.max(c[offset + 4], c[offset + 6]));
+    }
+
+    /**
+     * Separating axis test of two convex quadrilaterals: they do not overlap
+     * if their projections on the normal of one of their edges are disjoint.
+     */
+    private static boolean overlap(double[] a, int offsetA, double[] b, int offsetB) {
+        return !separated(a, offsetA, a, offsetA, b, offsetB) &&
+                !separated(b, offsetB, a, offsetA, b, offsetB);
+    }
+
+    private static boolean separated(double[] edges, int offset,
+                                     double[] a, int offsetA, double[] b, int offsetB) {
+        for (int i = 0; i < 4; i++) {
+            int j = (i + 1) % 4;
+            // normal of the edge
+            double nx = edges[offset + 2 * i + 1] - edges[offset + 2 * j + 1];
+            double ny = edges[offset + 2 * j] - edges[offset + 2 * i];
+            if (nx == 0 && ny == 0) continue;
+            double minA = Double.POSITIVE_INFINITY, maxA = Double.NEGATIVE_INFINITY;
+            double minB = Double.POSITIVE_INFINITY, maxB = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < 4; k++) {
+                double pa = nx * a[offsetA + 2 * k] + ny * a[offsetA + 2 * k + 1];
+                double pb = nx * b[offsetB + 2 * k] + ny * b[offsetB + 2 * k + 1];
+                minA = Math.min(minA, pa);
+                maxA = Math.max(maxA, pa);
+                minB = Math.min(minB, pb);
+                maxB = Math.max(maxB, pb);
+            }
+            if (maxA <= minB || maxB <= minA) return true;
+        }
+        return false;
+    }
+}
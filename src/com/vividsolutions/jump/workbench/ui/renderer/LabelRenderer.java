@@ -0,0 +1,159 @@
+package com.vividsolutions.jump.workbench.ui.renderer;
+
+import java.awt.font.FontRenderContext;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.workbench.model.Layer;
+import com.vividsolutions.jump.workbench.ui.LayerViewPanel;
+import com.vividsolutions.jump.workbench.ui.Viewport;
+import com.vividsolutions.jump.workbench.ui.renderer.style.LabelCache;
+import com.vividsolutions.jump.workbench.ui.renderer.style.LabelStyle;
+
+/**
+ * Draws the labels of all the layers of the view, above the layers.
+ * <p>
+ * Labels are placed layer by layer, from the top layer down, so that the
+ * labels of upper layers have priority, and a label overlapping a label
+ * already placed, whatever its layer, is not drawn if its LabelStyle hides
+ * overlapping labels. Anchors and text layouts are reused from one
+ * rendering to the next through the {@link LabelCache} of the LayerManager.
+ * Images exported by tiles place their labels once, over the whole image,
+ * with {@link #placeLabels}, so that labels are not cut or repeated at the
+ * seams between tiles.
+ */
+public class LabelRenderer extends ImageCachingRenderer {
+
+    public final static String CONTENT_ID = "LABELS";
+
+    private static final int CELL_SIZE = 64;
+
+    // the maximum number of cells of the collision index
+    private static final int MAX_CELLS = 1 << 20;
+
+    // labels are drawn by batches, not to lock the image for too long
+    private static final int BATCH_SIZE = 500;
+
+    public LabelRenderer(LayerViewPanel panel) {
+        super(CONTENT_ID, panel);
+    }
+
+    protected void renderHook(ThreadSafeImage image) throws Exception {
+        List<Layer> layers = labelledLayers(panel, panel.getViewport());
+        if (layers.isEmpty()) {
+            return;
+        }
+        final FontRenderContext[] frc = new FontRenderContext[1];
+        image.draw(g -> frc[0] = g.getFontRenderContext());
+        if (frc[0] == null) {
+            // the panel is not ready yet
+            return;
+        }
+        final List<LabelStyle> styles = new ArrayList<>();
+        final List<LabelStyle.Label> labels = new ArrayList<>();
+        boolean placed = placeLabels(layers, panel.getViewport(), panel.getWidth(),
+                panel.getHeight(), LabelCache.get(panel.getLayerManager()), frc[0],
+                (style, label) -> {
+                    if (cancelled) {
+                        return false;
+                    }
+                    styles.add(style);
+                    labels.add(label);
+                    if (labels.size() == BATCH_SIZE) {
+                        draw(image, styles, labels);
+                    }
+                    return true;
+                });
+        if (placed) {
+            draw(image, styles, labels);
+        }
+    }
+
+    /**
+     * Receives the labels placed by
+     * {@link LabelRenderer#placeLabels(List, Viewport, int, int, LabelCache, FontRenderContext, LabelSink)},
+     * in drawing order.
+     */
+    public interface LabelSink {
+        /**
+         * @return false to stop placing labels
+         */
+        boolean add(LabelStyle style, LabelStyle.Label label) throws Exception;
+    }
+
+    /**
+     * Places the labels of layers in a view of width x height pixels, from
+     * the top layer down, as the view draws them, without drawing them.
+     * Labels are given in view coordinates, so that a large image can be
+     * labelled once and drawn by parts.
+     * @param layers the labelled layers, from the top one (see
+     * {@link #labelledLayers(LayerViewPanel, Viewport)})
+     * @param cache the cache of the labels, kept from one rendering to the
+     * next at the same scale
+     * @return false if sink stopped the placement
+     */
+    public static boolean placeLabels(List<Layer> layers, Viewport viewport,
+            int width, int height, LabelCache cache, FontRenderContext frc,
+            LabelSink sink) throws Exception {
+        Envelope envelope = viewport.getEnvelopeInModelCoordinates();
+        // cells are larger in large images, for a grid of bounded size
+        int cellSize = Math.max(CELL_SIZE,
+                (int)Math.ceil(Math.sqrt((double)width * height / MAX_CELLS)));
+        LabelCollisionIndex index = new LabelCollisionIndex(width, height, cellSize);
+        for (Layer layer : layers) {
+            LabelStyle style = layer.getLabelStyle();
+            style.initialize(layer);
+            LabelCache.LayerLabels layerLabels = cache.getLayerLabels(layer, viewport.getScale());
+            for (Feature feature : LayerRenderer.features(layer, envelope)) {
+                Geometry geometry = feature.getGeometry();
+                if (geometry == null || geometry.isEmpty()) {
+                    continue;
+                }
+                LabelStyle.Label label = style.createLabel(feature, viewport, layerLabels, frc);
+                if (label == null) {
+                    continue;
+                }
+                if (style.isHidingOverlappingLabels() && !index.insertIfFree(label.getCorners())) {
+                    continue;
+                }
+                if (!sink.add(style, label)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void draw(ThreadSafeImage image, final List<LabelStyle> styles,
+            final List<LabelStyle.Label> labels) throws Exception {
+        image.draw(g -> {
+            for (int i = 0; i < labels.size(); i++) {
+                styles.get(i).paint(g, labels.get(i));
+            }
+        });
+        styles.clear();
+        labels.clear();
+    }
+
+    /**
+     * @return the layers of panel having labels in viewport, from the top one
+     */
+    public static List<Layer> labelledLayers(LayerViewPanel panel, Viewport viewport) {
+        List<Layer> layers = new ArrayList<>();
+        for (Layer layer : panel.getLayerManager().getLayers()) {
+            LabelStyle style = layer.getLabelStyle();
+            if (style == null || !style.isEnabled() || !LayerRenderer.render(layer, panel)) {
+                continue;
+            }
+            if (style.isHiddenAtScale(viewport)) {
+                continue;
+            }
+            layers.add(layer);
+        }
+        return layers;
+    }
+}
@@ -41,6 +41,7 @@ import org.locationtech.jts.util.Assert;
 import com.vividsolutions.jump.workbench.model.Layer;
 import com.vividsolutions.jump.workbench.model.Layerable;
 import com.vividsolutions.jump.workbench.ui.LayerViewPanel;
+import org.openjump.core.ui.plugin.cts.DisplayReprojection;
 
 //[sstein] : 14.08.2005 added variable maxFeatures with getters and setters
 
@@ -137,11 +138,11 @@ public class LayerRenderer extends FeatureCollectionRenderer {
         //new ArrayList to avoid ConcurrentModificationExceptions. [Jon Aquino]
         List<Style> styles = new ArrayList<>(layer.getStyles());
         styles.remove(layer.getVertexStyle());
+        // labels of all the layers are placed together by the LabelRenderer
         styles.remove(layer.getLabelStyle());
 
         //Move to last. [Jon Aquino]
         styles.add(layer.getVertexStyle());
-        styles.add(layer.getLabelStyle());
 
         return styles;
     }
@@ -154,11 +155,17 @@ public class LayerRenderer extends FeatureCollectionRenderer {
     }
 
     protected Map<Layer, Collection<Feature>> layerToFeaturesMap() {
-        Envelope viewportEnvelope = panel.getViewport()
-                .getEnvelopeInModelCoordinates();
+        return Collections.singletonMap(layer, features(layer, panel
+                .getViewport().getEnvelopeInModelCoordinates()));
+    }
 
-        return Collections.singletonMap(layer, layer
-                .getFeatureCollectionWrapper().query(viewportEnvelope));
+    /**
+     * @return the features of layer to draw in viewportEnvelope
+     */
+    static Collection<Feature> features(Layer layer, Envelope viewportEnvelope) {
+        // layers in another coordinate system may be reprojected for display
+        return DisplayReprojection.get(layer.getLayerManager())
+                .getFeatures(layer, viewportEnvelope);
     }
     
 	/**
@@ -32,6 +32,7 @@
 
 package com.vividsolutions.jump.workbench.ui.renderer;
 
+import com.vividsolutions.jump.workbench.model.Layer;
 import com.vividsolutions.jump.workbench.model.Layerable;
 import com.vividsolutions.jump.workbench.ui.GUIUtil;
 import com.vividsolutions.jump.workbench.ui.LayerViewPanel;
@@ -125,6 +126,9 @@ public class RenderingManager {
 	private int renderingMode = INTERACTIVE;
 	private Runnable notifyWhenDone = null;
 
+	// true while renderAll renders each content, labels included
+	private boolean renderingAll = false;
+
 	/**
 	 * Set the rendering mode
 	 * @param mode : INTERACTIVE, SINGLE_THREAD_QUEUE, or EXECUTE_ON_EVENT_THREAD
@@ -155,6 +159,12 @@ public class RenderingManager {
   public RenderingManager(final LayerViewPanel panel) {
     this.panel = panel;
     repaintTimer.setCoalesce(true);
+    putAboveLayerables(LabelRenderer.CONTENT_ID,
+      new Renderer.Factory() {
+        public Renderer create() {
+          return new LabelRenderer(panel);
+        }
+      });
     putAboveLayerables(SelectionBackgroundRenderer.CONTENT_ID,
       new Renderer.Factory() {
         public Renderer create() {
@@ -193,9 +203,14 @@ public class RenderingManager {
     defaultRendererThreadQueue.clear();
     multiRendererThreadQueue.clear();
 
-    for (Iterator i = contentIDs().iterator(); i.hasNext();) {
-      Object contentID = i.next();
-      render(contentID);
+    renderingAll = true;
+    try {
+      for (Iterator i = contentIDs().iterator(); i.hasNext();) {
+        Object contentID = i.next();
+        render(contentID);
+      }
+    } finally {
+      renderingAll = false;
     }
 
     if (notifyWhenDone != null) {
@@ -269,6 +284,13 @@ public class RenderingManager {
       }
     }
 
+    // labels of a layer may hide or be hidden by labels of other layers,
+    // so all the labels are placed again
+    if (contentID instanceof Layer && !renderingAll
+        && contentIDToHighRendererFactoryMap.containsKey(LabelRenderer.CONTENT_ID)) {
+      render(LabelRenderer.CONTENT_ID);
+    }
+
     if (!repaintTimer.isRunning()) {
       if (getRenderingMode() != EXECUTE_ON_EVENT_THREAD) {
           repaintPanel();
@@ -35,6 +35,7 @@ package com.vividsolutions.jump.workbench.ui.renderer;
 import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.Rectangle;
 
 import org.locationtech.jts.util.Assert;
 import com.vividsolutions.jump.workbench.model.WMSLayer;
@@ -71,11 +72,35 @@ public class WMSLayerRenderer extends ImageCachingRenderer {
 		return (WMSLayer) getContentID();
 	}
 
-	protected void renderHook(ThreadSafeImage image) throws Exception {
+	protected void renderHook(final ThreadSafeImage image) throws Exception {
 		if (!getLayer().isVisible()) {
 			return;
 		}
 
+		if (getLayer().isTiled()) {
+			//Tiles are drawn as they arrive, cached ones first, so that the
+			//view is filled progressively.
+			getLayer().drawTiles(panel, new WMSLayer.TileConsumer() {
+				public void tile(final Image tile, final Rectangle bounds)
+						throws Exception {
+					image.draw(new ThreadSafeImage.Drawer() {
+						public void draw(Graphics2D g) throws Exception {
+							g.setComposite(AlphaComposite.getInstance(
+									AlphaComposite.SRC_OVER,
+									getLayer().getAlpha() / 255f));
+							g.drawImage(tile, bounds.x, bounds.y, bounds.width,
+									bounds.height, null);
+						}
+					});
+				}
+
+				public boolean isCancelled() {
+					return cancelled;
+				}
+			});
+			return;
+		}
+
 		//Create the image outside the synchronized call to #draw, because it
 		// takes
 		//a few seconds, and we don't want to block repaints. [Jon Aquino]
@@ -90,14 +90,46 @@ public class Java2DConverter {
 
 		for (int j = 0; j < p.getNumInteriorRing(); j++) {
 			holeVertexCollection.add(
-				toViewCoordinates(p.getInteriorRingN(j).getCoordinates()));
+				toViewCoordinates(p.getInteriorRingN(j).getCoordinateSequence()));
 		}
 
 		return new PolygonShape(
-			toViewCoordinates(p.getExteriorRing().getCoordinates()),
+			toViewCoordinates(p.getExteriorRing().getCoordinateSequence()),
 			holeVertexCollection);
 	}
 
+	// Reads ordinates from the sequence rather than from getCoordinates(),
+	// so that packed coordinate sequences (see GeometryStoragePolicy) are
+	// not expanded into Coordinate arrays on each repaint
+	private Coordinate[] toViewCoordinates(CoordinateSequence modelCoordinates)
+		throws NoninvertibleTransformException {
+		int mpts = modelCoordinates.size();
+		if (mpts == 0) return new Coordinate[0];
+		Coordinate[] viewCoordinates = new Coordinate[mpts];
+		double ps = decimatorResolution / pointConverter.getScale();  // convert in model units
+		Coordinate pi = new Coordinate();
+		double x0 = modelCoordinates.getX(0);
+		double y0 = modelCoordinates.getY(0);
+		int npts = 0;
+		for (int i = 0; i < mpts; i++) {
+			pi.x = modelCoordinates.getX(i);
+			pi.y = modelCoordinates.getY(i);
+			//inline Decimator
+			if ((Math.abs(x0-pi.x)>=ps) || (Math.abs(y0-pi.y)>=ps) || (npts<4) || (i == mpts-1)) {
+				Point2D point2D = pointConverter.toViewPoint(pi);
+				viewCoordinates[npts++] = new Coordinate(point2D.getX(), point2D.getY());
+				x0 = pi.x;
+				y0 = pi.y;
+			}
+		}
+		if (npts != mpts) {
+			Coordinate[] viewCoordinates2 = new Coordinate[npts];
+			System.arraycopy(viewCoordinates, 0, viewCoordinates2, 0, npts);
+			return viewCoordinates2;
+		}
+		return viewCoordinates;
+	}
+
 	public Coordinate[] toViewCoordinates(Coordinate[] modelCoordinates)
 		throws NoninvertibleTransformException {
 		Coordinate[] viewCoordinates = new Coordinate[modelCoordinates.length];
@@ -0,0 +1,182 @@
+package com.vividsolutions.jump.workbench.ui.renderer.style;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.workbench.model.*;
+
+/**
+ * Keeps what is needed to place the labels of the layers of a LayerManager
+ * from one rendering to the next: the anchor of each labelled feature, at
+ * the current scale, and the text layouts of the labels.
+ * <p>
+ * Anchors are dropped when a feature is edited, and all the anchors of a
+ * layer are dropped when the scale of the view or the placement options of
+ * its LabelStyle change.
+ */
+public class LabelCache implements LayerListener {
+
+    private static final String KEY = LabelCache.class.getName();
+
+    // text layouts are dropped rather than evicted one by one
+    private static final int MAX_LAYOUTS = 10000;
+
+    private final Map<Layer,LayerLabels> layers = new IdentityHashMap<>();
+
+    /**
+     * Creates a LabelCache which is not the one of a LayerManager, e.g. to
+     * place the labels of an exported image at its own scale without
+     * emptying the cache of the views. It does not follow the edits of
+     * layers, and should not be kept longer than a rendering.
+     */
+    public LabelCache() {
+    }
+
+    private LabelCache(LayerManager layerManager) {
+        layerManager.addLayerListener(this);
+    }
+
+    /**
+     * @return the LabelCache of layerManager
+     */
+    public static LabelCache get(LayerManager layerManager) {
+        synchronized (layerManager.getBlackboard()) {
+            LabelCache cache = (LabelCache)layerManager.getBlackboard().get(KEY);
+            if (cache == null) {
+                cache = new LabelCache(layerManager);
+                layerManager.getBlackboard().put(KEY, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * @return the cache of the labels of layer, emptied if the scale or the
+     * label placement options have changed since it was last used
+     */
+    public LayerLabels getLayerLabels(Layer layer, double scale) {
+        LayerLabels labels;
+        synchronized (this) {
+            labels = layers.get(layer);
+            if (labels == null) {
+                labels = new LayerLabels();
+                layers.put(layer, labels);
+            }
+        }
+        labels.validate(layer, scale);
+        return labels;
+    }
+
+    public synchronized void featuresChanged(FeatureEvent e) {
+        // the text, the angle and the height of a label are not cached
+        if (e.getType() == FeatureEventType.ATTRIBUTES_MODIFIED) {
+            return;
+        }
+        LayerLabels labels = layers.get(e.getLayer());
+        if (labels != null) {
+            labels.remove(e.getFeatures());
+        }
+    }
+
+    public synchronized void layerChanged(LayerEvent e) {
+        if (e.getType() == LayerEventType.REMOVED) {
+            layers.remove(e.getLayerable());
+        }
+    }
+
+    public void categoryChanged(CategoryEvent e) {
+    }
+
+    /**
+     * The cached labels of a layer.
+     */
+    public static final class LayerLabels {
+
+        // features do not override equals, and are forgotten with their
+        // FeatureCollection (or their reprojected copies)
+        private final Map<Feature,Anchor> anchors = new WeakHashMap<>();
+        private final Map<String,TextLayout> layouts = new HashMap<>();
+        private double scale = Double.NaN;
+        private LabelStyle style;
+        private String verticalAlignment;
+        private String horizontalPosition;
+        private int horizontalAlignment;
+        private int vertexSize;
+        private Font font;
+        private FontRenderContext frc;
+
+        private synchronized void validate(Layer layer, double scale) {
+            LabelStyle style = layer.getLabelStyle();
+            // labels of points are moved away from their vertex symbol
+            int vertexSize = layer.getVertexStyle() != null
+                    && layer.getVertexStyle().isEnabled() ? layer.getVertexStyle().getSize() : -1;
+            if (scale != this.scale || style != this.style
+                    || !style.getVerticalAlignment().equals(verticalAlignment)
+                    || !style.getHorizontalPosition().equals(horizontalPosition)
+                    || style.getHorizontalAlignment() != horizontalAlignment
+                    || vertexSize != this.vertexSize) {
+                anchors.clear();
+                this.scale = scale;
+                this.style = style;
+                this.verticalAlignment = style.getVerticalAlignment();
+                this.horizontalPosition = style.getHorizontalPosition();
+                this.horizontalAlignment = style.getHorizontalAlignment();
+                this.vertexSize = vertexSize;
+            }
+        }
+
+        private synchronized void remove(Iterable<?> features) {
+            for (Object feature : features) anchors.remove(feature);
+        }
+
+        /**
+         * @return the anchor of feature, or null if it is not cached or if
+         * geometry is not the geometry it was computed for
+         */
+        synchronized LabelStyle.ModelSpaceLabelSpec getAnchor(Feature feature, Geometry geometry) {
+            Anchor anchor = anchors.get(feature);
+            return anchor == null || anchor.geometry != geometry ? null : anchor.spec;
+        }
+
+        synchronized void putAnchor(Feature feature, Geometry geometry, LabelStyle.ModelSpaceLabelSpec spec) {
+            // the location may be a coordinate of the geometry, which can be
+            // modified in place
+            anchors.put(feature, new Anchor(geometry, new LabelStyle.ModelSpaceLabelSpec(
+                    new Coordinate(spec.location), spec.angle, spec.dim)));
+        }
+
+        synchronized TextLayout getLayout(String text, Font font, FontRenderContext frc) {
+            if (!font.equals(this.font) || !frc.equals(this.frc) || layouts.size() > MAX_LAYOUTS) {
+                layouts.clear();
+                this.font = font;
+                this.frc = frc;
+            }
+            TextLayout layout = layouts.get(text);
+            if (layout == null) {
+                layout = new TextLayout(text, font, frc);
+                // computes the bounds once, before the layout is shared
+                layout.getBounds();
+                layouts.put(text, layout);
+            }
+            return layout;
+        }
+    }
+
+    private static final class Anchor {
+        final Geometry geometry;
+        final LabelStyle.ModelSpaceLabelSpec spec;
+        Anchor(Geometry geometry, LabelStyle.ModelSpaceLabelSpec spec) {
+            this.geometry = geometry;
+            this.spec = spec;
+        }
+    }
+}
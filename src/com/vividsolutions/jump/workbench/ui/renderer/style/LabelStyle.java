@@ -37,6 +37,7 @@ import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.Shape;
 import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
 import java.awt.font.TextLayout;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
@@ -165,27 +166,52 @@ public class LabelStyle implements Style {
     public void paint(Feature f, Graphics2D g, Viewport viewport)
             throws NoninvertibleTransformException {
         // Test scale first to return faster if realScale > scaleToHideAt
-        if (isHidingAtScale()) {
-            double scale = height / getFont().getSize2D();
-            if (isScaling()) {
-                scale *= viewport.getScale();
-            }
-            final double realScale = ScreenScale
-                    .getHorizontalMapScale(viewport);
-            if (realScale > scaleToHideAt) {
-                return;
-            }
+        if (isHiddenAtScale(viewport)) {
+            return;
+        }
+        final String text = getText(f);
+        if (text == null) {
+            return;
+        }
+        final Geometry viewportIntersection = intersection(
+                simplify(f.getGeometry(), viewport), viewport);
+        if (viewportIntersection == null || viewportIntersection.isEmpty()) {
+            return;
         }
+        final ModelSpaceLabelSpec spec = modelSpaceLabelSpec(
+                viewportIntersection, viewport);
+        final Point2D labelCentreInViewSpace = viewport
+                .toViewPoint(new Point2D.Double(spec.location.x,
+                        spec.location.y));
+        paint(g,
+                text,
+                viewport,// .getScale(),
+                labelCentreInViewSpace,
+                angle(f, getAngleAttribute(), spec.angle),
+                height(f, getHeightAttribute(), getHeight()), spec.dim);
+    }
 
+    /**
+     * @return true if labels are hidden at the scale of viewport
+     */
+    public boolean isHiddenAtScale(Viewport viewport) {
+        return isHidingAtScale()
+                && ScreenScale.getHorizontalMapScale(viewport) > scaleToHideAt;
+    }
+
+    /**
+     * @return the text of the label of f, or null if f has no label
+     */
+    public String getText(Feature f) {
         final Object attributeValue = getAttributeValue(f);
         String attributeStringValue;
         if ((attributeValue == null)) {
-            return;
+            return null;
         } else if (attributeValue instanceof String) {
             // added .trim() 2007-07-13 [mmichaud]
             attributeStringValue = ((String) attributeValue).trim();
             if (attributeStringValue.length() == 0) {
-                return;
+                return null;
             }
         } else if (attributeValue instanceof Date) {
             final DateFormat dateFormat = DateFormat
@@ -202,38 +228,100 @@ public class LabelStyle implements Style {
         } else {
             attributeStringValue = attributeValue.toString();
         }
+        return attributeStringValue;
+    }
 
-        // [mmichaud 2012-09-22] Simplify the geometry used to draw the label
-        // makes sense for very complex polygons
-        // ex. finnish lake of 282000 pts takes 0.3 s instead of 8 s
-        // TODO : investigate another problem : paint is called 4 times after a
-        // pan !
-        Geometry geom = f.getGeometry();
-        final double pixelSize = viewport.getEnvelopeInModelCoordinates()
-                .getWidth() / viewport.getPanel().getSize().getWidth();
+    // [mmichaud 2012-09-22] Simplify the geometry used to draw the label
+    // makes sense for very complex polygons
+    // ex. finnish lake of 282000 pts takes 0.3 s instead of 8 s
+    private Geometry simplify(Geometry geom, Viewport viewport) {
         if (geom.getNumPoints() > 64) {
-            geom = DouglasPeuckerSimplifier
-                    .simplify(f.getGeometry(), pixelSize);
+            final double pixelSize = 1d / viewport.getScale();
+            final Geometry simplified = DouglasPeuckerSimplifier
+                    .simplify(geom, pixelSize);
             // revert if geometry is empty or invalid
-            if (geom.isEmpty() || !geom.isValid()) {
-                geom = f.getGeometry();
+            if (!simplified.isEmpty() && simplified.isValid()) {
+                return simplified;
             }
         }
+        return geom;
+    }
 
-        final Geometry viewportIntersection = intersection(geom, viewport);
-        if (viewportIntersection == null || viewportIntersection.isEmpty()) {
-            return;
+    /**
+     * Computes the label of f in the view, as {@link #paint(Feature, Graphics2D, Viewport)}
+     * would draw it, but without drawing it, so that the labels of several
+     * layers can be placed together before being drawn with
+     * {@link #paint(Graphics2D, Label)}.
+     * <p>
+     * The anchor of a feature lying inside the view does not depend on the
+     * view extent: it is kept in cache, with the text layouts of the layer,
+     * until the scale, the placement options or the feature change.
+     *
+     * @param f the feature to label
+     * @param viewport the viewport the label is drawn in
+     * @param cache the cache of the labels of the layer
+     * @param frc the FontRenderContext of the Graphics2D the label is drawn on
+     * @return the label of f, or null if f has no label in this view
+     */
+    public Label createLabel(Feature f, Viewport viewport,
+            LabelCache.LayerLabels cache, FontRenderContext frc)
+            throws NoninvertibleTransformException {
+        final String text = getText(f);
+        if (text == null) {
+            return null;
+        }
+        final Geometry geometry = f.getGeometry();
+        final boolean insideView = viewport.getEnvelopeInModelCoordinates()
+                .contains(geometry.getEnvelopeInternal());
+        ModelSpaceLabelSpec spec = insideView ? cache.getAnchor(f, geometry) : null;
+        if (spec == null) {
+            final Geometry simplified = simplify(geometry, viewport);
+            // the viewport rectangle is not kept, as views of different
+            // extents may label the layer at the same time
+            final Geometry viewportIntersection = insideView ? simplified
+                    : simplified.intersection(factory.toGeometry(viewport
+                            .getEnvelopeInModelCoordinates()));
+            if (viewportIntersection.isEmpty()) {
+                return null;
+            }
+            spec = modelSpaceLabelSpec(viewportIntersection, viewport);
+            if (insideView) {
+                cache.putAnchor(f, geometry, spec);
+            }
+        }
+        final double viewportScale = viewport.getScale();
+        double scale = height(f, getHeightAttribute(), getHeight())
+                / getFont().getSize2D();
+        if (isScaling()) {
+            scale *= viewportScale;
+        }
+        final TextLayout layout = cache.getLayout(text, getFont(), frc);
+        final AffineTransform transform = new AffineTransform();
+        configureTransform(transform, viewport.toViewPoint(new Point2D.Double(
+                spec.location.x, spec.location.y)), scale, layout,
+                angle(f, getAngleAttribute(), spec.angle), spec.dim);
+        return new Label(layout, transform);
+    }
+
+    /**
+     * Draws a label created by {@link #createLabel}.
+     */
+    public void paint(Graphics2D g, Label label) {
+        setup(g);
+        try {
+            final AffineTransform transform = g.getTransform();
+            transform.concatenate(label.transform);
+            g.setTransform(transform);
+            if (outlineShowing) {
+                g.setColor(outlineColor);
+                g.setStroke(outlineStroke);
+                g.draw(label.layout.getOutline(null));
+            }
+            g.setColor(getColor());
+            label.layout.draw(g, 0, 0);
+        } finally {
+            cleanup(g);
         }
-        final ModelSpaceLabelSpec spec = modelSpaceLabelSpec(viewportIntersection);
-        final Point2D labelCentreInViewSpace = viewport
-                .toViewPoint(new Point2D.Double(spec.location.x,
-                        spec.location.y));
-        paint(g,
-                attributeStringValue,
-                viewport,// .getScale(),
-                labelCentreInViewSpace,
-                angle(f, getAngleAttribute(), spec.angle),
-                height(f, getHeightAttribute(), getHeight()), spec.dim);
     }
 
     /**
@@ -271,8 +359,8 @@ public class LabelStyle implements Style {
         }
     }
 
-    private ModelSpaceLabelSpec modelSpaceLabelSpec(Geometry geometry)
-            throws NoninvertibleTransformException {
+    private ModelSpaceLabelSpec modelSpaceLabelSpec(Geometry geometry,
+            Viewport viewport) throws NoninvertibleTransformException {
         if (geometry.getDimension() == 1) {
             return modelSpaceLabelSpec1D(geometry);
         }
@@ -283,7 +371,7 @@ public class LabelStyle implements Style {
             if (layer.getVertexStyle().isEnabled()) {
                 final int size = layer.getVertexStyle().size;
                 return new ModelSpaceLabelSpec(findPointForVertexSymbology(
-                        geometry, size), 0, 0);
+                        geometry, size, viewport), 0, 0);
             } else {
                 return new ModelSpaceLabelSpec(geometry.getCoordinate(), 0d, 0);
             }
@@ -335,13 +423,22 @@ public class LabelStyle implements Style {
      *      the symbol size and the horizontal and vertical alignment
      */
     public Coordinate findPointForVertexSymbology(Geometry geometry, int value) {
+        return findPointForVertexSymbology(geometry, value, JUMPWorkbench
+                .getInstance().getFrame().getContext().getLayerViewPanel()
+                .getViewport());
+    }
+
+    /**
+     * Same as {@link #findPointForVertexSymbology(Geometry, int)}, for the
+     * label drawn in viewport.
+     */
+    public Coordinate findPointForVertexSymbology(Geometry geometry, int value,
+            Viewport viewport) {
         if (geometry.isEmpty()) {
             return new Coordinate(0, 0);
         }
         // [Giuseppe Aruta 2018-10-29] set right label distance according to the
         // scale of view
-        final Viewport viewport = JUMPWorkbench.getInstance().getFrame()
-                .getContext().getLayerViewPanel().getViewport();
         final double viewBaseScale = 1.0;
         final double viewScale = viewport.getScale();
         final double scaleFactor = viewScale * viewBaseScale;
@@ -838,7 +935,7 @@ public class LabelStyle implements Style {
         }
     }
 
-    private class ModelSpaceLabelSpec {
+    static final class ModelSpaceLabelSpec {
         public double angle;
         public Coordinate location;
         public int dim;
@@ -849,4 +946,32 @@ public class LabelStyle implements Style {
             this.dim = dim;
         }
     }
+
+    /**
+     * The label of a feature, placed in the view but not drawn yet.
+     */
+    public static final class Label {
+        private final TextLayout layout;
+        private final AffineTransform transform;
+
+        Label(TextLayout layout, AffineTransform transform) {
+            this.layout = layout;
+            this.transform = transform;
+        }
+
+        /**
+         * @return the corners of the bounds of the label in view coordinates
+         * (x0, y0, ..., x3, y3), in order around the label
+         */
+        public double[] getCorners() {
+            final Rectangle2D bounds = layout.getBounds();
+            final double[] corners = new double[] {
+                    bounds.getMinX(), bounds.getMinY(),
+                    bounds.getMaxX(), bounds.getMinY(),
+                    bounds.getMaxX(), bounds.getMaxY(),
+                    bounds.getMinX(), bounds.getMaxY() };
+            transform.transform(corners, 0, corners, 0, 4);
+            return corners;
+        }
+    }
 }
@@ -32,19 +32,11 @@
 
 package com.vividsolutions.jump.workbench.ui.snap;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-
 import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.GeometryFactory;
-import com.vividsolutions.jump.geom.CoordUtil;
 import com.vividsolutions.jump.util.Blackboard;
 import com.vividsolutions.jump.workbench.ui.LayerViewPanel;
-import com.vividsolutions.jump.workbench.ui.plugin.VerticesInFencePlugIn;
 
 public class SnapToVerticesPolicy implements SnapPolicy {
-    private GeometryFactory factory = new GeometryFactory();
     //On-screen features are cached. The cache is built lazily. [Jon Aquino]
 
     private Blackboard blackboard;
@@ -58,27 +50,7 @@ public class SnapToVerticesPolicy implements SnapPolicy {
         if (!blackboard.get(ENABLED_KEY, false)) {
             return null;
         }
-        Geometry bufferedTransformedCursorLocation;
-        bufferedTransformedCursorLocation =
-                factory.createPoint(originalPoint).buffer(SnapManager.getToleranceInPixels(blackboard) / panel.getViewport().getScale());
-        ArrayList vertices = new ArrayList();
-        for (Iterator i =
-            VisiblePointsAndLinesCache
-                .instance(panel)
-                .getTree()
-                .query(bufferedTransformedCursorLocation.getEnvelopeInternal())
-                .iterator();
-            i.hasNext();
-            ) {
-            Geometry pointsAndLines = (Geometry) i.next();
-            vertices.addAll(
-                VerticesInFencePlugIn
-                    .verticesInFence(pointsAndLines, bufferedTransformedCursorLocation, true)
-                    .getCoordinates());
-        }
-        if (vertices.isEmpty()) {
-            return null;
-        }
-        return CoordUtil.closest(vertices, originalPoint);
+        return VisiblePointsAndLinesCache.instance(panel).getClosestVertex(originalPoint,
+            SnapManager.getToleranceInPixels(blackboard) / panel.getViewport().getScale());
     }
 }
@@ -0,0 +1,225 @@
+package com.vividsolutions.jump.workbench.ui.snap;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+/**
+ * Index of the vertices and segments of a set of geometries, stored in
+ * primitive arrays and bucketed in a hashed grid of square cells, for fast
+ * nearest-vertex and nearest-segment queries within a small tolerance.
+ * <p>
+ * The vertices of a geometry are stored in a contiguous block; a segment is
+ * identified by the index of its first vertex. Removing a geometry marks
+ * its block as dead; dead entries are skipped by queries, and the owner of
+ * the index is expected to rebuild it when too many entries are dead.
+ */
+class VertexAndSegmentIndex {
+
+    // segments covering more cells than this are kept in a separate list
+    private static final int MAX_CELLS_PER_SEGMENT = 64;
+
+    private final double cellSize;
+
+    private double[] xs = new double[1024];
+    private double[] ys = new double[1024];
+    // linked.get(i) : vertices i and i+1 form a segment
+    private final BitSet linked = new BitSet();
+    private final BitSet dead = new BitSet();
+    private int size = 0;
+    private int deadCount = 0;
+
+    private final Map<Long,IntList> vertexCells = new HashMap<>();
+    private final Map<Long,IntList> segmentCells = new HashMap<>();
+    private final IntList longSegments = new IntList();
+
+    VertexAndSegmentIndex(double cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    double getCellSize() {
+        return cellSize;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getDeadCount() {
+        return deadCount;
+    }
+
+    /**
+     * Adds the vertices and segments of geometry.
+     * @return the first index of the block of vertices of geometry, to be
+     * used with {@link #remove(int, int)}
+     */
+    int add(Geometry geometry) {
+        int start = size;
+        addComponents(geometry);
+        return start;
+    }
+
+    /**
+     * Removes the block of count vertices starting at start.
+     */
+    void remove(int start, int count) {
+        if (count == 0) return;
+        dead.set(start, start + count);
+        deadCount += count;
+    }
+
+    private void addComponents(Geometry g) {
+        if (g.isEmpty()) return;
+        if (g instanceof Point) {
+            addSequence(((Point)g).getCoordinateSequence(), false);
+        } else if (g instanceof LineString) {
+            addSequence(((LineString)g).getCoordinateSequence(), true);
+        } else if (g instanceof Polygon) {
+            Polygon polygon = (Polygon)g;
+            addSequence(polygon.getExteriorRing().getCoordinateSequence(), true);
+            for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                addSequence(polygon.getInteriorRingN(i).getCoordinateSequence(), true);
+            }
+        } else {
+            for (int i = 0; i < g.getNumGeometries(); i++) {
+                addComponents(g.getGeometryN(i));
+            }
+        }
+    }
+
+    private void addSequence(CoordinateSequence seq, boolean lines) {
+        int n = seq.size();
+        ensureCapacity(size + n);
+        for (int i = 0; i < n; i++) {
+            int v = size++;
+            xs[v] = seq.getX(i);
+            ys[v] = seq.getY(i);
+            vertexCells.computeIfAbsent(key(cell(xs[v]), cell(ys[v])), k -> new IntList()).add(v);
+            if (lines && i > 0) {
+                linked.set(v - 1);
+                addSegment(v - 1);
+            }
+        }
+    }
+
+    private void addSegment(int s) {
+        long minX = cell(Math.min(xs[s], xs[s + 1]));
+        long maxX = cell(Math.max(xs[s], xs[s + 1]));
+        long minY = cell(Math.min(ys[s], ys[s + 1]));
+        long maxY = cell(Math.max(ys[s], ys[s + 1]));
+        if ((maxX - minX + 1) * (maxY - minY + 1) > MAX_CELLS_PER_SEGMENT) {
+            longSegments.add(s);
+            return;
+        }
+        for (long x = minX; x <= maxX; x++) {
+            for (long y = minY; y <= maxY; y++) {
+                segmentCells.computeIfAbsent(key(x, y), k -> new IntList()).add(s);
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= xs.length) return;
+        int length = Math.max(capacity, xs.length * 2);
+        xs = Arrays.copyOf(xs, length);
+        ys = Arrays.copyOf(ys, length);
+    }
+
+    private long cell(double d) {
+        return (long)Math.floor(d / cellSize);
+    }
+
+    private static long key(long x, long y) {
+        return (x << 32) ^ (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the vertex closest to p within tolerance, or null
+     */
+    Coordinate closestVertex(Coordinate p, double tolerance) {
+        double best = tolerance * tolerance;
+        int found = -1;
+        for (long x = cell(p.x - tolerance), maxX = cell(p.x + tolerance); x <= maxX; x++) {
+            for (long y = cell(p.y - tolerance), maxY = cell(p.y + tolerance); y <= maxY; y++) {
+                IntList list = vertexCells.get(key(x, y));
+                if (list == null) continue;
+                for (int k = 0; k < list.size; k++) {
+                    int v = list.values[k];
+                    if (dead.get(v)) continue;
+                    double dx = xs[v] - p.x;
+                    double dy = ys[v] - p.y;
+                    double d = dx * dx + dy * dy;
+                    if (d <= best) {
+                        best = d;
+                        found = v;
+                    }
+                }
+            }
+        }
+        return found < 0 ? null : new Coordinate(xs[found], ys[found]);
+    }
+
+    /**
+     * @return the point of a segment or the isolated vertex closest to p
+     * within tolerance, or null
+     */
+    Coordinate closestPoint(Coordinate p, double tolerance) {
+        double[] best = {tolerance * tolerance, Double.NaN, Double.NaN};
+        for (long x = cell(p.x - tolerance), maxX = cell(p.x + tolerance); x <= maxX; x++) {
+            for (long y = cell(p.y - tolerance), maxY = cell(p.y + tolerance); y <= maxY; y++) {
+                IntList segments = segmentCells.get(key(x, y));
+                if (segments != null) {
+                    for (int k = 0; k < segments.size; k++) closestOnSegment(segments.values[k], p, best);
+                }
+                IntList vertices = vertexCells.get(key(x, y));
+                if (vertices != null) {
+                    for (int k = 0; k < vertices.size; k++) {
+                        int v = vertices.values[k];
+                        // vertices of lines are tested with their segments
+                        if (dead.get(v) || linked.get(v) || (v > 0 && linked.get(v - 1))) continue;
+                        closest(xs[v], ys[v], p, best);
+                    }
+                }
+            }
+        }
+        for (int k = 0; k < longSegments.size; k++) closestOnSegment(longSegments.values[k], p, best);
+        return Double.isNaN(best[1]) ? null : new Coordinate(best[1], best[2]);
+    }
+
+    private void closestOnSegment(int s, Coordinate p, double[] best) {
+        if (dead.get(s)) return;
+        double x0 = xs[s], y0 = ys[s];
+        double dx = xs[s + 1] - x0, dy = ys[s + 1] - y0;
+        double length2 = dx * dx + dy * dy;
+        double r = length2 == 0 ? 0 : ((p.x - x0) * dx + (p.y - y0) * dy) / length2;
+        r = Math.max(0, Math.min(1, r));
+        closest(x0 + r * dx, y0 + r * dy, p, best);
+    }
+
+    private static void closest(double x, double y, Coordinate p, double[] best) {
+        double d = (x - p.x) * (x - p.x) + (y - p.y) * (y - p.y);
+        if (d <= best[0]) {
+            best[0] = d;
+            best[1] = x;
+            best[2] = y;
+        }
+    }
+
+    private static final class IntList {
+        int[] values = new int[4];
+        int size = 0;
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+    }
+}
@@ -31,6 +31,7 @@
  */
 package com.vividsolutions.jump.workbench.ui.snap;
 
+import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryCollection;
@@ -38,28 +39,60 @@ import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Polygon;
 import org.locationtech.jts.index.strtree.STRtree;
 import org.locationtech.jts.util.Assert;
+import org.cts.crs.CoordinateReferenceSystem;
+import org.openjump.core.ui.plugin.cts.DisplayReprojection;
 
 import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.feature.FeatureCollection;
 import com.vividsolutions.jump.workbench.model.CategoryEvent;
 import com.vividsolutions.jump.workbench.model.FeatureEvent;
+import com.vividsolutions.jump.workbench.model.FeatureEventType;
 import com.vividsolutions.jump.workbench.model.Layer;
 import com.vividsolutions.jump.workbench.model.LayerEvent;
+import com.vividsolutions.jump.workbench.model.LayerEventType;
 import com.vividsolutions.jump.workbench.model.LayerListener;
 import com.vividsolutions.jump.workbench.ui.LayerViewPanel;
 import com.vividsolutions.jump.workbench.ui.ViewportListener;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Map;
 
 
+/**
+ * Index of the vertices and segments of the features visible in a
+ * LayerViewPanel, used by the snap policies.
+ * <p>
+ * The index is maintained incrementally rather than rebuilt after each
+ * change : when the view is panned, only the features of the newly exposed
+ * area are added; FeatureEvents add, replace or remove the vertices of the
+ * changed features; a layer is indexed again only if it is added, removed,
+ * shown, hidden or gets a new FeatureCollection. The index is rebuilt when
+ * the scale changes too much for its cell size, when the indexed area gets
+ * much larger than the view, or when too many of its entries are removed.
+ * Updates due to view changes are applied lazily, on the next query.
+ * <p>
+ * Layers reprojected for display (see {@link DisplayReprojection}) are
+ * indexed with their reprojected geometries, and indexed again when they
+ * change or when the target CRS changes.
+ */
 public class VisiblePointsAndLinesCache {
     private static final String PANEL_PROPERTY_KEY = "VISIBLE_POINTS_AND_LINES_CACHE";
+    // the cell size of the index is the size of the view divided by this
+    private static final double CELLS_PER_VIEW = 100;
+    // the margin added around the view when new features are indexed
+    private static final double MARGIN_RATIO = 0.25;
+    // the index is rebuilt if the indexed area exceeds this many views
+    private static final double MAX_INDEXED_VIEWS = 16;
+
     private LayerListener layerListener = new LayerListener() {
             public void layerChanged(LayerEvent e) {
-                invalidate();
+                VisiblePointsAndLinesCache.this.layerChanged(e);
             }
 
             public void featuresChanged(FeatureEvent e) {
+                VisiblePointsAndLinesCache.this.featuresChanged(e);
             }
 
             public void categoryChanged(CategoryEvent e) {
@@ -68,7 +101,7 @@ public class VisiblePointsAndLinesCache {
 
     private ViewportListener viewportListener = new ViewportListener() {
             public void zoomChanged(Envelope modelEnvelope) {
-                invalidate();
+                tree = null;
             }
         };
 
@@ -76,17 +109,205 @@ public class VisiblePointsAndLinesCache {
     private GeometryFactory factory = new GeometryFactory();
     private STRtree tree = null;
 
+    private VertexAndSegmentIndex index = null;
+    // the area in which all the features of indexed layers are indexed
+    private Envelope indexedEnvelope = null;
+    // the union of the areas indexed since the last rebuild
+    private Envelope indexedExtent = null;
+    // feature -> {first vertex, vertex count}, for each indexed layer
+    private Map<Layer,Map<Feature,int[]>> indexedFeatures = new IdentityHashMap<>();
+    // the FeatureCollection of each indexed layer, to detect its replacement
+    private Map<Layer,FeatureCollection> indexedCollections = new IdentityHashMap<>();
+    // layers to index again before the next query
+    private Map<Layer,Layer> dirtyLayers = new IdentityHashMap<>();
+    // the CRS layers were reprojected to when the index was built
+    private CoordinateReferenceSystem indexedTargetCRS = null;
+    // the indexed layers which were reprojected
+    private Map<Layer,Layer> reprojectedLayers = new IdentityHashMap<>();
+
     private VisiblePointsAndLinesCache(LayerViewPanel panel) {
         this.panel = panel;
         panel.getViewport().addListener(viewportListener);
         panel.getLayerManager().addLayerListener(layerListener);
     }
 
-    private void invalidate() {
+    private synchronized void layerChanged(LayerEvent e) {
+        tree = null;
+        if (index == null || !(e.getLayerable() instanceof Layer)) {
+            return;
+        }
+        Layer layer = (Layer) e.getLayerable();
+        LayerEventType type = e.getType();
+        if (type == LayerEventType.ADDED || type == LayerEventType.REMOVED
+                || type == LayerEventType.VISIBILITY_CHANGED
+                || (type == LayerEventType.APPEARANCE_CHANGED
+                    && indexedCollections.containsKey(layer)
+                    && indexedCollections.get(layer) != layer.getFeatureCollectionWrapper().getUltimateWrappee())
+                // e.g. a layer made editable is not reprojected any more
+                || (indexedCollections.containsKey(layer)
+                    && reprojection().isReprojected(layer) != reprojectedLayers.containsKey(layer))) {
+            dirtyLayers.put(layer, layer);
+        }
+    }
+
+    private synchronized void featuresChanged(FeatureEvent e) {
         tree = null;
+        if (index == null || dirtyLayers.containsKey(e.getLayer())) {
+            return;
+        }
+        Map<Feature,int[]> features = indexedFeatures.get(e.getLayer());
+        if (features == null || e.getType() == FeatureEventType.ATTRIBUTES_MODIFIED) {
+            return;
+        }
+        // indexed features of reprojected layers are reprojected copies
+        if (reprojection().isReprojected(e.getLayer())) {
+            dirtyLayers.put(e.getLayer(), e.getLayer());
+            return;
+        }
+        for (Iterator i = e.getFeatures().iterator(); i.hasNext();) {
+            Feature feature = (Feature) i.next();
+            remove(features, feature);
+            if (e.getType() != FeatureEventType.DELETED
+                    && feature.getGeometry().getEnvelopeInternal().intersects(indexedEnvelope)) {
+                add(features, feature);
+            }
+        }
+    }
+
+    private void add(Map<Feature,int[]> features, Feature feature) {
+        int start = index.add(feature.getGeometry());
+        features.put(feature, new int[] {start, index.size() - start});
+    }
+
+    private void remove(Map<Feature,int[]> features, Feature feature) {
+        int[] block = features.remove(feature);
+        if (block != null) {
+            index.remove(block[0], block[1]);
+        }
+    }
+
+    /**
+     * Brings the index up to date with the view and the layers.
+     */
+    private void update() {
+        Envelope viewportEnvelope = panel.getViewport().getEnvelopeInModelCoordinates();
+        double size = Math.max(viewportEnvelope.getWidth(), viewportEnvelope.getHeight());
+        double cellSize = size > 0 ? size / CELLS_PER_VIEW : 1;
+        if (index == null
+                || index.getCellSize() < cellSize / 4 || index.getCellSize() > cellSize * 8
+                || index.getDeadCount() > index.size() / 2
+                || reprojection().getTargetCRS() != indexedTargetCRS) {
+            rebuild(viewportEnvelope, cellSize);
+            return;
+        }
+        if (!indexedEnvelope.contains(viewportEnvelope)) {
+            Envelope envelope = withMargin(viewportEnvelope);
+            Envelope extent = new Envelope(indexedExtent);
+            extent.expandToInclude(envelope);
+            if (extent.getArea() > MAX_INDEXED_VIEWS * envelope.getArea()) {
+                rebuild(viewportEnvelope, cellSize);
+                return;
+            }
+            indexedEnvelope = envelope;
+            indexedExtent = extent;
+            for (Layer layer : indexedFeatures.keySet()) {
+                if (!dirtyLayers.containsKey(layer)) {
+                    addFeatures(layer, indexedFeatures.get(layer));
+                }
+            }
+        }
+        for (Layer layer : dirtyLayers.keySet()) {
+            Map<Feature,int[]> features = indexedFeatures.remove(layer);
+            if (features != null) {
+                for (int[] block : features.values()) {
+                    index.remove(block[0], block[1]);
+                }
+            }
+            indexedCollections.remove(layer);
+            reprojectedLayers.remove(layer);
+            if (panel.getLayerManager().getLayers().contains(layer) && layer.isVisible()) {
+                indexLayer(layer);
+            }
+        }
+        dirtyLayers.clear();
+    }
+
+    private void rebuild(Envelope viewportEnvelope, double cellSize) {
+        index = new VertexAndSegmentIndex(cellSize);
+        indexedEnvelope = withMargin(viewportEnvelope);
+        indexedExtent = new Envelope(indexedEnvelope);
+        indexedFeatures.clear();
+        indexedCollections.clear();
+        reprojectedLayers.clear();
+        dirtyLayers.clear();
+        indexedTargetCRS = reprojection().getTargetCRS();
+        for (Iterator<Layer> i = panel.getLayerManager().iterator(Layer.class); i.hasNext();) {
+            Layer layer = i.next();
+            if (layer.isVisible()) {
+                indexLayer(layer);
+            }
+        }
+    }
+
+    private void indexLayer(Layer layer) {
+        Map<Feature,int[]> features = new IdentityHashMap<>();
+        indexedFeatures.put(layer, features);
+        indexedCollections.put(layer, layer.getFeatureCollectionWrapper().getUltimateWrappee());
+        if (reprojection().isReprojected(layer)) {
+            reprojectedLayers.put(layer, layer);
+        }
+        addFeatures(layer, features);
+    }
+
+    // adds the features of layer in indexedEnvelope which are not indexed yet
+    private void addFeatures(Layer layer, Map<Feature,int[]> features) {
+        for (Iterator j = reprojection().getFeatures(layer, indexedEnvelope).iterator();
+                j.hasNext();) {
+            Feature feature = (Feature) j.next();
+            if (!features.containsKey(feature)) {
+                add(features, feature);
+            }
+        }
+    }
+
+    private DisplayReprojection reprojection() {
+        return DisplayReprojection.get(panel.getLayerManager());
+    }
+
+    private static Envelope withMargin(Envelope envelope) {
+        Envelope expanded = new Envelope(envelope);
+        expanded.expandBy(envelope.getWidth() * MARGIN_RATIO, envelope.getHeight() * MARGIN_RATIO);
+        return expanded;
+    }
+
+    /**
+     * @return the vertex of a visible feature closest to p, within tolerance
+     * (in model units), or null if there is none
+     */
+    public synchronized Coordinate getClosestVertex(Coordinate p, double tolerance) {
+        update();
+        return index.closestVertex(p, tolerance);
+    }
+
+    /**
+     * @return the point on the boundary of a visible feature (or the point
+     * feature) closest to p, within tolerance (in model units), or null if
+     * there is none
+     */
+    public synchronized Coordinate getClosestPoint(Coordinate p, double tolerance) {
+        update();
+        return index.closestPoint(p, tolerance);
     }
 
-    public STRtree getTree() {
+    /**
+     * @return a tree of the visible geometries, with polygons replaced by
+     * their boundary
+     * @deprecated use {@link #getClosestVertex(Coordinate, double)} or
+     * {@link #getClosestPoint(Coordinate, double)}, which use an index
+     * maintained incrementally
+     */
+    @Deprecated
+    public synchronized STRtree getTree() {
         if (tree == null) {
             Envelope viewportEnvelope = panel.getViewport()
                                              .getEnvelopeInModelCoordinates();
@@ -96,8 +317,7 @@ public class VisiblePointsAndLinesCache {
                 if (!layer.isVisible()) {
                     continue;
                 }
-                for (Iterator j = layer.getFeatureCollectionWrapper()
-                                       .query(viewportEnvelope).iterator();
+                for (Iterator j = reprojection().getFeatures(layer, viewportEnvelope).iterator();
                         j.hasNext();) {
                     Feature feature = (Feature) j.next();
                     Geometry geometry = feature.getGeometry();
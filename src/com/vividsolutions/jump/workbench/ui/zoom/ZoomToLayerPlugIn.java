@@ -41,6 +41,7 @@ import javax.swing.JComponent;
 import javax.swing.JMenuItem;
 
 import org.locationtech.jts.geom.Envelope;
+import org.openjump.core.ui.plugin.cts.DisplayReprojection;
 import com.vividsolutions.jump.geom.EnvelopeUtil;
 import com.vividsolutions.jump.util.StringUtil;
 import com.vividsolutions.jump.workbench.WorkbenchContext;
@@ -72,7 +73,9 @@ public class ZoomToLayerPlugIn extends AbstractPlugIn {
                                                .getSelectedLayers()).iterator();
                 i.hasNext();) {
             Layer layer = (Layer) i.next();
-            envelope.expandToInclude(layer.getFeatureCollectionWrapper().getEnvelope());
+            // the envelope of the layer as it is drawn, it may be reprojected
+            envelope.expandToInclude(DisplayReprojection.get(
+                    context.getLayerManager()).getEnvelope(layer));
         }
 
         return envelope;
@@ -0,0 +1,66 @@
+package com.vividsolutions.wms;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ * A grid of square tiles of {@link #TILE_SIZE} pixels at a given scale,
+ * anchored at the origin of the model coordinates.
+ * <p>
+ * Two views at the same scale use the same tiles where they overlap, so
+ * that tiles requested for a view can be reused after a pan.
+ */
+public class TileGrid {
+
+  /** Width and height of a tile, in pixels. */
+  public static final int TILE_SIZE = 256;
+
+  private final double scale;
+  private final double tileModelSize;
+
+  /**
+   * @param scale the number of pixels per model unit
+   */
+  public TileGrid(double scale) {
+    this.scale = scale;
+    this.tileModelSize = TILE_SIZE / scale;
+  }
+
+  public double getScale() {
+    return scale;
+  }
+
+  /**
+   * @return the tiles intersecting envelope, row by row from the top
+   */
+  public List<Envelope> getTiles(Envelope envelope) {
+    long minCol = (long)Math.floor(envelope.getMinX() / tileModelSize);
+    long maxCol = (long)Math.ceil(envelope.getMaxX() / tileModelSize) - 1;
+    long minRow = (long)Math.floor(envelope.getMinY() / tileModelSize);
+    long maxRow = (long)Math.ceil(envelope.getMaxY() / tileModelSize) - 1;
+    List<Envelope> tiles = new ArrayList<>();
+    for (long row = Math.max(minRow, maxRow); row >= minRow; row--) {
+      for (long col = minCol; col <= Math.max(minCol, maxCol); col++) {
+        tiles.add(new Envelope(col * tileModelSize, (col + 1) * tileModelSize,
+            row * tileModelSize, (row + 1) * tileModelSize));
+      }
+    }
+    return tiles;
+  }
+
+  /**
+   * @return the pixel bounds of tile in a view showing envelope. Tile
+   * boundaries are rounded the same way for all tiles, so that adjacent
+   * tiles neither overlap nor leave gaps.
+   */
+  public Rectangle toView(Envelope tile, Envelope envelope) {
+    int x0 = (int)Math.round((tile.getMinX() - envelope.getMinX()) * scale);
+    int x1 = (int)Math.round((tile.getMaxX() - envelope.getMinX()) * scale);
+    int y0 = (int)Math.round((envelope.getMaxY() - tile.getMaxY()) * scale);
+    int y1 = (int)Math.round((envelope.getMaxY() - tile.getMinY()) * scale);
+    return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+  }
+}
@@ -0,0 +1,201 @@
+package com.vividsolutions.wms;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import com.vividsolutions.jump.workbench.Logger;
+
+/**
+ * A cache of map tiles, kept in memory (the most recently used ones) and
+ * on disk (until they expire), and fetched by a bounded pool of threads.
+ * <p>
+ * Tiles are identified by a key, usually the URL of the GetMap request.
+ * A tile which is being fetched is fetched only once, whatever the number
+ * of views asking for it.
+ */
+public class WMSTileCache {
+
+  private static final long DEFAULT_MAX_AGE = TimeUnit.DAYS.toMillis(7);
+  private static final int DEFAULT_MEMORY_CAPACITY = 256;
+  private static final int DEFAULT_THREADS = 4;
+
+  private static WMSTileCache defaultCache;
+
+  private final File directory;
+  private final long maxAge;
+  private final Map<String,CachedTile> memory;
+  private final Map<String,Future<BufferedImage>> pending = new ConcurrentHashMap<>();
+  private final ExecutorService executor;
+
+  /**
+   * @param directory the directory tiles are stored in, or null to keep
+   * tiles in memory only
+   * @param memoryCapacity the maximum number of tiles kept in memory
+   * @param maxAge the time after which a tile is fetched again, in
+   * milliseconds
+   * @param threads the maximum number of tiles fetched at the same time
+   */
+  public WMSTileCache(File directory, final int memoryCapacity, long maxAge, int threads) {
+    this.directory = directory;
+    this.maxAge = maxAge;
+    this.memory = new LinkedHashMap<String,CachedTile>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<String,CachedTile> eldest) {
+        return size() > memoryCapacity;
+      }
+    };
+    final AtomicInteger count = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "WMS tile fetcher " + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * @return the cache shared by all the WMS layers, stored in the temporary
+   * directory
+   */
+  public static synchronized WMSTileCache getDefault() {
+    if (defaultCache == null) {
+      defaultCache = new WMSTileCache(
+          new File(System.getProperty("java.io.tmpdir"), "openjump-wms-tiles"),
+          DEFAULT_MEMORY_CAPACITY, DEFAULT_MAX_AGE, DEFAULT_THREADS);
+    }
+    return defaultCache;
+  }
+
+  /**
+   * @return the tile stored with key in memory or on disk, or null if it is
+   * not cached or has expired
+   */
+  public BufferedImage getCached(String key) {
+    long now = System.currentTimeMillis();
+    synchronized (memory) {
+      CachedTile tile = memory.get(key);
+      if (tile != null) {
+        if (now - tile.time <= maxAge) return tile.image;
+        memory.remove(key);
+      }
+    }
+    File file = getFile(key);
+    if (file == null || !file.isFile()) return null;
+    if (now - file.lastModified() > maxAge) {
+      file.delete();
+      return null;
+    }
+    try {
+      BufferedImage image = ImageIO.read(file);
+      if (image != null) putInMemory(key, image, file.lastModified());
+      return image;
+    } catch (IOException e) {
+      Logger.warn("Could not read cached tile " + file, e);
+      file.delete();
+      return null;
+    }
+  }
+
+  /**
+   * @return the tile stored with key, loaded by loader if it is not cached
+   * yet
+   */
+  public Future<BufferedImage> get(final String key, final Callable<? extends Image> loader) {
+    BufferedImage cached = getCached(key);
+    if (cached != null) return CompletableFuture.completedFuture(cached);
+    return pending.computeIfAbsent(key, k -> executor.submit(() -> {
+      try {
+        BufferedImage image = toBufferedImage(loader.call());
+        if (image == null) throw new WMSException("No image returned for " + key);
+        putInMemory(key, image, System.currentTimeMillis());
+        store(key, image);
+        return image;
+      } finally {
+        pending.remove(key);
+      }
+    }));
+  }
+
+  /**
+   * Removes all the tiles from memory and disk.
+   */
+  public void clear() {
+    synchronized (memory) {
+      memory.clear();
+    }
+    File[] files = directory == null ? null : directory.listFiles();
+    if (files != null) {
+      for (File file : files) file.delete();
+    }
+  }
+
+  private void putInMemory(String key, BufferedImage image, long time) {
+    synchronized (memory) {
+      memory.put(key, new CachedTile(image, time));
+    }
+  }
+
+  private void store(String key, BufferedImage image) {
+    File file = getFile(key);
+    if (file == null) return;
+    try {
+      directory.mkdirs();
+      // written under another name first so that a partial tile is never read
+      File tmp = new File(directory, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+      ImageIO.write(image, "png", tmp);
+      if (!tmp.renameTo(file)) {
+        file.delete();
+        if (!tmp.renameTo(file)) tmp.delete();
+      }
+    } catch (IOException e) {
+      Logger.warn("Could not store tile " + file, e);
+    }
+  }
+
+  private File getFile(String key) {
+    if (directory == null) return null;
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+      StringBuilder name = new StringBuilder();
+      for (byte b : digest) name.append(String.format("%02x", b));
+      return new File(directory, name.append(".png").toString());
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static BufferedImage toBufferedImage(Image image) {
+    if (image == null || image instanceof BufferedImage) return (BufferedImage)image;
+    BufferedImage buffered = new BufferedImage(image.getWidth(null), image.getHeight(null),
+        BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = buffered.createGraphics();
+    g.drawImage(image, 0, 0, null);
+    g.dispose();
+    return buffered;
+  }
+
+  private static final class CachedTile {
+    final BufferedImage image;
+    final long time;
+    CachedTile(BufferedImage image, long time) {
+      this.image = image;
+      this.time = time;
+    }
+  }
+}
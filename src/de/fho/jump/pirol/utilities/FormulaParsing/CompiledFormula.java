@@ -0,0 +1,353 @@
+package de.fho.jump.pirol.utilities.FormulaParsing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.openjump.core.apitools.comparisonandsorting.ObjectComparator;
+
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.feature.FeatureSchema;
+
+import de.fho.jump.pirol.utilities.FormulaParsing.Operations.*;
+import de.fho.jump.pirol.utilities.FormulaParsing.Values.AttributeValue;
+
+/**
+ * A parsed formula prepared for the evaluation of many features.
+ * <p>
+ * Parts of the formula which do not depend on features are computed once,
+ * and attribute indices are resolved against the FeatureSchema. The
+ * formula is then evaluated a batch of features at a time : the referenced
+ * attributes are copied into arrays of doubles (one array per attribute),
+ * and each operation of the formula is applied to whole arrays in a tight
+ * loop, instead of walking the tree of FormulaValues for each feature.
+ * <p>
+ * Operations unknown to the compiler are evaluated feature by feature
+ * through {@link FormulaValue#getValue(Feature)}.
+ * <p>
+ * A CompiledFormula is immutable and may be used by several threads.
+ */
+public class CompiledFormula extends FormulaValue {
+
+    /** Number of features evaluated together by {@link #getValues}. */
+    public static final int BATCH_SIZE = 1024;
+
+    private static final int ADD = 0, SUB = 1, MUL = 2, DIV = 3, POW = 4;
+    private static final int SQRT = 0, EXP = 1, LOG = 2, LOG10 = 3, SIN = 4,
+            COS = 5, TAN = 6, ASIN = 7, ACOS = 8, ATAN = 9, TO_DEGREES = 10,
+            TO_RADIANS = 11;
+
+    private final FormulaValue formula;
+    private final Node root;
+    // indices of the attributes read by the formula, one column per attribute
+    private final int[] attributeIndices;
+    // false if the formula contains operations unknown to the compiler
+    private final boolean columnar;
+
+    private CompiledFormula(FormulaValue formula, FeatureSchema schema) {
+        this.formula = formula;
+        List<Integer> attributes = new ArrayList<Integer>();
+        boolean[] opaque = new boolean[1];
+        this.root = compile(formula, schema, attributes, opaque);
+        this.attributeIndices = new int[attributes.size()];
+        for (int i = 0; i < attributeIndices.length; i++) {
+            attributeIndices[i] = attributes.get(i);
+        }
+        this.columnar = !opaque[0];
+    }
+
+    /**
+     * Compiles formula for features of schema.
+     *@param formula the parsed formula (see {@link FormulaParser})
+     *@param schema the FeatureSchema of the features to evaluate
+     *@return the compiled formula
+     */
+    public static CompiledFormula compile(FormulaValue formula, FeatureSchema schema) {
+        if (formula instanceof CompiledFormula) formula = ((CompiledFormula)formula).formula;
+        return new CompiledFormula(formula, schema);
+    }
+
+    /**
+     *@return the indices of the attributes read by the formula, in the order
+     * of the columns expected by {@link #getValues(double[][], int, double[])}
+     */
+    public int[] getAttributeIndices() {
+        return attributeIndices.clone();
+    }
+
+    /**
+     *@return true if the formula can be evaluated from columns of values
+     */
+    public boolean isColumnar() {
+        return columnar;
+    }
+
+    public double getValue(Feature feature) {
+        return root.value(feature);
+    }
+
+    public boolean isFeatureDependent() {
+        return !(root instanceof Constant);
+    }
+
+    /**
+     * Evaluates the formula for the first length rows of columns.
+     *@param columns the values of the attributes returned by
+     * {@link #getAttributeIndices()}, in the same order
+     *@param length number of rows to evaluate
+     *@param result array receiving the values of the formula
+     *@throws IllegalStateException if the formula is not columnar
+     */
+    public void getValues(double[][] columns, int length, double[] result) {
+        if (!columnar) throw new IllegalStateException("formula is not columnar : " + formula);
+        System.arraycopy(root.values(columns, length), 0, result, 0, length);
+    }
+
+    /**
+     * Evaluates the formula for features[from] to features[to-1] and stores
+     * the value of features[i] in result[i - from]. Features whose attribute
+     * values cannot be read as numbers get a NaN value and are added to
+     * failed (with their index in features) if failed is not null.
+     */
+    public void getValues(List<Feature> features, int from, int to, double[] result, BitSet failed) {
+        if (!columnar) {
+            for (int i = from; i < to; i++) {
+                try {
+                    result[i - from] = root.value(features.get(i));
+                } catch (RuntimeException e) {
+                    result[i - from] = Double.NaN;
+                    if (failed != null) failed.set(i);
+                }
+            }
+            return;
+        }
+        double[][] columns = new double[attributeIndices.length][Math.min(BATCH_SIZE, to - from)];
+        for (int start = from; start < to; start += BATCH_SIZE) {
+            int length = Math.min(BATCH_SIZE, to - start);
+            for (int r = 0; r < length; r++) {
+                Feature feature = features.get(start + r);
+                for (int k = 0; k < attributeIndices.length; k++) {
+                    try {
+                        columns[k][r] = ObjectComparator.getDoubleValue(
+                                feature.getAttribute(attributeIndices[k]));
+                    } catch (NumberFormatException e) {
+                        columns[k][r] = Double.NaN;
+                        if (failed != null) failed.set(start + r);
+                    }
+                }
+            }
+            if (columns.length == 0) {
+                Arrays.fill(result, start - from, start - from + length, root.value(null));
+            } else {
+                System.arraycopy(root.values(columns, length), 0, result, start - from, length);
+            }
+        }
+    }
+
+    public String toString() {
+        return formula.toString();
+    }
+
+    private static Node compile(FormulaValue value, FeatureSchema schema,
+                                List<Integer> attributes, boolean[] opaque) {
+        // constant folding
+        if (!value.isFeatureDependent()) return new Constant(value.getValue(null));
+        if (value instanceof AttributeValue) {
+            int index = schema.getAttributeIndex(((AttributeValue)value).getAttributeName());
+            int column = attributes.indexOf(index);
+            if (column < 0) {
+                column = attributes.size();
+                attributes.add(index);
+            }
+            return new Column(column, index);
+        }
+        FormulaValue[] operands = value.getOperands();
+        int op = -1;
+        if (operands.length == 2) {
+            if (value instanceof AdditionOperation) op = ADD;
+            else if (value instanceof SubtractionOperation) op = SUB;
+            else if (value instanceof MultiplicationOperation) op = MUL;
+            else if (value instanceof DivisionOperation) op = DIV;
+            else if (value instanceof PowerOfOperation) op = POW;
+            if (op >= 0) {
+                return new Binary(op,
+                        compile(operands[0], schema, attributes, opaque),
+                        compile(operands[1], schema, attributes, opaque));
+            }
+        } else if (operands.length == 1) {
+            if (value instanceof SquareRootOperation) op = SQRT;
+            else if (value instanceof ExpOperation) op = EXP;
+            else if (value instanceof LogarithmOperation) op = LOG;
+            else if (value instanceof Log10Operation) op = LOG10;
+            else if (value instanceof SinOperation) op = SIN;
+            else if (value instanceof CosOperation) op = COS;
+            else if (value instanceof TanOperation) op = TAN;
+            else if (value instanceof AsinOperation) op = ASIN;
+            else if (value instanceof AcosOperation) op = ACOS;
+            else if (value instanceof AtnaOperation) op = ATAN;
+            else if (value instanceof ToDegreesOperation) op = TO_DEGREES;
+            else if (value instanceof ToRadiansOperation) op = TO_RADIANS;
+            if (op >= 0) {
+                return new Unary(op, compile(operands[0], schema, attributes, opaque));
+            }
+        }
+        opaque[0] = true;
+        return new Opaque(value);
+    }
+
+    /**
+     * A part of the compiled formula.
+     */
+    private static abstract class Node {
+
+        abstract double value(Feature feature);
+
+        /**
+         * Returns the values of this node for the first length rows of
+         * columns. The returned array must not be modified if it is a column.
+         */
+        abstract double[] values(double[][] columns, int length);
+
+        /**
+         * Returns an array for the result of an operation on operand, which
+         * is operand itself if it is not a column.
+         */
+        static double[] buffer(Node operand, double[] values, int length) {
+            return operand instanceof Column ? new double[length] : values;
+        }
+    }
+
+    private static final class Constant extends Node {
+        final double value;
+        Constant(double value) {
+            this.value = value;
+        }
+        double value(Feature feature) {
+            return value;
+        }
+        double[] values(double[][] columns, int length) {
+            double[] values = new double[length];
+            Arrays.fill(values, value);
+            return values;
+        }
+    }
+
+    private static final class Column extends Node {
+        final int column;
+        final int attributeIndex;
+        Column(int column, int attributeIndex) {
+            this.column = column;
+            this.attributeIndex = attributeIndex;
+        }
+        double value(Feature feature) {
+            return ObjectComparator.getDoubleValue(feature.getAttribute(attributeIndex));
+        }
+        double[] values(double[][] columns, int length) {
+            return columns[column];
+        }
+    }
+
+    private static final class Opaque extends Node {
+        final FormulaValue value;
+        Opaque(FormulaValue value) {
+            this.value = value;
+        }
+        double value(Feature feature) {
+            return value.getValue(feature);
+        }
+        double[] values(double[][] columns, int length) {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static final class Binary extends Node {
+        final int op;
+        final Node left, right;
+        final boolean constantRight;
+        final double rightValue;
+        Binary(int op, Node left, Node right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+            this.constantRight = right instanceof Constant;
+            this.rightValue = constantRight ? ((Constant)right).value : 0.0;
+        }
+        double value(Feature feature) {
+            return apply(op, left.value(feature), right.value(feature));
+        }
+        double[] values(double[][] columns, int length) {
+            double[] a = left.values(columns, length);
+            double[] r = buffer(left, a, length);
+            if (constantRight) {
+                double b = rightValue;
+                switch (op) {
+                    case ADD : for (int i = 0; i < length; i++) r[i] = a[i] + b; break;
+                    case SUB : for (int i = 0; i < length; i++) r[i] = a[i] - b; break;
+                    case MUL : for (int i = 0; i < length; i++) r[i] = a[i] * b; break;
+                    case DIV : for (int i = 0; i < length; i++) r[i] = a[i] / b; break;
+                    default : for (int i = 0; i < length; i++) r[i] = Math.pow(a[i], b);
+                }
+                return r;
+            }
+            double[] b = right.values(columns, length);
+            switch (op) {
+                case ADD : for (int i = 0; i < length; i++) r[i] = a[i] + b[i]; break;
+                case SUB : for (int i = 0; i < length; i++) r[i] = a[i] - b[i]; break;
+                case MUL : for (int i = 0; i < length; i++) r[i] = a[i] * b[i]; break;
+                case DIV : for (int i = 0; i < length; i++) r[i] = a[i] / b[i]; break;
+                default : for (int i = 0; i < length; i++) r[i] = Math.pow(a[i], b[i]);
+            }
+            return r;
+        }
+        static double apply(int op, double a, double b) {
+            switch (op) {
+                case ADD : return a + b;
+                case SUB : return a - b;
+                case MUL : return a * b;
+                case DIV : return a / b;
+                default : return Math.pow(a, b);
+            }
+        }
+    }
+
+    private static final class Unary extends Node {
+        final int op;
+        final Node operand;
+        Unary(int op, Node operand) {
+            this.op = op;
+            this.operand = operand;
+        }
+        double value(Feature feature) {
+            return apply(op, operand.value(feature));
+        }
+        double[] values(double[][] columns, int length) {
+            double[] a = operand.values(columns, length);
+            double[] r = buffer(operand, a, length);
+            // same functions as the FormulaValue classes
+            switch (op) {
+                case SQRT : for (int i = 0; i < length; i++) r[i] = Math.sqrt(a[i]); break;
+                case TO_DEGREES : for (int i = 0; i < length; i++) r[i] = a[i] * (57.295779513); break;
+                case TO_RADIANS : for (int i = 0; i < length; i++) r[i] = a[i] / (57.295779513); break;
+                default : for (int i = 0; i < length; i++) r[i] = apply(op, a[i]);
+            }
+            return r;
+        }
+        static double apply(int op, double a) {
+            switch (op) {
+                case SQRT : return Math.sqrt(a);
+                case EXP : return Math.exp(a);
+                case LOG : return Math.log(a);
+                case LOG10 : return StrictMath.log10(a);
+                case SIN : return StrictMath.sin(a);
+                case COS : return StrictMath.cos(a);
+                case TAN : return StrictMath.tan(a);
+                case ASIN : return StrictMath.asin(a);
+                case ACOS : return StrictMath.acos(a);
+                case ATAN : return StrictMath.atan(a);
+                case TO_DEGREES : return a * (57.295779513);
+                default : return a / (57.295779513);
+            }
+        }
+    }
+}
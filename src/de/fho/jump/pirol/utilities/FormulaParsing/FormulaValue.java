@@ -44,6 +44,15 @@ public abstract class FormulaValue {
      */
     public abstract boolean isFeatureDependent();
     
+    /**
+     * Returns the sub-formulas this part of the formula operates on, used by
+     * {@link CompiledFormula} to walk the formula.
+     * @return the operands of an operation, or an empty array for a value
+     */
+    public FormulaValue[] getOperands() {
+        return new FormulaValue[0];
+    }
+    
     /**
      * @inheritDoc
      */
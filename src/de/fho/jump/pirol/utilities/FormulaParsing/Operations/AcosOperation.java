@@ -36,5 +36,12 @@ public class AcosOperation extends FormulaValue {
 	        return "StrictMath.acos("+ this.value.toString() +")";
 	    }
 
+	    /**
+	     *@inheritDoc
+	     */
+	    public FormulaValue[] getOperands() {
+	        return new FormulaValue[]{this.value};
+	    }
+
 		
 	}
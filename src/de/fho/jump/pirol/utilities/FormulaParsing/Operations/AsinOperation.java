@@ -33,5 +33,12 @@ public class AsinOperation extends FormulaValue {
 	        return "StrictMath.asin("+ this.value.toString() +")";
 	    }
 
+	    /**
+	     *@inheritDoc
+	     */
+	    public FormulaValue[] getOperands() {
+	        return new FormulaValue[]{this.value};
+	    }
+
 		
 	}
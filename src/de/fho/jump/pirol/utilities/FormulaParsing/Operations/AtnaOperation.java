@@ -34,6 +34,13 @@ public class AtnaOperation extends FormulaValue {
 	        return "StrictMath.atan("+ this.value.toString() +")";
 	    }
 
+	    /**
+	     *@inheritDoc
+	     */
+	    public FormulaValue[] getOperands() {
+	        return new FormulaValue[]{this.value};
+	    }
+
 		
 	}
 
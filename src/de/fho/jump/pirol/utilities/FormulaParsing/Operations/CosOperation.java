@@ -36,5 +36,12 @@ public class CosOperation extends FormulaValue {
 	        return "StrictMath.cos("+ this.value.toString() +")";
 	    }
 
+	    /**
+	     *@inheritDoc
+	     */
+	    public FormulaValue[] getOperands() {
+	        return new FormulaValue[]{this.value};
+	    }
+
 		
 	}
@@ -37,5 +37,12 @@ public class ExpOperation extends FormulaValue {
 	        return "Math.exp("+ this.value.toString() +")";
 	    }
 
+	    /**
+	     *@inheritDoc
+	     */
+	    public FormulaValue[] getOperands() {
+	        return new FormulaValue[]{this.value};
+	    }
+
 		
 	}
@@ -46,6 +46,13 @@ public abstract class GenericOperation extends FormulaValue {
         return this.value1.isFeatureDependent() || this.value2.isFeatureDependent();
     }
     
+    /**
+     * @inheritDoc
+     */
+    public FormulaValue[] getOperands() {
+        return new FormulaValue[]{this.value1, this.value2};
+    }
+    
     /**
      * @inheritDoc
      */
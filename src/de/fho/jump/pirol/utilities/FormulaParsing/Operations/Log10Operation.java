@@ -38,5 +38,12 @@ public class Log10Operation extends FormulaValue {
 	        return "StrictMath.log10("+ this.value.toString() +")";
 	    }
 
+	    /**
+	     *@inheritDoc
+	     */
+	    public FormulaValue[] getOperands() {
+	        return new FormulaValue[]{this.value};
+	    }
+
 		
 	}
@@ -37,5 +37,12 @@ public class LogarithmOperation extends FormulaValue {
         return "Math.log("+ this.value.toString() +")";
     }
 
+    /**
+     *@inheritDoc
+     */
+    public FormulaValue[] getOperands() {
+        return new FormulaValue[]{this.value};
+    }
+
 	
 }
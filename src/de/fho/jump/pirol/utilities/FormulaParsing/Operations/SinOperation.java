@@ -37,5 +37,12 @@ public class SinOperation extends FormulaValue {
 	        return "StrictMath.sin("+ this.value.toString() +")";
 	    }
 
+	    /**
+	     *@inheritDoc
+	     */
+	    public FormulaValue[] getOperands() {
+	        return new FormulaValue[]{this.value};
+	    }
+
 		
 	}
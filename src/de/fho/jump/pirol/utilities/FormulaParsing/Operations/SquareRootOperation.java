@@ -55,4 +55,11 @@ public class SquareRootOperation extends FormulaValue {
         return "Math.sqrt("+ this.value.toString() +")";
     }
 
+    /**
+     *@inheritDoc
+     */
+    public FormulaValue[] getOperands() {
+        return new FormulaValue[]{this.value};
+    }
+
 }
@@ -38,6 +38,13 @@ public class TanOperation extends FormulaValue {
 	        return "StrictMath.tan("+ this.value.toString() +")";
 	    }
 
+	    /**
+	     *@inheritDoc
+	     */
+	    public FormulaValue[] getOperands() {
+	        return new FormulaValue[]{this.value};
+	    }
+
 		
 	}
 
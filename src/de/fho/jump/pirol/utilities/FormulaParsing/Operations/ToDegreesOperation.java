@@ -38,6 +38,13 @@ public class ToDegreesOperation extends FormulaValue {
 	        return "Radians to Degrees("+ this.value.toString() +")";
 	    }
 
+	    /**
+	     *@inheritDoc
+	     */
+	    public FormulaValue[] getOperands() {
+	        return new FormulaValue[]{this.value};
+	    }
+
 		
 	}
 
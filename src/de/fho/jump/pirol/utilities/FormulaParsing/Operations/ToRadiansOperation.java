@@ -39,6 +39,13 @@ public class ToRadiansOperation extends FormulaValue {
 	        return "Degrees to Radians("+ this.value.toString() +")";
 	    }
 
+	    /**
+	     *@inheritDoc
+	     */
+	    public FormulaValue[] getOperands() {
+	        return new FormulaValue[]{this.value};
+	    }
+
 		
 	}
 
@@ -37,6 +37,13 @@ public class AttributeValue extends FormulaValue {
         this.attributeName = attributeName;
     }
     
+    /**
+     *@return the name of the attribute this value is read from
+     */
+    public String getAttributeName() {
+        return this.attributeName;
+    }
+    
     /**
      * Gets the value (as a double) of the specified attribute out of the given feature.
      *@param feature the Feature we want to get the attribute value from
@@ -78,7 +78,7 @@ import org.openjump.core.ui.util.ScreenScale;
 import org.locationtech.jts.geom.Geometry;
 import com.vividsolutions.jump.I18N;
 import com.vividsolutions.jump.feature.AttributeType;
-import com.vividsolutions.jump.feature.BasicFeature;
+import com.vividsolutions.jump.feature.Feature;
 import com.vividsolutions.jump.feature.FeatureSchema;
 import com.vividsolutions.jump.util.Blackboard;
 import com.vividsolutions.jump.util.java2xml.Java2XML;
@@ -308,7 +308,7 @@ public class LayerStyle2SLDPlugIn extends AbstractPlugIn {
         if (layer.getFeatureCollectionWrapper().getFeatures().size() == 0) {
             throw new Exception(I18N.get("org.openjump.core.ui.plugin.tools.statistics.StatisticOverViewPlugIn.Selected-layer-is-empty"));
         }
-        BasicFeature bf = (BasicFeature) layer.getFeatureCollectionWrapper()
+        Feature bf = layer.getFeatureCollectionWrapper()
                 .getFeatures().get(0);
         Geometry geo = bf.getGeometry();
         String geoType = geo.getGeometryType();
@@ -19,24 +19,43 @@ public class AllTestCases extends TestCase {
     result.addTest(new TestSuite(AngleTestCase.class));
     result.addTest(new TestSuite(AttributeMappingTestCase.class));
     result.addTest(new TestSuite(AttributeTypeTestCase.class));
+    result.addTest(new TestSuite(BeanshellAttributeOperationTestCase.class));
+    result.addTest(new TestSuite(ChangedFeatureTrackerTestCase.class));
     result.addTest(new TestSuite(CollectionUtilTestCase.class));
+    result.addTest(new TestSuite(CompiledFormulaTestCase.class));
     result.addTest(new TestSuite(DbfFileTestCase.class));
+    result.addTest(new TestSuite(DiskFeatureCollectionTestCase.class));
+    result.addTest(new TestSuite(DisplayReprojectionTestCase.class));
+    result.addTest(new TestSuite(DuplicateGeometryFinderTestCase.class));
     result.addTest(new TestSuite(EnvelopeIntersectorTestCase.class));
     result.addTest(new TestSuite(FeatureCollectionMetaDataTestCase.class));
     result.addTest(new TestSuite(FeatureTestCase.class));
     result.addTest(new TestSuite(FlexibleDateParserTestCase.class));    
     result.addTest(new TestSuite(GMLWriterTestCase.class));
     result.addTest(new TestSuite(GUIUtilTestCase.class));
+    result.addTest(new TestSuite(GeometryStoragePolicyTestCase.class));
+    result.addTest(new TestSuite(GroupByTestCase.class));
+    result.addTest(new TestSuite(HashJoinTestCase.class));
     result.addTest(new TestSuite(InteriorPointFinderTestCase.class));
+    result.addTest(new TestSuite(LabelPlacementTestCase.class));
+    result.addTest(new TestSuite(LayerManagerBatchTestCase.class));
     result.addTest(new TestSuite(OverlayEngineTestCase.class));
     result.addTest(new TestSuite(PanelTestCase.class));
+    result.addTest(new TestSuite(ParallelUnionOpTestCase.class));
     result.addTest(new TestSuite(RangeTestCase.class));
+    result.addTest(new TestSuite(RasterizeVectorizeTestCase.class));
+    result.addTest(new TestSuite(SelectionManagerTestCase.class));
     result.addTest(new TestSuite(ShapeCollectionPathIteratorTestCase.class));
     result.addTest(new TestSuite(SimpleGMLReaderTestCase.class));
     result.addTest(new TestSuite(StringUtilTestCase.class));
+    result.addTest(new TestSuite(SymbologyLookupTableTestCase.class));
+    result.addTest(new TestSuite(TiledMapImageTestCase.class));
     result.addTest(new TestSuite(TriangulatorTestCase.class));
+    result.addTest(new TestSuite(UndoGeometryStoreTestCase.class));
     result.addTest(new TestSuite(ValidatorTestCase.class));
     result.addTest(new TestSuite(VerticesInFencePlugInTestCase.class));
+    result.addTest(new TestSuite(VisiblePointsAndLinesCacheTestCase.class));
+    result.addTest(new TestSuite(WMSTileCacheTestCase.class));
     return result;
   }
 
@@ -0,0 +1,190 @@
+package jumptest.junit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import bsh.EvalError;
+import bsh.Interpreter;
+import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.feature.BasicFeature;
+import com.vividsolutions.jump.feature.FeatureSchema;
+import com.vividsolutions.jump.workbench.JUMPWorkbench;
+import com.vividsolutions.jump.workbench.WorkbenchContext;
+import com.vividsolutions.jump.workbench.plugin.PlugInContext;
+import com.vividsolutions.jump.workbench.ui.ErrorHandler;
+import com.vividsolutions.jump.workbench.ui.LayerNamePanel;
+import com.vividsolutions.jump.workbench.ui.LayerableNamePanel;
+import com.vividsolutions.jump.util.Blackboard;
+import junit.framework.TestCase;
+import org.locationtech.jts.io.WKTReader;
+import org.openjump.core.feature.BeanshellAttributeOperation;
+
+/**
+ * Tests that a {@link BeanshellAttributeOperation} gives the values of the
+ * expression evaluated by a bsh Interpreter, from one or several threads.
+ */
+public class BeanshellAttributeOperationTestCase extends TestCase {
+
+    private static final String[] EXPRESSIONS = {
+        "A + B", "A * 2.5 - B", "NAME + \"-\" + B", "NAME.length()",
+        "geometry.getArea()", "MY_FIELD * 2", "round(A / 3.0, 2)", "Math.max(A, B)",
+        "A == null ? -1 : A", "x = A * 2; return x + B;",
+        "if (B > 2) return \"big\"; else return \"small\";",
+    };
+
+    // a context without workbench
+    private final PlugInContext context = new PlugInContext(new WorkbenchContext() {
+        public JUMPWorkbench getWorkbench() {
+            return null;
+        }
+        public ErrorHandler getErrorHandler() {
+            return null;
+        }
+        public Blackboard getBlackboard() {
+            return null;
+        }
+        public LayerNamePanel getLayerNamePanel() {
+            return null;
+        }
+        public LayerableNamePanel getLayerableNamePanel() {
+            return null;
+        }
+    }, null, null, null, null);
+
+    private final FeatureSchema schema = new FeatureSchema();
+    private final WKTReader reader = new WKTReader();
+
+    public BeanshellAttributeOperationTestCase(String Name_) {
+        super(Name_);
+        schema.addAttribute("GEOMETRY", AttributeType.GEOMETRY);
+        schema.addAttribute("A", AttributeType.DOUBLE);
+        schema.addAttribute("B", AttributeType.INTEGER);
+        schema.addAttribute("NAME", AttributeType.STRING);
+        schema.addAttribute("MY FIELD", AttributeType.INTEGER);
+    }
+
+    public static void main(String[] args) {
+        String[] testCaseName = {BeanshellAttributeOperationTestCase.class.getName()};
+        junit.textui.TestRunner.main(testCaseName);
+    }
+
+    public void testParsedNodesAreEvaluated() {
+        // fails if bsh internals used through reflection have changed,
+        // instead of silently parsing expressions at each evaluation
+        assertTrue("parsed bsh nodes can not be evaluated with this version of bsh",
+                BeanshellAttributeOperation.evaluatesParsedNodes());
+    }
+
+    public void testSameValuesAsInterpreter() throws Exception {
+        List<BasicFeature> features = features(40);
+        for (String expression : EXPRESSIONS) {
+            BeanshellAttributeOperation operation =
+                    new BeanshellAttributeOperation(context, AttributeType.OBJECT, expression);
+            for (int i = 0; i < features.size(); i++) {
+                assertEquals(expression + " on feature " + i,
+                        interpret(expression, features.get(i)), evaluate(operation, features.get(i)));
+            }
+        }
+    }
+
+    public void testConversionToAttributeType() throws Exception {
+        BasicFeature feature = features(2).get(1);
+        assertEquals(Double.valueOf(0.25), new BeanshellAttributeOperation(
+                context, AttributeType.DOUBLE, "A + B").evaluate(feature));
+        assertEquals("1", new BeanshellAttributeOperation(
+                context, AttributeType.STRING, "B").evaluate(feature));
+        assertEquals(Integer.valueOf(2), new BeanshellAttributeOperation(
+                context, AttributeType.INTEGER, "NAME.length()").evaluate(feature));
+    }
+
+    public void testSyntaxError() throws Exception {
+        try {
+            new BeanshellAttributeOperation(context, AttributeType.OBJECT, "A + * B");
+            fail("syntax errors are reported when the operation is created");
+        } catch (EvalError e) {
+        }
+    }
+
+    public void testSeveralThreads() throws Exception {
+        final List<BasicFeature> features = features(200);
+        // the variable x is set by each thread in its own interpreter
+        final String expression = "x = A == null ? 0 : A * 2; return x + B;";
+        final BeanshellAttributeOperation operation =
+                new BeanshellAttributeOperation(context, AttributeType.OBJECT, expression);
+        final List<Object> expected = new ArrayList<>();
+        for (BasicFeature feature : features) expected.add(interpret(expression, feature));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int offset = t * 25;
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        for (int n = 0; n < 5; n++) {
+                            for (int k = 0; k < features.size(); k++) {
+                                int i = (k + offset) % features.size();
+                                assertEquals("feature " + i, expected.get(i),
+                                        evaluate(operation, features.get(i)));
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            // rethrows the failures of the threads
+            for (Future<Void> future : futures) future.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // the result of the expression evaluated by an Interpreter, or the class
+    // of the error
+    private Object interpret(String expression, BasicFeature feature) {
+        try {
+            Interpreter interpreter = new Interpreter();
+            interpreter.eval("import org.locationtech.jts.geom.*");
+            interpreter.eval("round(double d, int i) {" +
+                    " p10 = Math.pow(10.0,(double)i);" +
+                    " return Math.rint(d*p10)/p10;" +
+                    "}");
+            interpreter.set("A", feature.getAttribute("A"));
+            interpreter.set("B", feature.getAttribute("B"));
+            interpreter.set("NAME", feature.getAttribute("NAME"));
+            interpreter.set("MY_FIELD", feature.getAttribute("MY FIELD"));
+            interpreter.set("geometry", feature.getGeometry());
+            return interpreter.eval(expression);
+        } catch (EvalError e) {
+            return EvalError.class;
+        }
+    }
+
+    private Object evaluate(BeanshellAttributeOperation operation, BasicFeature feature) {
+        try {
+            return operation.evaluate(feature);
+        } catch (EvalError e) {
+            return EvalError.class;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // features with positive, negative and null numbers and names
+    private List<BasicFeature> features(int count) throws Exception {
+        List<BasicFeature> features = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BasicFeature feature = new BasicFeature(schema);
+            feature.setGeometry(reader.read("POLYGON ((0 0, " + i + " 0, " + i + " 2, 0 2, 0 0))"));
+            feature.setAttribute("A", i % 7 == 3 ? null : (i % 5 - 2) * 0.75);
+            feature.setAttribute("B", i % 4);
+            feature.setAttribute("NAME", i % 9 == 5 ? null : "f" + i);
+            feature.setAttribute("MY FIELD", i - 10);
+            features.add(feature);
+        }
+        return features;
+    }
+}
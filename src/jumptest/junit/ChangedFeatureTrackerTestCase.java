@@ -0,0 +1,100 @@
+package jumptest.junit;
+
+import java.util.Arrays;
+
+import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.feature.BasicFeature;
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.feature.FeatureDataset;
+import com.vividsolutions.jump.feature.FeatureSchema;
+import com.vividsolutions.jump.workbench.model.ChangedFeatureTracker;
+import com.vividsolutions.jump.workbench.model.FeatureEventType;
+import com.vividsolutions.jump.workbench.model.Layer;
+import com.vividsolutions.jump.workbench.model.LayerManager;
+import junit.framework.TestCase;
+
+/**
+ * Tests that the features changed while a process runs on the changes of a
+ * layer are kept for the next run, and that the changes are kept if the
+ * process does not complete.
+ */
+public class ChangedFeatureTrackerTestCase extends TestCase {
+
+    private final FeatureSchema schema = new FeatureSchema();
+    private LayerManager layerManager;
+    private Layer layer;
+    private ChangedFeatureTracker tracker;
+
+    public ChangedFeatureTrackerTestCase(String Name_) {
+        super(Name_);
+        schema.addAttribute("GEOMETRY", AttributeType.GEOMETRY);
+    }
+
+    public static void main(String[] args) {
+        String[] testCaseName = {ChangedFeatureTrackerTestCase.class.getName()};
+        junit.textui.TestRunner.main(testCaseName);
+    }
+
+    protected void setUp() throws Exception {
+        layerManager = new LayerManager();
+        layer = layerManager.addLayer("Working", "layer", new FeatureDataset(schema));
+        tracker = ChangedFeatureTracker.get(layerManager);
+    }
+
+    public void testChangesDuringProcessAreKept() throws Exception {
+        Feature a = new BasicFeature(schema);
+        Feature b = new BasicFeature(schema);
+        ChangedFeatureTracker.Checkpoint checkpoint = tracker.checkpoint(layer);
+        assertFalse(checkpoint.isTracking());
+        // modified while the first (full) process runs
+        modify(a);
+        tracker.commit(checkpoint);
+        assertTrue(tracker.isTracking(layer));
+        assertEquals(Arrays.asList(a), tracker.getChangedFeatures(layer));
+
+        checkpoint = tracker.checkpoint(layer);
+        assertTrue(checkpoint.isTracking());
+        assertEquals(Arrays.asList(a), checkpoint.getChangedFeatures());
+        // b is new, a is modified again while the second process runs
+        modify(b);
+        modify(a);
+        tracker.commit(checkpoint);
+        assertEquals(Arrays.asList(a, b), tracker.getChangedFeatures(layer));
+
+        checkpoint = tracker.checkpoint(layer);
+        tracker.commit(checkpoint);
+        assertEquals(0, tracker.getChangedFeatures(layer).size());
+    }
+
+    public void testUncommittedCheckpoint() throws Exception {
+        Feature a = new BasicFeature(schema);
+        Feature b = new BasicFeature(schema);
+        // a first process is cancelled : the layer is not tracked
+        tracker.checkpoint(layer);
+        modify(a);
+        assertFalse(tracker.isTracking(layer));
+        tracker.commit(tracker.checkpoint(layer));
+        modify(a);
+        modify(b);
+        // a process on a and b is cancelled, they are processed next time
+        ChangedFeatureTracker.Checkpoint checkpoint = tracker.checkpoint(layer);
+        assertEquals(Arrays.asList(a, b), checkpoint.getChangedFeatures());
+        layerManager.fireFeaturesChanged(Arrays.asList(b), FeatureEventType.DELETED, layer);
+        checkpoint = tracker.checkpoint(layer);
+        assertEquals(Arrays.asList(a), checkpoint.getChangedFeatures());
+        tracker.commit(checkpoint);
+        assertEquals(0, tracker.getChangedFeatures(layer).size());
+    }
+
+    public void testReplacedFeatureCollection() throws Exception {
+        tracker.commit(tracker.checkpoint(layer));
+        assertTrue(tracker.isTracking(layer));
+        layer.setFeatureCollection(new FeatureDataset(schema));
+        assertFalse(tracker.isTracking(layer));
+        assertFalse(tracker.checkpoint(layer).isTracking());
+    }
+
+    private void modify(Feature feature) {
+        layerManager.fireFeaturesChanged(Arrays.asList(feature), FeatureEventType.ATTRIBUTES_MODIFIED, layer);
+    }
+}
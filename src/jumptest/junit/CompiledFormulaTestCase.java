@@ -0,0 +1,173 @@
+package jumptest.junit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+
+import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.feature.BasicFeature;
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.feature.FeatureSchema;
+import de.fho.jump.pirol.utilities.FormulaParsing.CompiledFormula;
+import de.fho.jump.pirol.utilities.FormulaParsing.FormulaParser;
+import de.fho.jump.pirol.utilities.FormulaParsing.FormulaValue;
+import de.fho.jump.pirol.utilities.FormulaParsing.Operations.AdditionOperation;
+import de.fho.jump.pirol.utilities.FormulaParsing.Values.AttributeValue;
+import junit.framework.TestCase;
+
+/**
+ * Tests that a {@link CompiledFormula} gives the values of the parsed
+ * formula, feature by feature and by batches, and fails on the same
+ * features.
+ */
+public class CompiledFormulaTestCase extends TestCase {
+
+    private static final String[] FORMULAS = {
+        "A + B", "A - B * 2", "( A + 1 ) / B", "A / 0", "B / ( A - A )",
+        "2 * 3 + A", FormulaParser.KEY_PI + " * A", "power: A , 2", "power: 2 , B",
+        "sqrt: A", "ln: A", "log: B", "root: A", "sin: A", "cos: A", "tan: A",
+        "asin: A", "acos: A", "atan: A", "ra>de: A", "de>ra: A",
+        "( A + B ) * ( A - B ) / 3", "S * 2 + A", "D + 1", "L - A",
+    };
+
+    private final FeatureSchema schema = new FeatureSchema();
+
+    public CompiledFormulaTestCase(String Name_) {
+        super(Name_);
+        schema.addAttribute("GEOMETRY", AttributeType.GEOMETRY);
+        schema.addAttribute("A", AttributeType.DOUBLE);
+        schema.addAttribute("B", AttributeType.INTEGER);
+        schema.addAttribute("S", AttributeType.STRING);
+        schema.addAttribute("D", AttributeType.DATE);
+        schema.addAttribute("L", AttributeType.LONG);
+    }
+
+    public static void main(String[] args) {
+        String[] testCaseName = {CompiledFormulaTestCase.class.getName()};
+        junit.textui.TestRunner.main(testCaseName);
+    }
+
+    public void testSameValuesAsFormula() throws Exception {
+        List<Feature> features = features(50);
+        for (String formula : FORMULAS) {
+            FormulaValue value = FormulaParser.getValue(formula, schema);
+            CompiledFormula compiled = CompiledFormula.compile(value, schema);
+            assertTrue(formula, compiled.isColumnar());
+            assertSameValues(formula, value, compiled, features, 0, features.size());
+        }
+    }
+
+    public void testSeveralBatches() throws Exception {
+        List<Feature> features = features(2 * CompiledFormula.BATCH_SIZE + 100);
+        FormulaValue value = FormulaParser.getValue("( A + B ) * S - L", schema);
+        CompiledFormula compiled = CompiledFormula.compile(value, schema);
+        // non-numeric strings fail in each batch
+        assertTrue(assertSameValues("whole", value, compiled, features, 0, features.size()) > 2);
+        assertTrue(assertSameValues("range", value, compiled, features, 7, CompiledFormula.BATCH_SIZE + 20) > 1);
+    }
+
+    public void testConstantFormula() throws Exception {
+        FormulaValue value = FormulaParser.getValue("2 * 3 + 1", schema);
+        CompiledFormula compiled = CompiledFormula.compile(value, schema);
+        assertFalse(compiled.isFeatureDependent());
+        assertEquals(0, compiled.getAttributeIndices().length);
+        double[] result = new double[3];
+        compiled.getValues(features(3), 0, 3, result, null);
+        assertTrue(Arrays.equals(new double[]{7, 7, 7}, result));
+    }
+
+    public void testAttributeColumns() throws Exception {
+        CompiledFormula compiled = CompiledFormula.compile(
+                FormulaParser.getValue("A * B + A / L", schema), schema);
+        int[] indices = compiled.getAttributeIndices();
+        assertTrue(Arrays.equals(new int[]{
+                schema.getAttributeIndex("A"), schema.getAttributeIndex("B"),
+                schema.getAttributeIndex("L")}, indices));
+        double[][] columns = {{1, 2, Double.NaN}, {3, 0, 1}, {2, 4, 1}};
+        double[] result = new double[3];
+        compiled.getValues(columns, 3, result);
+        assertEquals(3.5, result[0], 0);
+        assertEquals(0.5, result[1], 0);
+        assertTrue(Double.isNaN(result[2]));
+        // columns are not modified by the evaluation
+        assertEquals(1.0, columns[0][0], 0);
+        // compiling a compiled formula compiles the parsed one again
+        assertEquals(compiled.toString(), CompiledFormula.compile(compiled, schema).toString());
+    }
+
+    public void testOperationUnknownToTheCompiler() throws Exception {
+        // an operation evaluated feature by feature
+        FormulaValue twice = new FormulaValue() {
+            public double getValue(Feature feature) {
+                Object s = feature.getAttribute("S");
+                return s == null ? Double.NaN : 2 * Double.parseDouble((String)s);
+            }
+            public boolean isFeatureDependent() {
+                return true;
+            }
+        };
+        FormulaValue value = new AdditionOperation(twice, new AttributeValue("A"));
+        CompiledFormula compiled = CompiledFormula.compile(value, schema);
+        assertFalse(compiled.isColumnar());
+        try {
+            compiled.getValues(new double[1][1], 1, new double[1]);
+            fail("a formula which is not columnar can not be evaluated from columns");
+        } catch (IllegalStateException e) {
+        }
+        List<Feature> features = features(50);
+        assertSameValues("opaque", value, compiled, features, 0, features.size());
+    }
+
+    /**
+     * @return the number of features which failed
+     */
+    private int assertSameValues(String formula, FormulaValue value, CompiledFormula compiled,
+                                  List<Feature> features, int from, int to) {
+        double[] result = new double[to - from];
+        BitSet failed = new BitSet();
+        compiled.getValues(features, from, to, result, failed);
+        int failures = 0;
+        for (int i = from; i < to; i++) {
+            Feature feature = features.get(i);
+            String message = formula + " on feature " + i;
+            double expected;
+            try {
+                expected = value.getValue(feature);
+            } catch (NumberFormatException e) {
+                // the feature fails, and gets NaN in batches
+                failures++;
+                assertTrue(message, failed.get(i));
+                assertTrue(message, Double.isNaN(result[i - from]));
+                try {
+                    compiled.getValue(feature);
+                    fail(message + " should fail");
+                } catch (NumberFormatException e2) {
+                }
+                continue;
+            }
+            assertFalse(message, failed.get(i));
+            assertEquals(message, expected, compiled.getValue(feature), 0);
+            assertEquals(message, expected, result[i - from], 0);
+        }
+        assertEquals(formula, failures, failed.cardinality());
+        return failures;
+    }
+
+    // features with positive, negative and zero numbers, numeric and
+    // non-numeric strings, dates and null values
+    private List<Feature> features(int count) {
+        List<Feature> features = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Feature feature = new BasicFeature(schema);
+            feature.setAttribute("A", i % 7 == 3 ? null : (i % 5 - 2) * 0.75);
+            feature.setAttribute("B", i % 11 == 4 ? null : i % 4 - 1);
+            feature.setAttribute("S", i % 9 == 2 ? "abc" : i % 9 == 5 ? null : Double.toString(i * 0.5));
+            feature.setAttribute("D", i % 2 == 0 ? new Date(i * 1000L) : null);
+            feature.setAttribute("L", (long)i * 1000000007L);
+            features.add(feature);
+        }
+        return features;
+    }
+}
@@ -0,0 +1,147 @@
+package jumptest.junit;
+
+import java.io.File;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.feature.BasicFeature;
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.feature.FeatureSchema;
+import com.vividsolutions.jump.workbench.model.cache.DiskFeatureCollection;
+
+public class DiskFeatureCollectionTestCase extends TestCase {
+
+  private GeometryFactory factory = new GeometryFactory();
+
+  public DiskFeatureCollectionTestCase(String name) {
+    super(name);
+  }
+
+  public static void main(String[] args) {
+    String[] testCaseName = {DiskFeatureCollectionTestCase.class.getName()};
+    junit.textui.TestRunner.main(testCaseName);
+  }
+
+  private DiskFeatureCollection createCollection(File file, int size) throws Exception {
+    FeatureSchema fs = new FeatureSchema();
+    fs.addAttribute("geometry", AttributeType.GEOMETRY);
+    fs.addAttribute("name", AttributeType.STRING);
+    fs.addAttribute("value", AttributeType.INTEGER);
+    DiskFeatureCollection fc = new DiskFeatureCollection(fs, file, 10);
+    for (int i = 0; i < size; i++) {
+      Feature f = new BasicFeature(fs);
+      f.setGeometry(factory.createPoint(new Coordinate(i % 100, i / 100)));
+      f.setAttribute(1, "f" + i);
+      f.setAttribute(2, i % 7 == 0 ? null : Integer.valueOf(i));
+      fc.append(f);
+    }
+    fc.buildIndex();
+    return fc;
+  }
+
+  public void testQueryAndIteration() throws Exception {
+    File file = File.createTempFile("openjump", ".features");
+    DiskFeatureCollection fc = createCollection(file, 10000);
+    try {
+      assertEquals(10000, fc.size());
+      assertEquals(new Envelope(0, 99, 0, 99), fc.getEnvelope());
+      List<Feature> features = fc.query(new Envelope(10.5, 20.5, 10.5, 12.5));
+      assertEquals(20, features.size());
+      Feature f = fc.getFeatures().get(1234);
+      assertEquals("f1234", f.getString(1));
+      assertEquals(1234, f.getInteger(2));
+      assertNull(fc.getFeatures().get(14).getAttribute(2));
+      // a referenced feature keeps its identity when evicted from the cache
+      for (Feature other : fc.query(new Envelope(0, 99, 0, 99))) assertNotNull(other);
+      assertSame(f, fc.getFeatures().get(1234));
+    } finally {
+      fc.dispose();
+      file.delete();
+    }
+  }
+
+  public void testEditing() throws Exception {
+    File file = File.createTempFile("openjump", ".features");
+    DiskFeatureCollection fc = createCollection(file, 100);
+    try {
+      Feature f = fc.getFeatures().get(10);
+      f.setGeometry(factory.createPoint(new Coordinate(500, 500)));
+      f = null;
+      System.gc();
+      assertEquals(1, fc.query(new Envelope(499, 501, 499, 501)).size());
+      assertEquals(0, fc.query(new Envelope(9.5, 10.5, -0.5, 0.5)).size());
+
+      Feature added = new BasicFeature(fc.getFeatureSchema());
+      added.setGeometry(factory.createPoint(new Coordinate(-5, -5)));
+      fc.add(added);
+      assertEquals(101, fc.size());
+      assertSame(added, fc.query(new Envelope(-6, -4, -6, -4)).get(0));
+      fc.remove(added);
+      fc.remove(fc.getFeatures().get(0));
+      assertEquals(99, fc.size());
+      assertEquals("f1", fc.getFeatures().get(0).getString(1));
+    } finally {
+      fc.dispose();
+      file.delete();
+    }
+  }
+
+  public void testEvictedFeatureKeepsItsIDAndEdits() throws Exception {
+    File file = File.createTempFile("openjump", ".features");
+    DiskFeatureCollection fc = createCollection(file, 1000);
+    try {
+      Feature f = fc.getFeatures().get(42);
+      int id = f.getID();
+      Feature edited = fc.getFeatures().get(43);
+      int editedID = edited.getID();
+      // modified in place, as EditTransaction does not
+      edited.getGeometry().getCoordinates()[0].x = 500;
+      edited.getGeometry().geometryChanged();
+      fc.featuresModified(java.util.Collections.singletonList(edited));
+      f = null;
+      edited = null;
+      // evict both features from the cache and let them be collected
+      for (Feature other : fc.query(new Envelope(0, 99, 0, 99))) assertNotNull(other);
+      System.gc();
+      Feature reloaded = fc.getFeatures().get(42);
+      assertEquals(id, reloaded.getID());
+      assertEquals("f42", reloaded.getString(1));
+      Feature reloadedEdited = fc.getFeatures().get(43);
+      assertEquals(editedID, reloadedEdited.getID());
+      assertEquals(500, reloadedEdited.getGeometry().getCoordinate().x, 0);
+      assertEquals(1, fc.query(new Envelope(499, 501, -1, 1)).size());
+
+      fc.removeAll(java.util.Collections.singletonList(reloaded));
+      assertEquals(999, fc.size());
+      assertEquals(editedID, fc.getFeatures().get(42).getID());
+    } finally {
+      fc.dispose();
+      file.delete();
+    }
+  }
+
+  public void testReopen() throws Exception {
+    File file = File.createTempFile("openjump", ".features");
+    File indexFile = new File(file.getPath() + ".idx");
+    DiskFeatureCollection fc = createCollection(file, 1000);
+    fc.remove(fc.getFeatures().get(5));
+    fc.saveIndex();
+    fc.dispose();
+    fc = DiskFeatureCollection.open(file);
+    try {
+      assertEquals(999, fc.size());
+      assertEquals(1, fc.query(new Envelope(42, 42, 3, 3)).size());
+      assertEquals("f6", fc.getFeatures().get(5).getString(1));
+    } finally {
+      fc.dispose();
+      file.delete();
+      indexFile.delete();
+    }
+  }
+}
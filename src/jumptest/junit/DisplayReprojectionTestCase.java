@@ -0,0 +1,84 @@
+package jumptest.junit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.feature.BasicFeature;
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.feature.FeatureDataset;
+import com.vividsolutions.jump.feature.FeatureSchema;
+import com.vividsolutions.jump.workbench.model.Layer;
+import com.vividsolutions.jump.workbench.model.LayerManager;
+import junit.framework.TestCase;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKTReader;
+import org.openjump.core.ccordsys.srid.SRIDStyle;
+import org.openjump.core.ui.plugin.cts.DisplayReprojection;
+import org.openjump.core.ui.plugin.cts.Reprojector;
+
+/**
+ * Tests that a layer reprojected for display is queried, drawn and zoomed to
+ * in target coordinates, while the features found are those of the layer.
+ */
+public class DisplayReprojectionTestCase extends TestCase {
+
+    private final FeatureSchema schema = new FeatureSchema();
+    private final WKTReader reader = new WKTReader();
+
+    public DisplayReprojectionTestCase(String Name_) {
+        super(Name_);
+        schema.addAttribute("GEOMETRY", AttributeType.GEOMETRY);
+    }
+
+    public static void main(String[] args) {
+        String[] testCaseName = {DisplayReprojectionTestCase.class.getName()};
+        junit.textui.TestRunner.main(testCaseName);
+    }
+
+    public void testReprojectedLayer() throws Exception {
+        LayerManager layerManager = new LayerManager();
+        FeatureDataset dataset = new FeatureDataset(schema);
+        Feature feature = new BasicFeature(schema);
+        feature.setGeometry(reader.read("LINESTRING (2 48, 3 49)"));
+        dataset.add(feature);
+        Layer layer = layerManager.addLayer("Working", "layer", dataset);
+        layer.setEditable(false);
+        SRIDStyle sridStyle = new SRIDStyle();
+        sridStyle.setSRID(4326);
+        layer.addStyle(sridStyle);
+        DisplayReprojection reprojection = DisplayReprojection.get(layerManager);
+
+        // no target CRS : the layer is displayed as it is
+        assertFalse(reprojection.isReprojected(layer));
+        assertSame(feature.getGeometry(), reprojection.toDisplay(layer, feature.getGeometry()));
+        assertEquals(new Envelope(2, 3, 48, 49), reprojection.getEnvelope(layer));
+
+        reprojection.setTargetCRS(Reprojector.getEPSGCRS(3857));
+        assertTrue(reprojection.isReprojected(layer));
+        Envelope envelope = reprojection.getEnvelope(layer);
+        assertEquals(222639, envelope.getMinX(), 1);
+        assertEquals(6274861, envelope.getMaxY(), 1);
+        Geometry displayed = reprojection.toDisplay(layer, feature.getGeometry());
+        assertEquals(envelope, displayed.getEnvelopeInternal());
+        // the layer itself is not modified
+        assertEquals(new Envelope(2, 3, 48, 49), feature.getGeometry().getEnvelopeInternal());
+
+        assertTrue(reprojection.getFeatures(layer, new Envelope(2, 3, 48, 49)).isEmpty());
+        Collection<Feature> features = reprojection.getFeatures(layer, envelope);
+        assertEquals(1, features.size());
+        Feature found = features.iterator().next();
+        assertEquals(envelope, found.getGeometry().getEnvelopeInternal());
+        assertSame(feature, DisplayReprojection.getSourceFeature(found));
+        assertSame(feature, DisplayReprojection.getSourceFeature(feature));
+
+        // editable layers are not reprojected
+        layer.setEditable(true);
+        assertFalse(reprojection.isReprojected(layer));
+        List<Feature> all = new ArrayList<>(reprojection.getFeatures(layer, new Envelope(2, 3, 48, 49)));
+        assertEquals(1, all.size());
+        assertSame(feature, all.get(0));
+    }
+}
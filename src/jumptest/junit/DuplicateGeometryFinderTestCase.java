@@ -0,0 +1,116 @@
+package jumptest.junit;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.feature.BasicFeature;
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.feature.FeatureSchema;
+import junit.framework.TestCase;
+import org.locationtech.jts.io.WKTReader;
+import org.openjump.core.ui.plugin.tools.DuplicateGeometryFinder;
+
+/**
+ * Tests the search of features having the same normalized geometry.
+ */
+public class DuplicateGeometryFinderTestCase extends TestCase {
+
+    private final FeatureSchema schema = new FeatureSchema();
+    private final WKTReader reader = new WKTReader();
+
+    public DuplicateGeometryFinderTestCase(String Name_) {
+        super(Name_);
+        schema.addAttribute("GEOMETRY", AttributeType.GEOMETRY);
+        schema.addAttribute("NAME", AttributeType.STRING);
+    }
+
+    public static void main(String[] args) {
+        String[] testCaseName = {DuplicateGeometryFinderTestCase.class.getName()};
+        junit.textui.TestRunner.main(testCaseName);
+    }
+
+    public void testEmptyGeometries() throws Exception {
+        List<Feature> features = features(
+                "POINT EMPTY", "POLYGON EMPTY", "POINT EMPTY",
+                "LINESTRING EMPTY", "POLYGON EMPTY", "POINT (0 0)");
+        // empty geometries of the same type are duplicates
+        assertEquals(bits(2, 4), find(features, 0));
+    }
+
+    public void testVertexOrderAndStartPoint() throws Exception {
+        List<Feature> features = features(
+                "POLYGON ((0 0, 0 1, 1 1, 1 0, 0 0))",
+                // other start point
+                "POLYGON ((1 1, 1 0, 0 0, 0 1, 1 1))",
+                // other orientation
+                "POLYGON ((0 0, 1 0, 1 1, 0 1, 0 0))",
+                "LINESTRING (0 0, 1 1, 2 0)",
+                // reversed
+                "LINESTRING (2 0, 1 1, 0 0)",
+                // other vertices
+                "LINESTRING (0 0, 1 1, 2 1)",
+                "MULTIPOINT ((0 0), (1 1))",
+                // other order of the components
+                "MULTIPOINT ((1 1), (0 0))",
+                "POLYGON ((0 0, 0 2, 2 2, 2 0, 0 0), (0.5 0.5, 1 0.5, 1 1, 0.5 0.5))",
+                // hole with another start point and orientation
+                "POLYGON ((2 2, 2 0, 0 0, 0 2, 2 2), (1 1, 1 0.5, 0.5 0.5, 1 1))");
+        assertEquals(bits(1, 2, 4, 7, 9), find(features, 0));
+    }
+
+    public void testTolerance() throws Exception {
+        List<Feature> features = features(
+                "LINESTRING (0 0, 10 10)",
+                "LINESTRING (0.01 -0.01, 10.01 9.99)",
+                "LINESTRING (10.01 9.99, 0 0)",
+                "LINESTRING (0.4 0, 10 10)");
+        assertEquals(bits(), find(features, 0));
+        assertEquals(bits(1, 2), find(features, 0.1));
+    }
+
+    public void testSameAttributes() throws Exception {
+        List<Feature> features = features("POINT (1 1)", "POINT (1 1)", "POINT (1 1)", "POINT (1 1)");
+        features.get(0).setAttribute(1, "a");
+        features.get(1).setAttribute(1, "b");
+        features.get(2).setAttribute(1, "a");
+        features.get(3).setAttribute(1, null);
+        assertEquals(bits(1, 2, 3), find(features));
+        assertEquals(bits(2), new DuplicateGeometryFinder(features, new int[]{1}, 0).findDuplicates(null, null));
+    }
+
+    public void testLowestIDIsKept() throws Exception {
+        List<Feature> features = features("POINT (1 1)", "POINT (2 2)", "POINT (1 1)");
+        // the duplicate with the highest ID comes first in the list
+        List<Feature> reordered = new ArrayList<>();
+        reordered.add(features.get(2));
+        reordered.add(features.get(1));
+        reordered.add(features.get(0));
+        assertEquals(bits(0), find(reordered));
+    }
+
+    private BitSet find(List<Feature> features) throws Exception {
+        return find(features, 0);
+    }
+
+    private BitSet find(List<Feature> features, double tolerance) throws Exception {
+        return new DuplicateGeometryFinder(features, new int[0], tolerance).findDuplicates(null, null);
+    }
+
+    private List<Feature> features(String... wkts) throws Exception {
+        List<Feature> features = new ArrayList<>();
+        for (String wkt : wkts) {
+            Feature feature = new BasicFeature(schema);
+            feature.setGeometry(reader.read(wkt));
+            features.add(feature);
+        }
+        return features;
+    }
+
+    private BitSet bits(int... indices) {
+        BitSet bits = new BitSet();
+        for (int i : indices) bits.set(i);
+        return bits;
+    }
+}
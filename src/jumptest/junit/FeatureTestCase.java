@@ -1,6 +1,9 @@
 package jumptest.junit;
 import junit.framework.TestCase;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
 import com.vividsolutions.jump.feature.*;
@@ -68,4 +71,241 @@ public class FeatureTestCase extends TestCase {
     assertTrue(c.isEmpty());
   }
 
+  public void testNextIDIsUniqueAcrossThreads() throws Exception {
+    final int threads = 8;
+    final int idsPerThread = 10000;
+    final int[][] ids = new int[threads][idsPerThread];
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      final int[] mine = ids[t];
+      workers[t] = new Thread() {
+        public void run() {
+          for (int i = 0; i < idsPerThread; i++) {
+            mine[i] = FeatureUtil.nextID();
+          }
+        }
+      };
+      workers[t].start();
+    }
+    Set<Integer> unique = new HashSet<>();
+    for (int t = 0; t < threads; t++) {
+      workers[t].join();
+      for (int i = 0; i < idsPerThread; i++) {
+        assertTrue(unique.add(ids[t][i]));
+        if (i > 0) assertTrue(ids[t][i] > ids[t][i-1]);
+      }
+    }
+    assertEquals(threads * idsPerThread, unique.size());
+  }
+
+  public void testColumnarFeatureCollection() {
+    FeatureSchema fs = new FeatureSchema();
+    fs.addAttribute("geometry", AttributeType.GEOMETRY);
+    fs.addAttribute("integer", AttributeType.INTEGER);
+    fs.addAttribute("double", AttributeType.DOUBLE);
+    fs.addAttribute("string", AttributeType.STRING);
+    ColumnarFeatureCollection fc = new ColumnarFeatureCollection(fs, 2);
+    for (int i = 0; i < 100; i++) {
+      Feature f = fc.createFeature();
+      f.setGeometry(factory.createPoint(new Coordinate(i, i)));
+      f.setAttribute(1, i % 10 == 0 ? null : Integer.valueOf(i));
+      f.setAttribute(2, Double.valueOf(i / 2.0));
+      f.setAttribute(3, "code" + (i % 3));
+      fc.add(f);
+    }
+    assertEquals(100, fc.size());
+    Feature f = fc.getFeatures().get(11);
+    assertEquals(11, f.getInteger(1));
+    assertNull(fc.getFeatures().get(20).getAttribute(1));
+    assertEquals(5.5, f.getDouble(2), 0.0);
+    assertEquals("code2", f.getString(3));
+    assertEquals(3, ((ColumnarFeatureCollection.StringColumn)fc.getColumn(3))
+        .getDictionary().size());
+    assertTrue(Double.isNaN(fc.getNumericValues(1)[30]));
+    assertEquals(49.5, fc.getNumericValues(2)[99], 0.0);
+    assertNull(fc.getNumericValues(3));
+
+    // a value of an unexpected type is kept as is
+    f.setAttribute(1, "eleven");
+    assertEquals("eleven", f.getAttribute(1));
+    assertEquals(12, fc.getFeatures().get(12).getInteger(1));
+    assertNull(fc.getNumericValues(1));
+
+    // a feature given a new schema keeps its own attributes
+    FeatureSchema other = fs.clone();
+    other.addAttribute("extra", AttributeType.STRING);
+    Object[] attributes = new Object[] {f.getGeometry(), 1, 2.0, "a", "b"};
+    f.setSchema(other);
+    f.setAttributes(attributes);
+    assertEquals("b", f.getString(4));
+    assertEquals(12, fc.getFeatures().get(12).getInteger(1));
+    assertEquals("eleven", fc.getColumn(1).get(11));
+
+    Feature copy = fc.createFeature(fc.getFeatures().get(13));
+    assertEquals(13, copy.getInteger(1));
+    assertEquals(100, fc.size());
+  }
+
+  public void testColumnarConcurrentWrites() throws Exception {
+    FeatureSchema fs = new FeatureSchema();
+    fs.addAttribute("integer", AttributeType.INTEGER);
+    fs.addAttribute("boolean", AttributeType.BOOLEAN);
+    fs.addAttribute("string", AttributeType.STRING);
+    final int threads = 4;
+    final int rows = 20000;
+    final ColumnarFeatureCollection fc = new ColumnarFeatureCollection(fs, rows);
+    for (int i = 0; i < rows; i++) {
+      fc.add(fc.createFeature());
+    }
+    // each thread writes every threads-th row, so neighbour rows sharing a
+    // word of the null bitmaps are written concurrently, and one of them
+    // widens the integer column on the way
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      final int first = t;
+      workers[t] = new Thread() {
+        public void run() {
+          for (int i = first; i < rows; i += threads) {
+            Feature f = fc.getFeatures().get(i);
+            f.setAttribute(0, i == rows / 2 ? (Object)"half" : Integer.valueOf(i));
+            f.setAttribute(1, Boolean.valueOf(i % 3 == 0));
+            f.setAttribute(2, "code" + (i % 7));
+          }
+        }
+      };
+      workers[t].start();
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    for (int i = 0; i < rows; i++) {
+      Feature f = fc.getFeatures().get(i);
+      assertEquals(i == rows / 2 ? (Object)"half" : Integer.valueOf(i), f.getAttribute(0));
+      assertEquals(Boolean.valueOf(i % 3 == 0), f.getAttribute(1));
+      assertEquals("code" + (i % 7), f.getAttribute(2));
+    }
+    assertEquals(7, ((ColumnarFeatureCollection.StringColumn)fc.getColumn(2))
+        .getDictionary().size());
+  }
+
+  public void testAttributeIndex() {
+    FeatureSchema fs = new FeatureSchema();
+    fs.addAttribute("geometry", AttributeType.GEOMETRY);
+    fs.addAttribute("code", AttributeType.STRING);
+    fs.addAttribute("value", AttributeType.INTEGER);
+    FeatureCollection fc = new FeatureDataset(fs);
+    for (int i = 0; i < 100; i++) {
+      Feature f = new BasicFeature(fs);
+      f.setGeometry(factory.createPoint(new Coordinate(i, i)));
+      f.setAttribute(1, i % 10 == 0 ? null : "c" + (i % 7));
+      f.setAttribute(2, i);
+      fc.add(f);
+    }
+    AttributeIndex codes = new AttributeIndex(fc, "code");
+    AttributeIndex values = new AttributeIndex(fc, "value");
+    assertTrue(codes.isString());
+    assertTrue(values.isNumeric());
+    assertEquals(10, codes.query(null).size());
+    assertEquals(12, codes.query("c3").size());
+    assertEquals(1, values.query(42.0).size());
+    assertEquals(1, values.query(42L).size());
+    assertEquals(10, values.queryRange(10, true, 20, false).size());
+    assertEquals(9, values.queryRange(90, false, null, false).size());
+    assertEquals(27, codes.queryRange(null, false, "c1", true).size());
+    assertEquals(90, codes.queryPrefix("c").size());
+
+    Feature f = fc.getFeatures().get(42);
+    f.setAttribute(2, 1000);
+    values.update(f);
+    assertEquals(0, values.query(42).size());
+    assertEquals(1, values.queryRange(999, true, null, false).size());
+    values.remove(f);
+    assertEquals(99, values.size());
+    assertEquals(0, values.query(1000).size());
+
+    // another instance with the same ID, as read again from disk
+    Feature g = fc.getFeatures().get(43);
+    Feature copy = new BasicFeature(fs, g.getID()) {
+    };
+    copy.setAttributes(g.getAttributes());
+    copy.setAttribute(2, 2000);
+    values.update(copy);
+    assertEquals(99, values.size());
+    assertEquals(0, values.query(43).size());
+    assertSame(copy, values.query(2000).get(0));
+    codes.remove(copy);
+    assertEquals(99, codes.size());
+    assertEquals(13, codes.query("c1").size());
+    assertEquals(26, codes.queryRange(null, false, "c1", true).size());
+  }
+
+  public void testCachedOperation() {
+    final int[] invocations = new int[1];
+    FeatureSchema fs = new FeatureSchema();
+    fs.addAttribute("geometry", AttributeType.GEOMETRY);
+    fs.addAttribute("a", AttributeType.INTEGER);
+    fs.addAttribute("b", AttributeType.INTEGER);
+    // a + 1, depending on a
+    fs.addDynamicAttribute("c", AttributeType.INTEGER, new CacheableOperation() {
+      public Object invoke(Feature feature) {
+        invocations[0]++;
+        return feature.getInteger(1) + 1;
+      }
+      public int[] getDependencies(FeatureSchema schema) {
+        return new int[]{1};
+      }
+    });
+    // c * 2, depending on a through c
+    fs.addDynamicAttribute("d", AttributeType.INTEGER, new CacheableOperation() {
+      public Object invoke(Feature feature) {
+        invocations[0]++;
+        return (Integer)feature.getAttribute(3) * 2;
+      }
+      public int[] getDependencies(FeatureSchema schema) {
+        return new int[]{3};
+      }
+    });
+    Feature f = new BasicFeature(fs);
+    f.setAttribute(1, 1);
+    f.setAttribute(2, 10);
+    assertEquals(4, f.getAttribute(4));
+    assertEquals(4, f.getAttribute(4));
+    assertEquals(2, f.getAttribute(3));
+    assertEquals(2, invocations[0]);
+    f.setAttribute(2, 20);
+    assertEquals(4, f.getAttribute(4));
+    assertEquals(2, invocations[0]);
+    f.setAttribute(1, 2);
+    assertEquals(6, f.getAttribute(4));
+    assertEquals(4, invocations[0]);
+  }
+
+  public void testCachedOperationModifiedWhileComputed() {
+    FeatureSchema fs = new FeatureSchema();
+    fs.addAttribute("geometry", AttributeType.GEOMETRY);
+    fs.addAttribute("a", AttributeType.INTEGER);
+    // a + 1, a being modified (as by another thread) after it has been read
+    // by the first invocation
+    final boolean[] modify = {true};
+    fs.addDynamicAttribute("b", AttributeType.INTEGER, new CacheableOperation() {
+      public Object invoke(Feature feature) {
+        int value = feature.getInteger(1) + 1;
+        if (modify[0]) {
+          modify[0] = false;
+          feature.setAttribute(1, 10);
+        }
+        return value;
+      }
+      public int[] getDependencies(FeatureSchema schema) {
+        return new int[]{1};
+      }
+    });
+    Feature f = new BasicFeature(fs);
+    f.setAttribute(1, 1);
+    assertEquals(2, f.getAttribute(2));
+    // the stale value has not been cached
+    assertEquals(11, f.getAttribute(2));
+    assertEquals(11, f.getAttribute(2));
+  }
+
 }
@@ -0,0 +1,75 @@
+package jumptest.junit;
+
+import com.vividsolutions.jump.geom.GeometryStoragePolicy;
+import junit.framework.TestCase;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+import org.locationtech.jts.io.WKTReader;
+import org.openjump.core.ui.util.GeometryUtils;
+
+/**
+ * Tests that geometries stored on packed coordinate sequences can be
+ * modified by the geometry utilities, which used to modify the Coordinate
+ * objects of the geometry.
+ */
+public class GeometryStoragePolicyTestCase extends TestCase {
+
+    public GeometryStoragePolicyTestCase(String Name_) {
+        super(Name_);
+    }
+
+    public static void main(String[] args) {
+        String[] testCaseName = {GeometryStoragePolicyTestCase.class.getName()};
+        junit.textui.TestRunner.main(testCaseName);
+    }
+
+    public void testScalePackedGeometry() throws Exception {
+        for (Geometry geometry : packed("POLYGON ((0 0, 4 0, 4 2, 0 2, 0 0))")) {
+            GeometryUtils.scaleGeometry(geometry, 50);
+            assertTrue(geometry.equalsExact(read("POLYGON ((1 0.5, 3 0.5, 3 1.5, 1 1.5, 1 0.5))"), 1e-6));
+            assertEquals(2, geometry.getEnvelopeInternal().getWidth(), 1e-6);
+        }
+    }
+
+    public void testRotatePackedGeometry() throws Exception {
+        for (Geometry geometry : packed("LINESTRING (0 0, 2 0)")) {
+            GeometryUtils.rotateGeometry(geometry, -90);
+            assertTrue(geometry.toString(), geometry.equalsExact(read("LINESTRING (1 -1, 1 1)"), 1e-6));
+        }
+        for (Geometry geometry : packed("LINESTRING (0 0, 2 0)")) {
+            GeometryUtils.rotateGeometry(geometry, Math.PI / 2);
+            assertTrue(geometry.toString(), geometry.equalsExact(read("LINESTRING (1 -1, 1 1)"), 1e-6));
+        }
+    }
+
+    public void testMovePackedGeometry() throws Exception {
+        for (Geometry geometry : packed("MULTIPOINT ((0 0), (1 1))")) {
+            GeometryUtils.centerGeometry(geometry, new Coordinate(10, 20));
+            assertTrue(geometry.equalsExact(read("MULTIPOINT ((10 20), (11 21))"), 1e-6));
+            assertEquals(10, geometry.getEnvelopeInternal().getMinX(), 1e-6);
+        }
+    }
+
+    public void testEditableCopy() throws Exception {
+        for (Geometry geometry : packed("LINESTRING (0 0, 2 0)")) {
+            Geometry copy = GeometryStoragePolicy.editableCopy(geometry);
+            copy.getCoordinates()[1].x = 5;
+            copy.geometryChanged();
+            assertEquals(5, copy.getEnvelopeInternal().getMaxX(), 0);
+            assertEquals(2, geometry.getEnvelopeInternal().getMaxX(), 0);
+        }
+    }
+
+    private Geometry[] packed(String wkt) throws Exception {
+        return new Geometry[] {
+                new WKTReader(new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY)).read(wkt),
+                new WKTReader(new GeometryFactory(PackedCoordinateSequenceFactory.FLOAT_FACTORY)).read(wkt)
+        };
+    }
+
+    private Geometry read(String wkt) throws Exception {
+        return new WKTReader().read(wkt);
+    }
+}
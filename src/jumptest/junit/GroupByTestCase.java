@@ -0,0 +1,139 @@
+package jumptest.junit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.feature.BasicFeature;
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.feature.FeatureCollection;
+import com.vividsolutions.jump.feature.FeatureDataset;
+import com.vividsolutions.jump.feature.FeatureSchema;
+import junit.framework.TestCase;
+import org.openjump.core.ui.plugin.tools.aggregate.AttributeAggregator;
+import org.openjump.core.ui.plugin.tools.aggregate.Aggregators;
+import org.openjump.core.ui.plugin.tools.aggregate.FeatureCollectionAggregator;
+import org.openjump.core.ui.plugin.tools.aggregate.GroupBy;
+
+/**
+ * Tests the grouping of features on attribute values and the aggregation
+ * of the groups.
+ */
+public class GroupByTestCase extends TestCase {
+
+    private final FeatureSchema schema = new FeatureSchema();
+
+    public GroupByTestCase(String Name_) {
+        super(Name_);
+        schema.addAttribute("GEOMETRY", AttributeType.GEOMETRY);
+        schema.addAttribute("NAME", AttributeType.STRING);
+        schema.addAttribute("CODE", AttributeType.INTEGER);
+        schema.addAttribute("VALUE", AttributeType.DOUBLE);
+    }
+
+    public static void main(String[] args) {
+        String[] testCaseName = {GroupByTestCase.class.getName()};
+        junit.textui.TestRunner.main(testCaseName);
+    }
+
+    public void testGroupsKeepFirstSeenOrder() throws Exception {
+        // several ranges of features, grouped in parallel then merged
+        List<Feature> features = new ArrayList<>();
+        for (int i = 0; i < 30000; i++) {
+            features.add(feature(i % 7 == 0 ? null : "n" + (i % 3), i % 2, (double)i));
+        }
+        GroupBy groupBy = new GroupBy(features, new int[]{1, 2});
+        assertEquals(8, groupBy.size());
+        int total = 0;
+        for (int g = 0; g < groupBy.size(); g++) {
+            List<Feature> group = groupBy.getFeatures(g);
+            Object[] key = groupBy.getKey(g);
+            total += group.size();
+            for (int i = 0; i < group.size(); i++) {
+                assertEquals(key[0], group.get(i).getAttribute(1));
+                assertEquals(key[1], group.get(i).getAttribute(2));
+                if (i > 0) {
+                    assertTrue((Double)group.get(i - 1).getAttribute(3) < (Double)group.get(i).getAttribute(3));
+                }
+            }
+            if (g > 0) {
+                // groups are numbered in the order of their first feature
+                assertTrue((Double)groupBy.getFeatures(g - 1).get(0).getAttribute(3) <
+                        (Double)group.get(0).getAttribute(3));
+            }
+        }
+        assertEquals(features.size(), total);
+        // the null name is a key like the others
+        assertEquals(Arrays.asList(null, 0), Arrays.asList(groupBy.getKey(0)));
+    }
+
+    public void testNoGroups() throws Exception {
+        GroupBy groupBy = new GroupBy(new ArrayList<Feature>(), new int[]{1});
+        assertEquals(0, groupBy.size());
+        assertEquals(0, groupBy.process((key, features) -> features.size(), null, null).size());
+        groupBy = new GroupBy(Arrays.asList(feature("a", 1, 1.0), feature("b", 2, 2.0)),
+                new int[]{1}, feature -> false);
+        assertEquals(0, groupBy.size());
+        assertEquals(0, groupBy.process((key, features) -> features.size(), null, null).size());
+    }
+
+    public void testProcessGroupsInOrder() throws Exception {
+        List<Feature> features = new ArrayList<>();
+        for (int i = 0; i < 100; i++) features.add(feature("n" + (3 - i % 4), i, 1.0));
+        GroupBy groupBy = new GroupBy(features, new int[]{1});
+        List<String> results = groupBy.process((key, group) -> key[0] + ":" + group.size(), null, null);
+        assertEquals(Arrays.asList("n3:25", "n2:25", "n1:25", "n0:25"), results);
+    }
+
+    public void testAggregateEmptyCollection() throws Exception {
+        FeatureCollectionAggregator aggregator = new FeatureCollectionAggregator(
+                new FeatureDataset(schema), Arrays.asList("NAME"), aggregators());
+        FeatureCollection result = aggregator.getAggregatedFeatureCollection();
+        assertEquals(0, result.size());
+        // the key attribute and the 4 aggregated attributes
+        assertEquals(5, result.getFeatureSchema().getAttributeCount());
+    }
+
+    public void testAggregateGroupsWithoutValues() throws Exception {
+        FeatureCollection fc = new FeatureDataset(schema);
+        fc.add(feature("a", 1, null));
+        fc.add(feature("b", 2, 4.0));
+        fc.add(feature("a", 3, null));
+        fc.add(feature("b", 4, 2.0));
+        FeatureCollectionAggregator aggregator = new FeatureCollectionAggregator(
+                fc, Arrays.asList("NAME"), aggregators());
+        List<Feature> result = aggregator.getAggregatedFeatureCollection().getFeatures();
+        assertEquals(2, result.size());
+        // aggregators ignoring null values aggregate an empty list of values
+        Feature a = result.get(0);
+        assertEquals("a", a.getAttribute(0));
+        assertEquals(2, a.getAttribute(1));
+        assertEquals(0.0, a.getAttribute(2));
+        assertNull(a.getAttribute(3));
+        assertNull(a.getAttribute(4));
+        // values of the first group do not leak into the second one
+        Feature b = result.get(1);
+        assertEquals("b", b.getAttribute(0));
+        assertEquals(2, b.getAttribute(1));
+        assertEquals(6.0, b.getAttribute(2));
+        assertEquals(2.0, b.getAttribute(3));
+        assertEquals(3.0, b.getAttribute(4));
+    }
+
+    private List<AttributeAggregator> aggregators() {
+        return Arrays.asList(
+                new AttributeAggregator("VALUE", new Aggregators.Count(false), "COUNT"),
+                new AttributeAggregator("VALUE", new Aggregators.DoubleSum(), "SUM"),
+                new AttributeAggregator("VALUE", new Aggregators.DoubleMin(), "MIN"),
+                new AttributeAggregator("VALUE", new Aggregators.DoubleMean(true), "MEAN"));
+    }
+
+    private Feature feature(String name, int code, Double value) {
+        Feature feature = new BasicFeature(schema);
+        feature.setAttribute(1, name);
+        feature.setAttribute(2, code);
+        feature.setAttribute(3, value);
+        return feature;
+    }
+}
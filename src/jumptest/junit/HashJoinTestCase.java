@@ -0,0 +1,126 @@
+package jumptest.junit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.feature.BasicFeature;
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.feature.FeatureSchema;
+import junit.framework.TestCase;
+import org.openjump.core.attributeoperations.HashJoin;
+
+/**
+ * Tests the equi-join of two lists of features, whichever list is loaded in
+ * the hash table.
+ */
+public class HashJoinTestCase extends TestCase {
+
+    public HashJoinTestCase(String Name_) {
+        super(Name_);
+    }
+
+    public static void main(String[] args) {
+        String[] testCaseName = {HashJoinTestCase.class.getName()};
+        junit.textui.TestRunner.main(testCaseName);
+    }
+
+    public void testDuplicateKeysOnRightBuildSide() throws Exception {
+        // right is the smaller list, so it is the build side
+        List<Feature> left = features(AttributeType.STRING, "a", "b", "c", "a");
+        List<Feature> right = features(AttributeType.STRING, "a", "c", "a");
+        HashJoin join = join(left, AttributeType.STRING, right, AttributeType.STRING);
+        assertEquals(Arrays.asList(right.get(0), right.get(2)), join.getMatches(0));
+        assertEquals(0, join.getMatches(1).size());
+        assertEquals(Arrays.asList(right.get(1)), join.getMatches(2));
+        assertEquals(Arrays.asList(right.get(0), right.get(2)), join.getMatches(3));
+        assertEquals(3, join.getMatchedCount());
+        assertEquals(2, join.getMultipleMatchCount());
+    }
+
+    public void testDuplicateKeysOnLeftBuildSide() throws Exception {
+        // left is the smaller list, so it is the build side
+        List<Feature> left = features(AttributeType.STRING, "a", "b", "a");
+        List<Feature> right = features(AttributeType.STRING, "a", "c", "a", "b", "d");
+        HashJoin join = join(left, AttributeType.STRING, right, AttributeType.STRING);
+        assertEquals(Arrays.asList(right.get(0), right.get(2)), join.getMatches(0));
+        assertEquals(Arrays.asList(right.get(3)), join.getMatches(1));
+        assertEquals(Arrays.asList(right.get(0), right.get(2)), join.getMatches(2));
+        assertEquals(3, join.getMatchedCount());
+        assertEquals(2, join.getMultipleMatchCount());
+    }
+
+    public void testNullKeysNeverMatch() throws Exception {
+        for (int extra = 0; extra < 2; extra++) {
+            // the build side is right, then left
+            List<Feature> left = features(AttributeType.STRING, null, "a", null);
+            List<Feature> right = features(AttributeType.STRING, null, "a");
+            for (int i = 0; i < extra * 2; i++) right.add(feature(AttributeType.STRING, null));
+            HashJoin join = join(left, AttributeType.STRING, right, AttributeType.STRING);
+            assertEquals(0, join.getMatches(0).size());
+            assertEquals(Arrays.asList(right.get(1)), join.getMatches(1));
+            assertEquals(0, join.getMatches(2).size());
+            assertEquals(1, join.getMatchedCount());
+            assertEquals(0, join.getMultipleMatchCount());
+        }
+    }
+
+    public void testNumericKeys() throws Exception {
+        List<Feature> left = features(AttributeType.INTEGER, 1, 2, 3);
+        List<Feature> right = features(AttributeType.DOUBLE, 1.0, 2.5, 3.0, 1.0);
+        HashJoin join = join(left, AttributeType.INTEGER, right, AttributeType.DOUBLE);
+        assertEquals(Arrays.asList(right.get(0), right.get(3)), join.getMatches(0));
+        assertEquals(0, join.getMatches(1).size());
+        assertEquals(Arrays.asList(right.get(2)), join.getMatches(2));
+        // compared as strings, "1" does not match "1.0"
+        join = join(left, AttributeType.STRING, right, AttributeType.DOUBLE);
+        assertEquals(0, join.getMatchedCount());
+    }
+
+    public void testLargeListsMatchInOrder() throws Exception {
+        // several ranges of probe features, merged in order
+        Object[] leftKeys = new Object[100];
+        Object[] rightKeys = new Object[10000];
+        for (int i = 0; i < leftKeys.length; i++) leftKeys[i] = (i % 10 == 0) ? null : "k" + i;
+        for (int i = 0; i < rightKeys.length; i++) rightKeys[i] = "k" + (i % 200);
+        List<Feature> left = features(AttributeType.STRING, leftKeys);
+        List<Feature> right = features(AttributeType.STRING, rightKeys);
+        HashJoin join = join(left, AttributeType.STRING, right, AttributeType.STRING);
+        for (int i = 0; i < leftKeys.length; i++) {
+            List<Feature> matches = join.getMatches(i);
+            if (leftKeys[i] == null) {
+                assertEquals(0, matches.size());
+                continue;
+            }
+            assertEquals(50, matches.size());
+            for (int j = 0; j < matches.size(); j++) {
+                assertSame(right.get(i + 200 * j), matches.get(j));
+            }
+        }
+        assertEquals(90, join.getMatchedCount());
+        assertEquals(90, join.getMultipleMatchCount());
+    }
+
+    private HashJoin join(List<Feature> left, AttributeType leftType,
+                          List<Feature> right, AttributeType rightType) throws Exception {
+        HashJoin join = new HashJoin(left, 1, leftType, right, 1, rightType);
+        join.run(null, null);
+        return join;
+    }
+
+    private List<Feature> features(AttributeType type, Object... keys) {
+        List<Feature> features = new ArrayList<>();
+        for (Object key : keys) features.add(feature(type, key));
+        return features;
+    }
+
+    private Feature feature(AttributeType type, Object key) {
+        FeatureSchema schema = new FeatureSchema();
+        schema.addAttribute("GEOMETRY", AttributeType.GEOMETRY);
+        schema.addAttribute("KEY", type);
+        Feature feature = new BasicFeature(schema);
+        feature.setAttribute(1, key);
+        return feature;
+    }
+}
@@ -0,0 +1,143 @@
+package jumptest.junit;
+
+import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.feature.BasicFeature;
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.feature.FeatureDataset;
+import com.vividsolutions.jump.feature.FeatureSchema;
+import com.vividsolutions.jump.workbench.model.Layer;
+import com.vividsolutions.jump.workbench.model.LayerManager;
+import com.vividsolutions.jump.workbench.ui.LayerViewPanel;
+import com.vividsolutions.jump.workbench.ui.LayerViewPanelContext;
+import com.vividsolutions.jump.workbench.ui.renderer.LabelCollisionIndex;
+import com.vividsolutions.jump.workbench.ui.renderer.LayerRendererFactory;
+import com.vividsolutions.jump.workbench.ui.renderer.RenderingManager;
+import com.vividsolutions.jump.workbench.ui.renderer.style.LabelCache;
+import com.vividsolutions.jump.workbench.ui.renderer.style.LabelStyle;
+import junit.framework.TestCase;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+
+import javax.swing.SwingUtilities;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Point2D;
+import java.util.Collections;
+
+/**
+ * Tests the collision index and the label cache used to place the labels
+ * of all the layers of a view.
+ */
+public class LabelPlacementTestCase extends TestCase {
+
+    public LabelPlacementTestCase(String Name_) {
+        super(Name_);
+    }
+
+    public static void main(String[] args) {
+        String[] testCaseName = {LabelPlacementTestCase.class.getName()};
+        junit.textui.TestRunner.main(testCaseName);
+    }
+
+    public void testOverlappingLabelsCollide() {
+        LabelCollisionIndex index = new LabelCollisionIndex(500, 500, 64);
+        assertTrue(index.insertIfFree(rectangle(100, 100, 80, 12, 0)));
+        assertFalse(index.insertIfFree(rectangle(150, 105, 80, 12, 0)));
+        // touching labels do not overlap
+        assertTrue(index.insertIfFree(rectangle(180, 100, 80, 12, 0)));
+        // labels outside the view are still tested
+        assertTrue(index.insertIfFree(rectangle(-300, -50, 80, 12, 0)));
+        assertFalse(index.collides(rectangle(-200, -45, 10, 10, 0)));
+        assertTrue(index.collides(rectangle(-250, -45, 10, 10, 0)));
+        assertEquals(3, index.size());
+    }
+
+    public void testRotatedLabelsCollideOnlyWhereTheyOverlap() {
+        LabelCollisionIndex index = new LabelCollisionIndex(500, 500, 64);
+        index.insert(rectangle(100, 100, 200, 10, Math.PI / 4));
+        // inside the bounding box of the rotated label, but away from it
+        assertFalse(index.collides(rectangle(110, 220, 20, 10, 0)));
+        assertTrue(index.collides(rectangle(170, 165, 20, 10, 0)));
+        assertTrue(index.collides(rectangle(100, 300, 200, 10, -Math.PI / 4)));
+    }
+
+    public void testManyLabels() {
+        LabelCollisionIndex index = new LabelCollisionIndex(1000, 1000, 64);
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < 100; j++) {
+                assertTrue(index.insertIfFree(rectangle(i * 10, j * 10, 10, 10, 0)));
+            }
+        }
+        assertEquals(10000, index.size());
+        assertFalse(index.insertIfFree(rectangle(505, 505, 2, 2, 0)));
+        assertTrue(index.insertIfFree(rectangle(1005, 505, 2, 2, 0)));
+    }
+
+    public void testAnchorsAreCachedUntilFeaturesChange() throws Exception {
+        GeometryFactory factory = new GeometryFactory();
+        FeatureSchema schema = new FeatureSchema();
+        schema.addAttribute("GEOMETRY", AttributeType.GEOMETRY);
+        schema.addAttribute("NAME", AttributeType.STRING);
+        Feature feature = new BasicFeature(schema);
+        feature.setGeometry(factory.createPoint(new Coordinate(10, 10)));
+        feature.setAttribute("NAME", "label");
+        FeatureDataset dataset = new FeatureDataset(schema);
+        dataset.add(feature);
+        RenderingManager.setRendererFactory(Layer.class, new LayerRendererFactory());
+        LayerManager layerManager = new LayerManager();
+        Layer layer = layerManager.addLayer("Test", "Test", dataset);
+        layer.getVertexStyle().setEnabled(false);
+        LabelStyle style = layer.getLabelStyle();
+        style.setEnabled(true);
+        style.setAttribute("NAME");
+        style.initialize(layer);
+
+        LayerViewPanel panel = new LayerViewPanel(layerManager, new LayerViewPanelContext() {
+            public void setStatusMessage(String message) {
+            }
+
+            public void warnUser(String warning) {
+            }
+
+            public void handleThrowable(Throwable t) {
+            }
+        });
+        panel.setSize(100, 100);
+        panel.getViewport().initialize(1, new Point2D.Double(0, 0));
+        panel.getViewport().update();
+        FontRenderContext frc = new FontRenderContext(null, true, false);
+        LabelCache cache = LabelCache.get(layerManager);
+
+        double[] corners = style.createLabel(feature, panel.getViewport(),
+                cache.getLayerLabels(layer, 1), frc).getCorners();
+        // the geometry is modified in place: the cached anchor is used until
+        // the modification is notified
+        ((Point)feature.getGeometry()).getCoordinate().x = 50;
+        feature.getGeometry().geometryChanged();
+        assertEquals(corners[0], style.createLabel(feature, panel.getViewport(),
+                cache.getLayerLabels(layer, 1), frc).getCorners()[0], 1e-9);
+        layerManager.fireGeometryModified(Collections.singleton(feature), layer,
+                Collections.singleton(feature.clone()));
+        SwingUtilities.invokeAndWait(() -> {});
+        assertEquals(corners[0] + 40, style.createLabel(feature, panel.getViewport(),
+                cache.getLayerLabels(layer, 1), frc).getCorners()[0], 1e-9);
+
+        // at another scale, anchors are computed again
+        panel.getViewport().initialize(2, new Point2D.Double(0, 0));
+        panel.getViewport().update();
+        assertEquals(corners[0] + 90, style.createLabel(feature, panel.getViewport(),
+                cache.getLayerLabels(layer, 2), frc).getCorners()[0], 1e-9);
+        panel.dispose();
+    }
+
+    private static double[] rectangle(double x, double y, double width, double height, double angle) {
+        double cos = Math.cos(angle), sin = Math.sin(angle);
+        double[] corners = new double[] {0, 0, width, 0, width, height, 0, height};
+        for (int i = 0; i < 8; i += 2) {
+            double cx = corners[i], cy = corners[i + 1];
+            corners[i] = x + cx * cos - cy * sin;
+            corners[i + 1] = y + cx * sin + cy * cos;
+        }
+        return corners;
+    }
+}
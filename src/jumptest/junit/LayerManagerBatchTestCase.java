@@ -0,0 +1,146 @@
+package jumptest.junit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.feature.BasicFeature;
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.feature.FeatureDataset;
+import com.vividsolutions.jump.feature.FeatureSchema;
+import com.vividsolutions.jump.workbench.model.CategoryEvent;
+import com.vividsolutions.jump.workbench.model.FeatureEvent;
+import com.vividsolutions.jump.workbench.model.FeatureEventType;
+import com.vividsolutions.jump.workbench.model.Layer;
+import com.vividsolutions.jump.workbench.model.LayerEvent;
+import com.vividsolutions.jump.workbench.model.LayerEventType;
+import com.vividsolutions.jump.workbench.model.LayerListener;
+import com.vividsolutions.jump.workbench.model.LayerManager;
+import junit.framework.TestCase;
+
+/**
+ * Tests that the events fired within LayerManager batches are held until
+ * the outermost batch ends, then fired once.
+ */
+public class LayerManagerBatchTestCase extends TestCase {
+
+    private final FeatureSchema schema = new FeatureSchema();
+    private LayerManager layerManager;
+    private Layer layer;
+    private final List<Object> events = Collections.synchronizedList(new ArrayList<>());
+
+    public LayerManagerBatchTestCase(String Name_) {
+        super(Name_);
+        schema.addAttribute("GEOMETRY", AttributeType.GEOMETRY);
+    }
+
+    public static void main(String[] args) {
+        String[] testCaseName = {LayerManagerBatchTestCase.class.getName()};
+        junit.textui.TestRunner.main(testCaseName);
+    }
+
+    protected void setUp() throws Exception {
+        layerManager = new LayerManager();
+        layer = layerManager.addLayer("Working", "layer", new FeatureDataset(schema));
+        layerManager.addLayerListener(new LayerListener() {
+            public void featuresChanged(FeatureEvent e) {
+                events.add(e);
+            }
+            public void layerChanged(LayerEvent e) {
+                // the layer itself answers feature events with metadata and
+                // appearance events, only record the events fired by tests
+                if (e.getType() == LayerEventType.VISIBILITY_CHANGED) events.add(e);
+            }
+            public void categoryChanged(CategoryEvent e) {
+                events.add(e);
+            }
+        });
+    }
+
+    public void testNestedBatchesFireOneEvent() throws Exception {
+        Feature a = new BasicFeature(schema);
+        Feature b = new BasicFeature(schema);
+        Feature c = new BasicFeature(schema);
+        layerManager.beginBatch();
+        try {
+            layerManager.fireFeaturesChanged(Arrays.asList(a), FeatureEventType.ADDED, layer);
+            layerManager.beginBatch();
+            try {
+                layerManager.fireFeaturesChanged(Arrays.asList(b), FeatureEventType.ADDED, layer);
+            } finally {
+                layerManager.endBatch();
+            }
+            // the inner batch does not fire the events
+            assertTrue(layerManager.isBatching());
+            assertEquals(0, events.size());
+            layerManager.fireFeaturesChanged(Arrays.asList(c), FeatureEventType.ADDED, layer);
+        } finally {
+            layerManager.endBatch();
+        }
+        assertFalse(layerManager.isBatching());
+        assertEquals(1, events.size());
+        FeatureEvent event = (FeatureEvent)events.get(0);
+        assertEquals(FeatureEventType.ADDED, event.getType());
+        assertSame(layer, event.getLayer());
+        assertEquals(Arrays.asList(a, b, c), new ArrayList<>(event.getFeatures()));
+    }
+
+    public void testFailedBatchFiresOneEvent() throws Exception {
+        Feature a = new BasicFeature(schema);
+        Feature b = new BasicFeature(schema);
+        try {
+            layerManager.beginBatch();
+            try {
+                layerManager.fireFeaturesChanged(Arrays.asList(a), FeatureEventType.DELETED, layer);
+                layerManager.beginBatch();
+                try {
+                    layerManager.fireFeaturesChanged(Arrays.asList(b), FeatureEventType.DELETED, layer);
+                    throw new IllegalStateException("failure");
+                } finally {
+                    layerManager.endBatch();
+                }
+            } finally {
+                layerManager.endBatch();
+            }
+        } catch (IllegalStateException e) {
+            assertEquals("failure", e.getMessage());
+        }
+        assertFalse(layerManager.isBatching());
+        assertEquals(1, events.size());
+        assertEquals(Arrays.asList(a, b), new ArrayList<>(((FeatureEvent)events.get(0)).getFeatures()));
+        // events fired after the failed batch are not held
+        layerManager.fireFeaturesChanged(Arrays.asList(a), FeatureEventType.ADDED, layer);
+        assertEquals(2, events.size());
+    }
+
+    public void testLayerEventsAreNotMerged() throws Exception {
+        Feature a = new BasicFeature(schema);
+        Feature b = new BasicFeature(schema);
+        layerManager.beginBatch();
+        try {
+            layerManager.fireFeaturesChanged(Arrays.asList(a), FeatureEventType.ADDED, layer);
+            layerManager.fireLayerChanged(layer, LayerEventType.VISIBILITY_CHANGED);
+            layerManager.fireFeaturesChanged(Arrays.asList(b), FeatureEventType.ADDED, layer);
+            layerManager.fireFeaturesChanged(Arrays.asList(b), FeatureEventType.ATTRIBUTES_MODIFIED, layer);
+        } finally {
+            layerManager.endBatch();
+        }
+        assertEquals(4, events.size());
+        assertEquals(Arrays.asList(a), new ArrayList<>(((FeatureEvent)events.get(0)).getFeatures()));
+        assertEquals(LayerEventType.VISIBILITY_CHANGED, ((LayerEvent)events.get(1)).getType());
+        assertEquals(Arrays.asList(b), new ArrayList<>(((FeatureEvent)events.get(2)).getFeatures()));
+        assertEquals(FeatureEventType.ATTRIBUTES_MODIFIED, ((FeatureEvent)events.get(3)).getType());
+    }
+
+    public void testEndBatchWithoutBeginBatch() throws Exception {
+        try {
+            layerManager.endBatch();
+            fail();
+        } catch (RuntimeException e) {
+            // expected
+        }
+        assertFalse(layerManager.isBatching());
+    }
+}
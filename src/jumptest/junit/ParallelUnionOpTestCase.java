@@ -0,0 +1,106 @@
+package jumptest.junit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.vividsolutions.jump.geom.ParallelUnionOp;
+import junit.framework.TestCase;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.operation.union.UnaryUnionOp;
+
+/**
+ * Tests that the union of geometries by partitions gives the same result as
+ * a single {@link UnaryUnionOp}, with geometries crossing the seams between
+ * partitions, and with intermediate results written to temporary files.
+ */
+public class ParallelUnionOpTestCase extends TestCase {
+
+    private final GeometryFactory factory = new GeometryFactory();
+
+    public ParallelUnionOpTestCase(String Name_) {
+        super(Name_);
+    }
+
+    public static void main(String[] args) {
+        String[] testCaseName = {ParallelUnionOpTestCase.class.getName()};
+        junit.textui.TestRunner.main(testCaseName);
+    }
+
+    public void testUnionOfPartitions() throws Exception {
+        List<Geometry> geometries = polygons();
+        assertSameUnion(geometries, union(geometries, 0));
+    }
+
+    public void testUnionOfSpilledPartitions() throws Exception {
+        List<Geometry> geometries = polygons();
+        assertSameUnion(geometries, union(geometries, 1));
+    }
+
+    public void testSpilledPartitionsKeepZ() throws Exception {
+        // the first coordinate of the union has no z, the others have one
+        List<Geometry> points = new ArrayList<>();
+        points.add(factory.createPoint(new Coordinate(-1, -1)));
+        for (int i = 0; i < 6000; i++) {
+            // each point twice, in partitions which may differ
+            Coordinate c = new Coordinate(i % 100, (i / 100) % 30, i % 3000);
+            points.add(factory.createPoint(c));
+        }
+        Geometry union = union(points, 1);
+        Geometry expected = UnaryUnionOp.union(points);
+        assertEquals(3001, union.getNumGeometries());
+        Coordinate[] coordinates = union.getCoordinates();
+        Coordinate[] expectedCoordinates = expected.getCoordinates();
+        Arrays.sort(coordinates);
+        Arrays.sort(expectedCoordinates);
+        assertEquals(expectedCoordinates.length, coordinates.length);
+        assertTrue(Double.isNaN(coordinates[0].getZ()));
+        for (int i = 0; i < coordinates.length; i++) {
+            assertTrue(coordinates[i].toString(), expectedCoordinates[i].equals3D(coordinates[i]));
+        }
+    }
+
+    public void testSmallInput() throws Exception {
+        assertTrue(ParallelUnionOp.union(new ArrayList<Geometry>()).isEmpty());
+        List<Geometry> geometries = Arrays.asList(
+                factory.toGeometry(new Envelope(0, 2, 0, 2)),
+                factory.toGeometry(new Envelope(1, 3, 1, 3)));
+        assertSameUnion(geometries, ParallelUnionOp.union(geometries));
+    }
+
+    // overlapping squares in several clusters, and long lines crossing all
+    // the partitions
+    private List<Geometry> polygons() {
+        List<Geometry> geometries = new ArrayList<>();
+        for (int cluster = 0; cluster < 3; cluster++) {
+            double x0 = cluster * 100;
+            for (int i = 0; i < 40; i++) {
+                for (int j = 0; j < 40; j++) {
+                    geometries.add(factory.toGeometry(new Envelope(
+                            x0 + i, x0 + i + 1.5, j, j + 1.5)));
+                }
+            }
+        }
+        for (int k = 0; k < 5; k++) {
+            geometries.add(factory.toGeometry(new Envelope(-10, 250, 10 * k + 0.2, 10 * k + 0.7)));
+        }
+        return geometries;
+    }
+
+    private Geometry union(List<Geometry> geometries, double lowMemoryRatio) throws Exception {
+        ParallelUnionOp op = new ParallelUnionOp(geometries, null);
+        op.setLowMemoryRatio(lowMemoryRatio);
+        return op.union(null, null);
+    }
+
+    private void assertSameUnion(List<Geometry> geometries, Geometry union) {
+        Geometry expected = UnaryUnionOp.union(geometries);
+        assertTrue(union.isValid());
+        assertEquals(expected.getNumGeometries(), union.getNumGeometries());
+        assertEquals(expected.getArea(), union.getArea(), 1e-6);
+        assertTrue(union.symDifference(expected).getArea() < 1e-6);
+    }
+}
@@ -0,0 +1,159 @@
+package jumptest.junit;
+
+import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.feature.BasicFeature;
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.feature.FeatureCollection;
+import com.vividsolutions.jump.feature.FeatureDataset;
+import com.vividsolutions.jump.feature.FeatureSchema;
+import com.vividsolutions.jump.workbench.model.LayerManager;
+import junit.framework.TestCase;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.openjump.core.rasterimage.algorithms.RasterPolygonizer;
+import org.openjump.core.rasterimage.algorithms.RasterizeAlgorithm;
+import org.openjump.core.rasterimage.sextante.OpenJUMPSextanteRasterLayer;
+import org.openjump.core.rasterimage.sextante.rasterWrappers.GridExtent;
+import org.openjump.core.rasterimage.sextante.rasterWrappers.GridWrapperNotInterpolated;
+
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+/**
+ * Tests the rasterization of features and the vectorization of grids into
+ * polygons.
+ */
+public class RasterizeVectorizeTestCase extends TestCase {
+
+    private static final float NO_DATA = -99999f;
+
+    private final GeometryFactory factory = new GeometryFactory();
+
+    public RasterizeVectorizeTestCase(String Name_) {
+        super(Name_);
+    }
+
+    public static void main(String[] args) {
+        String[] testCaseName = {RasterizeVectorizeTestCase.class.getName()};
+        junit.textui.TestRunner.main(testCaseName);
+    }
+
+    public void testRasterizePolygonWithHole() throws Exception {
+        Geometry square = factory.toGeometry(new Envelope(0, 10, 0, 10));
+        Geometry hole = factory.toGeometry(new Envelope(4, 6, 4, 6));
+        FeatureCollection features = features(square.difference(hole),
+                factory.toGeometry(new Envelope(3, 7, 3, 7)));
+        RasterizeAlgorithm rasterize = new RasterizeAlgorithm(new Envelope(0, 10, 0, 10), features, "VALUE", 1);
+        rasterize.process();
+        Raster raster = rasterize.getRaster();
+        assertEquals(10, raster.getWidth());
+        assertEquals(10, raster.getHeight());
+        for (int row = 0; row < 10; row++) {
+            for (int col = 0; col < 10; col++) {
+                // the first polygon wins, the second one only fills the hole
+                float expected = col >= 4 && col < 6 && row >= 4 && row < 6 ? 2 : 1;
+                assertEquals("cell " + col + "," + row, expected, raster.getSampleFloat(col, row, 0));
+            }
+        }
+    }
+
+    public void testRasterizeByStrips() throws Exception {
+        FeatureCollection features = features(
+                factory.toGeometry(new Envelope(0.3, 7.7, 1.2, 18.4)),
+                factory.createLineString(new org.locationtech.jts.geom.Coordinate[] {
+                        new org.locationtech.jts.geom.Coordinate(0, 0),
+                        new org.locationtech.jts.geom.Coordinate(9.5, 19.5)}),
+                factory.createPoint(new org.locationtech.jts.geom.Coordinate(9.5, 0.5)));
+        RasterizeAlgorithm rasterize = new RasterizeAlgorithm(new Envelope(0, 10, 0, 20), features, "VALUE", 0.5);
+        rasterize.process();
+        Raster raster = rasterize.getRaster();
+        assertEquals(3f, raster.getSampleFloat(19, 39, 0));
+        WritableRaster strip = Raster.createWritableRaster(
+                new BandedSampleModel(DataBuffer.TYPE_FLOAT, 20, 7, 1), null);
+        for (int row = 0; row < 40; row += 7) {
+            rasterize.rasterize(strip, row);
+            for (int y = row; y < Math.min(40, row + 7); y++) {
+                for (int x = 0; x < 20; x++) {
+                    assertEquals(raster.getSampleFloat(x, y, 0), strip.getSampleFloat(x, y - row, 0));
+                }
+            }
+        }
+    }
+
+    public void testVectorizeRegionsWithHoles() throws Exception {
+        // a ring of 1 around a 2, and two cells of 3 touching by a corner
+        float[][] values = {
+                {1, 1, 1, 0, 3},
+                {1, 2, 1, 3, 0},
+                {1, 1, 1, 0, 0}};
+        FeatureCollection polygons = new RasterPolygonizer(grid(values), 0).toPolygons("VALUE");
+        assertEquals(4, polygons.size());
+        double[] expectedValues = {1, 3, 2, 3};
+        double[] expectedAreas = {8, 1, 1, 1};
+        int[] expectedHoles = {1, 0, 0, 0};
+        for (int i = 0; i < 4; i++) {
+            Feature feature = polygons.getFeatures().get(i);
+            Polygon polygon = (Polygon)feature.getGeometry();
+            assertTrue(polygon.isValid());
+            assertEquals(i + 1, feature.getAttribute("ID"));
+            assertEquals(expectedValues[i], feature.getAttribute("VALUE"));
+            // cells are 2 x 2
+            assertEquals(expectedAreas[i] * 4, polygon.getArea(), 1e-9);
+            assertEquals(expectedHoles[i], polygon.getNumInteriorRing());
+        }
+        assertEquals(5, ((Polygon)polygons.getFeatures().get(0).getGeometry()).getExteriorRing().getNumPoints());
+        assertEquals(new Envelope(100, 106, 50, 56),
+                polygons.getFeatures().get(0).getGeometry().getEnvelopeInternal());
+    }
+
+    public void testVectorizeRegionTouchingItselfByACorner() throws Exception {
+        // the region of 1 encloses the 0 at the centre, which touches the
+        // outside by a corner
+        float[][] values = {
+                {1, 1, 1, 9},
+                {1, 0, 9, 1},
+                {1, 1, 1, 1}};
+        FeatureCollection polygons = new RasterPolygonizer(grid(values), 0).toPolygons("VALUE");
+        Polygon polygon = (Polygon)polygons.getFeatures().get(0).getGeometry();
+        assertTrue(polygon.isValid());
+        assertEquals(9 * 4, polygon.getArea(), 1e-9);
+        assertEquals(1, polygon.getNumInteriorRing());
+    }
+
+    private FeatureCollection features(Geometry... geometries) {
+        FeatureSchema schema = new FeatureSchema();
+        schema.addAttribute("GEOMETRY", AttributeType.GEOMETRY);
+        schema.addAttribute("VALUE", AttributeType.DOUBLE);
+        FeatureCollection features = new FeatureDataset(schema);
+        for (int i = 0; i < geometries.length; i++) {
+            Feature feature = new BasicFeature(schema);
+            feature.setGeometry(geometries[i]);
+            feature.setAttribute("VALUE", (double)(i + 1));
+            features.add(feature);
+        }
+        return features;
+    }
+
+    // a grid of 2 x 2 cells whose upper left corner is at (100, 50 + 2 * rows),
+    // 0 being no data
+    private GridWrapperNotInterpolated grid(float[][] values) {
+        GridExtent extent = new GridExtent();
+        extent.setCellSize(2, 2);
+        extent.setXRange(100, 100 + 2 * values[0].length);
+        extent.setYRange(50, 50 + 2 * values.length);
+        OpenJUMPSextanteRasterLayer layer = new OpenJUMPSextanteRasterLayer();
+        layer.create("grid", "grid", extent, DataBuffer.TYPE_FLOAT, 1, null, new LayerManager());
+        layer.setWindowExtent(extent);
+        for (int row = 0; row < values.length; row++) {
+            for (int col = 0; col < values[row].length; col++) {
+                layer.setCellValue(col, row, 0, values[row][col] == 0 ? NO_DATA : values[row][col]);
+            }
+        }
+        layer.setNoDataValue(NO_DATA);
+        return new GridWrapperNotInterpolated(layer, layer.getLayerGridExtent());
+    }
+}
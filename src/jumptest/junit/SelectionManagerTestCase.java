@@ -0,0 +1,281 @@
+package jumptest.junit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.feature.BasicFeature;
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.feature.FeatureDataset;
+import com.vividsolutions.jump.feature.FeatureSchema;
+import com.vividsolutions.jump.workbench.model.Layer;
+import com.vividsolutions.jump.workbench.model.LayerManager;
+import com.vividsolutions.jump.workbench.ui.AbstractSelection;
+import com.vividsolutions.jump.workbench.ui.FeatureSelection;
+import com.vividsolutions.jump.workbench.ui.LayerViewPanel;
+import com.vividsolutions.jump.workbench.ui.LayerViewPanelContext;
+import com.vividsolutions.jump.workbench.ui.LineStringSelection;
+import com.vividsolutions.jump.workbench.ui.PartSelection;
+import com.vividsolutions.jump.workbench.ui.SelectionManager;
+import com.vividsolutions.jump.workbench.ui.renderer.LayerRendererFactory;
+import com.vividsolutions.jump.workbench.ui.renderer.RenderingManager;
+import junit.framework.TestCase;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.WKTReader;
+
+/**
+ * Tests the selection of whole features, parts and linestrings, and the
+ * counts of selected features and items reported by the SelectionManager.
+ */
+public class SelectionManagerTestCase extends TestCase {
+
+    // three parts, the second one with a hole : four linestrings
+    private static final String MULTIPOLYGON = "MULTIPOLYGON (((0 0, 1 0, 1 1, 0 0)), " +
+            "((10 0, 20 0, 20 10, 10 10, 10 0), (12 2, 14 2, 14 4, 12 2)), " +
+            "((30 0, 31 0, 31 1, 30 0)))";
+
+    private final WKTReader reader = new WKTReader();
+    private final FeatureSchema schema = new FeatureSchema();
+
+    private LayerViewPanel panel;
+    private Layer layer;
+    private SelectionManager selectionManager;
+    private FeatureSelection featureSelection;
+    private PartSelection partSelection;
+    private LineStringSelection lineStringSelection;
+
+    public SelectionManagerTestCase(String Name_) {
+        super(Name_);
+        schema.addAttribute("GEOMETRY", AttributeType.GEOMETRY);
+    }
+
+    public static void main(String[] args) {
+        String[] testCaseName = {SelectionManagerTestCase.class.getName()};
+        junit.textui.TestRunner.main(testCaseName);
+    }
+
+    protected void setUp() throws Exception {
+        RenderingManager.setRendererFactory(Layer.class, new LayerRendererFactory());
+        LayerManager layerManager = new LayerManager();
+        layer = layerManager.addLayer("Working", "layer", new FeatureDataset(schema));
+        panel = new LayerViewPanel(layerManager, new LayerViewPanelContext() {
+            public void setStatusMessage(String message) {
+            }
+
+            public void warnUser(String warning) {
+            }
+
+            public void handleThrowable(Throwable t) {
+            }
+        });
+        selectionManager = panel.getSelectionManager();
+        featureSelection = selectionManager.getFeatureSelection();
+        partSelection = selectionManager.getPartSelection();
+        lineStringSelection = selectionManager.getLineStringSelection();
+    }
+
+    protected void tearDown() throws Exception {
+        panel.dispose();
+    }
+
+    public void testWholeFeatureSelection() throws Exception {
+        Feature a = feature(MULTIPOLYGON);
+        Feature b = feature("POINT (5 5)");
+        featureSelection.selectItems(layer, Arrays.asList(a, b));
+        // a whole feature is a single item
+        assertCounts(featureSelection, 2, 2);
+        assertCounts(2, 2);
+        assertEquals(Collections.singleton(0), featureSelection.getSelectedItemIndices(layer, a));
+        assertEquals(Collections.singletonList(a.getGeometry()),
+                new ArrayList<>(featureSelection.getSelectedItems(layer, a)));
+        assertEquals(Arrays.asList(a, b), new ArrayList<>(featureSelection.getFeaturesWithSelectedItems(layer)));
+        // selecting a feature again changes nothing
+        featureSelection.selectItems(layer, a);
+        featureSelection.selectItems(layer, a, Collections.singletonList(a.getGeometry()));
+        assertCounts(featureSelection, 2, 2);
+        assertCounts(2, 2);
+    }
+
+    public void testPartSelection() throws Exception {
+        Feature a = feature(MULTIPOLYGON);
+        Feature b = feature(MULTIPOLYGON);
+        partSelection.selectItems(layer, a, Arrays.asList(part(a, 0), part(a, 2)));
+        assertEquals(set(0, 2), partSelection.getSelectedItemIndices(layer, a));
+        assertEquals(Arrays.asList(part(a, 0), part(a, 2)),
+                new ArrayList<>(partSelection.getSelectedItems(layer, a)));
+        assertCounts(partSelection, 1, 2);
+        partSelection.selectItems(layer, a, Collections.singletonList(part(a, 1)));
+        assertEquals(set(0, 1, 2), partSelection.getSelectedItemIndices(layer, a));
+        // all the parts of b, without comparing them
+        partSelection.selectItems(layer, b);
+        assertEquals(set(0, 1, 2), partSelection.getSelectedItemIndices(layer, b));
+        assertCounts(partSelection, 2, 6);
+        assertCounts(2, 6);
+        // the whole feature replaces its selected parts
+        featureSelection.selectItems(layer, a);
+        assertFalse(partSelection.hasSelectedItems(layer, a));
+        assertCounts(partSelection, 1, 3);
+        assertCounts(2, 4);
+        // parts of a wholly selected feature are not selected
+        partSelection.selectItems(layer, a, Collections.singletonList(part(a, 0)));
+        partSelection.selectItems(layer, a);
+        assertFalse(partSelection.hasSelectedItems(layer, a));
+        assertCounts(2, 4);
+    }
+
+    public void testLineStringSelection() throws Exception {
+        Feature a = feature(MULTIPOLYGON);
+        Polygon part1 = (Polygon)part(a, 1);
+        partSelection.selectItems(layer, a, Collections.singletonList(part1));
+        // the hole belongs to a selected part, the ring of the first part not
+        lineStringSelection.selectItems(layer, a, Arrays.asList(
+                ((Polygon)part(a, 0)).getExteriorRing(), part1.getInteriorRingN(0)));
+        assertEquals(Collections.singleton(0), lineStringSelection.getSelectedItemIndices(layer, a));
+        assertCounts(lineStringSelection, 1, 1);
+        // a feature with selected parts and linestrings is counted once
+        assertCounts(1, 2);
+        // selecting the part unselects its linestrings
+        partSelection.selectItems(layer, a, Collections.singletonList(part(a, 0)));
+        assertCounts(lineStringSelection, 0, 0);
+        assertCounts(1, 2);
+        // linestrings of a feature without selected part
+        Feature b = feature(MULTIPOLYGON);
+        lineStringSelection.selectItems(layer, b);
+        assertEquals(set(0, 1, 2, 3), lineStringSelection.getSelectedItemIndices(layer, b));
+        assertCounts(2, 6);
+    }
+
+    public void testUnselect() throws Exception {
+        Feature a = feature(MULTIPOLYGON);
+        Feature b = feature(MULTIPOLYGON);
+        Feature c = feature("POINT (5 5)");
+        partSelection.selectItems(layer, Arrays.asList(a, b));
+        featureSelection.selectItems(layer, c);
+        assertCounts(3, 7);
+        // from all the items of a feature to some of them
+        partSelection.unselectItems(layer, a, Collections.singletonList(part(a, 1)));
+        assertEquals(set(0, 2), partSelection.getSelectedItemIndices(layer, a));
+        assertCounts(partSelection, 2, 5);
+        partSelection.unselectItem(layer, a, 0);
+        assertEquals(Collections.singleton(2), partSelection.getSelectedItemIndices(layer, a));
+        // unselecting the last item unselects the feature
+        partSelection.unselectItem(layer, a, 2);
+        assertFalse(partSelection.hasSelectedItems(layer, a));
+        assertCounts(partSelection, 1, 3);
+        featureSelection.unselectItems(layer, c, Collections.singletonList(c.getGeometry()));
+        assertCounts(featureSelection, 0, 0);
+        assertCounts(1, 3);
+        // unselecting a feature which is not selected changes nothing
+        partSelection.unselectItems(layer, a, Collections.singletonList(part(a, 1)));
+        selectionManager.unselectItems(layer, Collections.singletonList(c));
+        assertCounts(1, 3);
+        selectionManager.unselectItems(layer, Collections.singletonList(b));
+        assertCounts(partSelection, 0, 0);
+        assertCounts(0, 0);
+        partSelection.selectItems(layer, a);
+        featureSelection.selectItems(layer, c);
+        selectionManager.unselectItems(layer);
+        assertCounts(0, 0);
+        partSelection.selectItems(layer, a);
+        featureSelection.selectItems(layer, c);
+        selectionManager.clear();
+        assertCounts(featureSelection, 0, 0);
+        assertCounts(partSelection, 0, 0);
+        assertCounts(0, 0);
+    }
+
+    public void testNegativeFeatureIds() throws Exception {
+        // IDs wrap to negative values once the int range is exhausted
+        List<Feature> features = Arrays.asList(feature("POINT (0 0)", -5),
+                feature("POINT (1 1)", 3), feature("POINT (2 2)", -1), feature("POINT (3 3)", 7));
+        featureSelection.selectItems(layer, features);
+        assertCounts(4, 4);
+        Set<Integer> negativeIds = new HashSet<>();
+        BitSet ids = featureSelection.getSelectedFeatureIds(layer, negativeIds);
+        BitSet expected = new BitSet();
+        expected.set(3);
+        expected.set(7);
+        assertEquals(expected, ids);
+        assertEquals(set(-5, -1), negativeIds);
+        assertEquals(expected, featureSelection.getSelectedFeatureIds(layer, null));
+        featureSelection.unselectItems(layer, features.get(0));
+        selectionManager.updatePanel();
+        negativeIds.clear();
+        featureSelection.getSelectedFeatureIds(layer, negativeIds);
+        assertEquals(Collections.singleton(-1), negativeIds);
+        assertCounts(3, 3);
+    }
+
+    public void testIndexMapView() throws Exception {
+        Feature a = feature(MULTIPOLYGON);
+        Feature b = feature(MULTIPOLYGON);
+        partSelection.selectItems(layer, b, Collections.singletonList(part(b, 1)));
+        partSelection.selectItems(layer, a);
+        Map<Feature,Set<Integer>> map = partSelection.getFeatureToSelectedItemIndexCollectionMap(layer);
+        // in the order of selection
+        assertEquals(Arrays.asList(b, a), new ArrayList<>(map.keySet()));
+        assertEquals(Collections.singleton(1), map.get(b));
+        assertEquals(set(0, 1, 2), map.get(a));
+        assertEquals(2, map.entrySet().size());
+        try {
+            map.put(b, set(0));
+            fail("the map is read-only");
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            map.get(a).add(4);
+            fail("the indices are read-only");
+        } catch (UnsupportedOperationException e) {
+        }
+        // the map is a view of the selection
+        partSelection.unselectItems(layer, b);
+        assertEquals(Collections.singletonList(a), new ArrayList<>(map.keySet()));
+    }
+
+    private void assertCounts(int features, int items) {
+        assertEquals("features with selected items", features,
+                selectionManager.getFeaturesWithSelectedItemsCount());
+        assertEquals("selected items", items, selectionManager.getSelectedItemsCount());
+        // the counts are those of the selected items
+        assertEquals(features, selectionManager.getFeaturesWithSelectedItems().size());
+        assertEquals(items, selectionManager.getSelectedItems().size());
+    }
+
+    private void assertCounts(AbstractSelection selection, int features, int items) {
+        assertEquals("features", features, selection.getFeatureCount());
+        assertEquals("items", items, selection.getSelectedItemCount());
+        assertEquals(features, selection.getFeaturesWithSelectedItems().size());
+        assertEquals(items, selection.getSelectedItems().size());
+    }
+
+    private Feature feature(String wkt) throws Exception {
+        Feature feature = new BasicFeature(schema);
+        feature.setGeometry(reader.read(wkt));
+        layer.getFeatureCollectionWrapper().add(feature);
+        return feature;
+    }
+
+    private Feature feature(String wkt, int id) throws Exception {
+        Feature feature = new BasicFeature(schema, id) {
+        };
+        feature.setGeometry(reader.read(wkt));
+        layer.getFeatureCollectionWrapper().add(feature);
+        return feature;
+    }
+
+    private static Geometry part(Feature feature, int n) {
+        return feature.getGeometry().getGeometryN(n);
+    }
+
+    private static Set<Integer> set(Integer... integers) {
+        return new LinkedHashSet<>(Arrays.asList(integers));
+    }
+}
@@ -0,0 +1,123 @@
+package jumptest.junit;
+
+import junit.framework.TestCase;
+import org.openjump.core.rasterimage.RasterSymbology;
+import org.openjump.core.rasterimage.SymbologyLookupTable;
+
+import java.awt.Color;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+
+/**
+ * Tests that the colours of a SymbologyLookupTable are those of the
+ * RasterSymbology it is compiled from.
+ */
+public class SymbologyLookupTableTestCase extends TestCase {
+
+    private static final double NODATA = -9999;
+
+    public SymbologyLookupTableTestCase(String Name_) {
+        super(Name_);
+    }
+
+    public static void main(String[] args) {
+        String[] testCaseName = {SymbologyLookupTableTestCase.class.getName()};
+        junit.textui.TestRunner.main(testCaseName);
+    }
+
+    public void testIntegerValues() {
+        RasterSymbology symbology = ramp();
+        SymbologyLookupTable table = new SymbologyLookupTable(symbology, NODATA,
+                DataBuffer.TYPE_SHORT, -200, 2000);
+        for (int value = -500; value < 2500; value++) {
+            assertEquals("value " + value, expected(symbology, value), table.getARGB(value));
+        }
+        assertEquals(expected(symbology, NODATA), table.getARGB((int)NODATA));
+    }
+
+    public void testRampOfFloatValues() {
+        RasterSymbology symbology = ramp();
+        SymbologyLookupTable table = new SymbologyLookupTable(symbology, NODATA,
+                DataBuffer.TYPE_FLOAT, -200, 2000);
+        Random random = new Random(0);
+        for (int i = 0; i < 100000; i++) {
+            double value = -500 + 3000 * random.nextDouble();
+            assertColor("value " + value, expected(symbology, value), table.getARGB(value), 1);
+        }
+        assertEquals(expected(symbology, NODATA), table.getARGB(NODATA));
+        assertEquals(expected(symbology, Double.NaN), table.getARGB(Double.NaN));
+    }
+
+    public void testIntervalsOfFloatValues() {
+        RasterSymbology symbology = new RasterSymbology(RasterSymbology.TYPE_INTERVALS);
+        symbology.addColorMapEntry(NODATA, null);
+        symbology.addColorMapEntry(0, Color.BLUE);
+        symbology.addColorMapEntry(10.5, Color.GREEN);
+        symbology.addColorMapEntry(100, new Color(255, 0, 0, 128));
+        symbology.addColorMapEntry(1000, Color.BLACK);
+        symbology.setTransparency(0.5);
+        SymbologyLookupTable table = new SymbologyLookupTable(symbology, NODATA,
+                DataBuffer.TYPE_DOUBLE, 0, 1000);
+        for (double value : new double[] {-1, 0, 5, 10.5, 10.50001, 99.9, 100, 500, 1000, 2000, NODATA}) {
+            assertEquals("value " + value, expected(symbology, value), table.getARGB(value));
+        }
+    }
+
+    public void testCreateImage() throws Exception {
+        RasterSymbology symbology = ramp();
+        SymbologyLookupTable table = new SymbologyLookupTable(symbology, NODATA,
+                DataBuffer.TYPE_FLOAT, -200, 2000);
+        WritableRaster raster = Raster.createWritableRaster(
+                new BandedSampleModel(DataBuffer.TYPE_FLOAT, 50, 40, 1), null);
+        for (int row = 0; row < 40; row++) {
+            for (int col = 0; col < 50; col++) {
+                raster.setSample(col, row, 0, row == col ? NODATA : row * 50 + col - 200);
+            }
+        }
+        BufferedImage image = table.createImage(raster, 0);
+        assertEquals(50, image.getWidth());
+        assertEquals(40, image.getHeight());
+        for (int row = 0; row < 40; row++) {
+            for (int col = 0; col < 50; col++) {
+                assertEquals(table.getARGB(raster.getSampleDouble(col, row, 0)), image.getRGB(col, row));
+            }
+        }
+    }
+
+    private static RasterSymbology ramp() {
+        RasterSymbology symbology = new RasterSymbology(RasterSymbology.TYPE_RAMP);
+        symbology.addColorMapEntry(NODATA, null);
+        symbology.addColorMapEntry(-200, Color.BLUE);
+        symbology.addColorMapEntry(0, Color.GREEN);
+        symbology.addColorMapEntry(1500, new Color(200, 100, 50));
+        symbology.addColorMapEntry(2000, Color.WHITE);
+        symbology.setTransparency(0.25);
+        return symbology;
+    }
+
+    // the colour computed by RasterImageLayer before lookup tables
+    private static int expected(RasterSymbology symbology, double value) {
+        double min = symbology.getColorMapEntries_tm().higherKey(NODATA);
+        if (value != NODATA && value < min) {
+            value = min;
+        }
+        Color color = symbology.getColor(value);
+        if (color == null) {
+            return 0;
+        }
+        int alpha = (int)(((1 - symbology.getTransparency()) * (color.getAlpha() / 255d)) * 255);
+        return new Color(color.getRed(), color.getGreen(), color.getBlue(), alpha).getRGB();
+    }
+
+    private static void assertColor(String message, int expected, int actual, int tolerance) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            int difference = ((expected >>> shift) & 0xFF) - ((actual >>> shift) & 0xFF);
+            assertTrue(message + ": " + Integer.toHexString(expected) + " != " +
+                    Integer.toHexString(actual), Math.abs(difference) <= tolerance);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package jumptest.junit;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.Collections;
+
+import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.feature.BasicFeature;
+import com.vividsolutions.jump.feature.FeatureDataset;
+import com.vividsolutions.jump.feature.FeatureSchema;
+import com.vividsolutions.jump.workbench.model.Layer;
+import com.vividsolutions.jump.workbench.model.LayerManager;
+import com.vividsolutions.jump.workbench.ui.renderer.LayerRendererFactory;
+import com.vividsolutions.jump.workbench.ui.renderer.RenderingManager;
+import com.vividsolutions.jump.workbench.ui.renderer.style.LabelStyle;
+import junit.framework.TestCase;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.io.WKTReader;
+import org.openjump.core.ui.plugin.file.LayerPrinter2;
+import org.openjump.core.ui.plugin.file.TiledMapImage;
+
+/**
+ * Tests that an image rendered by tiles is the image rendered at once,
+ * including at the boundaries of tiles and strips, where labels must be
+ * neither cut nor repeated.
+ */
+public class TiledMapImageTestCase extends TestCase {
+
+    // the image is 1100 x 700 pixels : 3 tiles by row, the last one partly
+    // outside the image, and 2 strips
+    private static final Envelope ENVELOPE = new Envelope(0, 1100, 0, 700);
+
+    private final WKTReader reader = new WKTReader();
+
+    public TiledMapImageTestCase(String Name_) {
+        super(Name_);
+    }
+
+    public static void main(String[] args) {
+        String[] testCaseName = {TiledMapImageTestCase.class.getName()};
+        junit.textui.TestRunner.main(testCaseName);
+    }
+
+    private Layer layer;
+    private BufferedImage expected;
+
+    protected void setUp() throws Exception {
+        RenderingManager.setRendererFactory(Layer.class, new LayerRendererFactory());
+        LayerManager layerManager = new LayerManager();
+        FeatureSchema schema = new FeatureSchema();
+        schema.addAttribute("GEOMETRY", AttributeType.GEOMETRY);
+        schema.addAttribute("NAME", AttributeType.STRING);
+        FeatureDataset dataset = new FeatureDataset(schema);
+        // edges on pixel boundaries, which are antialiased the same way
+        // whatever the origin of the tile. The polygon and the line cross
+        // several tiles, which would each label them if tiles were labelled
+        // one by one
+        add(dataset, "POLYGON ((100 100, 700 100, 700 650, 100 650, 100 100))", "polygon");
+        add(dataset, "LINESTRING (0 300, 1100 300)", "line");
+        // labels across the seams between tiles (x = 512, x = 1024) and
+        // strips (y = 512, i.e. 188 in model coordinates), drawn above
+        // their point
+        add(dataset, "POINT (512 400)", "label across tiles");
+        add(dataset, "POINT (300 182)", "label across strips");
+        add(dataset, "POINT (512 182)", "label across tiles and strips");
+        add(dataset, "POINT (1020 500)", "label across the last tile");
+        layer = layerManager.addLayer("Working", "layer", dataset);
+        layer.getVertexStyle().setEnabled(false);
+        LabelStyle style = layer.getLabelStyle();
+        style.setEnabled(true);
+        style.setAttribute("NAME");
+        style.setHidingOverlappingLabels(true);
+        expected = new LayerPrinter2().print(Collections.singletonList(layer), ENVELOPE, 1100);
+    }
+
+    public void testOneTileAtATime() throws Exception {
+        // a single panel renders all the tiles
+        assertTiledImageIsFullImage(1);
+    }
+
+    public void testTilesOfAStripInParallel() throws Exception {
+        // a panel for each tile of a strip
+        assertTiledImageIsFullImage(3);
+    }
+
+    private void assertTiledImageIsFullImage(int threads) throws Exception {
+        TiledMapImage tiled = new LayerPrinter2().printTiled(
+                Collections.singletonList(layer), ENVELOPE, 1100);
+        tiled.setThreads(threads);
+        try {
+            assertEquals(expected.getWidth(), tiled.getWidth());
+            assertEquals(expected.getHeight(), tiled.getHeight());
+            assertEquals(ENVELOPE, tiled.getEnvelope());
+            // read by tiles, as the TIFF writer does, in another order than
+            // strips are rendered
+            Raster raster = tiled.getTile(1, 1);
+            assertSame(expected, raster, 512, 512, 588, 188);
+            raster = tiled.getTile(2, 0);
+            assertSame(expected, raster, 1024, 0, 76, 512);
+            // read by rows, as the PNG writer does
+            raster = tiled.getData();
+            assertSame(expected, raster, 0, 0, 1100, 700);
+            // some text is drawn on both sides of each seam
+            assertTrue(darkPixels(raster, 505, 284, 7, 14) > 0);
+            assertTrue(darkPixels(raster, 512, 284, 7, 14) > 0);
+            assertTrue(darkPixels(raster, 240, 505, 120, 7) > 0);
+            assertTrue(darkPixels(raster, 240, 512, 120, 7) > 0);
+            // each tile has as much text as in the full image : no label is
+            // repeated or cut at the seams
+            for (int tileY = 0; tileY < tiled.getNumYTiles(); tileY++) {
+                for (int tileX = 0; tileX < tiled.getNumXTiles(); tileX++) {
+                    int x = tileX * TiledMapImage.TILE_SIZE;
+                    int y = tileY * TiledMapImage.TILE_SIZE;
+                    int width = Math.min(TiledMapImage.TILE_SIZE, tiled.getWidth() - x);
+                    int height = Math.min(TiledMapImage.TILE_SIZE, tiled.getHeight() - y);
+                    assertEquals("text of tile (" + tileX + ", " + tileY + ")",
+                            darkPixels(expected.getRaster(), x, y, width, height),
+                            darkPixels(raster, x, y, width, height));
+                }
+            }
+        } finally {
+            tiled.dispose();
+        }
+    }
+
+    private void add(FeatureDataset dataset, String wkt, String name) throws Exception {
+        BasicFeature feature = new BasicFeature(dataset.getFeatureSchema());
+        feature.setGeometry(reader.read(wkt));
+        feature.setAttribute("NAME", name);
+        dataset.add(feature);
+    }
+
+    private void assertSame(BufferedImage expected, Raster raster, int x, int y, int width, int height) {
+        int[] expectedPixel = new int[3];
+        int[] pixel = new int[3];
+        for (int j = y; j < y + height; j++) {
+            for (int i = x; i < x + width; i++) {
+                expected.getRaster().getPixel(i, j, expectedPixel);
+                raster.getPixel(i, j, pixel);
+                for (int b = 0; b < 3; b++) {
+                    // antialiased edges may differ slightly
+                    if (Math.abs(expectedPixel[b] - pixel[b]) > 8) {
+                        fail("pixel (" + i + ", " + j + ") differs");
+                    }
+                }
+            }
+        }
+    }
+
+    private int darkPixels(Raster raster, int x, int y, int width, int height) {
+        int count = 0;
+        int[] pixel = new int[3];
+        for (int j = y; j < y + height; j++) {
+            for (int i = x; i < x + width; i++) {
+                raster.getPixel(i, j, pixel);
+                if (pixel[0] + pixel[1] + pixel[2] < 150) count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,146 @@
+package jumptest.junit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.vividsolutions.jump.workbench.model.UndoGeometryStore;
+import junit.framework.TestCase;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.CoordinateArraySequenceFactory;
+import org.locationtech.jts.io.WKTReader;
+
+/**
+ * Tests that the geometries of undo records are decoded with their class,
+ * dimension and measures, whether they are kept in memory or written to the
+ * spill file, and that the spill file does not grow with released records.
+ */
+public class UndoGeometryStoreTestCase extends TestCase {
+
+    private final GeometryFactory factory = new GeometryFactory();
+    private final WKTReader reader = new WKTReader(factory);
+
+    public UndoGeometryStoreTestCase(String Name_) {
+        super(Name_);
+    }
+
+    public static void main(String[] args) {
+        String[] testCaseName = {UndoGeometryStoreTestCase.class.getName()};
+        junit.textui.TestRunner.main(testCaseName);
+    }
+
+    public void testGeometryTypesRoundTrip() throws Exception {
+        UndoGeometryStore store = new UndoGeometryStore();
+        Map<Integer,Geometry> before = new LinkedHashMap<>();
+        Map<Integer,Geometry> after = new LinkedHashMap<>();
+        before.put(1, reader.read("LINEARRING (0 0, 1 0, 1 1, 0 0)"));
+        after.put(1, reader.read("POLYGON ((0 0, 1 0, 1 1, 0 0))"));
+        before.put(2, reader.read("GEOMETRYCOLLECTION (POINT (1 2), LINEARRING (0 0, 1 0, 1 1, 0 0))"));
+        after.put(2, reader.read("MULTIPOLYGON (((0 0, 1 0, 1 1, 0 0)), EMPTY)"));
+        before.put(3, reader.read("POINT EMPTY"));
+        after.put(3, reader.read("MULTILINESTRING ((0 0, 1 1), (2 2, 3 3))"));
+        UndoGeometryStore.Record record = store.record(before, after);
+        assertEquals(LinearRing.class, record.getBefore().get(1).getClass());
+        assertEquals(LinearRing.class, record.getBefore().get(2).getGeometryN(1).getClass());
+        assertSame(before, record.getBefore());
+        assertSame(after, record.getAfter());
+    }
+
+    public void testDimensionAndMeasures() throws Exception {
+        UndoGeometryStore store = new UndoGeometryStore();
+        Map<Integer,Geometry> before = new LinkedHashMap<>();
+        Map<Integer,Geometry> after = new LinkedHashMap<>();
+        // xym and xyzm lines, the second one being moved by a single vertex
+        before.put(1, line(4, 1, 0));
+        after.put(1, line(4, 1, 0));
+        before.put(2, line(3, 1, 0));
+        LineString moved = line(3, 1, 0);
+        moved.getCoordinateSequence().setOrdinate(5, 0, 100);
+        moved.getCoordinateSequence().setOrdinate(5, 2, 200);
+        moved.geometryChanged();
+        after.put(2, moved);
+        // xyz line without z, and a line getting z values
+        before.put(3, line(3, 0, Double.NaN));
+        after.put(3, line(3, 0, 7));
+        UndoGeometryStore.Record record = store.record(before, after);
+        Map<Integer,Geometry> decodedBefore = record.getBefore();
+        Map<Integer,Geometry> decodedAfter = record.getAfter();
+        assertSame(before, decodedBefore);
+        assertSame(after, decodedAfter);
+        CoordinateSequence seq = ((LineString)decodedAfter.get(1)).getCoordinateSequence();
+        assertEquals(4, seq.getDimension());
+        assertEquals(1, seq.getMeasures());
+        seq = ((LineString)decodedAfter.get(2)).getCoordinateSequence();
+        assertEquals(3, seq.getDimension());
+        assertEquals(1, seq.getMeasures());
+        assertEquals(100.0, seq.getX(5));
+        assertEquals(200.0, seq.getM(5));
+        assertTrue(Double.isNaN(((LineString)decodedBefore.get(3)).getCoordinateSequence().getZ(0)));
+    }
+
+    public void testSpilledRecords() throws Exception {
+        UndoGeometryStore store = new UndoGeometryStore();
+        store.setMemoryBudget(0);
+        UndoGeometryStore.Record[] records = new UndoGeometryStore.Record[10];
+        for (int i = 0; i < records.length; i++) {
+            Map<Integer,Geometry> before = new LinkedHashMap<>();
+            Map<Integer,Geometry> after = new LinkedHashMap<>();
+            before.put(i, factory.createPolygon(factory.createLinearRing(new Coordinate[]{
+                    new Coordinate(i, 0), new Coordinate(i, 1), new Coordinate(i + 1, 1), new Coordinate(i, 0)})));
+            after.put(i, reader.read("LINEARRING (0 0, 1 0, 1 " + i + ", 0 0)"));
+            records[i] = store.record(before, after);
+        }
+        assertEquals(0, store.getMemoryUsage());
+        long size = store.getSpillFileSize();
+        assertTrue(size > 0);
+        for (int i = 0; i < records.length; i++) {
+            Polygon polygon = (Polygon)records[i].getBefore().get(i);
+            assertEquals((double)i, polygon.getEnvelopeInternal().getMinX());
+            assertEquals(LinearRing.class, records[i].getAfter().get(i).getClass());
+        }
+        // the file is compacted once most of it is released
+        for (int i = 0; i < 8; i++) records[i].dispose();
+        assertTrue(store.getSpillFileSize() < size / 2);
+        for (int i = 8; i < records.length; i++) {
+            Polygon polygon = (Polygon)records[i].getBefore().get(i);
+            assertEquals((double)i, polygon.getEnvelopeInternal().getMinX());
+            assertEquals(LinearRing.class, records[i].getAfter().get(i).getClass());
+        }
+        records[8].dispose();
+        records[9].dispose();
+        assertEquals(0, store.getSpillFileSize());
+    }
+
+    // a line of 10 coordinates, with x, y, z = z and m = 2 * x
+    private LineString line(int dimension, int measures, double z) {
+        CoordinateSequence seq = CoordinateArraySequenceFactory.instance().create(10, dimension, measures);
+        for (int i = 0; i < seq.size(); i++) {
+            seq.setOrdinate(i, 0, i);
+            seq.setOrdinate(i, 1, i % 3);
+            if (dimension - measures > 2) seq.setOrdinate(i, 2, z);
+            if (measures > 0) seq.setOrdinate(i, dimension - 1, 2 * i);
+        }
+        return factory.createLineString(seq);
+    }
+
+    private void assertSame(Map<Integer,Geometry> expected, Map<Integer,Geometry> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Integer id : expected.keySet()) {
+            Geometry e = expected.get(id);
+            Geometry a = actual.get(id);
+            assertEquals(e.getClass(), a.getClass());
+            assertTrue(a.toString(), e.equalsExact(a));
+            Coordinate[] ce = e.getCoordinates();
+            Coordinate[] ca = a.getCoordinates();
+            for (int i = 0; i < ce.length; i++) {
+                assertTrue(ca[i].toString(), ce[i].equals3D(ca[i]) &&
+                        (Double.compare(ce[i].getM(), ca[i].getM()) == 0));
+            }
+        }
+    }
+}
@@ -11,6 +11,7 @@ import com.vividsolutions.jump.geom.Angle;
 import com.vividsolutions.jump.qa.ValidationError;
 import com.vividsolutions.jump.qa.ValidationErrorType;
 import com.vividsolutions.jump.qa.Validator;
+import com.vividsolutions.jump.task.DummyTaskMonitor;
 import junit.framework.TestCase;
 
 import java.util.ArrayList;
@@ -355,6 +356,32 @@ public class ValidatorTestCase extends TestCase {
     }
   }
 
+  public void testValidateFeatureCollection() {
+    testValidator.setCheckingNoHoles(true);
+    List<Feature> features = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      features.add(toFeature(i % 3 == 0 ?
+          "POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), (3 3, 4 3, 4 4, 3 3))" :
+          "POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))"));
+    }
+    final List<ValidationError> streamed = new ArrayList<>();
+    final Thread thread = Thread.currentThread();
+    List<ValidationError> errors = testValidator.validate(features, new DummyTaskMonitor(),
+        new Validator.ErrorListener() {
+          public void errorsFound(List<ValidationError> errors) {
+            // the listener may update layers, from the calling thread only
+            assertSame(thread, Thread.currentThread());
+            streamed.addAll(errors);
+          }
+        });
+    assertEquals(1667, errors.size());
+    assertEquals(1667, streamed.size());
+    // errors are returned in the order of features
+    for (int i = 0; i < errors.size(); i++) {
+      assertSame(features.get(3 * i), errors.get(i).getFeature());
+    }
+  }
+
   private Feature toFeature(String wkt) {
     Geometry g = null;
     try {
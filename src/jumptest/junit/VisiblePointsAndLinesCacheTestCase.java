@@ -0,0 +1,218 @@
+package jumptest.junit;
+
+import java.awt.event.ComponentListener;
+import java.util.Collections;
+import java.util.Random;
+
+import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.feature.BasicFeature;
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.feature.FeatureDataset;
+import com.vividsolutions.jump.feature.FeatureSchema;
+import com.vividsolutions.jump.workbench.model.Layer;
+import com.vividsolutions.jump.workbench.model.LayerManager;
+import com.vividsolutions.jump.workbench.ui.LayerViewPanel;
+import com.vividsolutions.jump.workbench.ui.LayerViewPanelContext;
+import com.vividsolutions.jump.workbench.ui.renderer.LayerRendererFactory;
+import com.vividsolutions.jump.workbench.ui.renderer.RenderingManager;
+import com.vividsolutions.jump.workbench.ui.snap.VisiblePointsAndLinesCache;
+import junit.framework.TestCase;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.io.WKTReader;
+
+/**
+ * Tests that the snapping index of a view, updated as features are added,
+ * modified and removed, finds the vertices and segments found by an index
+ * built from scratch.
+ */
+public class VisiblePointsAndLinesCacheTestCase extends TestCase {
+
+    // a 500 x 500 pixels view of this envelope has cells of 10 x 10
+    private static final Envelope VIEW = new Envelope(0, 1000, 0, 1000);
+    private static final double TOLERANCE = 15;
+
+    private final WKTReader reader = new WKTReader();
+    private final FeatureSchema schema = new FeatureSchema();
+
+    private LayerManager layerManager;
+    private Layer layer;
+    private LayerViewPanel panel;
+    private VisiblePointsAndLinesCache cache;
+
+    public VisiblePointsAndLinesCacheTestCase(String Name_) {
+        super(Name_);
+        schema.addAttribute("GEOMETRY", AttributeType.GEOMETRY);
+    }
+
+    public static void main(String[] args) {
+        String[] testCaseName = {VisiblePointsAndLinesCacheTestCase.class.getName()};
+        junit.textui.TestRunner.main(testCaseName);
+    }
+
+    protected void setUp() throws Exception {
+        RenderingManager.setRendererFactory(Layer.class, new LayerRendererFactory());
+        layerManager = new LayerManager();
+        layer = layerManager.addLayer("Working", "layer", new FeatureDataset(schema));
+        // a segment across hundreds of cells, kept apart in the index
+        add("LINESTRING (0 0, 1000 1000)");
+        // segments across a few cells
+        add("LINESTRING (100 505, 163 538, 207 502)");
+        add("POLYGON ((300 100, 460 100, 460 240, 300 240, 300 100), (340 140, 380 140, 380 180, 340 140))");
+        add("MULTIPOINT ((600 600), (612.5 604))");
+        add("POINT (805 95)");
+        panel = panel();
+        cache = VisiblePointsAndLinesCache.instance(panel);
+        assertSameAsRebuiltIndex();
+    }
+
+    protected void tearDown() throws Exception {
+        panel.dispose();
+    }
+
+    public void testSegmentsAcrossSeveralCells() throws Exception {
+        // the middle of the long segment, far from its vertices
+        assertEquals(new Coordinate(500, 500), cache.getClosestPoint(new Coordinate(507, 493), TOLERANCE));
+        assertNull(cache.getClosestVertex(new Coordinate(507, 493), TOLERANCE));
+        // a segment of the polygon, in a cell containing none of its vertices
+        assertEquals(new Coordinate(460, 175), cache.getClosestPoint(new Coordinate(467, 175), TOLERANCE));
+        // the hole
+        assertEquals(new Coordinate(360, 160), cache.getClosestPoint(new Coordinate(362, 158), TOLERANCE));
+        // vertices at less than the tolerance, in another cell
+        assertEquals(new Coordinate(163, 538), cache.getClosestVertex(new Coordinate(170, 545), TOLERANCE));
+        assertEquals(new Coordinate(612.5, 604), cache.getClosestVertex(new Coordinate(620, 604), TOLERANCE));
+        assertEquals(new Coordinate(805, 95), cache.getClosestPoint(new Coordinate(800, 91), TOLERANCE));
+        assertNull(cache.getClosestPoint(new Coordinate(821, 95), TOLERANCE));
+    }
+
+    public void testAddedFeatures() throws Exception {
+        add("LINESTRING (700 100, 900 300)");
+        add("POINT (820 95)");
+        add("MULTILINESTRING ((50 900, 250 900), (50 950, 250 950))");
+        assertEquals(new Coordinate(800, 200), cache.getClosestPoint(new Coordinate(806, 194), TOLERANCE));
+        assertEquals(new Coordinate(820, 95), cache.getClosestVertex(new Coordinate(818, 95), TOLERANCE));
+        assertEquals(new Coordinate(150, 950), cache.getClosestPoint(new Coordinate(150, 945), TOLERANCE));
+        assertSameAsRebuiltIndex();
+        // a feature added outside the indexed area is found once the view
+        // is moved onto it
+        add("LINESTRING (3000 3000, 3100 3100)");
+        panel.getViewport().zoom(new Envelope(2500, 3500, 2500, 3500));
+        assertEquals(new Coordinate(3050, 3050), cache.getClosestPoint(new Coordinate(3055, 3045), TOLERANCE));
+        assertSameAsRebuiltIndex();
+        panel.getViewport().zoom(VIEW);
+        assertEquals(new Coordinate(700, 100), cache.getClosestVertex(new Coordinate(702, 101), TOLERANCE));
+        assertSameAsRebuiltIndex();
+    }
+
+    public void testModifiedFeatures() throws Exception {
+        Feature polygon = (Feature)layer.getFeatureCollectionWrapper().getFeatures().get(2);
+        Feature oldPolygon = polygon.clone(true);
+        polygon.setGeometry(reader.read("POLYGON ((600 100, 760 100, 760 240, 600 240, 600 100))"));
+        layerManager.fireGeometryModified(Collections.singletonList(polygon), layer,
+                Collections.singletonList(oldPolygon));
+        // the old vertices and segments are not found any more
+        assertNull(cache.getClosestPoint(new Coordinate(467, 175), TOLERANCE));
+        assertNull(cache.getClosestVertex(new Coordinate(300, 100), TOLERANCE));
+        assertEquals(new Coordinate(760, 175), cache.getClosestPoint(new Coordinate(767, 175), TOLERANCE));
+        assertSameAsRebuiltIndex();
+        // a point becomes a line
+        Feature point = (Feature)layer.getFeatureCollectionWrapper().getFeatures().get(4);
+        Feature oldPoint = point.clone(true);
+        point.setGeometry(reader.read("LINESTRING (805 95, 905 95)"));
+        layerManager.fireGeometryModified(Collections.singletonList(point), layer,
+                Collections.singletonList(oldPoint));
+        assertEquals(new Coordinate(850, 95), cache.getClosestPoint(new Coordinate(850, 90), TOLERANCE));
+        assertSameAsRebuiltIndex();
+    }
+
+    public void testRemovedFeatures() throws Exception {
+        Feature line = (Feature)layer.getFeatureCollectionWrapper().getFeatures().get(0);
+        Feature point = (Feature)layer.getFeatureCollectionWrapper().getFeatures().get(4);
+        layer.getFeatureCollectionWrapper().remove(line);
+        layer.getFeatureCollectionWrapper().remove(point);
+        assertNull(cache.getClosestPoint(new Coordinate(507, 493), TOLERANCE));
+        assertNull(cache.getClosestPoint(new Coordinate(805, 95), TOLERANCE));
+        assertSameAsRebuiltIndex();
+        // features added after removals, and enough removals to make the
+        // index rebuild itself
+        add("LINESTRING (0 0, 1000 1000)");
+        assertEquals(new Coordinate(500, 500), cache.getClosestPoint(new Coordinate(507, 493), TOLERANCE));
+        layer.getFeatureCollectionWrapper().clear();
+        assertNull(cache.getClosestPoint(new Coordinate(507, 493), TOLERANCE));
+        assertSameAsRebuiltIndex();
+        add("POINT (805 95)");
+        assertSameAsRebuiltIndex();
+    }
+
+    private Feature add(String wkt) throws Exception {
+        Feature feature = new BasicFeature(schema);
+        feature.setGeometry(reader.read(wkt));
+        layer.getFeatureCollectionWrapper().add(feature);
+        return feature;
+    }
+
+    private LayerViewPanel panel() throws Exception {
+        LayerViewPanel panel = new LayerViewPanel(layerManager, new LayerViewPanelContext() {
+            public void setStatusMessage(String message) {
+            }
+
+            public void warnUser(String warning) {
+            }
+
+            public void handleThrowable(Throwable t) {
+            }
+        });
+        // the panel would update its viewport on the event thread once resized
+        for (ComponentListener listener : panel.getComponentListeners()) {
+            panel.removeComponentListener(listener);
+        }
+        panel.setSize(500, 500);
+        panel.getViewport().zoom(VIEW);
+        return panel;
+    }
+
+    // compares the index updated since setUp with an index built from
+    // scratch, at points of the view on a grid and near the vertices of the
+    // features (the updated index may also hold features indexed for
+    // previous views, which can not be snapped to from the current view)
+    private void assertSameAsRebuiltIndex() throws Exception {
+        LayerViewPanel rebuiltPanel = panel();
+        try {
+            rebuiltPanel.getViewport().zoom(panel.getViewport().getEnvelopeInModelCoordinates());
+            VisiblePointsAndLinesCache rebuilt = VisiblePointsAndLinesCache.instance(rebuiltPanel);
+            Envelope view = panel.getViewport().getEnvelopeInModelCoordinates();
+            for (double x = view.getMinX(); x <= view.getMaxX(); x += 7.3) {
+                for (double y = view.getMinY(); y <= view.getMaxY(); y += 7.3) {
+                    assertSameSnap(rebuilt, new Coordinate(x, y));
+                }
+            }
+            Random random = new Random(42);
+            for (Object object : layer.getFeatureCollectionWrapper().getFeatures()) {
+                for (Coordinate c : ((Feature)object).getGeometry().getCoordinates()) {
+                    Coordinate p = new Coordinate(
+                            c.x + (random.nextDouble() - 0.5) * 20, c.y + (random.nextDouble() - 0.5) * 20);
+                    if (view.contains(p)) assertSameSnap(rebuilt, p);
+                }
+            }
+        } finally {
+            rebuiltPanel.dispose();
+        }
+    }
+
+    // the snapped points are at the same distance (equidistant points may
+    // differ)
+    private void assertSameSnap(VisiblePointsAndLinesCache rebuilt, Coordinate p) {
+        assertSameDistance("vertex near " + p, p,
+                rebuilt.getClosestVertex(p, TOLERANCE), cache.getClosestVertex(p, TOLERANCE));
+        assertSameDistance("point near " + p, p,
+                rebuilt.getClosestPoint(p, TOLERANCE), cache.getClosestPoint(p, TOLERANCE));
+    }
+
+    private void assertSameDistance(String message, Coordinate p, Coordinate expected, Coordinate actual) {
+        if (expected == null || actual == null) {
+            assertEquals(message, expected, actual);
+        } else {
+            assertEquals(message, expected.distance(p), actual.distance(p), 1e-9);
+        }
+    }
+}
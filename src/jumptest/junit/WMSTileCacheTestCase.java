@@ -0,0 +1,167 @@
+package jumptest.junit;
+
+import com.sun.net.httpserver.HttpServer;
+import com.vividsolutions.wms.TileGrid;
+import com.vividsolutions.wms.WMSTileCache;
+import junit.framework.TestCase;
+import org.locationtech.jts.geom.Envelope;
+
+import javax.imageio.ImageIO;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the tile grid and the tile cache of tiled WMS layers against a
+ * local stand-in WMS server.
+ */
+public class WMSTileCacheTestCase extends TestCase {
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private File directory;
+
+    public WMSTileCacheTestCase(String Name_) {
+        super(Name_);
+    }
+
+    public static void main(String[] args) {
+        String[] testCaseName = {WMSTileCacheTestCase.class.getName()};
+        junit.textui.TestRunner.main(testCaseName);
+    }
+
+    protected void setUp() throws Exception {
+        BufferedImage tile = new BufferedImage(TileGrid.TILE_SIZE, TileGrid.TILE_SIZE,
+                BufferedImage.TYPE_INT_ARGB);
+        tile.setRGB(0, 0, 0xFF336699);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(tile, "png", out);
+        final byte[] png = out.toByteArray();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/wms", exchange -> {
+            requests.incrementAndGet();
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+                exchange.getResponseHeaders().set("Content-Type", "image/png");
+                exchange.sendResponseHeaders(200, png.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(png);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        directory = Files.createTempDirectory("wms-tiles").toFile();
+    }
+
+    protected void tearDown() {
+        server.stop(0);
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        directory.delete();
+    }
+
+    public void testTilesAreSharedByOverlappingViews() {
+        TileGrid grid = new TileGrid(2.0);
+        List<Envelope> tiles1 = grid.getTiles(new Envelope(0, 300, 0, 200));
+        List<Envelope> tiles2 = grid.getTiles(new Envelope(100, 400, 50, 250));
+        assertEquals(6, tiles1.size());
+        assertEquals(new Envelope(0, 128, 128, 256), tiles1.get(0));
+        assertTrue(tiles2.containsAll(tiles1.subList(0, 3)));
+    }
+
+    public void testAdjacentTilesFillTheView() {
+        Envelope view = new Envelope(12.3, 512.7, -40.1, 160.9);
+        TileGrid grid = new TileGrid(1.37);
+        List<Envelope> tiles = grid.getTiles(view);
+        for (int i = 0; i < tiles.size() - 1; i++) {
+            Rectangle r1 = grid.toView(tiles.get(i), view);
+            Rectangle r2 = grid.toView(tiles.get(i + 1), view);
+            if (tiles.get(i).getMinY() == tiles.get(i + 1).getMinY()) {
+                assertEquals(r1.x + r1.width, r2.x);
+            }
+        }
+        Rectangle first = grid.toView(tiles.get(0), view);
+        assertTrue(first.x <= 0 && first.y <= 0);
+    }
+
+    public void testTilesAreFetchedConcurrentlyOnceAndCached() throws Exception {
+        WMSTileCache cache = new WMSTileCache(directory, 100, TimeUnit.HOURS.toMillis(1), 4);
+        List<Future<BufferedImage>> futures = new ArrayList<>();
+        for (int i = 0; i < 12; i++) futures.add(cache.get(url(i % 8), loader(i % 8)));
+        for (Future<BufferedImage> future : futures) {
+            assertEquals(TileGrid.TILE_SIZE, future.get().getWidth());
+        }
+        // tiles requested twice at the same time are fetched once
+        assertEquals(8, requests.get());
+        assertTrue(maxRunning.get() > 1 && maxRunning.get() <= 4);
+
+        // from memory
+        assertNotNull(cache.getCached(url(3)));
+        cache.get(url(3), loader(3)).get();
+        assertEquals(8, requests.get());
+
+        // from disk, in another cache
+        WMSTileCache other = new WMSTileCache(directory, 100, TimeUnit.HOURS.toMillis(1), 4);
+        BufferedImage image = other.getCached(url(5));
+        assertNotNull(image);
+        assertEquals(0xFF336699, image.getRGB(0, 0));
+        assertEquals(8, requests.get());
+    }
+
+    public void testExpiredTilesAreFetchedAgain() throws Exception {
+        WMSTileCache cache = new WMSTileCache(directory, 100, TimeUnit.HOURS.toMillis(1), 2);
+        cache.get(url(0), loader(0)).get();
+        assertEquals(1, requests.get());
+        WMSTileCache expiring = new WMSTileCache(directory, 100, -1, 2);
+        assertNull(expiring.getCached(url(0)));
+        expiring.get(url(0), loader(0)).get();
+        assertEquals(2, requests.get());
+    }
+
+    public void testFailuresAreNotCached() throws Exception {
+        WMSTileCache cache = new WMSTileCache(directory, 100, TimeUnit.HOURS.toMillis(1), 2);
+        String key = "http://127.0.0.1:" + server.getAddress().getPort() + "/missing";
+        try {
+            cache.get(key, () -> ImageIO.read(new URL(key))).get();
+            fail("the server has no such resource");
+        } catch (ExecutionException e) {
+            // expected
+        }
+        assertNull(cache.getCached(key));
+    }
+
+    private String url(int tile) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() +
+                "/wms?REQUEST=GetMap&WIDTH=256&HEIGHT=256&BBOX=" + tile + ",0," + (tile + 1) + ",1";
+    }
+
+    // requests are sent directly, as AbstractWMSRequest needs a workbench
+    // for the proxy settings
+    private Callable<BufferedImage> loader(int tile) {
+        String url = url(tile);
+        return () -> ImageIO.read(new URL(url));
+    }
+}
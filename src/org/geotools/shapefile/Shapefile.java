@@ -5,6 +5,7 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.function.Consumer;
 
 import org.locationtech.jts.geom.*;
 import com.vividsolutions.jump.I18N;
@@ -115,8 +116,19 @@ public class Shapefile implements TaskMonitorSupport {
      * @param geometryFactory the geometry factory to use to read the shapes
      */
     public GeometryCollection read(GeometryFactory geometryFactory) throws Exception {
-
         ArrayList<Geometry> list = new ArrayList<>();
+        read(geometryFactory, list::add);
+        return geometryFactory.createGeometryCollection((Geometry[])list.toArray(new Geometry[]{}));
+    }
+
+    /**
+     * Reads the shapes one by one and passes them to consumer, without
+     * keeping them. Used to load shapefiles which do not fit in memory.
+     * @param geometryFactory the geometry factory to use to read the shapes
+     * @param consumer receives the shapes in record order
+     */
+    public void read(GeometryFactory geometryFactory, Consumer<Geometry> consumer) throws Exception {
+
         int pos = 0;
         try (EndianDataInputStream file = getInputStream()) {
 
@@ -146,11 +158,12 @@ public class Shapefile implements TaskMonitorSupport {
                     Logger.warn("found a negative content length (" + contentLength + ")");
                     continue;
                 }
+                Geometry shape = null;
                 try{
                     body = handler.read(file,geometryFactory,contentLength);
                     //Logger.trace("" + recordNumber + " : from " + (pos-4) + " for " + contentLength + " (" + body.getNumPoints() + " pts)");
                     pos += contentLength;
-                    list.add(body);
+                    shape = body;
                     count++;
                     // report to gui
                     r.report(count);
@@ -167,11 +180,11 @@ public class Shapefile implements TaskMonitorSupport {
                     Logger.warn("Error processing record " +recordNumber + " : " + e.getMessage(), e);
                     errors++;
                 }
+                // outside the try block : consumer errors are not record errors
+                if (shape != null) consumer.accept(shape);
             }
         }
         catch(EOFException e) {}
-
-        return geometryFactory.createGeometryCollection((Geometry[])list.toArray(new Geometry[]{}));
     }
     
     /**
@@ -10,6 +10,7 @@
 package org.openjump.core.apitools;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -33,12 +34,14 @@ import com.vividsolutions.jump.feature.Feature;
 import com.vividsolutions.jump.feature.FeatureCollection;
 import com.vividsolutions.jump.feature.FeatureDataset;
 import com.vividsolutions.jump.feature.FeatureSchema;
+import com.vividsolutions.jump.util.ParallelUtil;
 import com.vividsolutions.jump.util.StatisticIndices;
 import com.vividsolutions.jump.workbench.Logger;
 import com.vividsolutions.jump.workbench.model.Layer;
 import com.vividsolutions.jump.workbench.plugin.PlugInContext;
 import com.vividsolutions.jump.workbench.ui.EditTransaction;
 
+import de.fho.jump.pirol.utilities.FormulaParsing.CompiledFormula;
 import de.fho.jump.pirol.utilities.FormulaParsing.FormulaValue;
 import de.fho.jump.pirol.utilities.attributes.AttributeInfo;
 import de.fho.jump.pirol.utilities.debugOutput.DebugUserIds;
@@ -650,19 +653,29 @@ public class FeatureCollectionTools extends ToolToMakeYourLifeEasier {
         
         PirolFeatureCollection newFc = FeatureCollectionTools.addAttributeToFeatureCollection( oldFc, attrInfo, clearOldFeatureCollection );
         
-        Feature[] features = (Feature[])newFc.getFeatures().toArray(new Feature[0]);
-        Feature feat;
-        int numFeats = features.length, attrInd = newFc.getFeatureSchema().getAttributeIndex(attrInfo.getUniqueAttributeName());
-        
-        for (int i=0; i<numFeats; i++){
-            feat = features[i];
-            try {
-                feat.setAttribute(attrInd, new Double(formula.getValue(feat)));
-            } catch (java.lang.Exception e) {
-                logger.printDebug("fail to apply \"" + formula + "\" on feature id " + feat.getID());
-            }
-            if (i%500 == 0)
-                logger.printDebug("done: " + i);
+        final List<Feature> features = new ArrayList<>(newFc.getFeatures());
+        final int attrInd = newFc.getFeatureSchema().getAttributeIndex(attrInfo.getUniqueAttributeName());
+        // the formula is evaluated by batches of features, in parallel
+        final CompiledFormula compiledFormula = CompiledFormula.compile(formula, newFc.getFeatureSchema());
+        final BitSet failed = new BitSet();
+        try {
+            ParallelUtil.processRanges(features.size(), CompiledFormula.BATCH_SIZE, (from, to) -> {
+                double[] values = new double[to - from];
+                BitSet rangeFailed = new BitSet();
+                compiledFormula.getValues(features, from, to, values, rangeFailed);
+                for (int i = from; i < to; i++) {
+                    if (rangeFailed.get(i)) continue;
+                    features.get(i).setAttribute(attrInd, values[i - from]);
+                }
+                synchronized (failed) {
+                    failed.or(rangeFailed);
+                }
+            });
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        for (int i = failed.nextSetBit(0); i >= 0; i = failed.nextSetBit(i + 1)) {
+            logger.printDebug("fail to apply \"" + formula + "\" on feature id " + features.get(i).getID());
         }
         return newFc;
     }
@@ -0,0 +1,238 @@
+package org.openjump.core.attributeoperations;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.task.TaskMonitor;
+import com.vividsolutions.jump.util.ParallelUtil;
+
+/**
+ * Equi-join of two lists of features on one attribute of each list.
+ * <p>
+ * The smaller list is loaded in a hash table (the build side), then the
+ * features of the other list (the probe side) are looked up in this table
+ * by several threads. Matches are returned for each feature of the left
+ * list, in the order of the right list, whichever side is the build side.
+ * <p>
+ * If both attributes are numeric, keys are compared as numbers (1 matches
+ * 1.0), otherwise they are compared as strings. Null values never match.
+ */
+public class HashJoin {
+
+    private static final int MIN_RANGE_SIZE = 4096;
+
+    private final List<Feature> left;
+    private final int leftAttribute;
+    private final List<Feature> right;
+    private final int rightAttribute;
+    private final boolean numeric;
+
+    // for each left feature : null, a Feature or a FeatureList
+    private Object[] matches;
+    private int matchedCount;
+    private int multipleMatchCount;
+    private String description;
+
+    /**
+     * @param left the features for which matches are searched
+     * @param leftAttribute the index of the key attribute of left features
+     * @param leftType the type of the key attribute of left features
+     * @param right the features to match
+     * @param rightAttribute the index of the key attribute of right features
+     * @param rightType the type of the key attribute of right features
+     */
+    public HashJoin(List<Feature> left, int leftAttribute, AttributeType leftType,
+                    List<Feature> right, int rightAttribute, AttributeType rightType) {
+        this.left = left;
+        this.leftAttribute = leftAttribute;
+        this.right = right;
+        this.rightAttribute = rightAttribute;
+        this.numeric = AttributeType.isNumeric(leftType) && AttributeType.isNumeric(rightType);
+    }
+
+    /**
+     * Returns the key used to compare value : a Long for integral numbers,
+     * a Double for other numbers (if numeric is true), or the String
+     * representation of value.
+     */
+    public static Object key(Object value, boolean numeric) {
+        if (value == null) return null;
+        if (numeric && value instanceof Number && !(value instanceof BigInteger)) {
+            if (value instanceof Integer || value instanceof Long ||
+                    value instanceof Short || value instanceof Byte) {
+                return ((Number)value).longValue();
+            }
+            double d = ((Number)value).doubleValue();
+            if (d == Math.rint(d) && Math.abs(d) < 9007199254740992.0) return (long)d;
+            return d;
+        }
+        return value.toString();
+    }
+
+    /**
+     * Computes the join.
+     * @param monitor a monitor to report progress and check for cancellation,
+     * or null
+     * @param description the description of the processed items for monitor
+     */
+    public void run(final TaskMonitor monitor, String description) throws Exception {
+        this.description = description;
+        matches = new Object[left.size()];
+        if (right.size() < left.size()) buildRightProbeLeft(monitor);
+        else buildLeftProbeRight(monitor);
+        for (Object match : matches) {
+            if (match == null) continue;
+            matchedCount++;
+            if (match instanceof List) multipleMatchCount++;
+        }
+    }
+
+    private void buildRightProbeLeft(final TaskMonitor monitor) throws Exception {
+        // key -> Feature or FeatureList
+        final Map<Object,Object> table = new HashMap<>();
+        for (Feature feature : right) {
+            Object key = key(feature.getAttribute(rightAttribute), numeric);
+            if (key != null) putFeature(table, key, feature);
+        }
+        final AtomicInteger count = new AtomicInteger();
+        ParallelUtil.processRanges(left.size(), MIN_RANGE_SIZE, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                if (monitor != null && monitor.isCancelRequested()) return;
+                Object key = key(left.get(i).getAttribute(leftAttribute), numeric);
+                if (key != null) matches[i] = table.get(key);
+            }
+            report(monitor, count.addAndGet(to - from), left.size());
+        });
+    }
+
+    private void buildLeftProbeRight(final TaskMonitor monitor) throws Exception {
+        // key -> Integer or IndexList (indices of left features)
+        final Map<Object,Object> table = new HashMap<>();
+        for (int i = 0; i < left.size(); i++) {
+            Object key = key(left.get(i).getAttribute(leftAttribute), numeric);
+            if (key != null) putIndex(table, key, i);
+        }
+        // each range of right features collects its (left index, right feature)
+        // pairs, merged in the order of the ranges
+        int rangeCount = Math.max(1, (right.size() + MIN_RANGE_SIZE - 1) / MIN_RANGE_SIZE);
+        final List<List<Object>> pairs = new ArrayList<>(rangeCount);
+        for (int r = 0; r < rangeCount; r++) pairs.add(new ArrayList<>());
+        final AtomicInteger count = new AtomicInteger();
+        ParallelUtil.processRanges(rangeCount, 1, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                if (monitor != null && monitor.isCancelRequested()) return;
+                List<Object> rangePairs = pairs.get(r);
+                int end = Math.min((r + 1) * MIN_RANGE_SIZE, right.size());
+                for (int j = r * MIN_RANGE_SIZE; j < end; j++) {
+                    Feature feature = right.get(j);
+                    Object found = table.get(key(feature.getAttribute(rightAttribute), numeric));
+                    if (found == null) continue;
+                    if (found instanceof Integer) {
+                        rangePairs.add(found);
+                        rangePairs.add(feature);
+                    } else {
+                        for (Integer index : (IndexList)found) {
+                            rangePairs.add(index);
+                            rangePairs.add(feature);
+                        }
+                    }
+                }
+                report(monitor, count.addAndGet(end - r * MIN_RANGE_SIZE), right.size());
+            }
+        });
+        for (List<Object> rangePairs : pairs) {
+            for (int k = 0; k < rangePairs.size(); k += 2) {
+                Feature feature = (Feature)rangePairs.get(k + 1);
+                int i = (Integer)rangePairs.get(k);
+                if (matches[i] == null) {
+                    matches[i] = feature;
+                } else if (matches[i] instanceof Feature) {
+                    FeatureList list = new FeatureList();
+                    list.add((Feature)matches[i]);
+                    list.add(feature);
+                    matches[i] = list;
+                } else {
+                    ((FeatureList)matches[i]).add(feature);
+                }
+            }
+        }
+    }
+
+    private static void putFeature(Map<Object,Object> table, Object key, Feature feature) {
+        Object old = table.get(key);
+        if (old == null) {
+            table.put(key, feature);
+        } else if (old instanceof FeatureList) {
+            ((FeatureList)old).add(feature);
+        } else {
+            FeatureList list = new FeatureList();
+            list.add((Feature)old);
+            list.add(feature);
+            table.put(key, list);
+        }
+    }
+
+    private static void putIndex(Map<Object,Object> table, Object key, Integer index) {
+        Object old = table.get(key);
+        if (old == null) {
+            table.put(key, index);
+        } else if (old instanceof IndexList) {
+            ((IndexList)old).add(index);
+        } else {
+            IndexList list = new IndexList();
+            list.add((Integer)old);
+            list.add(index);
+            table.put(key, list);
+        }
+    }
+
+    private void report(TaskMonitor monitor, int count, int total) {
+        if (monitor != null) monitor.report(count, total, description);
+    }
+
+    /**
+     * @return the features of the right list matching the left feature at
+     * index i
+     */
+    public List<Feature> getMatches(int i) {
+        Object match = matches[i];
+        if (match == null) return Collections.emptyList();
+        if (match instanceof Feature) return Collections.singletonList((Feature)match);
+        return Collections.unmodifiableList((FeatureList)match);
+    }
+
+    /**
+     * @return the number of left features having at least one match
+     */
+    public int getMatchedCount() {
+        return matchedCount;
+    }
+
+    /**
+     * @return the number of left features having several matches
+     */
+    public int getMultipleMatchCount() {
+        return multipleMatchCount;
+    }
+
+    // the features sharing a key
+    private static final class FeatureList extends ArrayList<Feature> {
+        FeatureList() {
+            super(2);
+        }
+    }
+
+    // the indices of the left features sharing a key
+    private static final class IndexList extends ArrayList<Integer> {
+        IndexList() {
+            super(2);
+        }
+    }
+}
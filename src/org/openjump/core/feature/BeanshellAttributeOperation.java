@@ -1,206 +1,383 @@
-/*
-Copyright (c) 2012, Micha�l Michaud
-All rights reserved.
-Redistribution and use in source and binary forms, with or without
-modification, are permitted provided that the following conditions are met:
-
-    * Redistributions of source code must retain the above copyright
-      notice, this list of conditions and the following disclaimer.
-    * Redistributions in binary form must reproduce the above copyright
-      notice, this list of conditions and the following disclaimer in the
-      documentation and/or other materials provided with the distribution.
-    * Neither the name of its authors nor the names of its contributors may
-      be used to endorse or promote products derived from this software without
-      specific prior written permission.
-
-THIS SOFTWARE IS PROVIDED BY THE REGENTS AND CONTRIBUTORS "AS IS" AND ANY
-EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
-WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
-DISCLAIMED. IN NO EVENT SHALL THE REGENTS AND CONTRIBUTORS BE LIABLE FOR ANY
-DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
-(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
-LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
-ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
-(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
-SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
-*/
-
-package org.openjump.core.feature;
-
-import bsh.EvalError;
-import bsh.Interpreter;
-
-import com.vividsolutions.jump.feature.*;
-import com.vividsolutions.jump.util.FlexibleDateParser;
-import com.vividsolutions.jump.workbench.plugin.PlugInContext;
-import com.vividsolutions.jump.workbench.model.Layer;
-
-import java.text.ParseException;
-import java.util.Date;
-import java.util.HashSet;
-import java.util.Set;
-
-/**
- * Creates an Operation using the Beanshell scripting language.
- * @author Micha&euml;l Michaud
- * @version 0.1 (2012-11-17)
- */
- // 0.1 (2012-11-17)
-public class BeanshellAttributeOperation implements Operation {
-
-    private static final FlexibleDateParser DATE_PARSER = new FlexibleDateParser();
-
-    private PlugInContext context;
-    private AttributeType type;
-    private String bshExpression;
-    private Interpreter interpreter;
-    
-    public BeanshellAttributeOperation(PlugInContext context,
-                              AttributeType type,
-                              String bshExpression) throws EvalError {
-        this.context = context;
-        this.type = type;
-        this.bshExpression = bshExpression;
-        this.interpreter = initInterpreter(context);
-    }
-    
-    public Object invoke(Feature feature) throws Exception {
-        return evaluate((BasicFeature)feature);
-    }
-    
-    public Object evaluate(BasicFeature f) throws EvalError, 
-                           NumberFormatException, IllegalArgumentException, ParseException {
-        
-        FeatureSchema schema = f.getSchema();
-        
-        // attributes evaluated dynamically are tagged in the feature userData 
-        // to avoid cyclic reference 
-        Set<Integer> evaluatedAttributes = (Set<Integer>)f.getUserData("evaluatedAttributes");
-        if (evaluatedAttributes == null) {
-            evaluatedAttributes = new HashSet<Integer>();
-            f.setUserData("evaluatedAttributes", evaluatedAttributes);
-        }
-        //evaluatedAttributes.add(attributeIndex);
-        
-        for (int i = 0 ; i < schema.getAttributeCount() ; i++) {
-            // to avoid cyclic references, dynamic attributes are evaluated only once
-            //System.out.println("attribute " + schema.getAttributeName(i));
-            if (schema.getOperation(i) == this) {
-                evaluatedAttributes.add(i);
-                continue;
-            }
-            if (schema.isOperation(i) && evaluatedAttributes.contains(i)) continue;
-            try {
-                interpreter.set(normalizeVarName(schema.getAttributeName(i)), 
-                                f.getAttribute(i));
-                //System.out.println("  set to " + f.getAttribute(i));
-                evaluatedAttributes.add(i);
-            }
-            catch(EvalError e) {
-                context.getWorkbenchFrame().warnUser(e.toString());
-                throw e;
-            }
-        }
-        f.removeUserData((Object)"evaluatedAttributes");
-        try {
-            interpreter.set("geometry", f.getGeometry());
-            interpreter.set("Geometry", f.getGeometry());
-            interpreter.set("GEOMETRY", f.getGeometry());
-            interpreter.set("feature", f);
-            interpreter.set("Feature", f);
-            interpreter.set("FEATURE", f);
-            Object obj = interpreter.eval(bshExpression);
-            //AttributeType type = schema.getAttributeType(attributeIndex);
-            if (obj == null) return null;
-            else if (type == AttributeType.STRING) {
-                if (obj instanceof String) return obj;
-                else return obj.toString();
-            }
-            else if (type == AttributeType.DOUBLE) {
-                if (obj instanceof Double) return obj;
-                else return Double.valueOf(obj.toString());
-            }
-            else if (type == AttributeType.INTEGER) {
-                if (obj instanceof Integer) return obj;
-                else return Integer.valueOf(obj.toString());
-            }
-            else if (type == AttributeType.DATE) {
-                if (obj instanceof Date) return obj;
-                else return DATE_PARSER.parse(obj.toString(), true);
-            }
-            else return obj;
-        }
-        catch(EvalError e) {
-            context.getWorkbenchFrame().warnUser(e.toString());
-            throw e;
-        } 
-        catch(NumberFormatException e) {
-            context.getWorkbenchFrame().warnUser(e.toString());
-            throw e;
-        } 
-        catch(IllegalArgumentException e) {
-            context.getWorkbenchFrame().warnUser(e.toString());
-            throw e;
-        }
-    }
-    
-    public String toString() {
-        return getClass().getName() + "\n" + bshExpression;
-    }
-    
-    public Object clone() throws CloneNotSupportedException {
-        try {
-            return new BeanshellAttributeOperation(context, type, bshExpression);
-        } catch(EvalError e) {
-            e.printStackTrace();
-            return null;
-        }
-    }
-    
-    /**
-     * Creates a new Beanshell Interpreter initialized with an instance of
-     * OpenJUMP's WorkbenchContext ("wc") and the definition of a few useful 
-     * methods.
-     */
-    private Interpreter initInterpreter(PlugInContext context) throws EvalError {
-        Interpreter interpreter = new Interpreter();
-        interpreter.setClassLoader(context.getWorkbenchContext().getWorkbench()
-                .getPlugInManager().getClassLoader());
-        interpreter.set("wc", context.getWorkbenchContext());
-        interpreter.eval("setAccessibility(true)");
-        interpreter.eval("import org.locationtech.jts.geom.*");
-        interpreter.eval("import com.vividsolutions.jump.feature.*");
-        interpreter.eval("import org.locationtech.jts.operation.union.UnaryUnionOp");
-        
-        interpreter.eval("selection() {"+
-            "return wc.layerViewPanel.selectionManager.featuresWithSelectedItems;}");
-        interpreter.eval(
-            "dataset(String layerName) {" +
-            "return wc.layerManager.getLayer(layerName).getFeatureCollectionWrapper().features;}");
-        interpreter.eval("intersects(Feature feature, Collection features) {" +
-            "for (f : features) {if (feature.geometry.intersects(f.geometry) && feature.ID!=f.ID) return true;}" +
-            "return false;}");
-        interpreter.eval("distance(Feature feature, Collection features) {" +
-            "min = Double.MAX_VALUE;" +
-            "for (f : features) {min = Math.min(min,feature.geometry.distance(f.geometry));}" +
-            "return min == Double.MAX_VALUE ? null : min;}");
-        interpreter.eval(
-            "round(double d, int i) {" +
-            " p10 = Math.pow(10.0,(double)i);" +
-            " return Math.rint(d*p10)/p10;" +
-            "}");
-        return interpreter;
-    }
-    
-    public static String normalizeVarName(String s) {
-        StringBuffer sb = new StringBuffer(s);
-        for (int i = 0 ; i < s.length() ; i++) {
-            if (!Character.isJavaIdentifierPart(sb.charAt(i))) {
-                sb.setCharAt(i, '_');
-            }
-        }
-        return sb.toString();
-    }                                                   
-    
-}
-                                               
+/*
+Copyright (c) 2012, Micha�l Michaud
+All rights reserved.
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright
+      notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright
+      notice, this list of conditions and the following disclaimer in the
+      documentation and/or other materials provided with the distribution.
+    * Neither the name of its authors nor the names of its contributors may
+      be used to endorse or promote products derived from this software without
+      specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE REGENTS AND CONTRIBUTORS "AS IS" AND ANY
+EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE REGENTS AND CONTRIBUTORS BE LIABLE FOR ANY
+DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package org.openjump.core.feature;
+
+import bsh.CallStack;
+import bsh.EvalError;
+import bsh.Interpreter;
+import bsh.Parser;
+import bsh.Primitive;
+import bsh.TokenMgrError;
+
+import com.vividsolutions.jump.feature.*;
+import com.vividsolutions.jump.util.FlexibleDateParser;
+import com.vividsolutions.jump.workbench.JUMPWorkbench;
+import com.vividsolutions.jump.workbench.Logger;
+import com.vividsolutions.jump.workbench.plugin.PlugInContext;
+
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.text.ParseException;
+import java.util.*;
+
+/**
+ * Creates an Operation using the Beanshell scripting language.
+ * <p>
+ * The expression is parsed once per thread, and each thread evaluates it
+ * with its own Interpreter, so that features can be evaluated in parallel.
+ * Only the attributes whose name appears in the expression are bound to
+ * the interpreter before evaluation. Variables set by the expression are
+ * kept from one evaluation to the next only within the same thread.
+ * <p>
+ * Values are cached in features unless the expression uses the feature
+ * itself, other features or the workbench context, or reads the time or a
+ * random number.
+ * @author Micha&euml;l Michaud
+ * @version 0.2 (2026-10-19)
+ */
+ // 0.2 (2026-10-19) parse the expression once, one interpreter per thread,
+ //                  cache values in features
+ // 0.1 (2012-11-17)
+public class BeanshellAttributeOperation implements CacheableOperation {
+
+    private static final FlexibleDateParser DATE_PARSER = new FlexibleDateParser();
+
+    // bsh does not give access to parsed nodes, which are evaluated through
+    // reflection. If it fails, the expression is evaluated as a String
+    // (see evaluatesParsedNodes).
+    private static final Method NODE_EVAL;
+    private static final Field RETURN_VALUE;
+    private static final Class<?> RETURN_CONTROL;
+    static {
+        Method nodeEval = null;
+        Field returnValue = null;
+        Class<?> returnControl = null;
+        try {
+            Class<?> nodeClass = Parser.class.getMethod("popNode").getReturnType();
+            nodeEval = nodeClass.getMethod("eval", CallStack.class, Interpreter.class);
+            nodeEval.setAccessible(true);
+            returnControl = Class.forName("bsh.ReturnControl");
+            returnValue = returnControl.getField("value");
+            returnValue.setAccessible(true);
+        } catch(Exception | LinkageError e) {
+            Logger.warn("Beanshell nodes can not be evaluated, expressions will be parsed at each evaluation", e);
+            nodeEval = null;
+        }
+        NODE_EVAL = nodeEval;
+        RETURN_VALUE = returnValue;
+        RETURN_CONTROL = returnControl;
+    }
+
+    // identifiers making the result depend on more than the attributes of
+    // the feature
+    private static final Set<String> NOT_CACHEABLE = new HashSet<String>(Arrays.asList(
+            "feature", "Feature", "FEATURE", "wc", "selection", "dataset",
+            "intersects", "distance", "global", "super", "this", "eval", "source",
+            "random", "Random", "currentTimeMillis", "nanoTime", "now", "Date", "Calendar"));
+
+    // operations being evaluated by the current thread, to avoid cyclic
+    // references between dynamic attributes
+    private static final ThreadLocal<Set<Operation>> EVALUATING =
+            ThreadLocal.withInitial(() -> Collections.newSetFromMap(new IdentityHashMap<>()));
+
+    private PlugInContext context;
+    private AttributeType type;
+    private String bshExpression;
+    // identifiers appearing in bshExpression
+    private final Set<String> identifiers;
+    private final ThreadLocal<CompiledExpression> compiledExpressions = new ThreadLocal<>();
+    
+    public BeanshellAttributeOperation(PlugInContext context,
+                              AttributeType type,
+                              String bshExpression) throws EvalError {
+        this.context = context;
+        this.type = type;
+        this.bshExpression = bshExpression;
+        this.identifiers = identifiers(bshExpression);
+        // syntax errors are reported here
+        this.compiledExpressions.set(new CompiledExpression());
+    }
+    
+    public Object invoke(Feature feature) throws Exception {
+        return evaluate((AbstractBasicFeature)feature);
+    }
+    
+    public Object evaluate(AbstractBasicFeature f) throws EvalError, 
+                           NumberFormatException, IllegalArgumentException, ParseException {
+        Set<Operation> evaluating = EVALUATING.get();
+        boolean reentrant = !evaluating.add(this);
+        try {
+            CompiledExpression expression = compiledExpressions.get();
+            if (expression == null) {
+                expression = new CompiledExpression();
+                compiledExpressions.set(expression);
+            }
+            expression.bind(f, evaluating);
+            Object obj = expression.eval();
+            if (obj == null) return null;
+            else if (type == AttributeType.STRING) {
+                if (obj instanceof String) return obj;
+                else return obj.toString();
+            }
+            else if (type == AttributeType.DOUBLE) {
+                if (obj instanceof Double) return obj;
+                else return Double.valueOf(obj.toString());
+            }
+            else if (type == AttributeType.INTEGER) {
+                if (obj instanceof Integer) return obj;
+                else return Integer.valueOf(obj.toString());
+            }
+            else if (type == AttributeType.DATE) {
+                if (obj instanceof Date) return obj;
+                else return DATE_PARSER.parse(obj.toString(), true);
+            }
+            else return obj;
+        }
+        catch(EvalError e) {
+            warnUser(e);
+            throw e;
+        } 
+        catch(NumberFormatException e) {
+            warnUser(e);
+            throw e;
+        } 
+        catch(IllegalArgumentException e) {
+            warnUser(e);
+            throw e;
+        }
+        finally {
+            if (!reentrant) evaluating.remove(this);
+        }
+    }
+    
+    private void warnUser(Exception e) {
+        if (context.getWorkbenchContext().getWorkbench() != null) {
+            context.getWorkbenchFrame().warnUser(e.toString());
+        }
+    }
+
+    /**
+     * Returns true if expressions are parsed once and their nodes evaluated
+     * by the Interpreter, false if the internals of this version of bsh are
+     * not the expected ones, and expressions are parsed at each evaluation.
+     */
+    public static boolean evaluatesParsedNodes() {
+        return NODE_EVAL != null;
+    }
+
+    public int[] getDependencies(FeatureSchema schema) {
+        for (String identifier : identifiers) {
+            if (NOT_CACHEABLE.contains(identifier)) return null;
+        }
+        List<Integer> list = new ArrayList<Integer>();
+        for (int i = 0 ; i < schema.getAttributeCount() ; i++) {
+            if (schema.getOperation(i) == this) continue;
+            if (identifiers.contains(normalizeVarName(schema.getAttributeName(i)))) {
+                list.add(i);
+            }
+        }
+        if (schema.getGeometryIndex() >= 0 && (identifiers.contains("geometry") ||
+                identifiers.contains("Geometry") || identifiers.contains("GEOMETRY"))) {
+            list.add(schema.getGeometryIndex());
+        }
+        int[] dependencies = new int[list.size()];
+        for (int k = 0 ; k < dependencies.length ; k++) dependencies[k] = list.get(k);
+        return dependencies;
+    }
+    
+    public String toString() {
+        return getClass().getName() + "\n" + bshExpression;
+    }
+    
+    public Object clone() throws CloneNotSupportedException {
+        try {
+            return new BeanshellAttributeOperation(context, type, bshExpression);
+        } catch(EvalError e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * The expression parsed for one thread, with the Interpreter used to
+     * evaluate it.
+     */
+    private class CompiledExpression {
+
+        final Interpreter interpreter;
+        final List<Object> nodes = new ArrayList<Object>();
+
+        // attributes of schema used by the expression, and their variable names
+        FeatureSchema schema;
+        int[] attributes;
+        String[] names;
+
+        CompiledExpression() throws EvalError {
+            interpreter = initInterpreter(context);
+            if (NODE_EVAL == null) return;
+            String script = bshExpression.endsWith(";") ? bshExpression : bshExpression + ";";
+            Parser parser = new Parser(new StringReader(script));
+            try {
+                while (!parser.Line()) {
+                    Object node = parser.popNode();
+                    if (node != null) nodes.add(node);
+                }
+            } catch(TokenMgrError e) {
+                throw new bsh.ParseException(e.getMessage());
+            }
+        }
+
+        void bind(AbstractBasicFeature f, Set<Operation> evaluating) throws EvalError {
+            if (f.getSchema() != schema) setSchema(f.getSchema());
+            for (int k = 0 ; k < attributes.length ; k++) {
+                // an attribute which is being evaluated is not evaluated again
+                Operation operation = schema.getOperation(attributes[k]);
+                Object value = operation != null && evaluating.contains(operation) ?
+                        null : f.getAttribute(attributes[k]);
+                interpreter.set(names[k], value);
+            }
+            for (String name : new String[]{"geometry", "Geometry", "GEOMETRY"}) {
+                if (identifiers.contains(name)) interpreter.set(name, f.getGeometry());
+            }
+            for (String name : new String[]{"feature", "Feature", "FEATURE"}) {
+                if (identifiers.contains(name)) interpreter.set(name, f);
+            }
+        }
+
+        void setSchema(FeatureSchema schema) {
+            List<Integer> list = new ArrayList<Integer>();
+            for (int i = 0 ; i < schema.getAttributeCount() ; i++) {
+                if (schema.getOperation(i) == BeanshellAttributeOperation.this) continue;
+                if (identifiers.contains(normalizeVarName(schema.getAttributeName(i)))) {
+                    list.add(i);
+                }
+            }
+            attributes = new int[list.size()];
+            names = new String[list.size()];
+            for (int k = 0 ; k < attributes.length ; k++) {
+                attributes[k] = list.get(k);
+                names[k] = normalizeVarName(schema.getAttributeName(attributes[k]));
+            }
+            this.schema = schema;
+        }
+
+        Object eval() throws EvalError {
+            if (NODE_EVAL == null) return interpreter.eval(bshExpression);
+            Object result = null;
+            try {
+                for (Object node : nodes) {
+                    result = NODE_EVAL.invoke(node,
+                            new CallStack(interpreter.getNameSpace()), interpreter);
+                    if (RETURN_CONTROL.isInstance(result)) {
+                        result = RETURN_VALUE.get(result);
+                        break;
+                    }
+                }
+            } catch(InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof EvalError) throw (EvalError)cause;
+                if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+                if (cause instanceof Error) throw (Error)cause;
+                throw new IllegalStateException(cause);
+            } catch(IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+            return Primitive.unwrap(result);
+        }
+    }
+    
+    /**
+     * Creates a new Beanshell Interpreter initialized with an instance of
+     * OpenJUMP's WorkbenchContext ("wc") and the definition of a few useful 
+     * methods.
+     */
+    private Interpreter initInterpreter(PlugInContext context) throws EvalError {
+        Interpreter interpreter = new Interpreter();
+        JUMPWorkbench workbench = context.getWorkbenchContext().getWorkbench();
+        if (workbench != null) {
+            interpreter.setClassLoader(workbench.getPlugInManager().getClassLoader());
+        }
+        interpreter.set("wc", context.getWorkbenchContext());
+        interpreter.eval("setAccessibility(true)");
+        interpreter.eval("import org.locationtech.jts.geom.*");
+        interpreter.eval("import com.vividsolutions.jump.feature.*");
+        interpreter.eval("import org.locationtech.jts.operation.union.UnaryUnionOp");
+        
+        interpreter.eval("selection() {"+
+            "return wc.layerViewPanel.selectionManager.featuresWithSelectedItems;}");
+        interpreter.eval(
+            "dataset(String layerName) {" +
+            "return wc.layerManager.getLayer(layerName).getFeatureCollectionWrapper().features;}");
+        interpreter.eval("intersects(Feature feature, Collection features) {" +
+            "for (f : features) {if (feature.geometry.intersects(f.geometry) && feature.ID!=f.ID) return true;}" +
+            "return false;}");
+        interpreter.eval("distance(Feature feature, Collection features) {" +
+            "min = Double.MAX_VALUE;" +
+            "for (f : features) {min = Math.min(min,feature.geometry.distance(f.geometry));}" +
+            "return min == Double.MAX_VALUE ? null : min;}");
+        interpreter.eval(
+            "round(double d, int i) {" +
+            " p10 = Math.pow(10.0,(double)i);" +
+            " return Math.rint(d*p10)/p10;" +
+            "}");
+        return interpreter;
+    }
+
+    /**
+     * Returns the java identifiers found in expression (including words of
+     * string literals, which is harmless).
+     */
+    private static Set<String> identifiers(String expression) {
+        Set<String> set = new HashSet<String>();
+        int i = 0;
+        while (i < expression.length()) {
+            if (Character.isJavaIdentifierStart(expression.charAt(i))) {
+                int j = i + 1;
+                while (j < expression.length() &&
+                        Character.isJavaIdentifierPart(expression.charAt(j))) j++;
+                set.add(expression.substring(i, j));
+                i = j;
+            }
+            else i++;
+        }
+        return set;
+    }
+    
+    public static String normalizeVarName(String s) {
+        StringBuffer sb = new StringBuffer(s);
+        for (int i = 0 ; i < s.length() ; i++) {
+            if (!Character.isJavaIdentifierPart(sb.charAt(i))) {
+                sb.setCharAt(i, '_');
+            }
+        }
+        return sb.toString();
+    }                                                   
+    
+}
@@ -16,6 +16,7 @@ import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.awt.image.IndexColorModel;
 import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import java.awt.image.renderable.ParameterBlock;
 import java.io.File;
 import java.io.IOException;
@@ -35,6 +36,7 @@ import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import com.vividsolutions.jump.I18N;
+import com.vividsolutions.jump.util.ParallelUtil;
 import com.vividsolutions.jump.util.Timer;
 import com.vividsolutions.jump.workbench.Logger;
 import com.vividsolutions.jump.workbench.WorkbenchContext;
@@ -91,6 +93,9 @@ public final class RasterImageLayer extends GeoReferencedLayerable
     protected int origImageWidth, origImageHeight;
     protected boolean imageSet = false;
     protected BufferedImage image = null;
+    // the data loaded for the current view, before the symbology is applied,
+    // kept to restyle the view without reading the file again
+    protected BufferedImage loadedImage = null;
     protected int numBands = 0;
     
     //-- [sstein 2nd Aug 2010] new, since we scale the image now for display
@@ -361,43 +366,50 @@ public final class RasterImageLayer extends GeoReferencedLayerable
 
             setImageSet(false);
             
-            if (visibleEnv == null || visibleEnv.getMinX() != newVisibleEnv.getMinX() || visibleEnv.getMaxX() != newVisibleEnv.getMaxX() || 
-                    visibleEnv.getMinY() != newVisibleEnv.getMinY() || visibleEnv.getMaxY() != newVisibleEnv.getMaxY() || symbologyChanged){
+            boolean sameVisibleEnv = visibleEnv != null &&
+                    visibleEnv.getMinX() == newVisibleEnv.getMinX() && visibleEnv.getMaxX() == newVisibleEnv.getMaxX() &&
+                    visibleEnv.getMinY() == newVisibleEnv.getMinY() && visibleEnv.getMaxY() == newVisibleEnv.getMaxY();
+            if (!sameVisibleEnv || symbologyChanged){
                 visibleEnv = newVisibleEnv;
                     
                 symbologyChanged = false;
-                this.setNeedToKeepImage(false);
-                if (bitsPerPixel == -1) {
-                    if (imageFileName.toLowerCase().endsWith(".flt")) bitsPerPixel = 16;
-                    else if (imageFileName.toLowerCase().endsWith(".asc")) bitsPerPixel = 16;
-                    else if (imageFileName.toLowerCase().endsWith(".txt")) bitsPerPixel = 16;
-                    else {
-                        try {
-                            bitsPerPixel = Imaging.getImageInfo(new File(imageFileName)).getBitsPerPixel();
-                        } catch(ImageReadException e) {
-                            Logger.warn("Can't get ImageInfo of " + imageFileName, e);
+                if (sameVisibleEnv && loadedImage != null) {
+                    // Only the symbology changed : restyle the data already loaded
+                    image = loadedImage;
+                } else {
+                    this.setNeedToKeepImage(false);
+                    if (bitsPerPixel == -1) {
+                        if (imageFileName.toLowerCase().endsWith(".flt")) bitsPerPixel = 16;
+                        else if (imageFileName.toLowerCase().endsWith(".asc")) bitsPerPixel = 16;
+                        else if (imageFileName.toLowerCase().endsWith(".txt")) bitsPerPixel = 16;
+                        else {
+                            try {
+                                bitsPerPixel = Imaging.getImageInfo(new File(imageFileName)).getBitsPerPixel();
+                            } catch(ImageReadException e) {
+                                Logger.warn("Can't get ImageInfo of " + imageFileName, e);
+                            }
                         }
                     }
+                    clearImageAndRaster(true);
+                    // Check that there is enough free memory for the image + 1% of available memory + 10Mb
+                    if (getAvailRAM()-getCommittedMemory() <
+                            origImageWidth*origImageHeight*bitsPerPixel/8.0 + getAvailRAM()*0.01 + 10*1024*1024) {
+                        layerViewPanel.getContext().warnUser("Low Memory : image " +
+                                imageFileName + " will not be displayed");
+                        System.out.println("" + (getAvailRAM()-getCommittedMemory())/1024 + "kb < " +
+                                (origImageWidth*origImageHeight*bitsPerPixel/8)/1024 + "kb " +
+                                getAvailRAM()*0.01/1024 + "kb + 10240");
+                        return null;
+                    } else {
+                        Logger.debug("Reload image");
+                    }
+                    // Load the part of the image intersecting the viewport and setting this.image
+                    reLoadImage(layerViewPanel);
+                    if(image == null) {
+                        // If image does not intersect viewport, it is null
+                        return null;
+                    }                    
                 }
-                clearImageAndRaster(true);
-                // Check that there is enough free memory for the image + 1% of available memory + 10Mb
-                if (getAvailRAM()-getCommittedMemory() <
-                        origImageWidth*origImageHeight*bitsPerPixel/8.0 + getAvailRAM()*0.01 + 10*1024*1024) {
-                    layerViewPanel.getContext().warnUser("Low Memory : image " +
-                            imageFileName + " will not be displayed");
-                    System.out.println("" + (getAvailRAM()-getCommittedMemory())/1024 + "kb < " +
-                            (origImageWidth*origImageHeight*bitsPerPixel/8)/1024 + "kb " +
-                            getAvailRAM()*0.01/1024 + "kb + 10240");
-                    return null;
-                } else {
-                    Logger.debug("Reload image");
-                }
-                // Load the part of the image intersecting the viewport and setting this.image
-                reLoadImage(layerViewPanel);
-                if(image == null) {
-                    // If image does not intersect viewport, it is null
-                    return null;
-                }                    
 
                 // Coordinates of actual image in viewport coordinates
                 Point2D upperLeftCornerOfImage = viewport.toViewPoint(new Coordinate(getActualImageEnvelope().getMinX(), getActualImageEnvelope().getMaxY()));
@@ -502,6 +514,7 @@ public final class RasterImageLayer extends GeoReferencedLayerable
         if (image!=null)
             image.flush();
         image = null;
+        loadedImage = null;
         if (scaledBufferedImage!=null)
             scaledBufferedImage.flush();
         scaledBufferedImage = null;
@@ -532,6 +545,7 @@ public final class RasterImageLayer extends GeoReferencedLayerable
         Logger.debug("Reading '"+getName()+"' took "+Timer.secondsSinceString(start)+"s.");
         metadata = imageAndMetadata.getMetadata();
         image = imageAndMetadata.getImage();
+        loadedImage = image;
         numBands = metadata.getStats().getBandCount();
         noDataValue = imageAndMetadata.getMetadata().getNoDataValue();
         stats = imageAndMetadata.getMetadata().getStats();
@@ -556,107 +570,92 @@ public final class RasterImageLayer extends GeoReferencedLayerable
     //   this.setImage(pi);
     //}
     
-    protected BufferedImage stretchImageValuesForDisplay() throws NoninvertibleTransformException{
-
-        Raster actualRasterData = image.copyData(null);
-        int width = actualRasterData.getWidth();
-        int height = actualRasterData.getHeight();
+    /**
+     * Applies the symbology to the data of this.image. Rows are styled in
+     * parallel, single band rasters through a {@link SymbologyLookupTable}.
+     * @return the image to display
+     */
+    protected BufferedImage stretchImageValuesForDisplay() throws Exception {
 
         // Need to change image type to support transparency and apply symbology
         if(image.getColorModel() instanceof IndexColorModel) {
             return image;  
         }
 
-        BufferedImage newImage = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
-        for (int row = 0; row < height; row++) {
-            for (int col = 0; col < width; col++) {
-
-                if(symbology == null) {
-                    if(stats.getBandCount() < 3) {
-                        
-                        final RasterSymbology rasterSymbology;
-                        if (metadata.getStats().getMin(0) == metadata
-                                .getStats().getMax(0)) {
-                            rasterSymbology = new RasterSymbology(RasterSymbology.TYPE_SINGLE);
-                        } else {
-                            rasterSymbology = new RasterSymbology(RasterSymbology.TYPE_RAMP);
-                        }
-                        if (!Double.isNaN(metadata.getNoDataValue())) {
-                            rasterSymbology.addColorMapEntry(metadata.getNoDataValue(), transparentColor);
-                        }
-                        rasterSymbology.addColorMapEntry(metadata.getStats().getMin(0), Color.WHITE);
-                        rasterSymbology.addColorMapEntry(metadata.getStats().getMax(0), Color.BLACK);
-                        setSymbology(rasterSymbology);
-                        
-                    } else {
-                        double valueR = actualRasterData.getSampleDouble(col, row, 0);
-                        double valueG = actualRasterData.getSampleDouble(col, row, 1);
-                        double valueB = actualRasterData.getSampleDouble(col, row, 2);
-                        double valueAlpha = 255;
-                        if(stats.getBandCount() > 3) {
-                            valueAlpha = actualRasterData.getSampleDouble(col, row, 3);
-                        }
-                        if(Double.isNaN(valueR) || Double.isInfinite(valueR) || valueR == noDataValue
-                                || Double.isNaN(valueG) || Double.isInfinite(valueG) || valueG == noDataValue
-                                || Double.isNaN(valueB) || Double.isInfinite(valueB) || valueB == noDataValue
-                                || valueAlpha <= 0) {
-                            newImage.setRGB(col, row, Color.TRANSLUCENT);
-                            continue;
-                        }
-                        
-                        int r = (int) ((valueR - stats.getMin(0)) * 255./(stats.getMax(0) - stats.getMin(0)));
-                        if(r > 255) r = 255;
-                        if(r < 0) r = 0;
-                        int g = (int) ((valueG - stats.getMin(1)) * 255./(stats.getMax(1) - stats.getMin(0)));
-                        if(g > 255) g = 255;
-                        if(g < 0) g = 0;
-                        int b = (int) ((valueB - stats.getMin(2)) * 255./(stats.getMax(2) - stats.getMin(0)));
-                        if(b > 255) b = 255;
-                        if(b < 0) b = 0;
-
-                        int alpha = (int) valueAlpha;
-                        
-                        newImage.setRGB(col, row, new Color(r, g, b, alpha).getRGB());
-                    }
-                } else {
-                    // Symbology exists
-                    double value = actualRasterData.getSampleDouble(col, row, 0);
-                    
+        final Raster actualRasterData = image.getRaster();
 
-                    // If symbology min value is higher than raster min value
-                    // the value becomes equal to the symbology min value
-                    Double[] symbologyClassLimits =  symbology.getColorMapEntries_tm().keySet().toArray(new Double[0]);
-                    double symbMinValue = symbologyClassLimits[0];
-                    double symbFirstValue = symbologyClassLimits[0];
-                    if(this.isNoData(symbFirstValue)) {
-                        symbMinValue = symbologyClassLimits[1];
-                    }
-                    
-                    if(!this.isNoData(value) && value < symbMinValue) {
-                        value = symbMinValue;
-                    }
-                    
-                    Color color = symbology.getColor(value);
-                    
-                    if((Double.isNaN(value) || Double.isInfinite(value) || this.isNoData(value))
-                            && color == null) {
-                        newImage.setRGB(col, row, Color.TRANSLUCENT);
+        if (symbology == null && stats.getBandCount() < 3) {
+            final RasterSymbology rasterSymbology;
+            if (metadata.getStats().getMin(0) == metadata
+                    .getStats().getMax(0)) {
+                rasterSymbology = new RasterSymbology(RasterSymbology.TYPE_SINGLE);
+            } else {
+                rasterSymbology = new RasterSymbology(RasterSymbology.TYPE_RAMP);
+            }
+            if (!Double.isNaN(metadata.getNoDataValue())) {
+                rasterSymbology.addColorMapEntry(metadata.getNoDataValue(), transparentColor);
+            }
+            rasterSymbology.addColorMapEntry(metadata.getStats().getMin(0), Color.WHITE);
+            rasterSymbology.addColorMapEntry(metadata.getStats().getMax(0), Color.BLACK);
+            // the image is styled with it right now, no need to flag it as changed
+            symbology = rasterSymbology;
+        }
+
+        if (symbology != null) {
+            return new SymbologyLookupTable(symbology, noDataValue,
+                    actualRasterData.getTransferType(), stats.getMin(0), stats.getMax(0))
+                    .createImage(actualRasterData, 0);
+        }
+
+        final int width = actualRasterData.getWidth();
+        final int height = actualRasterData.getHeight();
+        final BufferedImage newImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        final WritableRaster newRaster = newImage.getRaster();
+        ParallelUtil.processRanges(height, 16, (from, to) -> {
+            final int minX = actualRasterData.getMinX();
+            final int minY = actualRasterData.getMinY();
+            double[] valuesR = new double[width];
+            double[] valuesG = new double[width];
+            double[] valuesB = new double[width];
+            double[] valuesAlpha = stats.getBandCount() > 3 ? new double[width] : null;
+            int[] argb = new int[width];
+            for (int row = from; row < to; row++) {
+                actualRasterData.getSamples(minX, minY + row, width, 1, 0, valuesR);
+                actualRasterData.getSamples(minX, minY + row, width, 1, 1, valuesG);
+                actualRasterData.getSamples(minX, minY + row, width, 1, 2, valuesB);
+                if (valuesAlpha != null) {
+                    actualRasterData.getSamples(minX, minY + row, width, 1, 3, valuesAlpha);
+                }
+                for (int col = 0; col < width; col++) {
+                    double valueR = valuesR[col];
+                    double valueG = valuesG[col];
+                    double valueB = valuesB[col];
+                    double valueAlpha = valuesAlpha == null ? 255 : valuesAlpha[col];
+                    if(Double.isNaN(valueR) || Double.isInfinite(valueR) || valueR == noDataValue
+                            || Double.isNaN(valueG) || Double.isInfinite(valueG) || valueG == noDataValue
+                            || Double.isNaN(valueB) || Double.isInfinite(valueB) || valueB == noDataValue
+                            || valueAlpha <= 0) {
+                        argb[col] = Color.TRANSLUCENT;
                         continue;
                     }
-                    
-                    // Transparency is a combination of total layer transparency
-                    // and single cell transparency
-                    int transparency = 
-                            (int)(((1 - symbology.getTransparency()) * 
-                            (color.getAlpha() / 255d)) * 255);
-                    newImage.setRGB(col, row, new Color(
-                            color.getRed(),
-                            color.getGreen(),
-                            color.getBlue(),
-                            transparency).getRGB());
-                }  
+
+                    int r = (int) ((valueR - stats.getMin(0)) * 255./(stats.getMax(0) - stats.getMin(0)));
+                    if(r > 255) r = 255;
+                    if(r < 0) r = 0;
+                    int g = (int) ((valueG - stats.getMin(1)) * 255./(stats.getMax(1) - stats.getMin(0)));
+                    if(g > 255) g = 255;
+                    if(g < 0) g = 0;
+                    int b = (int) ((valueB - stats.getMin(2)) * 255./(stats.getMax(2) - stats.getMin(0)));
+                    if(b > 255) b = 255;
+                    if(b < 0) b = 0;
+
+                    int alpha = (int) valueAlpha;
+
+                    argb[col] = Math.min(alpha, 255) << 24 | r << 16 | g << 8 | b;
+                }
+                newRaster.setDataElements(0, row, width, 1, argb);
             }
-        }
+        });
         return newImage;
     }
     
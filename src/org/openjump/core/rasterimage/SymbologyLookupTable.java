@@ -0,0 +1,211 @@
+package org.openjump.core.rasterimage;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.vividsolutions.jump.util.ParallelUtil;
+
+/**
+ * A RasterSymbology compiled into lookup tables, to style the cells of a
+ * raster without searching the colour map for each cell.
+ * <p>
+ * Integer rasters (8 or 16 bits, or 32 bits with less than 65536 distinct
+ * values) use a direct table holding the colour of every possible value.
+ * Floating point rasters use, for ramps, the colour of the nearest of 65536
+ * regular steps between the lowest and the highest value of the colour map,
+ * and for intervals a binary search among the class limits.
+ * No data, NaN and infinite values are always styled through the colour
+ * map, as well as colour maps the tables cannot represent.
+ * <p>
+ * Colours are the same as those computed by {@link RasterSymbology#getColor(double)}:
+ * values below the lowest limit get the colour of the lowest limit, and the
+ * transparency of the symbology is combined with the alpha of each colour.
+ */
+public class SymbologyLookupTable {
+
+    private static final int RAMP_STEPS = 1 << 16;
+    private static final int MAX_DIRECT_SIZE = 1 << 16;
+
+    private final RasterSymbology symbology;
+    private final double noDataValue;
+    private final float noDataFloat;
+    private final boolean noDataIsNaN;
+    private final boolean noDataIsInfinite;
+    private final double minValue;
+
+    // direct table, indexed by value - directOffset
+    private int[] direct;
+    private long directOffset;
+
+    // colours at RAMP_STEPS + 1 regular steps of [minValue, maxValue]
+    private int[] steps;
+    private double maxValue;
+    private double stepWidth;
+
+    // class limits and colours of intervals
+    private double[] limits;
+    private int[] classColors;
+
+    /**
+     * @param symbology the symbology to compile
+     * @param noDataValue the no data value of the raster
+     * @param dataType the DataBuffer type of the raster
+     * @param dataMin the minimum value of the raster, used for TYPE_INT data
+     * @param dataMax the maximum value of the raster, used for TYPE_INT data
+     */
+    public SymbologyLookupTable(RasterSymbology symbology, double noDataValue,
+                                int dataType, double dataMin, double dataMax) {
+        this.symbology = symbology;
+        this.noDataValue = noDataValue;
+        this.noDataFloat = (float)noDataValue;
+        this.noDataIsNaN = Double.isNaN(noDataValue);
+        this.noDataIsInfinite = Double.isInfinite(noDataValue);
+        Double[] keys = symbology.getColorMapEntries_tm().keySet().toArray(new Double[0]);
+        double min = keys.length == 0 ? Double.NEGATIVE_INFINITY : keys[0];
+        if (keys.length > 1 && isNoData(keys[0])) {
+            min = keys[1];
+        }
+        this.minValue = min;
+        if (dataType == DataBuffer.TYPE_BYTE) {
+            createDirectTable(0, 255);
+        } else if (dataType == DataBuffer.TYPE_USHORT) {
+            createDirectTable(0, 65535);
+        } else if (dataType == DataBuffer.TYPE_SHORT) {
+            createDirectTable(Short.MIN_VALUE, Short.MAX_VALUE);
+        } else if (dataType == DataBuffer.TYPE_INT && dataMax - dataMin < MAX_DIRECT_SIZE) {
+            createDirectTable((long)Math.floor(dataMin), (long)Math.ceil(dataMax));
+        } else if (keys.length > 1 && RasterSymbology.TYPE_RAMP.equals(symbology.getColorMapType())) {
+            createRampTable(keys);
+        } else if (keys.length > 0 && (RasterSymbology.TYPE_INTERVALS.equals(symbology.getColorMapType()) ||
+                RasterSymbology.TYPE_SINGLE.equals(symbology.getColorMapType()))) {
+            createClassTable(keys);
+        }
+    }
+
+    private void createDirectTable(long from, long to) {
+        direct = new int[(int)(to - from + 1)];
+        directOffset = from;
+        for (int i = 0; i < direct.length; i++) {
+            direct[i] = computeARGB(from + i);
+        }
+    }
+
+    private void createRampTable(Double[] keys) {
+        // interpolating steps would blend in the cells of undefined colour
+        for (Map.Entry<Double,Color> entry : symbology.getColorMapEntries_tm().entrySet()) {
+            if (entry.getKey() >= minValue && entry.getValue() == null) return;
+        }
+        maxValue = keys[keys.length - 1];
+        if (!(maxValue > minValue)) return;
+        stepWidth = (maxValue - minValue) / RAMP_STEPS;
+        steps = new int[RAMP_STEPS + 1];
+        for (int i = 0; i <= RAMP_STEPS; i++) {
+            steps[i] = computeARGB(i == RAMP_STEPS ? maxValue : minValue + i * stepWidth);
+        }
+    }
+
+    private void createClassTable(Double[] keys) {
+        limits = new double[keys.length];
+        classColors = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            limits[i] = keys[i];
+            classColors[i] = computeARGB(keys[i]);
+        }
+    }
+
+    /**
+     * @return the colour of value, as an ARGB int
+     */
+    public int getARGB(double value) {
+        if (direct != null) {
+            long index = (long)value - directOffset;
+            if (index >= 0 && index < direct.length && value == Math.rint(value)) {
+                return direct[(int)index];
+            }
+        } else if (steps != null) {
+            double step = (value - minValue) / stepWidth;
+            // NaN and values above the colour map are left to computeARGB,
+            // values below it get the colour of its lowest value
+            if (step < RAMP_STEPS + 0.5 && !isNoData(value)) {
+                return steps[step <= 0 ? 0 : (int)(step + 0.5)];
+            }
+        } else if (limits != null) {
+            if (value >= minValue && !Double.isInfinite(value) && !isNoData(value)) {
+                int i = Arrays.binarySearch(limits, value);
+                // index of the greatest limit lower than or equal to value
+                return classColors[i >= 0 ? i : -i - 2];
+            }
+        }
+        return computeARGB(value);
+    }
+
+    /**
+     * @return the colour of an integer value, as an ARGB int
+     */
+    public int getARGB(int value) {
+        if (direct != null) {
+            long index = value - directOffset;
+            if (index >= 0 && index < direct.length) {
+                return direct[(int)index];
+            }
+        }
+        return getARGB((double)value);
+    }
+
+    /**
+     * Styles a band of raster, rows being processed in parallel.
+     * @return an ARGB image of the size of raster
+     */
+    public BufferedImage createImage(final Raster raster, final int band) throws Exception {
+        final int width = raster.getWidth();
+        final int height = raster.getHeight();
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        final WritableRaster target = image.getRaster();
+        final boolean integers = direct != null;
+        ParallelUtil.processRanges(height, 16, (from, to) -> {
+            int[] argb = new int[width];
+            int[] intValues = integers ? new int[width] : null;
+            double[] values = integers ? null : new double[width];
+            for (int row = from; row < to; row++) {
+                if (integers) {
+                    raster.getSamples(raster.getMinX(), raster.getMinY() + row, width, 1, band, intValues);
+                    for (int col = 0; col < width; col++) argb[col] = getARGB(intValues[col]);
+                } else {
+                    raster.getSamples(raster.getMinX(), raster.getMinY() + row, width, 1, band, values);
+                    for (int col = 0; col < width; col++) argb[col] = getARGB(values[col]);
+                }
+                target.setDataElements(0, row, width, 1, argb);
+            }
+        });
+        return image;
+    }
+
+    /**
+     * The colour of value, computed from the colour map.
+     */
+    private int computeARGB(double value) {
+        if (!isNoData(value) && value < minValue) {
+            value = minValue;
+        }
+        Color color = symbology.getColor(value);
+        if (color == null) {
+            return 0;
+        }
+        // Transparency is a combination of total layer transparency
+        // and single cell transparency
+        int alpha = (int)(((1 - symbology.getTransparency()) * (color.getAlpha() / 255d)) * 255);
+        return (alpha << 24) | (color.getRGB() & 0xFFFFFF);
+    }
+
+    // same as RasterImageLayer#isNoData
+    private boolean isNoData(double value) {
+        return value == noDataValue || (float)value == noDataFloat ||
+                noDataIsNaN && Double.isNaN(value) ||
+                noDataIsInfinite && Double.isInfinite(value);
+    }
+}
@@ -0,0 +1,279 @@
+package org.openjump.core.rasterimage.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.openjump.core.rasterimage.sextante.rasterWrappers.GridWrapperNotInterpolated;
+
+import com.vividsolutions.jump.feature.AttributeType;
+import com.vividsolutions.jump.feature.BasicFeature;
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.feature.FeatureCollection;
+import com.vividsolutions.jump.feature.FeatureDataset;
+import com.vividsolutions.jump.feature.FeatureSchema;
+import com.vividsolutions.jump.util.ParallelUtil;
+
+/**
+ * Vectorizes a band of a grid into polygons, one for each region of
+ * 4-connected cells having the same value, holes included.
+ * <p>
+ * Regions are labelled by a union-find over strips of rows processed in
+ * parallel, strips being then joined along their borders. The rings of each
+ * region are traced along the edges of its cells, keeping only the corners
+ * where they turn. Cells are read row by row from the grid, which may be
+ * backed by a tiled raster.
+ */
+public class RasterPolygonizer {
+
+    // rows labelled at once by a task
+    private static final int STRIP_ROWS = 64;
+
+    // directions along a boundary, which keeps its region on its right
+    // (rows going down) : they are also the sides of the cell on the right
+    private static final int EAST = 0, SOUTH = 1, WEST = 2, NORTH = 3;
+    private static final int[] DX = {1, 0, -1, 0};
+    private static final int[] DY = {0, 1, 0, -1};
+
+    private final GridWrapperNotInterpolated grid;
+    private final int band;
+    private final int width;
+    private final int height;
+    private final GeometryFactory factory = new GeometryFactory();
+
+    // parent of each cell in the union-find, then index of its region,
+    // -1 for no data cells
+    private int[] labels;
+
+    /**
+     * @param grid the grid to vectorize
+     * @param band the band of the grid to use
+     */
+    public RasterPolygonizer(GridWrapperNotInterpolated grid, int band) {
+        this.grid = grid;
+        this.band = band;
+        this.width = grid.getNX();
+        this.height = grid.getNY();
+        if ((long)width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Grid of " + width + "x" + height + " cells is too large");
+        }
+    }
+
+    /**
+     * @param attributeName the name of the attribute holding the value of the cells
+     * @return a FeatureCollection with an ID and a value attribute, holding
+     * a polygon for each region, in the order of their first cell
+     */
+    public FeatureCollection toPolygons(String attributeName) throws Exception {
+        final FeatureSchema featSchema = new FeatureSchema();
+        featSchema.addAttribute("GEOMETRY", AttributeType.GEOMETRY);
+        featSchema.addAttribute("ID", AttributeType.INTEGER);
+        featSchema.addAttribute(attributeName, AttributeType.DOUBLE);
+        final FeatureCollection featColl = new FeatureDataset(featSchema);
+
+        double[] values = labelRegions();
+        List<LinearRing> shells = new ArrayList<>(values.length);
+        List<List<LinearRing>> holes = new ArrayList<>(values.length);
+        byte[] visited = new byte[width * height];
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                int cell = row * width + col;
+                int region = labels[cell];
+                if (region < 0) continue;
+                for (int side = EAST; side <= NORTH; side++) {
+                    if ((visited[cell] & (1 << side)) != 0) continue;
+                    // node starting the side, the cell being on its right
+                    int x = side == SOUTH || side == WEST ? col + 1 : col;
+                    int y = side == WEST || side == NORTH ? row + 1 : row;
+                    if (!isBoundary(x, y, side, region)) continue;
+                    LinearRing ring = trace(x, y, side, region, visited);
+                    // the first ring found is the one of the top side of the
+                    // first cell of the region: its shell
+                    if (region == shells.size()) {
+                        shells.add(ring);
+                        holes.add(null);
+                    } else {
+                        if (holes.get(region) == null) holes.set(region, new ArrayList<>());
+                        holes.get(region).add(ring);
+                    }
+                }
+            }
+        }
+        for (int region = 0; region < values.length; region++) {
+            List<LinearRing> regionHoles = holes.get(region);
+            Feature feature = new BasicFeature(featSchema);
+            feature.setGeometry(factory.createPolygon(shells.get(region), regionHoles == null ?
+                    null : regionHoles.toArray(new LinearRing[0])));
+            feature.setAttribute(1, region + 1);
+            feature.setAttribute(2, values[region]);
+            featColl.add(feature);
+        }
+        labels = null;
+        return featColl;
+    }
+
+    /**
+     * Labels each cell with the index of its region.
+     * @return the value of each region
+     */
+    private double[] labelRegions() throws Exception {
+        labels = new int[width * height];
+        final boolean[] stripStarts = new boolean[height];
+        ParallelUtil.processRanges(height, STRIP_ROWS, (from, to) -> {
+            stripStarts[from] = true;
+            double[] previous = new double[width];
+            double[] current = new double[width];
+            for (int row = from; row < to; row++) {
+                readRow(row, current);
+                for (int col = 0; col < width; col++) {
+                    int cell = row * width + col;
+                    if (grid.isNoDataValue(current[col])) {
+                        labels[cell] = -1;
+                        continue;
+                    }
+                    labels[cell] = cell;
+                    // no data cells are never equal to a value
+                    if (col > 0 && current[col - 1] == current[col]) {
+                        union(cell - 1, cell);
+                    }
+                    if (row > from && previous[col] == current[col]) {
+                        union(cell - width, cell);
+                    }
+                }
+                double[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+        });
+        // joins the strips
+        double[] previous = new double[width];
+        double[] current = new double[width];
+        for (int row = 1; row < height; row++) {
+            if (!stripStarts[row]) continue;
+            readRow(row - 1, previous);
+            readRow(row, current);
+            for (int col = 0; col < width; col++) {
+                int cell = row * width + col;
+                if (labels[cell] >= 0 && previous[col] == current[col]) {
+                    union(cell - width, cell);
+                }
+            }
+        }
+        // links each cell to its root, the first cell of its region: other
+        // tasks may read a cell being linked, but its old parent and its
+        // root are both ancestors
+        ParallelUtil.processRanges(labels.length, STRIP_ROWS * width, (from, to) -> {
+            for (int cell = from; cell < to; cell++) {
+                int root = labels[cell];
+                if (root < 0) continue;
+                while (labels[root] != root) root = labels[root];
+                labels[cell] = root;
+            }
+        });
+        // numbers the regions in the order of their first cell
+        double[] values = new double[64];
+        int count = 0;
+        for (int cell = 0; cell < labels.length; cell++) {
+            int root = labels[cell];
+            if (root < 0) continue;
+            if (root == cell) {
+                if (count == values.length) values = Arrays.copyOf(values, count * 2);
+                values[count] = grid.getCellValueAsDouble(cell % width, cell / width, band);
+                labels[cell] = count++;
+            } else {
+                // the root has already been numbered
+                labels[cell] = labels[root];
+            }
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    private void readRow(int row, double[] values) {
+        for (int col = 0; col < width; col++) {
+            values[col] = grid.getCellValueAsDouble(col, row, band);
+        }
+    }
+
+    private int find(int cell) {
+        while (labels[cell] != cell) {
+            // path halving
+            labels[cell] = labels[labels[cell]];
+            cell = labels[cell];
+        }
+        return cell;
+    }
+
+    private void union(int cell1, int cell2) {
+        int root1 = find(cell1);
+        int root2 = find(cell2);
+        if (root1 < root2) {
+            labels[root2] = root1;
+        } else if (root2 < root1) {
+            labels[root1] = root2;
+        }
+    }
+
+    private boolean isIn(int col, int row, int region) {
+        return col >= 0 && col < width && row >= 0 && row < height &&
+                labels[row * width + col] == region;
+    }
+
+    /**
+     * Traces the ring of region starting from node (x, y) in direction dir,
+     * flagging the sides of the cells it goes along as visited.
+     */
+    private LinearRing trace(int x, int y, final int dir0, int region, byte[] visited) {
+        final double xMin = grid.getGridExtent().getXMin();
+        final double yMax = grid.getGridExtent().getYMax();
+        final double cellSizeX = grid.getCellSize().x;
+        final double cellSizeY = grid.getCellSize().y;
+        final int x0 = x, y0 = y;
+        int dir = dir0;
+        List<Coordinate> coordinates = new ArrayList<>();
+        do {
+            visited[rightCellRow(y, dir) * width + rightCellCol(x, dir)] |= 1 << dir;
+            x += DX[dir];
+            y += DY[dir];
+            // turns left first, so that cells of the region touching by a
+            // corner are joined and rings do not cross themselves
+            int next = (dir + 3) % 4;
+            if (!isBoundary(x, y, next, region)) {
+                next = dir;
+                if (!isBoundary(x, y, next, region)) {
+                    next = (dir + 1) % 4;
+                }
+            }
+            if (next != dir) {
+                coordinates.add(new Coordinate(xMin + x * cellSizeX, yMax - y * cellSizeY));
+            }
+            dir = next;
+        } while (x != x0 || y != y0 || dir != dir0);
+        coordinates.add(new Coordinate(coordinates.get(0)));
+        return factory.createLinearRing(coordinates.toArray(new Coordinate[0]));
+    }
+
+    // the edge leaving node (x, y) in direction dir has region on its right only
+    private boolean isBoundary(int x, int y, int dir, int region) {
+        return isIn(rightCellCol(x, dir), rightCellRow(y, dir), region) &&
+                !isIn(leftCellCol(x, dir), leftCellRow(y, dir), region);
+    }
+
+    private static int rightCellCol(int x, int dir) {
+        return dir == SOUTH || dir == WEST ? x - 1 : x;
+    }
+
+    private static int rightCellRow(int y, int dir) {
+        return dir == WEST || dir == NORTH ? y - 1 : y;
+    }
+
+    private static int leftCellCol(int x, int dir) {
+        return dir == WEST || dir == NORTH ? x - 1 : x;
+    }
+
+    private static int leftCellRow(int y, int dir) {
+        return dir == EAST || dir == NORTH ? y - 1 : y;
+    }
+}
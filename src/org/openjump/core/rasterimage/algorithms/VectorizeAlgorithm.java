@@ -398,13 +398,8 @@ public class VectorizeAlgorithm {
     }
 
 
-    private static int[][] m_Lock;
-    private static char[][] m_Area;
-    private static int m_iNX;
-    private static int m_iNY;
-
     /** Create a FeatureCollection of polygons defining a GridWrapperNotInterpolated and number of band
-      * Sextante algorithm
+      * Sextante algorithm, replaced by a {@link RasterPolygonizer}: polygons now have holes
       * @param gwrapper a GridWrapperNotInterpolated
       * @param attributeName an attribute name
       * @param band the image band to use
@@ -412,228 +407,13 @@ public class VectorizeAlgorithm {
       */
     public static FeatureCollection toPolygonsSextante(
             GridWrapperNotInterpolated gwrapper, String attributeName, int band) {
-        final FeatureSchema featSchema = new FeatureSchema();
-        featSchema.addAttribute("GEOMETRY", AttributeType.GEOMETRY);
-        featSchema.addAttribute("ID", AttributeType.INTEGER);
-        featSchema.addAttribute(attributeName, AttributeType.DOUBLE);
-        // Create feature collection
-        final FeatureCollection featColl = new FeatureDataset(featSchema);
-        int x, y, ID;
-        double dValue;
-        m_iNX = gwrapper.getNX();
-        m_iNY = gwrapper.getNY();
-        m_Lock = new int[m_iNY][m_iNX];
-        m_Area = new char[m_iNY + 1][m_iNX + 1];
-        for (y = 0, ID = 1; y < m_iNY; y++) {
-            for (x = 0; x < m_iNX; x++) {
-                dValue = gwrapper.getCellValueAsDouble(x, y, band);
-                if (!gwrapper.isNoDataValue(dValue) && (m_Lock[y][x] == 0)) {
-                    Discrete_Lock(gwrapper, x, y, ID, band);
-                    featColl.add(Discrete_Area(gwrapper, featSchema,
-                            attributeName, x, y, ID, band));
-                    ID++;
-                }
-            }
+        try {
+            return new RasterPolygonizer(gwrapper, band).toPolygons(attributeName);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
-        System.gc();
-        return featColl;
-    }
-
-    private static void Discrete_Lock(GridWrapperNotInterpolated gwrapper,
-            int x, int y, final int ID, int band) {
-        final int[] xTo = { 0, 1, 0, -1 };
-        final int[] yTo = { 1, 0, -1, 0 };
-        final char[] goDir = { 1, 2, 4, 8 };
-        boolean isBorder, doRecurse;
-        char goTemp = 0;
-        char[] goStack = new char[50];
-        int[] xStack = new int[50];
-        int[] yStack = new int[50];
-        int i, ix, iy, iStack = 0;
-        double dValue, dValue2;
-        dValue = gwrapper.getCellValueAsDouble(x, y, band);
-        for (iy = 0; iy <= m_iNY; iy++) {
-            for (ix = 0; ix <= m_iNX; ix++) {
-                m_Area[iy][ix] = 0;
-            }
-        }
-        do {
-            if (m_Lock[y][x] == 0) {
-                if (goStack.length <= iStack) {
-                    final char[] cAux = new char[goStack.length + 50];
-                    System.arraycopy(goStack, 0, cAux, 0, goStack.length);
-                    goStack = cAux;
-                    int[] iAux = new int[xStack.length + 50];
-                    System.arraycopy(xStack, 0, iAux, 0, xStack.length);
-                    xStack = iAux;
-                    iAux = new int[yStack.length + 50];
-                    System.arraycopy(yStack, 0, iAux, 0, yStack.length);
-                    yStack = iAux;
-                }
-                goStack[iStack] = 0;
-                m_Lock[y][x] = ID;
-                for (i = 0; i < 4; i++) {
-                    ix = x + xTo[i];
-                    iy = y + yTo[i];
-                    isBorder = true;
-                    dValue2 = gwrapper.getCellValueAsDouble(ix, iy, band);
-                    if ((ix >= 0) && (ix < m_iNX) && (iy >= 0) && (iy < m_iNY)
-                            && (dValue == dValue2)) {
-                        isBorder = false;
-                        if (m_Lock[iy][ix] == 0) {
-                            goStack[iStack] |= goDir[i];
-                        }
-                    }
-                    if (isBorder) {
-                        switch (i) {
-                        case 0:
-                            m_Area[y + 1][x]++;
-                            m_Area[y + 1][x + 1]++;
-                            break;
-                        case 1:
-                            m_Area[y][x + 1]++;
-                            m_Area[y + 1][x + 1]++;
-                            break;
-                        case 2:
-                            m_Area[y][x]++;
-                            m_Area[y][x + 1]++;
-                            break;
-                        case 3:
-                            m_Area[y][x]++;
-                            m_Area[y + 1][x]++;
-                            break;
-                        }
-                    }
-                }
-            }
-            doRecurse = false;
-            for (i = 0; i < 4; i++) {
-                if ((goStack[iStack] & goDir[i]) != 0) {
-                    if (doRecurse) {
-                        goTemp |= goDir[i];
-                    } else {
-                        goTemp = 0;
-                        doRecurse = true;
-                        xStack[iStack] = x;
-                        yStack[iStack] = y;
-                        x = x + xTo[i];
-                        y = y + yTo[i];
-                    }
-                }
-            }
-            if (doRecurse) {
-                goStack[iStack++] = goTemp;
-            } else if (iStack > 0) {
-                iStack--;
-                x = xStack[iStack];
-                y = yStack[iStack];
-            }
-        } while (iStack > 0);
-
-    }
-
-    private static Feature Discrete_Area(GridWrapperNotInterpolated gwrapper,
-            FeatureSchema featSchema, String attributeName, int x, int y,
-            final int ID, int band) {
-        final int[] xTo = { 0, 1, 0, -1 };
-        final int[] yTo = { 1, 0, -1, 0 };
-        final int[] xLock = { 0, 0, -1, -1 }, yLock = { 0, -1, -1, 0 };
-        boolean bContinue, bStart;
-        int i, ix, iy, ix1, iy1, dir, iStart;
-        final double xMin = gwrapper.getGridExtent().getXMin();
-        final double yMax = gwrapper.getGridExtent().getYMax();
-        final double dCellSizeX = gwrapper.getCellSize().x;
-        final double dCellSizeY = gwrapper.getCellSize().y;
-        double xFirst = 0, yFirst = 0;
-        final ArrayList<Coordinate> coordinates = new ArrayList<>();
-        Feature feature;
-        feature = new BasicFeature(featSchema);
-        feature.setAttribute(1, ID);
-        feature.setAttribute(2, gwrapper.getCellValueAsDouble(x, y, band));
-        xFirst = xMin + (x) * dCellSizeX;
-        yFirst = yMax - (y) * dCellSizeY;
-        coordinates.add(new Coordinate(xFirst, yFirst));
-        iStart = 0;
-        bStart = true;
-        do {
-            coordinates.add(new Coordinate(xMin + (x) * dCellSizeX, yMax - (y)
-                    * dCellSizeY));
-            m_Area[y][x] = 0;
-            bContinue = false;
-            while (true) {
-                // assure clockwise direction at starting point
-                if (bStart) {
-                    for (i = 0; i < 4; i++) {
-                        ix = x + xTo[i];
-                        iy = y + yTo[i];
-                        if ((ix >= 0) && (ix <= m_iNX) && (iy >= 0)
-                                && (iy <= m_iNY) && (m_Area[iy][ix] > 0)) {
-                            // check, if inside situated cell (according to
-                            // current direction) is locked
-                            ix1 = x + xLock[i];
-                            iy1 = y + yLock[i];
-                            if ((ix1 >= 0) && (ix1 <= m_iNX) && (iy1 >= 0)
-                                    && (iy1 <= m_iNY)
-                                    && (m_Lock[iy1][ix1] == ID)) {
-                                x = ix;
-                                y = iy;
-                                iStart = (i + 3) % 4;
-                                bContinue = true;
-                                bStart = false;
-                                break;
-                            }
-                        }
-                    }
-                } else {
-                    for (i = iStart; i < iStart + 4; i++) {
-                        dir = i % 4;
-                        ix = x + xTo[dir];
-                        iy = y + yTo[dir];
-
-                        if ((ix >= 0) && (ix <= m_iNX) && (iy >= 0)
-                                && (iy <= m_iNY) && (m_Area[iy][ix] > 0)) {
-                            if (i < iStart + 3) {
-                                // check, if inside situated cell (according to
-                                // current direction) is locked
-                                ix1 = x + xLock[dir];
-                                iy1 = y + yLock[dir];
-
-                                if ((ix1 >= 0) && (ix1 <= m_iNX) && (iy1 >= 0)
-                                        && (iy1 <= m_iNY)
-                                        && (m_Lock[iy1][ix1] == ID)) {
-                                    x = ix;
-                                    y = iy;
-                                    iStart = (i + 3) % 4;
-                                    bContinue = true;
-                                    break;
-                                }
-                            } else {
-                                x = ix;
-                                y = iy;
-                                bContinue = true;
-                                iStart = (i + 3) % 4;
-                                break;
-                            }
-                        }
-                    }
-                }
-                break;
-            }
-            ;
-        } while (bContinue);
-        coordinates.add(new Coordinate(xFirst, yFirst));
-        final Coordinate[] coords = new Coordinate[coordinates.size()];
-        for (i = 0; i < coords.length; i++) {
-            coords[i] = coordinates.get(i);
-        }
-        final GeometryFactory gf = new GeometryFactory();
-        if (coords.length > 1) {
-            final LinearRing ring = gf.createLinearRing(coords);
-            final Polygon polyg = gf.createPolygon(ring, null);
-            feature.setGeometry(polyg);
-        }
-        return feature;
-
     }
 
     private char[][] m_Row;
@@ -760,8 +540,8 @@ public class VectorizeAlgorithm {
         iNX = gwrapper.getGridExtent().getNX();
         iNY = gwrapper.getGridExtent().getNY();
 
-        for (y = 0; y < m_iNY; y++) {
-            for (x = 0; x < m_iNX; x++) {
+        for (y = 0; y < iNY; y++) {
+            for (x = 0; x < iNX; x++) {
 
                 final double dValue = gwrapper.getCellValueAsDouble(x, y);
                 if (gwrapper.isNoDataValue(dValue) || (dValue == 0)) {
@@ -788,9 +568,7 @@ public class VectorizeAlgorithm {
 
     }
 
-    static int iNX;
-    static int iNY;
-    private static int m_iLine = 1;
+    private int m_iLine = 1;
 
     private Feature createLine(int x, int y, Point2D pt2d2,
             GridWrapperNotInterpolated gwrapper, FeatureSchema featSchema) {
@@ -1,11 +1,14 @@
 package org.openjump.core.ui;
 
 import com.vividsolutions.jump.I18N;
+import com.vividsolutions.jump.feature.ColumnarFeatureCollection;
+import com.vividsolutions.jump.geom.GeometryStoragePolicy;
 import com.vividsolutions.jump.io.datasource.DataSource;
 import com.vividsolutions.jump.util.Blackboard;
 import com.vividsolutions.jump.workbench.WorkbenchContext;
 import com.vividsolutions.jump.workbench.datasource.DataSourceQueryChooserDialog;
 import com.vividsolutions.jump.workbench.datasource.SaveDatasetAsPlugIn;
+import com.vividsolutions.jump.workbench.model.cache.DiskFeatureCollection;
 import com.vividsolutions.jump.workbench.registry.Registry;
 import com.vividsolutions.jump.workbench.ui.OptionsPanel;
 import com.vividsolutions.jump.workbench.ui.plugin.PersistentBlackboardPlugIn;
@@ -16,6 +19,8 @@ import java.awt.Insets;
 import java.nio.charset.Charset;
 import java.util.List;
 import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.border.EmptyBorder;
 import org.openjump.core.ui.io.file.DataSourceFileLayerLoader;
@@ -24,6 +29,9 @@ import org.openjump.core.ui.io.file.FileLayerLoader;
 /**
  * OptionsPanel for setting up some dataset options.
  * - should the Charset selection be shown
+ * - how coordinates of geometries read from files and databases are stored
+ * - whether attributes of loaded layers are stored column by column
+ * - whether datasets too large for the memory are kept on disk
  *
  * @author Matthias Scholz &lt;ms@jammerhund.de&gt;
  */
@@ -31,10 +39,18 @@ public class DatasetOptionsPanel extends JPanel implements OptionsPanel {
 
 	// Blackboard keys
 	public static final String BB_DATASET_OPTIONS_SHOW_CHARSET_SELECTION = DatasetOptionsPanel.class.getName() + "SHOW_CHARSET_SELECTION";
+	public static final String BB_DATASET_OPTIONS_GEOMETRY_STORAGE = DatasetOptionsPanel.class.getName() + "GEOMETRY_STORAGE";
+	public static final String BB_DATASET_OPTIONS_GEOMETRY_2D = DatasetOptionsPanel.class.getName() + "GEOMETRY_2D";
+	public static final String BB_DATASET_OPTIONS_COLUMNAR_ATTRIBUTES = DatasetOptionsPanel.class.getName() + "COLUMNAR_ATTRIBUTES";
+	public static final String BB_DATASET_OPTIONS_KEEP_ON_DISK = DatasetOptionsPanel.class.getName() + "KEEP_ON_DISK";
 
 	private JPanel mainPanel;
 	private JPanel fillPanel;
 	private JCheckBox charsetSelectionCheckBox;
+	private JComboBox<GeometryStoragePolicy.Storage> geometryStorageComboBox;
+	private JCheckBox geometry2DCheckBox;
+	private JCheckBox columnarAttributesCheckBox;
+	private JCheckBox keepOnDiskCheckBox;
 
 	private Blackboard blackboard = null;
 	private WorkbenchContext context = null;
@@ -64,10 +80,59 @@ public class DatasetOptionsPanel extends JPanel implements OptionsPanel {
         gridBagConstraints.insets = new java.awt.Insets(5, 10, 5, 10);
         mainPanel.add(charsetSelectionCheckBox, gridBagConstraints);
 
+		// Geometry storage
+		geometryStorageComboBox = new JComboBox<>(GeometryStoragePolicy.Storage.values());
+		geometryStorageComboBox.setRenderer(new javax.swing.DefaultListCellRenderer() {
+			public java.awt.Component getListCellRendererComponent(javax.swing.JList<?> list,
+					Object value, int index, boolean isSelected, boolean cellHasFocus) {
+				return super.getListCellRendererComponent(list,
+						I18N.get("ui.DatasetOptionsPanel.GeometryStorage." + value),
+						index, isSelected, cellHasFocus);
+			}
+		});
+		geometry2DCheckBox = new JCheckBox(I18N.get("ui.DatasetOptionsPanel.GeometryStorage2D"));
+		geometryStorageComboBox.addActionListener(e -> geometry2DCheckBox.setEnabled(
+				geometryStorageComboBox.getSelectedItem() != GeometryStoragePolicy.Storage.COORDINATE_ARRAY));
+		JPanel storagePanel = new JPanel();
+		storagePanel.add(new JLabel(I18N.get("ui.DatasetOptionsPanel.GeometryStorage")));
+		storagePanel.add(geometryStorageComboBox);
+		gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 0;
+        gridBagConstraints.gridy = 1;
+        gridBagConstraints.anchor = java.awt.GridBagConstraints.WEST;
+        gridBagConstraints.insets = new java.awt.Insets(5, 5, 0, 10);
+        mainPanel.add(storagePanel, gridBagConstraints);
+		gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 0;
+        gridBagConstraints.gridy = 2;
+        gridBagConstraints.anchor = java.awt.GridBagConstraints.WEST;
+        gridBagConstraints.insets = new java.awt.Insets(0, 30, 5, 10);
+        mainPanel.add(geometry2DCheckBox, gridBagConstraints);
+
+		// Attribute storage
+		columnarAttributesCheckBox = new JCheckBox(I18N.get("ui.DatasetOptionsPanel.ColumnarAttributes"));
+		columnarAttributesCheckBox.setToolTipText(I18N.get("ui.DatasetOptionsPanel.ColumnarAttributes.tooltip"));
+		gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 0;
+        gridBagConstraints.gridy = 3;
+        gridBagConstraints.anchor = java.awt.GridBagConstraints.WEST;
+        gridBagConstraints.insets = new java.awt.Insets(5, 10, 5, 10);
+        mainPanel.add(columnarAttributesCheckBox, gridBagConstraints);
+
+		// Disk storage of large datasets
+		keepOnDiskCheckBox = new JCheckBox(I18N.get("ui.DatasetOptionsPanel.KeepOnDisk"));
+		keepOnDiskCheckBox.setToolTipText(I18N.get("ui.DatasetOptionsPanel.KeepOnDisk.tooltip"));
+		gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 0;
+        gridBagConstraints.gridy = 4;
+        gridBagConstraints.anchor = java.awt.GridBagConstraints.WEST;
+        gridBagConstraints.insets = new java.awt.Insets(5, 10, 5, 10);
+        mainPanel.add(keepOnDiskCheckBox, gridBagConstraints);
+
 		// empty fill Panel for nice layout
         gridBagConstraints = new java.awt.GridBagConstraints();
         gridBagConstraints.gridx = 0;
-        gridBagConstraints.gridy = 3;
+        gridBagConstraints.gridy = 5;
         gridBagConstraints.gridwidth = 2;
         gridBagConstraints.weightx = 1.0;
         gridBagConstraints.weighty = 1.0;
@@ -81,6 +146,14 @@ public class DatasetOptionsPanel extends JPanel implements OptionsPanel {
 
 	public void okPressed() {
 		blackboard.put(BB_DATASET_OPTIONS_SHOW_CHARSET_SELECTION, charsetSelectionCheckBox.isSelected());
+		GeometryStoragePolicy.Storage storage = (GeometryStoragePolicy.Storage)geometryStorageComboBox.getSelectedItem();
+		blackboard.put(BB_DATASET_OPTIONS_GEOMETRY_STORAGE, storage.name());
+		blackboard.put(BB_DATASET_OPTIONS_GEOMETRY_2D, geometry2DCheckBox.isSelected());
+		GeometryStoragePolicy.setPolicy(storage, geometry2DCheckBox.isSelected());
+		blackboard.put(BB_DATASET_OPTIONS_COLUMNAR_ATTRIBUTES, columnarAttributesCheckBox.isSelected());
+		ColumnarFeatureCollection.setEnabledForLoaders(columnarAttributesCheckBox.isSelected());
+		blackboard.put(BB_DATASET_OPTIONS_KEEP_ON_DISK, keepOnDiskCheckBox.isSelected());
+		DiskFeatureCollection.setEnabledForLoaders(keepOnDiskCheckBox.isSelected());
 		Registry registry = context.getRegistry();
 		List loaders = registry.getEntries(FileLayerLoader.KEY);
 		for (Object loader : loaders) {
@@ -111,6 +184,30 @@ public class DatasetOptionsPanel extends JPanel implements OptionsPanel {
 			// or to false, if we do not have an Blackboard value
 			charsetSelectionCheckBox.setSelected(false);
 		}
+		geometryStorageComboBox.setSelectedItem(GeometryStoragePolicy.getStorage());
+		geometry2DCheckBox.setSelected(GeometryStoragePolicy.isTwoDimensional());
+		columnarAttributesCheckBox.setSelected(ColumnarFeatureCollection.isEnabledForLoaders());
+		keepOnDiskCheckBox.setSelected(DiskFeatureCollection.isEnabledForLoaders());
+	}
+
+	/**
+	 * Applies the geometry and attribute storage options saved in the
+	 * persistent blackboard.
+	 */
+	public static void restoreStorageOptions(Blackboard blackboard) {
+		ColumnarFeatureCollection.setEnabledForLoaders(
+				blackboard.get(BB_DATASET_OPTIONS_COLUMNAR_ATTRIBUTES, false));
+		DiskFeatureCollection.setEnabledForLoaders(
+				blackboard.get(BB_DATASET_OPTIONS_KEEP_ON_DISK, false));
+		Object storage = blackboard.get(BB_DATASET_OPTIONS_GEOMETRY_STORAGE);
+		if (!(storage instanceof String)) return;
+		try {
+			GeometryStoragePolicy.setPolicy(
+					GeometryStoragePolicy.Storage.valueOf((String)storage),
+					blackboard.get(BB_DATASET_OPTIONS_GEOMETRY_2D, false));
+		} catch (IllegalArgumentException e) {
+			// unknown value saved by another version, keep the default
+		}
 	}
 
 }
@@ -1,7 +1,5 @@
 package org.openjump.core.ui.plugin.cts;
 
-import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.CoordinateFilter;
 import org.locationtech.jts.geom.Geometry;
 import com.vividsolutions.jump.I18N;
 import com.vividsolutions.jump.coordsys.CoordinateSystem;
@@ -60,6 +58,8 @@ public class CTSPlugIn extends ThreadedBasePlugIn implements Iconified, EnableCh
     private final String INVALID_TGT_CRS    = I18N.get("org.openjump.core.ui.plugin.cts.CTSPlugIn.invalid-tgt-crs");
     private final String SOURCE_PROJECTION  = I18N.get("org.openjump.core.ui.plugin.cts.CTSPlugIn.srcProjection");
     private final String TARGET_PROJECTION  = I18N.get("org.openjump.core.ui.plugin.cts.CTSPlugIn.tgtProjection");
+    private final String DISPLAY_ONLY       = I18N.get("org.openjump.core.ui.plugin.cts.CTSPlugIn.display-only");
+    private final String DISPLAY_ONLY_TT    = I18N.get("org.openjump.core.ui.plugin.cts.CTSPlugIn.display-only-tooltip");
 
     private static final String EPSG = "EPSG";
     private static final String IGNF = "IGNF";
@@ -67,6 +67,7 @@ public class CTSPlugIn extends ThreadedBasePlugIn implements Iconified, EnableCh
     private String registry = EPSG;
     private String srcCode = "4326";
     private String tgtCode = "4326";
+    private boolean displayOnly = false;
     private final Map<String,String> codes = new LinkedHashMap<>(64);
 
     public ImageIcon getIcon(){
@@ -107,6 +108,7 @@ public class CTSPlugIn extends ThreadedBasePlugIn implements Iconified, EnableCh
         tgtCodesCB.setSelectedItem(tgtCode);
         tgtCodesCB.setPrototypeDisplayValue("abcdefghijklmnpqrstuvwxyz/0123456789");
         dialog.addRow(TARGET, new JLabel(TARGET_LABEL), tgtCodesCB, new EnableCheck[0], "");
+        dialog.addCheckBox(DISPLAY_ONLY, displayOnly, DISPLAY_ONLY_TT);
 
         registry_cb.addActionListener(new ActionListener() {
             @Override
@@ -130,20 +132,20 @@ public class CTSPlugIn extends ThreadedBasePlugIn implements Iconified, EnableCh
             registry = dialog.getText(REGISTRY);
             srcCode = codes.get(srcCodesCB.getSelectedItem());
             tgtCode = codes.get(tgtCodesCB.getSelectedItem());
+            displayOnly = dialog.getBoolean(DISPLAY_ONLY);
             return true;
         }
         return false;
     }
 
-    public void run(TaskMonitor monitor, PlugInContext context)
-            throws RegistryException, CRSException, CoordinateOperationException {
+    public void run(TaskMonitor monitor, PlugInContext context) throws Exception {
         reportNothingToUndoYet(context);
         if (srcCode == null) {
             throw new RegistryException(INVALID_SRC_CRS);
         } else if (tgtCode == null) {
             throw new RegistryException(INVALID_TGT_CRS);
         }
-        if (!tgtCode.equals(srcCode)) {
+        if (displayOnly || !tgtCode.equals(srcCode)) {
             CRSFactory crsFactory = new CRSFactory();
             RegistryManager registryManager = crsFactory.getRegistryManager();
             if (registry.equals("EPSG")) {
@@ -156,6 +158,12 @@ public class CTSPlugIn extends ThreadedBasePlugIn implements Iconified, EnableCh
             CoordinateReferenceSystem tgtCRS = registryManager.getRegistry(registry)
                     .getCoordinateReferenceSystem(new Identifier(registry, tgtCode, null));
 
+            if (displayOnly) {
+                // layers keep their coordinates, the view is reprojected
+                DisplayReprojection.get(context.getLayerManager()).setTargetCRS(tgtCRS);
+                context.getLayerViewPanel().getRenderingManager().renderAll();
+                return;
+            }
             commitChanges(monitor, context, srcCRS, tgtCRS);
             report(context, srcCRS, tgtCRS);
         }
@@ -166,11 +174,11 @@ public class CTSPlugIn extends ThreadedBasePlugIn implements Iconified, EnableCh
     private void commitChanges(final TaskMonitor monitor,
                                final PlugInContext context,
                                final CoordinateReferenceSystem srcCRS,
-                               final CoordinateReferenceSystem tgtCRS) throws CoordinateOperationException {
+                               final CoordinateReferenceSystem tgtCRS) throws Exception {
 
         // Short-circuits for cases where transformation cannot be done
-        CoordinateOperation coordinateOperation = getOperation(srcCRS, tgtCRS);
-        if (coordinateOperation == null) {
+        Reprojector reprojector = Reprojector.create(srcCRS, tgtCRS);
+        if (reprojector == null) {
             context.getWorkbenchFrame().warnUser(OP_NOT_FOUND);
             return;
         }
@@ -181,7 +189,6 @@ public class CTSPlugIn extends ThreadedBasePlugIn implements Iconified, EnableCh
         }
 
         // Prepare parameters and data structures for transaction
-        final CoordinateFilter filter = getCoordinateFilter(coordinateOperation);
         boolean epsg = tgtCRS.getAuthorityName().equalsIgnoreCase(EPSG);
         int epsgCode = epsg ? Integer.parseInt(tgtCRS.getAuthorityKey()) : 0;
         CoordinateSystemWrapper newCoordinateSystem = new CoordinateSystemWrapper(tgtCRS);
@@ -195,19 +202,22 @@ public class CTSPlugIn extends ThreadedBasePlugIn implements Iconified, EnableCh
         context.getLayerManager().getUndoableEditReceiver().reportNothingToUndoYet();
         for (Layer layer : context.getSelectedLayers()) {
             oldCoordinateSystems.put(layer.getName(), layer.getFeatureCollectionWrapper().getFeatureSchema().getCoordinateSystem());
-            ArrayList<Geometry> srcGeometries = new ArrayList<>();
-            ArrayList<Geometry> tgtGeometries = new ArrayList<>();
-            int count = 0;
+            List<Feature> features = layer.getFeatureCollectionWrapper().getFeatures();
+            ArrayList<Geometry> srcGeometries = new ArrayList<>(features.size());
+            for (Feature feature : features) {
+                srcGeometries.add(feature.getGeometry());
+            }
             monitor.report(TRANSFORM + " " + layer.getName());
-            for (Object object : layer.getFeatureCollectionWrapper().getFeatures()) {
-                Geometry srcGeom = ((Feature)object).getGeometry();
-                srcGeometries.add(srcGeom);
-                Geometry tgtGeom = (Geometry)srcGeom.clone();
-                tgtGeom.apply(filter);
+            // geometries are copied and transformed by several threads
+            List<Geometry> transformed = reprojector.transform(srcGeometries, monitor, "");
+            if (transformed == null) {
+                // cancelled before any layer has been modified
+                return;
+            }
+            ArrayList<Geometry> tgtGeometries = new ArrayList<>(transformed.size());
+            for (Geometry tgtGeom : transformed) {
                 tgtGeom.setSRID(epsgCode);
-                tgtGeom.geometryChanged();
                 tgtGeometries.add(tgtGeom);
-                if (++count % 100 == 0) monitor.report(count, layer.getFeatureCollectionWrapper().getFeatures().size(), "");
             }
             srcGeometryMap.put(layer.getName(), srcGeometries);
             tgtGeometryMap.put(layer.getName(), tgtGeometries);
@@ -305,37 +315,12 @@ public class CTSPlugIn extends ThreadedBasePlugIn implements Iconified, EnableCh
         html.addField(TARGET_PROJECTION, tgtCRS.getProjection() == null ? "null" :
                 tgtCRS.getProjection().toWKT(tgtCRS.getCoordinateSystem().getUnit(0)));
         html.append("<h2>" + getName() + "</h2>");
-        CoordinateOperation op = getOperation(srcCRS, tgtCRS);
+        CoordinateOperation op = Reprojector.getOperation(srcCRS, tgtCRS);
         if (op != null) {
             html.addField("", op.toString().replaceAll("\n","<br>"));
         }
     }
 
-    private CoordinateOperation getOperation(final CoordinateReferenceSystem srcCRS,
-                                             final CoordinateReferenceSystem tgtCRS)
-            throws CoordinateOperationException {
-        Collection<CoordinateOperation> ops = CoordinateOperationFactory
-                .createCoordinateOperations((GeodeticCRS) srcCRS, (GeodeticCRS) tgtCRS);
-        return ops.size() == 0 ? null :
-                CoordinateOperationFactory.getMostPrecise(ops);
-    }
-
-    private CoordinateFilter getCoordinateFilter(final CoordinateOperation op) {
-        return new CoordinateFilter() {
-            @Override
-            public void filter(Coordinate coordinate) {
-                try {
-                    double[] xyz = op.transform(new double[]{coordinate.x, coordinate.y, coordinate.z});
-                    coordinate.setOrdinate(0, xyz[0]);
-                    coordinate.setOrdinate(1, xyz[1]);
-                    if (xyz.length > 2) coordinate.setOrdinate(2, xyz[2]);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
-        };
-    }
-
     private Map<String,String> getAvailableCRS(PlugInContext context, String registry)
             throws IOException, RegistryException, CRSException {
         return RegistryReader.read(registry);
@@ -0,0 +1,279 @@
+package org.openjump.core.ui.plugin.cts;
+
+import java.util.*;
+
+import org.cts.crs.CoordinateReferenceSystem;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.openjump.core.ccordsys.srid.SRIDStyle;
+
+import com.vividsolutions.jump.feature.AbstractBasicFeature;
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.feature.FeatureCollection;
+import com.vividsolutions.jump.workbench.Logger;
+import com.vividsolutions.jump.workbench.model.*;
+
+/**
+ * Reprojects layers on the fly, for display only, to the coordinate
+ * reference system of the view.
+ * <p>
+ * When a target CRS is set, the renderer draws the features of the layers
+ * having another SRID (see {@link SRIDStyle}) through this class, which
+ * transforms all the geometries of a layer the first time it is drawn and
+ * keeps them, with a spatial index in target coordinates, until the layer
+ * is edited, gets a new SRID or a new FeatureCollection. Layers themselves
+ * are never modified.
+ * <p>
+ * Picking and selecting features, drawing selections, snapping and zooming
+ * to a layer use the reprojected geometries as well, through
+ * {@link #getFeatures(Layer, Envelope)}, {@link #toDisplay(Layer, Geometry)}
+ * and {@link #getEnvelope(Layer)}; selections still hold the features of
+ * the layer (see {@link #getSourceFeature(Feature)}). Editable layers are
+ * not reprojected, as editing tools work on the coordinates stored in the
+ * layer.
+ */
+public class DisplayReprojection implements LayerListener {
+
+    private static final String KEY = DisplayReprojection.class.getName();
+
+    private CoordinateReferenceSystem targetCRS;
+    private int targetSRID = 0;
+    private final Map<Layer,LayerCache> caches = new IdentityHashMap<>();
+
+    private DisplayReprojection(LayerManager layerManager) {
+        layerManager.addLayerListener(this);
+    }
+
+    /**
+     * @return the DisplayReprojection of layerManager
+     */
+    public static DisplayReprojection get(LayerManager layerManager) {
+        synchronized (layerManager.getBlackboard()) {
+            DisplayReprojection reprojection =
+                    (DisplayReprojection)layerManager.getBlackboard().get(KEY);
+            if (reprojection == null) {
+                reprojection = new DisplayReprojection(layerManager);
+                layerManager.getBlackboard().put(KEY, reprojection);
+            }
+            return reprojection;
+        }
+    }
+
+    /**
+     * Sets the CRS layers are drawn in.
+     * @param targetCRS the CRS of the view, or null to draw layers in their
+     * own coordinates
+     */
+    public synchronized void setTargetCRS(CoordinateReferenceSystem targetCRS) {
+        this.targetCRS = targetCRS;
+        this.targetSRID = targetCRS != null && "EPSG".equalsIgnoreCase(targetCRS.getAuthorityName()) ?
+                Integer.parseInt(targetCRS.getAuthorityKey()) : 0;
+        caches.clear();
+    }
+
+    public synchronized CoordinateReferenceSystem getTargetCRS() {
+        return targetCRS;
+    }
+
+    /**
+     * @return true if layer is drawn with reprojected geometries
+     */
+    public synchronized boolean isReprojected(Layer layer) {
+        if (targetCRS == null || layer.isEditable()) return false;
+        int srid = getSRID(layer);
+        return srid > 0 && srid != targetSRID;
+    }
+
+    /**
+     * @return the features of layer intersecting envelope (in target
+     * coordinates), with reprojected geometries, or null if layer can not be
+     * reprojected
+     */
+    public Collection<Feature> query(Layer layer, Envelope envelope) {
+        LayerCache cache = getCache(layer);
+        // layers are built outside the lock, so that several layers can be
+        // built by several rendering threads
+        return cache == null ? null : cache.query(envelope);
+    }
+
+    /**
+     * @return the features of layer as they are displayed, with reprojected
+     * geometries if layer is reprojected, which may intersect envelope (in
+     * target coordinates)
+     */
+    public Collection<Feature> getFeatures(Layer layer, Envelope envelope) {
+        Collection<Feature> features = query(layer, envelope);
+        return features != null ? features : layer.getFeatureCollectionWrapper().query(envelope);
+    }
+
+    /**
+     * @return geometry, a geometry of layer (or a part of it), as it is
+     * displayed : a reprojected copy if layer is reprojected, geometry
+     * itself otherwise
+     */
+    public Geometry toDisplay(Layer layer, Geometry geometry) {
+        LayerCache cache = getCache(layer);
+        Reprojector reprojector = cache == null ? null : cache.getReprojector();
+        return reprojector == null ? geometry : reprojector.transform(geometry);
+    }
+
+    /**
+     * @return the envelope of layer as it is displayed
+     */
+    public Envelope getEnvelope(Layer layer) {
+        LayerCache cache = getCache(layer);
+        Envelope envelope = cache == null ? null : cache.getEnvelope();
+        return envelope != null ? envelope : layer.getFeatureCollectionWrapper().getEnvelope();
+    }
+
+    /**
+     * @return the feature of the layer a feature returned by
+     * {@link #getFeatures(Layer, Envelope)} stands for
+     */
+    public static Feature getSourceFeature(Feature feature) {
+        return feature instanceof ReprojectedFeature ? ((ReprojectedFeature)feature).feature : feature;
+    }
+
+    private synchronized LayerCache getCache(Layer layer) {
+        if (!isReprojected(layer)) return null;
+        LayerCache cache = caches.get(layer);
+        if (cache == null || !cache.isValid(layer)) {
+            cache = new LayerCache(layer, targetCRS);
+            caches.put(layer, cache);
+        }
+        return cache;
+    }
+
+    private static int getSRID(Layer layer) {
+        SRIDStyle sridStyle = (SRIDStyle)layer.getStyle(SRIDStyle.class);
+        return sridStyle == null ? 0 : sridStyle.getSRID();
+    }
+
+    public synchronized void featuresChanged(FeatureEvent e) {
+        if (e.getType() != FeatureEventType.ATTRIBUTES_MODIFIED) {
+            caches.remove(e.getLayer());
+        }
+    }
+
+    public synchronized void layerChanged(LayerEvent e) {
+        if (e.getType() == LayerEventType.REMOVED) {
+            caches.remove(e.getLayerable());
+        }
+    }
+
+    public void categoryChanged(CategoryEvent e) {
+    }
+
+    /**
+     * The reprojected features of a layer.
+     */
+    private static final class LayerCache {
+
+        private final Layer layer;
+        private final CoordinateReferenceSystem targetCRS;
+        private final FeatureCollection collection;
+        private final int srid;
+        private Reprojector reprojector;
+        private STRtree tree;
+        private Envelope envelope;
+        private boolean failed = false;
+
+        LayerCache(Layer layer, CoordinateReferenceSystem targetCRS) {
+            this.layer = layer;
+            this.targetCRS = targetCRS;
+            this.collection = layer.getFeatureCollectionWrapper().getUltimateWrappee();
+            this.srid = getSRID(layer);
+        }
+
+        boolean isValid(Layer layer) {
+            return srid == getSRID(layer) &&
+                    collection == layer.getFeatureCollectionWrapper().getUltimateWrappee();
+        }
+
+        synchronized Collection<Feature> query(Envelope envelope) {
+            if (tree == null && !failed) build();
+            if (failed) return null;
+            List<Feature> features = new ArrayList<>();
+            for (Object feature : tree.query(envelope)) features.add((Feature) feature);
+            return features;
+        }
+
+        synchronized Reprojector getReprojector() {
+            if (tree == null && !failed) build();
+            return failed ? null : reprojector;
+        }
+
+        synchronized Envelope getEnvelope() {
+            if (tree == null && !failed) build();
+            return failed ? null : envelope;
+        }
+
+        private void build() {
+            try {
+                reprojector = Reprojector.create(Reprojector.getEPSGCRS(srid), targetCRS);
+                if (reprojector == null) {
+                    failed = true;
+                    return;
+                }
+                List<Feature> features = new ArrayList<>(collection.getFeatures());
+                List<Geometry> geometries = new ArrayList<>(features.size());
+                for (Feature feature : features) geometries.add(feature.getGeometry());
+                geometries = reprojector.transform(geometries, null, null);
+                STRtree newTree = new STRtree();
+                Envelope newEnvelope = new Envelope();
+                for (int i = 0; i < features.size(); i++) {
+                    Geometry geometry = geometries.get(i);
+                    newTree.insert(geometry.getEnvelopeInternal(),
+                            new ReprojectedFeature(features.get(i), geometry));
+                    newEnvelope.expandToInclude(geometry.getEnvelopeInternal());
+                }
+                newTree.build();
+                envelope = newEnvelope;
+                tree = newTree;
+            } catch (Exception e) {
+                Logger.warn("Layer " + layer.getName() + " can not be reprojected", e);
+                failed = true;
+            }
+        }
+    }
+
+    /**
+     * A read-only view of a feature with a reprojected geometry.
+     */
+    private static final class ReprojectedFeature extends AbstractBasicFeature {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Feature feature;
+        private final Geometry geometry;
+
+        ReprojectedFeature(Feature feature, Geometry geometry) {
+            super(feature.getSchema());
+            this.feature = feature;
+            this.geometry = geometry;
+        }
+
+        public Object getAttribute(int i) {
+            return i == getSchema().getGeometryIndex() ? geometry : feature.getAttribute(i);
+        }
+
+        public Object[] getAttributes() {
+            Object[] attributes = feature.getAttributes().clone();
+            attributes[getSchema().getGeometryIndex()] = geometry;
+            return attributes;
+        }
+
+        public void setAttribute(int attributeIndex, Object newAttribute) {
+            throw new UnsupportedOperationException("Reprojected features are read-only");
+        }
+
+        public void setAttributes(Object[] attributes) {
+            throw new UnsupportedOperationException("Reprojected features are read-only");
+        }
+
+        public int getID() {
+            return feature.getID();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.openjump.core.ui.plugin.cts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cts.CRSFactory;
+import org.cts.crs.CRSException;
+import org.cts.crs.CoordinateReferenceSystem;
+import org.cts.crs.GeodeticCRS;
+import org.cts.op.CoordinateOperation;
+import org.cts.op.CoordinateOperationException;
+import org.cts.op.CoordinateOperationFactory;
+import org.cts.registry.EPSGRegistry;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Geometry;
+
+import com.vividsolutions.jump.task.TaskMonitor;
+import com.vividsolutions.jump.util.ParallelUtil;
+import com.vividsolutions.jump.workbench.Logger;
+
+/**
+ * Transforms geometries from a coordinate reference system to another one.
+ * <p>
+ * Coordinate operations are looked up once per pair of CRS and cached, by
+ * the WKT definitions of the CRS, as CRS read from a definition (e.g. a prj
+ * file) may have no authority.
+ * Coordinates are transformed in place, sequence by sequence, through a
+ * single buffer, whatever the CoordinateSequence implementation, and large
+ * geometry lists are transformed by several threads.
+ */
+public class Reprojector {
+
+    private static final int MIN_RANGE_SIZE = 512;
+
+    private static final Map<String,CoordinateOperation> operations = new ConcurrentHashMap<>();
+    private static final Map<Integer,CoordinateReferenceSystem> epsgCRS = new ConcurrentHashMap<>();
+    private static CRSFactory crsFactory;
+
+    private final CoordinateOperation operation;
+
+    /**
+     * @param operation the operation to apply to coordinates
+     */
+    public Reprojector(CoordinateOperation operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * @return a Reprojector from srcCRS to tgtCRS, or null if no coordinate
+     * operation has been found
+     */
+    public static Reprojector create(CoordinateReferenceSystem srcCRS,
+                                     CoordinateReferenceSystem tgtCRS)
+            throws CoordinateOperationException {
+        CoordinateOperation operation = getOperation(srcCRS, tgtCRS);
+        return operation == null ? null : new Reprojector(operation);
+    }
+
+    /**
+     * @return the most precise operation from srcCRS to tgtCRS, or null if
+     * there is none
+     */
+    public static CoordinateOperation getOperation(CoordinateReferenceSystem srcCRS,
+                                                   CoordinateReferenceSystem tgtCRS)
+            throws CoordinateOperationException {
+        String key = srcCRS.toWKT() + ">" + tgtCRS.toWKT();
+        CoordinateOperation operation = operations.get(key);
+        if (operation == null) {
+            Collection<CoordinateOperation> ops = CoordinateOperationFactory
+                    .createCoordinateOperations((GeodeticCRS) srcCRS, (GeodeticCRS) tgtCRS);
+            if (ops.isEmpty()) return null;
+            operation = CoordinateOperationFactory.getMostPrecise(ops);
+            operations.put(key, operation);
+        }
+        return operation;
+    }
+
+    /**
+     * @return the CRS registered with code in the EPSG registry
+     */
+    public static CoordinateReferenceSystem getEPSGCRS(int code) throws CRSException {
+        CoordinateReferenceSystem crs = epsgCRS.get(code);
+        if (crs == null) {
+            synchronized (Reprojector.class) {
+                if (crsFactory == null) {
+                    crsFactory = new CRSFactory();
+                    crsFactory.getRegistryManager().addRegistry(new EPSGRegistry());
+                }
+                crs = crsFactory.getCRS("EPSG:" + code);
+            }
+            epsgCRS.put(code, crs);
+        }
+        return crs;
+    }
+
+    /**
+     * @return a transformed copy of geometry
+     */
+    public Geometry transform(Geometry geometry) {
+        Geometry copy = geometry.copy();
+        transformInPlace(copy, new double[3]);
+        return copy;
+    }
+
+    /**
+     * Transforms geometries, using several threads.
+     * @param monitor a monitor to report progress and check for cancellation,
+     * or null
+     * @param description the description of the processed geometries for
+     * monitor
+     * @return the transformed copies of geometries, in the same order, or
+     * null if cancellation has been requested
+     */
+    public List<Geometry> transform(final List<Geometry> geometries,
+                                    final TaskMonitor monitor, final String description)
+            throws Exception {
+        final int size = geometries.size();
+        final Geometry[] result = new Geometry[size];
+        final AtomicInteger count = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        ParallelUtil.processRanges(size, MIN_RANGE_SIZE, (from, to) -> {
+            double[] buffer = new double[3];
+            for (int i = from; i < to; i++) {
+                if (monitor != null && monitor.isCancelRequested()) return;
+                Geometry copy = geometries.get(i).copy();
+                failures.addAndGet(transformInPlace(copy, buffer));
+                result[i] = copy;
+            }
+            if (monitor != null) monitor.report(count.addAndGet(to - from), size, description);
+        });
+        if (monitor != null && monitor.isCancelRequested()) return null;
+        if (failures.get() > 0) {
+            Logger.warn(failures.get() + " coordinates could not be transformed by " + operation);
+        }
+        List<Geometry> list = new ArrayList<>(size);
+        for (Geometry g : result) list.add(g);
+        return list;
+    }
+
+    /**
+     * Transforms the coordinates of geometry in place. Coordinates which
+     * can not be transformed are left unchanged.
+     * @return the number of coordinates which could not be transformed
+     */
+    private int transformInPlace(Geometry geometry, final double[] buffer) {
+        final int[] failures = new int[1];
+        geometry.apply(new CoordinateSequenceFilter() {
+            public void filter(CoordinateSequence seq, int i) {
+                // the whole sequence is transformed on its first coordinate
+                if (i == 0) failures[0] += transform(seq, buffer);
+            }
+            public boolean isDone() {
+                return false;
+            }
+            public boolean isGeometryChanged() {
+                return true;
+            }
+        });
+        geometry.geometryChanged();
+        return failures[0];
+    }
+
+    private int transform(CoordinateSequence seq, double[] buffer) {
+        int failures = 0;
+        boolean hasZ = seq.getDimension() > 2 && seq.getDimension() - seq.getMeasures() > 2;
+        for (int i = 0, size = seq.size(); i < size; i++) {
+            buffer[0] = seq.getX(i);
+            buffer[1] = seq.getY(i);
+            buffer[2] = hasZ ? seq.getZ(i) : Double.NaN;
+            try {
+                // operations usually work in place and return buffer
+                double[] xyz = operation.transform(buffer);
+                seq.setOrdinate(i, 0, xyz[0]);
+                seq.setOrdinate(i, 1, xyz[1]);
+                if (hasZ && xyz.length > 2) seq.setOrdinate(i, 2, xyz[2]);
+            } catch (Exception e) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    public CoordinateOperation getOperation() {
+        return operation;
+    }
+}
@@ -35,9 +35,10 @@ package org.openjump.core.ui.plugin.edit;
 
 import java.awt.event.KeyEvent;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.HashSet;
+import java.util.Set;
 
 import com.vividsolutions.jump.I18N;
 import com.vividsolutions.jump.feature.Feature;
@@ -87,14 +88,18 @@ public class InvertSelectionPlugIn extends AbstractPlugIn {
             oldSelectedFeatures = selectionManager.getFeaturesWithSelectedItems(layer);
             selectionManager.getFeatureSelection().unselectItems(layer);
             if (layer.isVisible()) {
-                // Get an ordered set of old selected identifiers
-                SortedSet<Integer> ids = new TreeSet<>();
+                // Get a bitmap of old selected identifiers, negative ones
+                // (which a BitSet can not hold) being kept in a set
+                BitSet ids = new BitSet();
+                Set<Integer> negativeIds = new HashSet<>();
                 for (Feature oldF : oldSelectedFeatures) {
-                    ids.add(oldF.getID());
+                    if (oldF.getID() >= 0) ids.set(oldF.getID());
+                    else negativeIds.add(oldF.getID());
                 }
                 FeatureCollection featureCollection = layer.getFeatureCollectionWrapper();
                 for (Feature feature : featureCollection.getFeatures()) {
-                    if (!ids.contains(feature.getID())) {
+                    int id = feature.getID();
+                    if (id >= 0 ? !ids.get(id) : !negativeIds.contains(id)) {
                         newSelectedFeatures.add(feature);
                     }
                 }
@@ -40,6 +40,7 @@ import java.util.List;
 
 import com.vividsolutions.jump.I18N;
 import com.vividsolutions.jump.feature.BasicFeature;
+import com.vividsolutions.jump.feature.ColumnarFeature;
 import com.vividsolutions.jump.feature.Feature;
 import com.vividsolutions.jump.feature.FeatureCollection;
 import com.vividsolutions.jump.workbench.WorkbenchContext;
@@ -90,7 +91,9 @@ public class SelectAllModifiedFeaturesPlugIn extends AbstractPlugIn {
             .getFeatureCollectionWrapper();
         for (Feature feature : featureCollection.getFeatures()) {
           if (feature instanceof BasicFeature
-              && ((BasicFeature) feature).isModified()) {
+              && ((BasicFeature) feature).isModified()
+              || feature instanceof ColumnarFeature
+              && ((ColumnarFeature) feature).isModified()) {
             selectedFeatures.add(feature);
           }
         }
@@ -81,21 +81,9 @@ public class LayerPrinter2 {
 							throwable[0] = t;
 						}
 					});
-		int extentInPixelsX;
-		int extentInPixelsY;
-		double width = envelope.getWidth();
-		double height = envelope.getHeight();
-
-		if (width > height)
-		{
-			extentInPixelsX = extentInPixels;
-			extentInPixelsY = (int)Math.round(height / width * extentInPixels);
-		}
-		else
-		{
-			extentInPixelsY = extentInPixels;
-			extentInPixelsX = (int)Math.round(width / height * extentInPixels);
-		}
+		Dimension size = getSize(envelope, extentInPixels);
+		int extentInPixelsX = size.width;
+		int extentInPixelsY = size.height;
 
 		panel.setSize(extentInPixelsX, extentInPixelsY);
 		panel.getViewport().zoom(envelope);
@@ -130,6 +118,41 @@ public class LayerPrinter2 {
 				return bufferedImage;
 	}
 
+	/**
+	 * Returns an image of layers which is rendered by tiles, in parallel,
+	 * while it is read, so that it can be streamed to a file without holding
+	 * the whole image in memory. The image must be disposed once written.
+	 * @param layers earlier layers will be rendered above later layers
+	 */
+	public TiledMapImage printTiled(Collection layers, Envelope envelope, int extentInPixels) {
+		Dimension size = getSize(envelope, extentInPixels);
+		// the envelope is adjusted to the rounded size of the image
+		double scale = size.width > size.height ?
+				size.width / envelope.getWidth() : size.height / envelope.getHeight();
+		Envelope adjusted = new Envelope(envelope.getMinX(),
+				envelope.getMinX() + size.width / scale,
+				envelope.getMaxY() - size.height / scale, envelope.getMaxY());
+		return new TiledMapImage(
+				(!layers.isEmpty()) ? ((Layerable)layers.iterator().next()).getLayerManager()
+						: new LayerManager(), adjusted, size.width, size.height);
+	}
+
+	private static Dimension getSize(Envelope envelope, int extentInPixels) {
+		double width = envelope.getWidth();
+		double height = envelope.getHeight();
+
+		if (width > height)
+		{
+			return new Dimension(extentInPixels,
+					(int)Math.round(height / width * extentInPixels));
+		}
+		else
+		{
+			return new Dimension((int)Math.round(width / height * extentInPixels),
+					extentInPixels);
+		}
+	}
+
     private void paintBackground(Graphics2D graphics, int extentX, int extentY) {
         graphics.setColor(Color.white);
         graphics.fillRect(0, 0, extentX, extentY);
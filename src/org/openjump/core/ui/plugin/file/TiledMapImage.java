@@ -0,0 +1,505 @@
+package org.openjump.core.ui.plugin.file;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.ComponentListener;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import com.vividsolutions.jump.util.ParallelUtil;
+import com.vividsolutions.jump.workbench.model.Layer;
+import com.vividsolutions.jump.workbench.model.LayerEvent;
+import com.vividsolutions.jump.workbench.model.LayerManager;
+import com.vividsolutions.jump.workbench.ui.LayerViewPanel;
+import com.vividsolutions.jump.workbench.ui.LayerViewPanelContext;
+import com.vividsolutions.jump.workbench.ui.Viewport;
+import com.vividsolutions.jump.workbench.ui.renderer.ImageCachingRenderer;
+import com.vividsolutions.jump.workbench.ui.renderer.LabelRenderer;
+import com.vividsolutions.jump.workbench.ui.renderer.RenderingManager;
+import com.vividsolutions.jump.workbench.ui.renderer.ThreadSafeImage;
+import com.vividsolutions.jump.workbench.ui.renderer.style.LabelCache;
+import com.vividsolutions.jump.workbench.ui.renderer.style.LabelStyle;
+
+/**
+ * An image of the layers of a LayerManager, rendered on demand, strip by
+ * strip, so that images much larger than the available memory can be
+ * written by ImageIO writers or JAI encoders reading the image by rows or
+ * by tiles (PNG, tiled TIFF).
+ * <p>
+ * A strip is a row of {@link #TILE_SIZE} pixels high tiles, rendered in
+ * parallel through off-screen LayerViewPanels. Only the last two strips
+ * are kept in memory. {@link #dispose()} must be called once the image has
+ * been written.
+ * <p>
+ * Labels are placed once, over the whole image, before the first strip is
+ * rendered, with a LabelCache of their own, and each tile draws the labels
+ * crossing it, so that labels are neither cut nor repeated at the seams.
+ */
+public class TiledMapImage implements RenderedImage {
+
+    public static final int TILE_SIZE = 512;
+
+    private static final int CACHED_STRIPS = 2;
+
+    // the margin around a tile in which labels are looked for, in pixels,
+    // for label outlines which exceed the bounds of the text
+    private static final int LABEL_MARGIN = 16;
+
+    private final LayerManager layerManager;
+    private final Envelope envelope;
+    private final double scale;
+    private final int width;
+    private final int height;
+    private final ColorModel colorModel =
+            new DirectColorModel(24, 0xFF0000, 0x00FF00, 0x0000FF);
+    private final SampleModel sampleModel =
+            colorModel.createCompatibleSampleModel(TILE_SIZE, TILE_SIZE);
+
+    private final Map<Integer,WritableRaster> strips =
+            new LinkedHashMap<Integer,WritableRaster>(4, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<Integer,WritableRaster> eldest) {
+            return size() > CACHED_STRIPS;
+        }
+    };
+    private final Queue<TilePanel> panels = new ConcurrentLinkedQueue<>();
+    private final Queue<TilePanel> allPanels = new ConcurrentLinkedQueue<>();
+    // the labels of the image, by their bounds in image coordinates
+    private volatile STRtree labels;
+    private volatile int threads = ParallelUtil.getParallelism();
+
+    /**
+     * @param envelope the part of the model to render, which must have the
+     * same aspect ratio as the image
+     * @param width the width of the image, in pixels
+     * @param height the height of the image, in pixels
+     */
+    public TiledMapImage(LayerManager layerManager, Envelope envelope, int width, int height) {
+        this.layerManager = layerManager;
+        this.envelope = envelope;
+        this.width = width;
+        this.height = height;
+        this.scale = width / envelope.getWidth();
+    }
+
+    public Envelope getEnvelope() {
+        return envelope;
+    }
+
+    /**
+     * Sets the maximum number of tiles of a strip rendered at the same time,
+     * which is the number of processors by default.
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @return the number of pixels per model unit
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    public Vector<RenderedImage> getSources() {
+        return null;
+    }
+
+    public Object getProperty(String name) {
+        return java.awt.Image.UndefinedProperty;
+    }
+
+    public String[] getPropertyNames() {
+        return null;
+    }
+
+    public ColorModel getColorModel() {
+        return colorModel;
+    }
+
+    public SampleModel getSampleModel() {
+        return sampleModel;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getMinX() {
+        return 0;
+    }
+
+    public int getMinY() {
+        return 0;
+    }
+
+    public int getNumXTiles() {
+        return (width + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    public int getNumYTiles() {
+        return (height + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    public int getMinTileX() {
+        return 0;
+    }
+
+    public int getMinTileY() {
+        return 0;
+    }
+
+    public int getTileWidth() {
+        return TILE_SIZE;
+    }
+
+    public int getTileHeight() {
+        return TILE_SIZE;
+    }
+
+    public int getTileGridXOffset() {
+        return 0;
+    }
+
+    public int getTileGridYOffset() {
+        return 0;
+    }
+
+    public Raster getTile(int tileX, int tileY) {
+        int x = tileX * TILE_SIZE;
+        int y = tileY * TILE_SIZE;
+        return getStrip(tileY).createChild(x, y, TILE_SIZE, TILE_SIZE, x, y, null);
+    }
+
+    /**
+     * Note that the whole image is rendered in memory: writers able to
+     * stream should use {@link #getData(Rectangle)} or {@link #getTile(int, int)}.
+     */
+    public Raster getData() {
+        return getData(new Rectangle(0, 0, width, height));
+    }
+
+    public Raster getData(Rectangle rect) {
+        WritableRaster raster = Raster.createWritableRaster(
+                sampleModel.createCompatibleSampleModel(rect.width, rect.height),
+                new Point(rect.x, rect.y));
+        return copyData(raster);
+    }
+
+    public WritableRaster copyData(WritableRaster raster) {
+        if (raster == null) {
+            raster = Raster.createWritableRaster(
+                    sampleModel.createCompatibleSampleModel(width, height), null);
+        }
+        Rectangle bounds = raster.getBounds().intersection(new Rectangle(0, 0, width, height));
+        if (bounds.isEmpty()) return raster;
+        for (int ty = bounds.y / TILE_SIZE; ty <= (bounds.y + bounds.height - 1) / TILE_SIZE; ty++) {
+            WritableRaster strip = getStrip(ty);
+            Rectangle r = bounds.intersection(strip.getBounds());
+            raster.setDataElements(0, 0, strip.createChild(r.x, r.y, r.width, r.height, r.x, r.y, null));
+        }
+        return raster;
+    }
+
+    private synchronized WritableRaster getStrip(int tileY) {
+        WritableRaster strip = strips.get(tileY);
+        if (strip == null) {
+            try {
+                // labels are placed once for the whole image, before any
+                // tile is rendered
+                if (labels == null) {
+                    labels = placeLabels();
+                }
+                strip = renderStrip(tileY);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            strips.put(tileY, strip);
+        }
+        return strip;
+    }
+
+    private WritableRaster renderStrip(final int tileY) throws Exception {
+        final WritableRaster strip = Raster.createWritableRaster(
+                sampleModel.createCompatibleSampleModel(getNumXTiles() * TILE_SIZE, TILE_SIZE),
+                new Point(0, tileY * TILE_SIZE));
+        // ranges of one tile let threads finishing early help the others,
+        // unless fewer threads than the workers are allowed
+        int tiles = getNumXTiles();
+        int tilesPerRange = threads < ParallelUtil.getParallelism() ?
+                (tiles + threads - 1) / threads : 1;
+        ParallelUtil.processRanges(tiles, tilesPerRange, (from, to) -> {
+            TilePanel panel = getPanel();
+            try {
+                for (int tileX = from; tileX < to; tileX++) {
+                    BufferedImage tile = panel.render(tileX, tileY);
+                    // tiles of a strip are disjoint parts of its data
+                    strip.setDataElements(tileX * TILE_SIZE, tileY * TILE_SIZE, tile.getRaster());
+                }
+            } finally {
+                panels.add(panel);
+            }
+        });
+        return strip;
+    }
+
+    private TilePanel getPanel() {
+        TilePanel panel = panels.poll();
+        if (panel == null) {
+            panel = new TilePanel();
+            allPanels.add(panel);
+        }
+        return panel;
+    }
+
+    /**
+     * Places the labels of the whole image, as a LayerViewPanel of the size
+     * of the image would.
+     */
+    private STRtree placeLabels() throws Exception {
+        final STRtree index = new STRtree();
+        TilePanel tilePanel = getPanel();
+        try {
+            // scale dependent layers and labels are tested at the scale of
+            // the image
+            LayerViewPanel panel = tilePanel.panel;
+            panel.getViewport().initialize(scale, new Point2D.Double(
+                    envelope.getMinX(), envelope.getMinY()));
+            Viewport viewport = new ImageViewport(panel);
+            List<Layer> layers = LabelRenderer.labelledLayers(panel, viewport);
+            if (!layers.isEmpty()) {
+                Graphics2D graphics = tilePanel.image.createGraphics();
+                graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                        RenderingHints.VALUE_ANTIALIAS_ON);
+                FontRenderContext frc = graphics.getFontRenderContext();
+                graphics.dispose();
+                final int[] count = new int[1];
+                LabelRenderer.placeLabels(layers, viewport, width, height,
+                        new LabelCache(), frc, (style, label) -> {
+                            double[] corners = label.getCorners();
+                            Envelope bounds = new Envelope(corners[0], corners[2], corners[1], corners[3]);
+                            bounds.expandToInclude(corners[4], corners[5]);
+                            bounds.expandToInclude(corners[6], corners[7]);
+                            index.insert(bounds, new PlacedLabel(count[0]++, style, label));
+                            return true;
+                        });
+            }
+        } finally {
+            panels.add(tilePanel);
+        }
+        index.build();
+        return index;
+    }
+
+    /**
+     * @return the labels crossing the tile whose upper left corner is (x, y)
+     * in image coordinates, in the order they have been placed
+     */
+    private List<PlacedLabel> getLabels(int x, int y) {
+        List<PlacedLabel> tileLabels = new ArrayList<>();
+        for (Object label : labels.query(new Envelope(x - LABEL_MARGIN, x + TILE_SIZE + LABEL_MARGIN,
+                y - LABEL_MARGIN, y + TILE_SIZE + LABEL_MARGIN))) {
+            tileLabels.add((PlacedLabel) label);
+        }
+        tileLabels.sort(Comparator.comparingInt(label -> label.order));
+        return tileLabels;
+    }
+
+    /**
+     * Releases the panels used to render the image.
+     */
+    public void dispose() {
+        TilePanel panel;
+        while ((panel = allPanels.poll()) != null) panel.panel.dispose();
+        panels.clear();
+        synchronized (this) {
+            strips.clear();
+            labels = null;
+        }
+    }
+
+    /**
+     * A label of the image.
+     */
+    private static final class PlacedLabel {
+        final int order;
+        final LabelStyle style;
+        final LabelStyle.Label label;
+
+        PlacedLabel(int order, LabelStyle style, LabelStyle.Label label) {
+            this.order = order;
+            this.style = style;
+            this.label = label;
+        }
+    }
+
+    /**
+     * The viewport of the whole image, used to place labels.
+     */
+    private final class ImageViewport extends Viewport {
+
+        private final AffineTransform modelToViewTransform;
+
+        ImageViewport(LayerViewPanel panel) {
+            super(panel);
+            Point2D origin = new Point2D.Double(envelope.getMinX(), envelope.getMinY());
+            initialize(scale, origin);
+            modelToViewTransform = modelToViewTransform(scale, origin, height);
+        }
+
+        public AffineTransform getModelToViewTransform() {
+            return modelToViewTransform;
+        }
+
+        public Envelope getEnvelopeInModelCoordinates() {
+            return new Envelope(envelope);
+        }
+    }
+
+    /**
+     * Draws the labels of the image crossing a tile.
+     */
+    private final class TileLabelRenderer extends ImageCachingRenderer {
+
+        private final TilePanel tilePanel;
+
+        TileLabelRenderer(TilePanel tilePanel) {
+            super(LabelRenderer.CONTENT_ID, tilePanel.panel);
+            this.tilePanel = tilePanel;
+        }
+
+        protected void renderHook(ThreadSafeImage image) throws Exception {
+            final int x = tilePanel.x;
+            final int y = tilePanel.y;
+            final List<PlacedLabel> tileLabels = getLabels(x, y);
+            if (tileLabels.isEmpty()) {
+                return;
+            }
+            image.draw(g -> {
+                AffineTransform transform = g.getTransform();
+                g.translate(-x, -y);
+                for (PlacedLabel label : tileLabels) {
+                    // a style keeps the state of the graphics it paints on
+                    synchronized (label.style) {
+                        label.style.paint(g, label.label);
+                    }
+                }
+                g.setTransform(transform);
+            });
+        }
+    }
+
+    /**
+     * An off-screen panel rendering tiles, one at a time.
+     */
+    private final class TilePanel {
+
+        // false until the panel renders the labels of the image
+        volatile boolean ready = false;
+        final Throwable[] throwable = new Throwable[] { null };
+        // the upper left corner of the tile being rendered, in the image
+        volatile int x;
+        volatile int y;
+        final Semaphore done = new Semaphore(0);
+        final BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        final LayerViewPanel panel = new LayerViewPanel(layerManager, new LayerViewPanelContext() {
+            public void setStatusMessage(String message) {
+            }
+
+            public void warnUser(String warning) {
+            }
+
+            public void handleThrowable(Throwable t) {
+                throwable[0] = t;
+            }
+        }) {
+            // the panel renders the tiles asked for only : it is repainted
+            // by its constructor, before the renderer of the labels of the
+            // image replaces its own, and layer events would render it
+            // from the event thread while a tile is rendered
+            public void repaint() {
+                if (ready) {
+                    super.repaint();
+                }
+            }
+
+            public void layerChanged(LayerEvent e) {
+            }
+        };
+
+        TilePanel() {
+            // the panel would update its viewport on the event thread once
+            // resized, possibly while a tile is being rendered
+            for (ComponentListener listener : panel.getComponentListeners()) {
+                panel.removeComponentListener(listener);
+            }
+            panel.setSize(TILE_SIZE, TILE_SIZE);
+            // all the renderers run in the default queue, which releases done
+            // when they are finished
+            panel.getRenderingManager().setRenderingMode(done::release,
+                    RenderingManager.SINGLE_THREAD_QUEUE);
+            // the labels placed over the whole image replace the labels of
+            // the panel, which would be cut at the edges of the tile
+            panel.getRenderingManager().putAboveLayerables(LabelRenderer.CONTENT_ID,
+                    () -> new TileLabelRenderer(this));
+            ready = true;
+        }
+
+        /**
+         * @return the tile (tileX, tileY) of the image
+         */
+        BufferedImage render(int tileX, int tileY) throws Exception {
+            x = tileX * TILE_SIZE;
+            y = tileY * TILE_SIZE;
+            // the panel may have failed on the previous tile
+            throwable[0] = null;
+            done.drainPermits();
+            Viewport viewport = panel.getViewport();
+            viewport.initialize(scale, new Point2D.Double(envelope.getMinX() + x / scale,
+                    envelope.getMaxY() - (y + TILE_SIZE) / scale));
+            // updating the viewport renders all the layers
+            viewport.update();
+            done.acquire();
+            if (throwable[0] != null) {
+                throw throwable[0] instanceof Exception ? (Exception) throwable[0]
+                        : new Exception(throwable[0].getMessage());
+            }
+            Graphics2D graphics = image.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                    RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.setColor(Color.white);
+            graphics.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+            panel.getRenderingManager().copyTo(graphics);
+            graphics.dispose();
+            return image;
+        }
+    }
+}
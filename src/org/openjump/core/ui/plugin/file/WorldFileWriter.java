@@ -16,14 +16,23 @@ public class WorldFileWriter {
     	
     	if ((panel == null)||  (imageFile == null))
     		throw new NullPointerException("WorldFileWriter");
- 
+
+        Viewport viewport = panel.getViewport();
+        writeWorldFile(imageFile, viewport.getEnvelopeInModelCoordinates(),
+                viewport.getScale());
+    }
+
+    /**
+     * @param vpEnvelope the envelope of the image, in model coordinates
+     * @param scale the number of pixels per model unit
+     */
+    public static void writeWorldFile(File imageFile, Envelope vpEnvelope, double scale)
+            throws IOException {
+
         double xrot = 0d; // rotation about y-axis  - always 0
         double yrot = 0d; // rotation about x-axis  - always 0
  
-        Viewport viewport = panel.getViewport();
-        Envelope vpEnvelope = viewport.getEnvelopeInModelCoordinates();
-        
-        double view_res = 1 / viewport.getScale(); //panel resolution
+        double view_res = 1 / scale; //panel resolution
         double xres = view_res;   // pixel size in the x-direction in map units/pixel
         double yres = -view_res;  // pixel size in the y-direction in map units, almost always negative
         double halfPixel = 0.5 * view_res;
@@ -42,7 +51,9 @@ public class WorldFileWriter {
     	try {
     		String imagePath = imageFile.getCanonicalPath();
     		int dotPos = imagePath.lastIndexOf(".");
-    		String worldExtention = (imagePath.substring(dotPos).equalsIgnoreCase(".jpg")) ? ".jgw" : ".pgw";
+    		String extension = imagePath.substring(dotPos);
+    		String worldExtention = extension.equalsIgnoreCase(".jpg") ? ".jgw" :
+    		        extension.equalsIgnoreCase(".tif") ? ".tfw" : ".pgw";
     		String worldPath = imagePath.substring(0, dotPos) + worldExtention;
     		
     		outputStream = new PrintWriter(new FileWriter(worldPath));
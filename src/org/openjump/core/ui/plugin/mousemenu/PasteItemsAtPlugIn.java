@@ -19,6 +19,7 @@ import org.locationtech.jts.geom.Geometry;
 import com.vividsolutions.jump.I18N;
 import com.vividsolutions.jump.feature.Feature;
 import com.vividsolutions.jump.geom.CoordUtil;
+import com.vividsolutions.jump.geom.GeometryStoragePolicy;
 import com.vividsolutions.jump.io.WKTReader;
 import com.vividsolutions.jump.workbench.WorkbenchContext;
 import com.vividsolutions.jump.workbench.model.Layer;
@@ -102,6 +103,7 @@ public class PasteItemsAtPlugIn extends PasteItemsPlugIn {
   private void moveAll(Collection featureCopies, Coordinate displacement) {
     for (Iterator j = featureCopies.iterator(); j.hasNext();) {
       Feature item = (Feature) j.next();
+      item.setGeometry(GeometryStoragePolicy.editableCopy(item.getGeometry()));
       move(item.getGeometry(), displacement);
       item.getGeometry().geometryChanged();
     }
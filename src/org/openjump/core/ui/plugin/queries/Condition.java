@@ -3,9 +3,13 @@ package org.openjump.core.ui.plugin.queries;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 import org.locationtech.jts.index.strtree.STRtree;
+import com.vividsolutions.jump.feature.AttributeIndex;
 import com.vividsolutions.jump.feature.Feature;
 import com.vividsolutions.jump.feature.FeatureCollection;
+import com.vividsolutions.jump.feature.FeatureSchema;
 import com.vividsolutions.jump.util.FlexibleDateParser;
 import com.vividsolutions.jump.workbench.model.Layer;
 import com.vividsolutions.jump.workbench.plugin.PlugInContext;
@@ -13,12 +17,22 @@ import com.vividsolutions.jump.workbench.plugin.PlugInContext;
 import java.math.BigDecimal;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoublePredicate;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.UnaryOperator;
 import java.util.regex.Pattern;
 
 /**
  * Condition
  * @author Michael MICHAUD
- * @version 0.4.0
+ * @version 0.5.0
+ * version 0.5.0 (2026-10-19)
+ *     conditions are compiled once per schema (constant values parsed,
+ *     attribute index resolved, operators and functions chosen, spatial
+ *     targets indexed and prepared) and can be evaluated from several
+ *     threads
  * version 0.4.0 (2016-10-26)
  *     big optimization for spatial queries
  * version 0.3.0 (2013-06-28)
@@ -48,372 +62,496 @@ public class Condition  {
     };
 
     private static final FlexibleDateParser FLEXIBLE_DATE_PARSER = new FlexibleDateParser();
-    
+
+    // operators which can use a spatial index on the target geometries
+    private static final List<Operator> INDEXED_OPERATORS = Arrays.asList(
+            Operator.INTER, Operator.CONTA, Operator.WITHI, Operator.WSTRI,
+            Operator.WDIST, Operator.TOUCH, Operator.CROSS, Operator.OVERL,
+            Operator.INTIP, Operator.IPINT);
+
+    /**
+     * A Condition compiled for a FeatureSchema. Compiled conditions are
+     * immutable and can be evaluated concurrently.
+     */
+    public interface CompiledCondition {
+        boolean test(Feature feature) throws Exception;
+    }
+
     private QueryDialog query;
     private Function ft;
     private Operator op;
     private Pattern pattern;   // only used for match & find functions
     private PlugInContext context;
-    private Map<String,STRtree> spatialIndices;
+
+    // user input, read and parsed once
+    private final String attribute;
+    private final char attributeType;
+    private final boolean caseSensitive;
+    private final int valueIndex;
+    private final String value;
+    private final String upperCaseValue;
+    private final boolean blankValue;
+    private final Double numericValue;
+    private final Date dateValue;
+    private final double distance;
+    private final String relatePattern;
+
+    // spatial targets, computed on first compilation
+    private List<TargetSet> targets;
+
+    // compiled conditions by schema, for #test(Feature)
+    private final Map<FeatureSchema,CompiledCondition> compiled = new IdentityHashMap<>();
     
      public Condition(QueryDialog query, PlugInContext context) {
         this.query = query;
         this.ft=query.function;
         this.op=query.operator;
+        this.context = context;
+        this.attribute = query.attribute;
+        this.attributeType = query.attributeType;
+        this.caseSensitive = query.caseSensitive.getState();
+        this.valueIndex = query.valueCB.getSelectedIndex();
+        Object selectedValue = query.valueCB.getSelectedValue();
+        this.value = selectedValue instanceof String ? (String)selectedValue : null;
+        this.upperCaseValue = value == null ? null : value.toUpperCase();
+        this.blankValue = selectedValue == null || selectedValue.toString().trim().length()==0;
         if (op==Operator.MATC || op==Operator.FIND) {
-            if (query.caseSensitive.getState())
-                pattern = Pattern.compile((String)query.valueCB.getSelectedValue());
+            if (caseSensitive)
+                pattern = Pattern.compile(value);
             else 
-                pattern = Pattern.compile((String)query.valueCB.getSelectedValue(), Pattern.CASE_INSENSITIVE);
+                pattern = Pattern.compile(value, Pattern.CASE_INSENSITIVE);
         }
-        if (op.type == 'G') spatialIndices = new HashMap<>();
-        this.context = context;
+        Double number = null;
+        try {number = Double.parseDouble(value);}
+        catch(Exception e) {}
+        this.numericValue = number;
+        this.dateValue = value == null ? null : parseDate(value);
+        this.distance = op == Operator.WDIST ? Double.parseDouble(op.arg.toString()) : 0;
+        this.relatePattern = op.arg == null ? null : op.arg.toString();
+    }
+
+    private static Date parseDate(String value) {
+        Date date = null;
+        for (SimpleDateFormat sdf : DATE_PARSERS) {
+            try {date = ((SimpleDateFormat)sdf.clone()).parse(value);}
+            catch(Exception e){}
+            if (date != null) break;
+        }
+        if (date == null) {
+            try {date = FLEXIBLE_DATE_PARSER.parse(value, true);}
+            catch(Exception e){}
+        }
+        return date;
     }
     
     public String toString() {
-        String att = query.attribute.trim().equals("")?"GEOMETRY":query.attribute;
+        String att = attribute.trim().equals("")?"GEOMETRY":attribute;
         String func = ft.toString().trim().equals("")?"":"."+ft;
         return "" + att + func + " " + op + " \"" +
                query.valueCB.getSelectedValue() + "\"";
     }
-    
+
+    /**
+     * Tests a single feature. To test many features, compile the condition
+     * once with {@link #compile(FeatureSchema)}.
+     */
     public boolean test(Feature feature) throws Exception {
-        Object o;
-        if(query.attributeType=='G') {
-            o = feature.getGeometry();
-            if(ft.type=='G') return test(gfunction((Geometry)o));
-            else if(ft.type=='N') return test(nfunction((Geometry)o));
-            else if(ft.type=='B') return test(bfunction((Geometry)o));
-            else return false;
+        CompiledCondition condition;
+        synchronized (compiled) {
+            condition = compiled.get(feature.getSchema());
+            if (condition == null) {
+                condition = compile(feature.getSchema());
+                compiled.put(feature.getSchema(), condition);
+            }
         }
-        else {
-            // attributes which does not exist for this feature must have
-            // been eliminated before the test procedure
-            // (see QueryDialog#executeQuery())
-            o = feature.getAttribute(query.attribute);
-            // [mmichaud 2010-01-25] added null case processing
-            if (ft == Function.ISNULL) return test(o==null);
-            if (o == null) {
-                // Here, we assume that the user consider "null" different from
-                // any user input in the value combobox except 
-                if (op == Operator.NE || op == Operator.BNE || op == Operator.DIFF) {
-                    if (query.valueCB.getSelectedValue().toString().trim().length()==0) {
-                        return false;
-                    }
-                    else return true;
-                }
-                if (op == Operator.EQ || op == Operator.BEQ || op == Operator.EQUA) {
-                    if (query.valueCB.getSelectedValue().toString().trim().length()==0) {
-                        return true;
-                    }
-                    else return false;
-                }
-                // Here, we assume that user would like to have
-                // true for name = "" if name = null
-                // true for name <> "A" if name = null
-                if(ft.type == 'S') return test(sfunction(""));
-                else if(ft.type == 'N') return test(nfunction(""));
+        return condition.test(feature);
+    }
+
+    /**
+     * Compiles this condition for features of the given schema : the
+     * attribute index is resolved and the functions and the comparison
+     * chosen once, so that testing a feature only depends on the type of
+     * its value. Features whose schema does not contain the attribute
+     * must have been eliminated before (see QueryDialog#executeQuery()).
+     */
+    public CompiledCondition compile(FeatureSchema schema) {
+        if(attributeType=='G') {
+            if(ft.type=='G') {
+                final UnaryOperator<Geometry> function = geometryFunction();
+                final SpatialTest test = spatialTest();
+                return feature -> test.test(function.apply(feature.getGeometry()));
             }
-            if(o instanceof Boolean) return test(((Boolean)o).booleanValue());
-            else if(o instanceof Integer) return test(((Integer)o).doubleValue());
-            else if(o instanceof Long) return test(((Long)o).doubleValue());
-            else if(o instanceof Double) return test(((Double)o).doubleValue());
-            else if(o instanceof BigDecimal) return test(((BigDecimal)o).doubleValue());
-            else if(o instanceof Date) return test(dfunction((Date)o));
-            else if(o instanceof String && ft.type == 'S') return test(sfunction((String)o));
-            else if(o instanceof String && ft.type == 'N') return test(nfunction((String)o));
+            else if(ft.type=='N') {
+                final ToDoubleFunction<Geometry> function = geometryToNumberFunction();
+                final DoublePredicate test = numericTest();
+                return feature -> test.test(function.applyAsDouble(feature.getGeometry()));
+            }
+            else if(ft.type=='B') {
+                final Predicate<Geometry> function = geometryToBooleanFunction();
+                final Predicate<Boolean> test = booleanTest();
+                return feature -> test.test(function.test(feature.getGeometry()));
+            }
+            else return feature -> false;
+        }
+        final int index = schema.getAttributeIndex(attribute);
+        final Predicate<Boolean> booleanTest = booleanTest();
+        // [mmichaud 2010-01-25] added null case processing
+        if (ft == Function.ISNULL) return feature -> booleanTest.test(feature.getAttribute(index)==null);
+        final DoublePredicate numericTest = numericTest();
+        final Predicate<Date> dateTest = dateTest();
+        final UnaryOperator<Date> dateFunction = dateFunction();
+        // strings are compared, or measured by a numeric function
+        final Predicate<String> stringTest;
+        if (ft.type == 'S') {
+            final UnaryOperator<String> function = stringFunction();
+            final Predicate<String> test = stringTest();
+            stringTest = string -> test.test(function.apply(string));
+        }
+        else if (ft.type == 'N') {
+            final ToDoubleFunction<String> function = stringToNumberFunction();
+            stringTest = string -> numericTest.test(function.applyAsDouble(string));
+        }
+        else stringTest = string -> false;
+        final BooleanSupplier nullTest = nullTest(stringTest);
+        return feature -> {
+            Object o = feature.getAttribute(index);
+            if (o == null) return nullTest.getAsBoolean();
+            if(o instanceof Boolean) return booleanTest.test((Boolean)o);
+            else if(o instanceof Integer) return numericTest.test(((Integer)o).doubleValue());
+            else if(o instanceof Long) return numericTest.test(((Long)o).doubleValue());
+            else if(o instanceof Double) return numericTest.test(((Double)o).doubleValue());
+            else if(o instanceof BigDecimal) return numericTest.test(((BigDecimal)o).doubleValue());
+            else if(o instanceof Date) return dateTest.test(dateFunction.apply((Date)o));
+            else if(o instanceof String) return stringTest.test((String)o);
             else return false;
+        };
+    }
+
+    /**
+     * @return the result of the test of a null attribute value
+     */
+    private BooleanSupplier nullTest(final Predicate<String> stringTest) {
+        // Here, we assume that the user consider "null" different from
+        // any user input in the value combobox except
+        final boolean blank = blankValue;
+        if (op == Operator.NE || op == Operator.BNE || op == Operator.DIFF) {
+            return () -> !blank;
+        }
+        if (op == Operator.EQ || op == Operator.BEQ || op == Operator.EQUA) {
+            return () -> blank;
         }
+        // Here, we assume that user would like to have
+        // true for name = "" if name = null
+        // true for name <> "A" if name = null
+        if (ft.type == 'S' || ft.type == 'N') return () -> stringTest.test("");
+        return () -> false;
     }
     
-    private boolean test(boolean b) throws Exception {
-        boolean value = query.valueCB.getSelectedIndex()==0;
-        if (b==value && op==Operator.BEQ) return true;
-        else if (b!=value && op==Operator.BNE) return true;
-        else return false;
+    /**
+     * Returns the features of index which may satisfy this condition, or
+     * null if the index cannot be used for this condition. The returned
+     * features must still be tested.
+     */
+    public List<Feature> candidates(AttributeIndex index) {
+        if (attributeType == 'G' || blankValue) return null;
+        List<Feature> candidates = null;
+        if ((ft == Function.NNOF && numericValue != null) ||
+                (ft == Function.DNOF && dateValue != null)) {
+            if (!index.isNumeric()) return null;
+            Double v = ft == Function.NNOF ? numericValue : (double)dateValue.getTime();
+            if (op == Operator.EQ) return index.query(v);
+            else if (op == Operator.LT) candidates = index.queryRange(null, false, v, false);
+            else if (op == Operator.LE) candidates = index.queryRange(null, false, v, true);
+            else if (op == Operator.GT) candidates = index.queryRange(v, false, null, false);
+            else if (op == Operator.GE) candidates = index.queryRange(v, true, null, false);
+        }
+        else if (ft == Function.SNOF && caseSensitive) {
+            if (!index.isString()) return null;
+            if (op == Operator.EQUA) return index.query(value);
+            else if (op == Operator.STAR) return index.queryPrefix(value);
+            else if (op == Operator.BEFO) candidates = index.queryRange(null, false, value, true);
+            else if (op == Operator.AFTE) candidates = index.queryRange(value, true, null, false);
+        }
+        // null values are tested as 0 or as an empty string
+        if (candidates != null) candidates.addAll(index.query(null));
+        return candidates;
     }
-    
-    private boolean test(double d) throws Exception {
-        double value = Double.parseDouble((String)query.valueCB.getSelectedValue());
-        if (op==Operator.EQ && d==value) return true;
-        else if (op==Operator.NE && d!=value) return true;
-        else if (op==Operator.LT && d<value) return true;
-        else if (op==Operator.GT && d>value) return true;
-        else if (op==Operator.LE && d<=value) return true;
-        else if (op==Operator.GE && d>=value) return true;
-        else return false;
+
+    private Predicate<Boolean> booleanTest() {
+        final boolean value = valueIndex==0;
+        if (op==Operator.BEQ) return b -> b==value;
+        else if (op==Operator.BNE) return b -> b!=value;
+        else return b -> false;
     }
     
-    private boolean test(Date d) throws Exception {
-        Date value = null;
-        for (SimpleDateFormat sdf : DATE_PARSERS) {
-            try {value = sdf.parse((String)query.valueCB.getSelectedValue());}
-            catch(Exception e){}
-            if (value != null) break;
+    private DoublePredicate numericTest() {
+        if (numericValue == null) {
+            // the user input is not a number : the test fails on the first
+            // numeric value, as the user has to be told
+            final String input = value;
+            return d -> {
+                throw new NumberFormatException("For input string: \"" + input + "\"");
+            };
         }
-        if (value == null) {
-            try {value = FLEXIBLE_DATE_PARSER.parse((String)query.valueCB.getSelectedValue(), true);}
-            catch(Exception e){}
-        }
-        if (op==Operator.EQ && d==value) return true;
-        else if (op==Operator.NE && d!=value) return true;
-        else if (op==Operator.EQ && d.equals(value)) return true;
-        else if (op==Operator.NE && !d.equals(value)) return true;
-        else if (op==Operator.LT && d.before(value)) return true;
-        else if (op==Operator.GT && d.after(value)) return true;
-        else if (op==Operator.LE && (d.before(value) || d.equals(value))) return true;
-        else if (op==Operator.GE && (d.after(value) || d.equals(value))) return true;
-        else return false;
+        final double value = numericValue;
+        if (op==Operator.EQ) return d -> d==value;
+        else if (op==Operator.NE) return d -> d!=value;
+        else if (op==Operator.LT) return d -> d<value;
+        else if (op==Operator.GT) return d -> d>value;
+        else if (op==Operator.LE) return d -> d<=value;
+        else if (op==Operator.GE) return d -> d>=value;
+        else return d -> false;
     }
     
-    private boolean test(String s) throws Exception {
-        String value = (String)query.valueCB.getSelectedValue();
-        if (query.caseSensitive.getState()) {
-            if (op==Operator.EQUA) return s.equals(value);
-            else if (op==Operator.DIFF) return !s.equals(value);
-            else if (op==Operator.STAR) return s.startsWith(value);
-            else if (op==Operator.ENDS) return s.endsWith(value);
-            else if (op==Operator.MATC) return pattern.matcher(s).matches();
-            else if (op==Operator.FIND) return pattern.matcher(s).find();
-            else if (op==Operator.BEFO) return s.compareTo(value)<=0;
-            else if (op==Operator.AFTE) return s.compareTo(value)>=0;
-            else return false;
+    private Predicate<Date> dateTest() {
+        final Date value = dateValue;
+        // the user input is not a date
+        if (value == null) return d -> false;
+        if (op==Operator.EQ) return d -> d.equals(value);
+        else if (op==Operator.NE) return d -> !d.equals(value);
+        else if (op==Operator.LT) return d -> d.before(value);
+        else if (op==Operator.GT) return d -> d.after(value);
+        else if (op==Operator.LE) return d -> !d.after(value);
+        else if (op==Operator.GE) return d -> !d.before(value);
+        else return d -> false;
+    }
+    
+    private Predicate<String> stringTest() {
+        final String value = this.value;
+        final Pattern pattern = this.pattern;
+        if (op==Operator.MATC) return s -> pattern.matcher(s).matches();
+        else if (op==Operator.FIND) return s -> pattern.matcher(s).find();
+        if (caseSensitive) {
+            if (op==Operator.EQUA) return s -> s.equals(value);
+            else if (op==Operator.DIFF) return s -> !s.equals(value);
+            else if (op==Operator.STAR) return s -> s.startsWith(value);
+            else if (op==Operator.ENDS) return s -> s.endsWith(value);
+            else if (op==Operator.BEFO) return s -> s.compareTo(value)<=0;
+            else if (op==Operator.AFTE) return s -> s.compareTo(value)>=0;
+            else return s -> false;
         }
         else {
-            if (op==Operator.EQUA) return s.equalsIgnoreCase(value);
-            else if (op==Operator.DIFF) return !s.equalsIgnoreCase(value);
-            else if (op==Operator.STAR) return s.toUpperCase().startsWith(value.toUpperCase());
-            else if (op==Operator.ENDS) return s.toUpperCase().endsWith(value.toUpperCase());
-            else if (op==Operator.MATC) return pattern.matcher(s).matches();
-            else if (op==Operator.FIND) return pattern.matcher(s).find();
-            else if (op==Operator.BEFO) return s.compareToIgnoreCase(value)<=0;
-            else if (op==Operator.AFTE) return s.compareToIgnoreCase(value)>=0;
-            else return false;
+            final String upperCaseValue = this.upperCaseValue;
+            if (op==Operator.EQUA) return s -> s.equalsIgnoreCase(value);
+            else if (op==Operator.DIFF) return s -> !s.equalsIgnoreCase(value);
+            else if (op==Operator.STAR) return s -> s.toUpperCase().startsWith(upperCaseValue);
+            else if (op==Operator.ENDS) return s -> s.toUpperCase().endsWith(upperCaseValue);
+            else if (op==Operator.BEFO) return s -> s.compareToIgnoreCase(value)<=0;
+            else if (op==Operator.AFTE) return s -> s.compareToIgnoreCase(value)>=0;
+            else return s -> false;
         }
     }
-    
-    private boolean test(Geometry g) throws Exception {
-        int pos = query.valueCB.getSelectedIndex();
-        // Target Geometry is the selection
-        // System.out.println("position de la valeur selectionnee : " + pos);
-        // pos 1 = selected features case
-        if (pos == QueryDialog.SELECTION) {
-            // [mmichaud 2016] optimization with spatial index
-            Collection candidates = candidates(g, "$SELECTION", query.selection);
-            for (Iterator it = candidates.iterator() ; it.hasNext() ;) {
-                Geometry p = (Geometry)it.next();
-                if (op==Operator.INTER && g.intersects(p)) return true;
-                else if (op==Operator.CONTA && g.contains(p)) return true;
-                else if (op==Operator.WITHI && g.within(p)) return true;
-                else if (op==Operator.WSTRI && g.relate(p, "TFF*FF***")) return true;
-                else if (op==Operator.WDIST && g.distance(p) < Double.parseDouble(op.arg.toString())) return true;
-                else if (op==Operator.TOUCH && g.touches(p)) return true;
-                else if (op==Operator.CROSS && g.crosses(p)) return true;
-                else if (op==Operator.OVERL && g.overlaps(p)) return true;
-                //else if (op==Operator.DISJO && g.disjoint(p)) return true;
-                else if (op==Operator.RELAT && g.relate(p, op.arg.toString())) return true;
-                else if (op==Operator.INTIP && g.intersects(p.getInteriorPoint())) return true;
-                else if (op==Operator.IPINT && g.getInteriorPoint().intersects(p)) return true;
-                else;
+
+    //**************************************************************************
+    // spatial tests
+    //**************************************************************************
+
+    private interface SpatialTest {
+        boolean test(Geometry g) throws Exception;
+    }
+
+    /**
+     * A spatial relation between a tested geometry and a target.
+     */
+    private interface TargetTest {
+        boolean test(Geometry g, Target target);
+    }
+
+    /**
+     * A target geometry, prepared on demand for the operators which can use
+     * a PreparedGeometry.
+     */
+    private static class Target {
+        final Geometry geometry;
+        private volatile PreparedGeometry prepared;
+        private volatile Geometry interiorPoint;
+        Target(Geometry geometry) {
+            this.geometry = geometry;
+        }
+        PreparedGeometry prepared() {
+            if (prepared == null) prepared = PreparedGeometryFactory.prepare(geometry);
+            return prepared;
+        }
+        Geometry interiorPoint() {
+            if (interiorPoint == null) interiorPoint = geometry.getInteriorPoint();
+            return interiorPoint;
+        }
+    }
+
+    /**
+     * The targets of one layer (or of the selection), with a spatial index
+     * if they are numerous.
+     */
+    private class TargetSet {
+        final List<Target> targets = new ArrayList<>();
+        STRtree index;
+        // the distance around tested geometries in which targets are looked for
+        final double margin = op == Operator.WDIST ? distance : 0;
+        void add(Geometry geometry) {
+            targets.add(new Target(geometry));
+        }
+        void buildIndex() {
+            if (targets.size() > 256 && INDEXED_OPERATORS.contains(op)) {
+                index = new STRtree();
+                for (Target target : targets) {
+                    index.insert(target.geometry.getEnvelopeInternal(), target);
+                }
+                // build now, the index is then queried concurrently
+                index.build();
             }
-            return false;
+        }
+        List<Target> candidates(Geometry g) {
+            if (index == null) return targets;
+            Envelope e = new Envelope(g.getEnvelopeInternal());
+            e.expandBy(margin);
+            return index.query(e);
+        }
+    }
+
+    private synchronized List<TargetSet> targets() {
+        if (targets != null) return targets;
+        targets = new ArrayList<>();
+        // pos 1 = selected features case
+        if (valueIndex == QueryDialog.SELECTION) {
+            TargetSet set = new TargetSet();
+            for (Object geometry : query.selection) set.add((Geometry)geometry);
+            targets.add(set);
         }
         // pos 2 = selected layers case
-        else if (pos == QueryDialog.SELECTED_LAYERS) {
-            Layer[] ll = context.getLayerNamePanel().getSelectedLayers();
-            for (int i = 0 ; i < ll.length ; i++) {
-                FeatureCollection fc = ll[i].getFeatureCollectionWrapper();
-                // [mmichaud 2016] optimization with spatial index
-                Collection candidates = candidates(g, ll[i].getName(), fc);
-                for (Iterator it = candidates.iterator() ; it.hasNext() ;) {
-                    Geometry p = ((Feature)it.next()).getGeometry();
-                    if (op==Operator.INTER && g.intersects(p)) return true;
-                    else if (op==Operator.CONTA && g.contains(p)) return true;
-                    else if (op==Operator.WITHI && g.within(p)) return true;
-                    else if (op==Operator.WSTRI && g.relate(p, "TFF*FF***")) return true;
-                    else if (op==Operator.WDIST && g.distance(p) < Double.parseDouble(op.arg.toString())) return true;
-                    else if (op==Operator.TOUCH && g.touches(p)) return true;
-                    else if (op==Operator.CROSS && g.crosses(p)) return true;
-                    else if (op==Operator.OVERL && g.overlaps(p)) return true;
-                    //else if (op==Operator.DISJO && g.disjoint(p)) return true;
-                    else if (op==Operator.RELAT && g.relate(p, op.arg.toString())) return true;
-                    else if (op==Operator.INTIP && g.intersects(p.getInteriorPoint())) return true;
-                    else if (op==Operator.IPINT && g.getInteriorPoint().intersects(p)) return true;
-                    else;
-                }
-                return false;
+        else if (valueIndex == QueryDialog.SELECTED_LAYERS) {
+            for (Layer layer : context.getLayerNamePanel().getSelectedLayers()) {
+                targets.add(targetSet(layer.getFeatureCollectionWrapper()));
             }
         }
         // pos 0 = all layers case
-        else if (pos == QueryDialog.ALL_LAYERS) {
-            List ll = context.getLayerManager().getLayers();
-            for (int i = 0 ; i < ll.size() ; i++) {
-                FeatureCollection fc = ((Layer)ll.get(i)).getFeatureCollectionWrapper();
-                // [mmichaud 2016] optimization with spatial index
-                Collection candidates = candidates(g, ((Layer)ll.get(i)).getName(), fc);
-                for (Iterator it = candidates.iterator() ; it.hasNext() ;) {
-                    Geometry p = ((Feature)it.next()).getGeometry();
-                    if (op==Operator.INTER && g.intersects(p)) return true;
-                    else if (op==Operator.CONTA && g.contains(p)) return true;
-                    else if (op==Operator.WITHI && g.within(p)) return true;
-                    else if (op==Operator.WSTRI && g.relate(p, "TFF*FF***")) return true;
-                    else if (op==Operator.WDIST && g.distance(p) < Double.parseDouble(op.arg.toString())) return true;
-                    else if (op==Operator.TOUCH && g.touches(p)) return true;
-                    else if (op==Operator.CROSS && g.crosses(p)) return true;
-                    else if (op==Operator.OVERL && g.overlaps(p)) return true;
-                    //else if (op==Operator.DISJO && g.disjoint(p)) return true;
-                    else if (op==Operator.RELAT && g.relate(p, op.arg.toString())) return true;
-                    else if (op==Operator.INTIP && g.intersects(p.getInteriorPoint())) return true;
-                    else if (op==Operator.IPINT && g.getInteriorPoint().intersects(p)) return true;
-                    else;
-                }
-                return false;
+        else if (valueIndex == QueryDialog.ALL_LAYERS) {
+            for (Layer layer : context.getLayerManager().getLayers()) {
+                targets.add(targetSet(layer.getFeatureCollectionWrapper()));
             }
         }
         else {
-            Layer layer = context.getLayerManager().getLayer((String)query.valueCB.getSelectedValue());
-            FeatureCollection fc = layer.getFeatureCollectionWrapper();
-            // [mmichaud 2016] optimization with spatial index
-            Collection candidates = candidates(g, layer.getName(), fc);
-            for (Iterator it = candidates.iterator() ; it.hasNext() ;) {
-                Geometry p = ((Feature)it.next()).getGeometry();
-                if (op==Operator.INTER && g.intersects(p)) return true;
-                else if (op==Operator.CONTA && g.contains(p)) return true;
-                else if (op==Operator.WITHI && g.within(p)) return true;
-                else if (op==Operator.WSTRI && g.relate(p, "TFF*FF***")) return true;
-                else if (op==Operator.WDIST && g.distance(p) < Double.parseDouble(op.arg.toString())) return true;
-                else if (op==Operator.TOUCH && g.touches(p)) return true;
-                else if (op==Operator.CROSS && g.crosses(p)) return true;
-                else if (op==Operator.OVERL && g.overlaps(p)) return true;
-                //else if (op==Operator.DISJO && g.disjoint(p)) return true;
-                else if (op==Operator.RELAT && g.relate(p, op.arg.toString())) return true;
-                else if (op==Operator.INTIP && g.intersects(p.getInteriorPoint())) return true;
-                else if (op==Operator.IPINT && g.getInteriorPoint().intersects(p)) return true;
-                else;
-            }
-            return false;
+            Layer layer = context.getLayerManager().getLayer(value);
+            targets.add(targetSet(layer.getFeatureCollectionWrapper()));
         }
-        return false;
+        for (TargetSet set : targets) set.buildIndex();
+        return targets;
     }
 
-    private STRtree createIndex(Collection geometries) {
-        STRtree index = new STRtree();
-        for (Object geometry : geometries) {
-            index.insert(((Geometry)geometry).getEnvelopeInternal(), geometry);
-        }
-        return index;
-    }
-
-    private STRtree createIndex(FeatureCollection fc) {
-        STRtree index = new STRtree();
-        for (Feature f : fc.getFeatures()) {
-            index.insert(f.getGeometry().getEnvelopeInternal(), f);
-        }
-        return index;
+    private TargetSet targetSet(FeatureCollection fc) {
+        TargetSet set = new TargetSet();
+        for (Feature f : fc.getFeatures()) set.add(f.getGeometry());
+        return set;
     }
 
-    private Collection candidates(Geometry g, String collectionName, Collection collection) {
-        if (collection.size() > 256 &&
-                Arrays.asList(Operator.INTER, Operator.CONTA, Operator.WITHI, Operator.WSTRI,
-                        Operator.WDIST, Operator.TOUCH, Operator.CROSS, Operator.OVERL,
-                        Operator.INTIP, Operator.IPINT).contains(op)) {
-            STRtree index = spatialIndices.get(collectionName);
-            if (index == null) {
-                index = createIndex(collection);
-                spatialIndices.put(collectionName, index);
+    private SpatialTest spatialTest() {
+        final List<TargetSet> targetSets = targets();
+        final TargetTest test = targetTest();
+        // the interior point is computed once per feature, not once per
+        // candidate, and candidates are looked for around it
+        final UnaryOperator<Geometry> tested = op == Operator.IPINT ?
+                Geometry::getInteriorPoint : UnaryOperator.identity();
+        return g -> {
+            Geometry t = tested.apply(g);
+            for (TargetSet set : targetSets) {
+                for (Target target : set.candidates(t)) {
+                    if (test.test(t, target)) return true;
+                }
             }
-            Envelope e = g.getEnvelopeInternal();
-            if (op == Operator.WDIST) e.expandBy(Double.parseDouble(op.arg.toString()));
-            return index.query(e);
-        } else {
-            return collection;
-        }
+            return false;
+        };
     }
 
-    private Collection candidates(Geometry g, String collectionName, FeatureCollection collection) {
-        if (collection.size() > 256 &&
-                Arrays.asList(Operator.INTER, Operator.CONTA, Operator.WITHI, Operator.WSTRI,
-                        Operator.WDIST, Operator.TOUCH, Operator.CROSS, Operator.OVERL,
-                        Operator.INTIP, Operator.IPINT).contains(op)) {
-            STRtree index = spatialIndices.get(collectionName);
-            if (index == null) {
-                index = createIndex(collection);
-                spatialIndices.put(collectionName, index);
-            }
-            Envelope e = g.getEnvelopeInternal();
-            if (op == Operator.WDIST) e.expandBy(Double.parseDouble(op.arg.toString()));
-            return index.query(e);
-        } else {
-            return collection.getFeatures();
-        }
+    private TargetTest targetTest() {
+        if (op==Operator.INTER) return (g, target) -> target.prepared().intersects(g);
+        else if (op==Operator.CONTA) return (g, target) -> g.contains(target.geometry);
+        else if (op==Operator.WITHI) return (g, target) -> target.prepared().contains(g);
+        else if (op==Operator.WSTRI) return (g, target) -> g.relate(target.geometry, "TFF*FF***");
+        else if (op==Operator.WDIST) return (g, target) -> g.isWithinDistance(target.geometry, distance);
+        else if (op==Operator.TOUCH) return (g, target) -> g.touches(target.geometry);
+        else if (op==Operator.CROSS) return (g, target) -> g.crosses(target.geometry);
+        else if (op==Operator.OVERL) return (g, target) -> g.overlaps(target.geometry);
+        else if (op==Operator.RELAT) return (g, target) -> g.relate(target.geometry, relatePattern);
+        else if (op==Operator.INTIP) return (g, target) -> g.intersects(target.interiorPoint());
+        // g is the interior point of the tested geometry
+        else if (op==Operator.IPINT) return (g, target) -> g.intersects(target.geometry);
+        else return (g, target) -> false;
     }
     
     //**************************************************************************
     // apply functions
     //**************************************************************************
     
-    private String sfunction(String s) {
-        if (ft==Function.SNOF) return s;
-        else if (ft==Function.TRIM) return s.trim();
+    private UnaryOperator<String> stringFunction() {
+        if (ft==Function.TRIM) return String::trim;
         else if (ft==Function.SUBS && ft.args.length==1) {
-            return s.substring(ft.args[0]);
+            final int begin = ft.args[0];
+            return s -> s.substring(begin);
         }
         else if (ft==Function.SUBS && ft.args.length==2) {
-            return s.substring(ft.args[0], ft.args[1]);
+            final int begin = ft.args[0];
+            final int end = ft.args[1];
+            return s -> s.substring(begin, end);
         }
-        else return s;
+        else return UnaryOperator.identity();
     }
     
-    private double nfunction(String s) {
-        if (ft==Function.LENG) return (double)s.length();
-        else return 0.0;
+    private ToDoubleFunction<String> stringToNumberFunction() {
+        if (ft==Function.LENG) return String::length;
+        else return s -> 0.0;
     }
     
-    private Geometry gfunction(Geometry g) {
-        if (ft==Function.GNOF) return g;
-        else if (ft==Function.CENT) return g.getInteriorPoint();
-        else if (ft==Function.BUFF) return g.buffer(ft.arg);
-        else return g;
+    private UnaryOperator<Geometry> geometryFunction() {
+        if (ft==Function.CENT) return Geometry::getInteriorPoint;
+        else if (ft==Function.BUFF) {
+            final double distance = ft.arg;
+            return g -> g.buffer(distance);
+        }
+        else return UnaryOperator.identity();
     }
     
-    private Date dfunction(Date d) {
-        if (ft==Function.DNOF) return d;
-        else if (ft==Function.DDAY || ft==Function.DYEA) {
-            Calendar cal = new GregorianCalendar();
-            cal.setTime(d);
-            Calendar rcal = new GregorianCalendar();
-            rcal.clear();
-            if (ft==Function.DDAY) {
+    private UnaryOperator<Date> dateFunction() {
+        if (ft==Function.DDAY) {
+            return d -> {
+                Calendar cal = new GregorianCalendar();
+                cal.setTime(d);
+                Calendar rcal = new GregorianCalendar();
+                rcal.clear();
                 rcal.set(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH), cal.get(Calendar.DAY_OF_MONTH));
-            }
-            else if (ft==Function.DYEA) {
+                return rcal.getTime();
+            };
+        }
+        else if (ft==Function.DYEA) {
+            return d -> {
+                Calendar cal = new GregorianCalendar();
+                cal.setTime(d);
+                Calendar rcal = new GregorianCalendar();
+                rcal.clear();
                 rcal.set(Calendar.YEAR, cal.get(Calendar.YEAR));
-            }
-            return rcal.getTime();
+                return rcal.getTime();
+            };
         }
-        else return d;
+        else return UnaryOperator.identity();
     }
     
-    private double nfunction(Geometry g) {
-        //System.out.println("numeric function");
-        if (ft==Function.LENG) return g.getLength();
-        else if (ft==Function.AREA) return g.getArea();
-        else if (ft==Function.NBPT) return (double)g.getNumPoints();
+    private ToDoubleFunction<Geometry> geometryToNumberFunction() {
+        if (ft==Function.LENG) return Geometry::getLength;
+        else if (ft==Function.AREA) return Geometry::getArea;
+        else if (ft==Function.NBPT) return Geometry::getNumPoints;
         else if (ft==Function.NBPA) {
-            if (g.isEmpty()) return 0;
-            else if (g instanceof GeometryCollection)
-                return ((GeometryCollection)g).getNumGeometries();
-            else return 1;
+            return g -> {
+                if (g.isEmpty()) return 0;
+                else if (g instanceof GeometryCollection) return g.getNumGeometries();
+                else return 1;
+            };
         }
-        else return 0.0;
+        else return g -> 0.0;
     }
     
-    private boolean bfunction(Geometry g) {
-        //System.out.println("boolean function");
-        if (ft==Function.EMPT) return g.isEmpty();
-        else if (ft==Function.SIMP) return g.isSimple();
-        else if (ft==Function.VALI) return g.isValid();
-        else return false;
+    private Predicate<Geometry> geometryToBooleanFunction() {
+        if (ft==Function.EMPT) return Geometry::isEmpty;
+        else if (ft==Function.SIMP) return Geometry::isSimple;
+        else if (ft==Function.VALI) return Geometry::isValid;
+        else return g -> false;
     }
 
 }
@@ -8,6 +8,7 @@ import buoy.widget.*;
 import com.vividsolutions.jump.I18N;
 import com.vividsolutions.jump.feature.*;
 import com.vividsolutions.jump.util.CollectionMap;
+import com.vividsolutions.jump.util.ParallelUtil;
 import com.vividsolutions.jump.workbench.model.*;
 import com.vividsolutions.jump.workbench.plugin.PlugInContext;
 import com.vividsolutions.jump.workbench.ui.*;
@@ -18,6 +19,7 @@ import java.awt.*;
 import java.io.*;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -911,6 +913,15 @@ public class QueryDialog extends BDialog {
                     // other cases : query the whole layer
                     else {
                         features = fc.getFeatures();
+                        // or only the candidates found in an attribute index
+                        if (attributeType != 'G') {
+                            AttributeIndex index = AttributeIndexManager.getIndex(layer, attribute);
+                            List<Feature> candidates = index == null ? null : condition.candidates(index);
+                            if (candidates != null) {
+                                total -= features.size() - candidates.size();
+                                features = candidates;
+                            }
+                        }
                     }
                     // initialize a new dataset
                     progressBarTitle.setText(layer.getName());
@@ -929,24 +940,30 @@ public class QueryDialog extends BDialog {
                     if (total > 1000) mod = 10;
                     if (total > 33000) mod = 100;
                     if (total > 1000000) mod = 1000;
+                    final int progressMod = mod;
+                    final int progressTotal = total;
+                    // features are tested in parallel by a condition compiled
+                    // once for the layer schema
+                    final Condition.CompiledCondition compiled =
+                            condition.compile(fc.getFeatureSchema());
+                    final AtomicInteger counter = new AtomicInteger(count);
                     try {
-                        for (Feature feature : features) {
-                            count++;
-                            if (count%mod==0) {
-                                progressBar.setProgressText(""+count+"/"+total);
-                                progressBar.setValue(count);
+                        okFeatures = ParallelUtil.filter(new ArrayList<>(features), 1024, feature -> {
+                            if (cancelQuery) return false;
+                            int c = counter.incrementAndGet();
+                            if (c%progressMod==0) {
+                                progressBar.setProgressText(""+c+"/"+progressTotal);
+                                progressBar.setValue(c);
                             }
-                            if (condition.test(feature)) {
-                                okFeatures.add(feature);
-                                featuresfound++;
-                            }
-                            Thread.yield();
-                            if (cancelQuery) break;
-                        }
+                            return compiled.test(feature);
+                        });
+                        count = counter.get();
+                        featuresfound += okFeatures.size();
                         progressBar.setProgressText(""+count+"/"+total);
                         progressBar.setValue(count);
                     }
                     catch(Exception e) {
+                        count = counter.get();
                         context.getErrorHandler().handleThrowable(e);
                     }
                     if (cancelQuery) break;
@@ -43,6 +43,7 @@ import java.util.*;
 import java.util.Collection;
 
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
@@ -63,6 +64,7 @@ import org.locationtech.jts.geom.GeometryFactory;
 import com.vividsolutions.jump.I18N;
 import com.vividsolutions.jump.feature.*;
 import com.vividsolutions.jump.task.TaskMonitor;
+import com.vividsolutions.jump.util.ParallelUtil;
 import com.vividsolutions.jump.util.StringUtil;
 import com.vividsolutions.jump.workbench.model.FeatureEventType;
 import com.vividsolutions.jump.workbench.model.Layer;
@@ -240,7 +242,7 @@ public class BeanshellAttributeCalculatorPlugIn extends ThreadedBasePlugIn
         
     }
     
-    public void run(TaskMonitor monitor, PlugInContext context) throws Exception {
+    public void run(final TaskMonitor monitor, PlugInContext context) throws Exception {
         monitor.allowCancellationRequests();
         monitor.report(COMPUTING_NEW_ATTRIBUTE + "...");
         
@@ -253,32 +255,36 @@ public class BeanshellAttributeCalculatorPlugIn extends ThreadedBasePlugIn
                 .createOperation(new_attribute_type, bsh_expression);
         
         // Schema of the new layer
-        FeatureSchema dfs = (FeatureSchema)fs.clone();
+        final FeatureSchema dfs = (FeatureSchema)fs.clone();
         dfs.addAttribute(new_attribute_name, new_attribute_type);
         if (dynamic) {
             dfs.setOperation(dfs.getAttributeCount()-1, operation);
             dfs.setAttributeReadOnly(dfs.getAttributeCount()-1, true);
         }
-        FeatureCollection result = new FeatureDataset(dfs);
-        int errors = 0;
-        EvalError evalError = null;
-        for (Iterator it = fc.iterator() ; it.hasNext() ; ) {
-            try {
-                Feature oldFeature = (Feature)it.next();
+        // features are computed in parallel, each thread evaluating the
+        // expression with its own interpreter
+        final List<Feature> features = fc.getFeatures();
+        final Feature[] newFeatures = new Feature[features.size()];
+        final AtomicInteger count = new AtomicInteger();
+        ParallelUtil.processRanges(features.size(), 256, (from, to) -> {
+            for (int j = from ; j < to ; j++) {
+                if (monitor.isCancelRequested()) return;
+                Feature oldFeature = features.get(j);
                 Feature newFeature = new BasicFeature(dfs);
                 for (int i = 0 ; i < fs.getAttributeCount() ; i++) {
-                    newFeature.setAttribute(fs.getAttributeName(i), oldFeature.getAttribute(i));
+                    newFeature.setAttribute(i, oldFeature.getAttribute(i));
                 }
                 // values are added if the new attribue is not dynamic
                 // otherwise, values are evaluated as needed
-                if (!dynamic) newFeature.setAttribute(new_attribute_name, 
-                    operation.evaluate((BasicFeature)oldFeature));
-                result.add(newFeature);
-            } 
-            catch(EvalError e) {
-                throw e;
+                if (!dynamic) newFeature.setAttribute(dfs.getAttributeCount()-1,
+                    operation.evaluate((AbstractBasicFeature)oldFeature));
+                newFeatures[j] = newFeature;
             }
-        }
+            monitor.report(count.addAndGet(to - from), features.size(), COMPUTING_NEW_ATTRIBUTE);
+        });
+        if (monitor.isCancelRequested()) return;
+        FeatureCollection result = new FeatureDataset(dfs);
+        result.addAll(Arrays.asList(newFeatures));
         context.getLayerManager().addLayer(StandardCategoryNames.RESULT, 
                 layer.getName() + "_" + new_attribute_name, result);
     }
@@ -321,7 +327,7 @@ public class BeanshellAttributeCalculatorPlugIn extends ThreadedBasePlugIn
                 .createOperation(new_attribute_type, tmp_bsh_expression);
             int count = 0;
             for (Iterator it = fc.iterator() ; it.hasNext() ; ) {
-                BasicFeature old = (BasicFeature)it.next();
+                AbstractBasicFeature old = (AbstractBasicFeature)it.next();
                 operation.evaluate(old);
                 if (count++ > 6) break;
             }
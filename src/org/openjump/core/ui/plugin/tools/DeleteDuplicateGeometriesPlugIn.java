@@ -27,20 +27,16 @@
  */
 package org.openjump.core.ui.plugin.tools;
 
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Set;
 
 import javax.swing.JMenuItem;
 
-import org.locationtech.jts.geom.Envelope;
 import com.vividsolutions.jump.I18N;
 import com.vividsolutions.jump.feature.Feature;
 import com.vividsolutions.jump.feature.FeatureCollection;
 import com.vividsolutions.jump.feature.FeatureDataset;
 import com.vividsolutions.jump.feature.FeatureSchema;
-import com.vividsolutions.jump.feature.IndexedFeatureCollection;
 import com.vividsolutions.jump.task.TaskMonitor;
 import com.vividsolutions.jump.workbench.WorkbenchContext;
 import com.vividsolutions.jump.workbench.model.Layer;
@@ -57,7 +53,8 @@ import com.vividsolutions.jump.workbench.ui.MultiInputDialog;
 import com.vividsolutions.jump.workbench.ui.plugin.FeatureInstaller;
 
 /**
- * Eliminates features that have exactly the same geometry.
+ * Eliminates features that have exactly the same geometry, or the same
+ * geometry once snapped to a grid of the given tolerance.
  * 
  * <p><b>Input:</b> A read-only source layer.<br>
  * <b>Output:</b> A result layer with deleted duplicate geometries. 
@@ -84,6 +81,7 @@ public final class DeleteDuplicateGeometriesPlugIn extends AbstractPlugIn implem
     private Layer confSourceLayer = null;
     private boolean confDeleteOnlySameAttributes = false;
     private boolean confKeepDeletedFeatures = false;
+    private double confTolerance = 0.0;
     
     // Language strings.
     private String langName = "Delete Duplicate Geometries";
@@ -94,6 +92,7 @@ public final class DeleteDuplicateGeometriesPlugIn extends AbstractPlugIn implem
     private String langResultNameCleaned = "cleaned";
     private String langResultNameDeleted = "deleted";
     private String langKeepDeletedFeatures = "keep duplicate features";
+    private String langTolerance = "tolerance";
 
     //-----------------------------------------------------------------------------------
     // PUBLIC METHODS.
@@ -126,6 +125,9 @@ public final class DeleteDuplicateGeometriesPlugIn extends AbstractPlugIn implem
         String resultLayerName = confSourceLayer.getName() + "-" + langResultNameCleaned;
         String deletedLayerName = confSourceLayer.getName() + "-" + langResultNameDeleted;
         FeatureCollection[] results = this.deleteDuplicateGeometries(monitor);
+        if (results == null) {
+            return;
+        }
         context.addLayer(StandardCategoryNames.RESULT, resultLayerName, results[0]);
         if (confKeepDeletedFeatures) {
             context.addLayer(StandardCategoryNames.RESULT, deletedLayerName, results[1]);
@@ -149,6 +151,7 @@ public final class DeleteDuplicateGeometriesPlugIn extends AbstractPlugIn implem
         langResultNameCleaned = I18N.get(langPrefix + ".cleaned");
         langResultNameDeleted = I18N.get(langPrefix + ".deleted");
         langKeepDeletedFeatures = I18N.get(langPrefix + ".keep-deleted-features");
+        langTolerance = I18N.get(langPrefix + ".tolerance");
     }
     
     private void initializeMenuItem(PlugInContext context) {
@@ -170,68 +173,41 @@ public final class DeleteDuplicateGeometriesPlugIn extends AbstractPlugIn implem
                 context.getLayerManager());
         dialog.addCheckBox(langDeleteOnlySameAttributes, confDeleteOnlySameAttributes);
         dialog.addCheckBox(langKeepDeletedFeatures, confKeepDeletedFeatures);
+        dialog.addDoubleField(langTolerance, confTolerance, 8);
     }
 
     private void getDialogValues(MultiInputDialog dialog) {
         confSourceLayer = dialog.getLayer(langSourceLayer);
         confDeleteOnlySameAttributes = dialog.getBoolean(langDeleteOnlySameAttributes);
         confKeepDeletedFeatures = dialog.getBoolean(langKeepDeletedFeatures);
+        confTolerance = Math.max(0.0, dialog.getDouble(langTolerance));
     }
 
-    private FeatureCollection[] deleteDuplicateGeometries(TaskMonitor monitor) {
-        // Method is completely reworked to take advantage of indexes [mmichaud
-        // 2012-01-15].
+    private FeatureCollection[] deleteDuplicateGeometries(TaskMonitor monitor)
+            throws Exception {
+        // Features are grouped by a fingerprint of their normalized geometry,
+        // then compared exactly within each group.
         FeatureCollection sourceDataset = confSourceLayer.getFeatureCollectionWrapper();
         FeatureSchema sourceSchema = sourceDataset.getFeatureSchema();
         
-        // Input data is indexed.
-        FeatureCollection indexedDataset = new IndexedFeatureCollection(sourceDataset);
-        Set<Integer> duplicateIDs = new HashSet<Integer>();
-        
         @SuppressWarnings("unchecked")
         List<Feature> sourceFeatures = sourceDataset.getFeatures();
-        List<Feature> emptyFeatures = getEmptyFeatures(sourceFeatures);
-        int checkCount = 0;
-        int checkSize = sourceDataset.size();
-        
-        for (Feature feature : sourceFeatures) {
-            monitor.report(checkCount, checkSize, langMonitorCheckedFeatures);
-            
-            // For each feature, only candidate features are compared.
-            @SuppressWarnings("unchecked")
-            List<Feature> candidates = null;
-            if (feature.getGeometry().isEmpty()) {
-                candidates = emptyFeatures;
-            } else {
-                Envelope envelope = feature.getGeometry().getEnvelopeInternal();
-                candidates = indexedDataset.query(envelope);
-            }
-            
-            for (Feature candidate : candidates) {
-                // For equal features, the one with the greater ID is removed.
-                if (candidate.getID() > feature.getID()
-                        && feature.getGeometry().equalsNorm(candidate.getGeometry())) {
-                    if (confDeleteOnlySameAttributes) {
-                        // If geometry and attributes are equals, add ID to
-                        // duplicates.
-                        if (areAttributesEqual(feature, candidate, sourceSchema)) {
-                            duplicateIDs.add(candidate.getID());
-                        }
-                    }
-                    // If geometry are equals, add ID to duplicates.
-                    else {
-                        duplicateIDs.add(candidate.getID());
-                    }
-                }
-            }
-            checkCount += 1;
+        int[] attributes = new int[0];
+        if (confDeleteOnlySameAttributes) {
+            attributes = getNonGeometryAttributes(sourceSchema);
+        }
+        BitSet duplicates = new DuplicateGeometryFinder(sourceFeatures, attributes,
+                confTolerance).findDuplicates(monitor, langMonitorCheckedFeatures);
+        if (duplicates == null) {
+            return null;
         }
         
-        // Create a feature collection with features which ID is not in duplicates.
+        // Create a feature collection with features which are not duplicates.
         FeatureCollection resultDataset = new FeatureDataset(sourceSchema);
         FeatureCollection duplicateDataset = new FeatureDataset(sourceSchema);
-        for (Feature feature : sourceFeatures) {
-            if (!duplicateIDs.contains(feature.getID())) {
+        for (int i = 0; i < sourceFeatures.size(); i++) {
+            Feature feature = sourceFeatures.get(i);
+            if (!duplicates.get(i)) {
                 resultDataset.add(feature.clone(true));
             } else {
                 duplicateDataset.add(feature.clone(true));
@@ -241,32 +217,16 @@ public final class DeleteDuplicateGeometriesPlugIn extends AbstractPlugIn implem
         return new FeatureCollection[] {resultDataset, duplicateDataset};
     }
     
-    private boolean areAttributesEqual(Feature feature, Feature candidate, 
-            FeatureSchema schema) {
-        boolean attributesEqual = true;
+    private int[] getNonGeometryAttributes(FeatureSchema schema) {
         int geometryIndex = schema.getGeometryIndex();
+        int[] attributes = new int[schema.getAttributeCount() - 1];
+        int count = 0;
         for (int index = 0; index < schema.getAttributeCount(); index++) {
             if (index != geometryIndex) {
-                Object attr1 = feature.getAttribute(index);
-                Object attr2 = candidate.getAttribute(index);
-                if (attr1 == null && attr2 == null) {
-                    continue;
-                } 
-                else if (attr1 == null || attr2 == null || !attr1.equals(attr2)) {
-                    attributesEqual = false;
-                    break;
-                }
+                attributes[count++] = index;
             }
         }
-        return attributesEqual;
-    }
-
-    List<Feature> getEmptyFeatures(List<Feature> features) {
-        List<Feature> list = new ArrayList<Feature>();
-        for (Feature f : features) {
-            if (f.getGeometry().isEmpty()) list.add(f);
-        }
-        return list;
+        return attributes;
     }
 
 }
@@ -213,7 +213,8 @@ public class Dissolve2PlugIn extends AbstractThreadedUiPlugIn {
 
         monitor.allowCancellationRequests();
         monitor.report(getName());
-        FeatureCollection resultfc = fca.getAggregatedFeatureCollection();
+        FeatureCollection resultfc = fca.getAggregatedFeatureCollection(monitor, getName());
+        if (monitor.isCancelRequested()) return;
         context.getLayerManager().addCategory(StandardCategoryNames.RESULT);
         String newLayerName = layer.getName() + "-grouped";
         context.addLayer(StandardCategoryNames.RESULT, newLayerName, resultfc);
@@ -4,9 +4,9 @@ import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryCollection;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.operation.linemerge.LineMerger;
-import org.locationtech.jts.operation.union.UnaryUnionOp;
 import com.vividsolutions.jump.I18N;
 import com.vividsolutions.jump.feature.*;
+import com.vividsolutions.jump.geom.ParallelUnionOp;
 import com.vividsolutions.jump.task.TaskMonitor;
 import com.vividsolutions.jump.workbench.WorkbenchContext;
 import com.vividsolutions.jump.workbench.model.Layer;
@@ -19,6 +19,7 @@ import com.vividsolutions.jump.workbench.ui.MenuNames;
 import com.vividsolutions.jump.workbench.ui.MultiInputDialog;
 import com.vividsolutions.jump.workbench.ui.images.IconLoader;
 import org.openjump.core.ui.plugin.AbstractThreadedUiPlugIn;
+import org.openjump.core.ui.plugin.tools.aggregate.GroupBy;
 
 import javax.swing.*;
 import java.awt.*;
@@ -200,63 +201,46 @@ public class DissolvePlugIn extends AbstractThreadedUiPlugIn {
             newSchema = schema;
         }
 
-        // Order features by attribute value in a map
-        Map<List<Object>,FeatureCollection> map = new HashMap<List<Object>,FeatureCollection>();
+        // Group features by attribute value
         monitor.report(I18N.get("ui.plugin.analysis.DissolvePlugIn"));
-        for (Iterator i = inputFC.iterator() ; i.hasNext() ; ) {
-            Feature f = (Feature)i.next();
-            List<Object> key = computeKeyFromAttributes(f, attributes);
-            if (!map.containsKey(key)) {
-                FeatureCollection fd = new FeatureDataset(inputFC.getFeatureSchema());
-                fd.add(f);
-                map.put(key, fd);
-            }
-            else {
-                (map.get(key)).add(f);
-            }
+        int[] keyIndices = new int[attributes.size()];
+        for (int i = 0 ; i < keyIndices.length ; i++) {
+            keyIndices[i] = schema.getAttributeIndex(attributes.get(i));
         }
-
-        // Computing the result
-        int count = 1;
-        FeatureCollection resultfc = new FeatureDataset(newSchema);
-        for (Iterator<List<Object>> it = map.keySet().iterator() ; it.hasNext() ; ) {
-            monitor.report(I18N.get("ui.plugin.analysis.DissolvePlugIn.computing-union") + " (" + count++ + "/" + map.size() + ")");
-            List<Object> key = it.next();
-            FeatureCollection fca = map.get(key);
-            if (fca.size() > 0) {
-                List<Geometry> geometries = union(context, monitor, fca);
-                for (Geometry geom : geometries) {
-                    Feature newFeature = new BasicFeature(newSchema);
-                    newFeature.setGeometry(geom);
-                    for (int i = 0 ; i < attributes.size() ; i++) {
-                        newFeature.setAttribute(attributes.get(i), key.get(i));
-                    }
-                    resultfc.add(newFeature);
+        GroupBy groupBy = new GroupBy(inputFC.getFeatures(), keyIndices);
+
+        // Computing the result, several groups at a time
+        final FeatureSchema resultSchema = newSchema;
+        List<List<Feature>> groupResults = groupBy.process((key, features) -> {
+            List<Feature> newFeatures = new ArrayList<Feature>();
+            for (Geometry geom : union(context, features)) {
+                Feature newFeature = new BasicFeature(resultSchema);
+                newFeature.setGeometry(geom);
+                for (int i = 0 ; i < attributes.size() ; i++) {
+                    newFeature.setAttribute(attributes.get(i), key[i]);
                 }
+                newFeatures.add(newFeature);
             }
+            return newFeatures;
+        }, monitor, I18N.get("ui.plugin.analysis.DissolvePlugIn.computing-union"));
+        if (monitor.isCancelRequested()) return;
+        FeatureCollection resultfc = new FeatureDataset(newSchema);
+        for (List<Feature> features : groupResults) {
+            resultfc.addAll(features);
         }
         context.getLayerManager().addCategory(StandardCategoryNames.RESULT);
         String newLayerName = layer.getName() + "-dissolve";
         context.addLayer(StandardCategoryNames.RESULT, newLayerName, resultfc);
     }
 
-    private List<Object> computeKeyFromAttributes(Feature feature, List<String> attributes) {
-        List<Object> list = new ArrayList<Object>();
-        for (String attribute : attributes) {
-            list.add(feature.getAttribute(attribute));
-        }
-        return list;
-    }
-
     /**
-     * New method for union. Uses new UnaryUnionOp which is much more
+     * New method for union. Uses ParallelUnionOp which is much more
      * efficient than Geometry.union() for large datasets.
      */
-    private List<Geometry> union(PlugInContext context, TaskMonitor monitor, FeatureCollection fc) {
+    private List<Geometry> union(PlugInContext context, List<Feature> features) throws Exception {
         // Eliminate invalid geometries and log their fid
         List<Geometry> geometries  = new ArrayList<Geometry>();
-        for (Iterator it = fc.iterator() ; it.hasNext() ; ) {
-            Feature f = (Feature) it.next();
+        for (Feature f : features) {
             Geometry g = f.getGeometry();
             if (!g.isValid()) {
                 context.getWorkbenchFrame().warnUser(
@@ -269,7 +253,7 @@ public class DissolvePlugIn extends AbstractThreadedUiPlugIn {
                 }
             }
         }
-        Geometry unioned = UnaryUnionOp.union(geometries);
+        Geometry unioned = ParallelUnionOp.union(geometries);
         // Post process linestring if merged is wanted
         if (merge_linestrings) {
             geometries.clear();
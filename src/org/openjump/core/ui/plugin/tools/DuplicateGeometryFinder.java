@@ -0,0 +1,223 @@
+package org.openjump.core.ui.plugin.tools;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.locationtech.jts.geom.*;
+
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.task.TaskMonitor;
+import com.vividsolutions.jump.util.ParallelUtil;
+
+/**
+ * Finds features having the same geometry, and optionally the same
+ * attributes.
+ * <p>
+ * A 64 bits fingerprint of the normalized geometry (and of the attributes)
+ * of each feature is computed by several threads, then features are grouped
+ * by fingerprint in a single pass. Geometries are compared exactly only
+ * within the groups of features sharing a fingerprint, so that the cost is
+ * linear in the number of features, whatever the overlap between their
+ * envelopes.
+ * <p>
+ * If a tolerance is set, coordinates are snapped to a grid of this size
+ * before geometries are compared : two geometries are duplicates if their
+ * snapped geometries are equal.
+ * <p>
+ * In a set of duplicates, the feature with the lowest ID is kept, the
+ * others are reported as duplicates.
+ */
+public class DuplicateGeometryFinder {
+
+    private static final int MIN_RANGE_SIZE = 4096;
+
+    private final List<Feature> features;
+    private final int[] attributes;
+    private final double tolerance;
+
+    /**
+     * @param features the features to check
+     * @param attributes the indices of the attributes which must be equal,
+     * besides the geometry, for features to be duplicates
+     * @param tolerance the size of the grid coordinates are snapped to, or 0
+     * to compare coordinates exactly
+     */
+    public DuplicateGeometryFinder(List<Feature> features, int[] attributes, double tolerance) {
+        this.features = features instanceof RandomAccess ? features : new ArrayList<>(features);
+        this.attributes = attributes.clone();
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Finds duplicate features.
+     * @param monitor a monitor to report progress and check for cancellation,
+     * or null
+     * @param description the description of the processed items for monitor
+     * @return a set containing the indices of duplicate features in the
+     * feature list, or null if cancellation has been requested
+     */
+    public BitSet findDuplicates(final TaskMonitor monitor, final String description)
+            throws Exception {
+        final int size = features.size();
+        final long[] fingerprints = new long[size];
+        final AtomicInteger count = new AtomicInteger();
+        ParallelUtil.processRanges(size, MIN_RANGE_SIZE, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                if (monitor != null && monitor.isCancelRequested()) return;
+                fingerprints[i] = fingerprint(features.get(i));
+            }
+            if (monitor != null) monitor.report(count.addAndGet(to - from), size, description);
+        });
+        if (monitor != null && monitor.isCancelRequested()) return null;
+
+        // fingerprint -> Integer or IndexList (indices of features)
+        Map<Long,Object> table = new HashMap<>();
+        final List<List<Integer>> collisions = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Long key = fingerprints[i];
+            Object old = table.get(key);
+            if (old == null) {
+                table.put(key, i);
+            } else if (old instanceof Integer) {
+                IndexList list = new IndexList();
+                list.add((Integer)old);
+                list.add(i);
+                table.put(key, list);
+                collisions.add(list);
+            } else {
+                ((IndexList)old).add(i);
+            }
+        }
+        table = null;
+
+        // features sharing a fingerprint are compared exactly
+        final BitSet[] duplicates = new BitSet[collisions.size()];
+        ParallelUtil.processRanges(collisions.size(), 64, (from, to) -> {
+            BitSet found = new BitSet();
+            for (int c = from; c < to; c++) {
+                if (monitor != null && monitor.isCancelRequested()) return;
+                verify(collisions.get(c), found);
+            }
+            duplicates[from] = found;
+        });
+        if (monitor != null && monitor.isCancelRequested()) return null;
+        BitSet result = new BitSet(size);
+        for (BitSet found : duplicates) {
+            if (found != null) result.or(found);
+        }
+        return result;
+    }
+
+    private void verify(List<Integer> indices, BitSet found) {
+        Integer[] sorted = indices.toArray(new Integer[0]);
+        Arrays.sort(sorted, Comparator.comparingInt(i -> features.get(i).getID()));
+        Geometry[] geometries = new Geometry[sorted.length];
+        for (int k = 0; k < sorted.length; k++) {
+            geometries[k] = canonical(features.get(sorted[k]).getGeometry());
+        }
+        for (int k = 1; k < sorted.length; k++) {
+            for (int j = 0; j < k; j++) {
+                // only features kept so far are compared with feature k
+                if (found.get(sorted[j])) continue;
+                if (geometries[k].equalsExact(geometries[j]) &&
+                        areAttributesEqual(features.get(sorted[k]), features.get(sorted[j]))) {
+                    found.set(sorted[k]);
+                    break;
+                }
+            }
+        }
+    }
+
+    private boolean areAttributesEqual(Feature f1, Feature f2) {
+        for (int index : attributes) {
+            if (!Objects.equals(f1.getAttribute(index), f2.getAttribute(index))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the normalized copy of geometry, snapped to the tolerance grid.
+     */
+    private Geometry canonical(Geometry geometry) {
+        Geometry copy = geometry.copy();
+        if (tolerance > 0) {
+            copy.apply(new CoordinateSequenceFilter() {
+                public void filter(CoordinateSequence seq, int i) {
+                    seq.setOrdinate(i, 0, snap(seq.getX(i)));
+                    seq.setOrdinate(i, 1, snap(seq.getY(i)));
+                }
+                public boolean isDone() {
+                    return false;
+                }
+                public boolean isGeometryChanged() {
+                    return true;
+                }
+            });
+        }
+        copy.normalize();
+        return copy;
+    }
+
+    private double snap(double d) {
+        return Math.round(d / tolerance) * tolerance;
+    }
+
+    private long fingerprint(Feature feature) {
+        long h = fingerprint(canonical(feature.getGeometry()), 17);
+        for (int index : attributes) {
+            h = mix(h, Objects.hashCode(feature.getAttribute(index)));
+        }
+        return finish(h);
+    }
+
+    // hashes the structure and the 2D coordinates compared by equalsExact
+    private static long fingerprint(Geometry g, long h) {
+        h = mix(h, g.getClass().getName().hashCode());
+        if (g instanceof GeometryCollection) {
+            h = mix(h, g.getNumGeometries());
+            for (int i = 0; i < g.getNumGeometries(); i++) {
+                h = fingerprint(g.getGeometryN(i), h);
+            }
+        } else if (g instanceof Polygon) {
+            Polygon polygon = (Polygon)g;
+            h = mix(h, polygon.getNumInteriorRing());
+            h = fingerprint(polygon.getExteriorRing().getCoordinateSequence(), h);
+            for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                h = fingerprint(polygon.getInteriorRingN(i).getCoordinateSequence(), h);
+            }
+        } else if (g instanceof LineString) {
+            h = fingerprint(((LineString)g).getCoordinateSequence(), h);
+        } else if (g instanceof Point) {
+            h = fingerprint(((Point)g).getCoordinateSequence(), h);
+        }
+        return h;
+    }
+
+    private static long fingerprint(CoordinateSequence seq, long h) {
+        h = mix(h, seq.size());
+        for (int i = 0; i < seq.size(); i++) {
+            // adding 0.0 makes -0.0 and 0.0 (which are equal) hash the same
+            h = mix(h, Double.doubleToLongBits(seq.getX(i) + 0.0));
+            h = mix(h, Double.doubleToLongBits(seq.getY(i) + 0.0));
+        }
+        return h;
+    }
+
+    private static long mix(long h, long v) {
+        return (h ^ v) * 0x9E3779B97F4A7C15L + 0x632BE59BD9B4E019L;
+    }
+
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // the indices of the features sharing a fingerprint
+    private static final class IndexList extends ArrayList<Integer> {
+        IndexList() {
+            super(2);
+        }
+    }
+}
@@ -30,12 +30,12 @@ package org.openjump.core.ui.plugin.tools;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.DefaultComboBoxModel;
 import javax.swing.JComboBox;
 
+import org.openjump.core.attributeoperations.HashJoin;
 import org.openjump.core.ui.plugin.AbstractThreadedUiPlugIn;
 
 import org.locationtech.jts.geom.Geometry;
@@ -82,7 +82,6 @@ public class JoinTableFromExistingLayerPlugIn extends AbstractThreadedUiPlugIn{
 	private final static String sJoinResult =  I18N.get("org.openjump.core.ui.plugin.tools.JoinTableFromExistingLayerPlugIn.join-result");
 	private final static String sUnmatchedItems = I18N.get("org.openjump.core.ui.plugin.tools.JoinTableFromExistingLayerPlugIn.unmatched-items");
 	private final static String sTooManyItems = I18N.get("org.openjump.core.ui.plugin.tools.JoinTableFromExistingLayerPlugIn.multiple-matches");
-	private final static String sMultiMatchesMsg = I18N.get("org.openjump.core.ui.plugin.tools.JoinTableFromExistingLayerPlugIn.multiple-matches-for-feature-FID");
 
 	private Layer baseLayer = null;
 	private Layer joinLayer = null;
@@ -143,60 +142,39 @@ public class JoinTableFromExistingLayerPlugIn extends AbstractThreadedUiPlugIn{
 		FeatureCollection featuresMissing = new FeatureDataset(baseFC.getFeatureSchema());
 		FeatureCollection featuresWithManyMatches = new FeatureDataset(mapping.createSchema("Geometry"));
 		
+		//-- hash join : the smaller layer is loaded in a hash table and the
+		//   other one is looked up in this table by several threads
+		List<Feature> baseFeatures = baseFC.getFeatures();
+		HashJoin join = new HashJoin(
+				baseFeatures, baseLayerAttributeIndex,
+				baseFC.getFeatureSchema().getAttributeType(baseLayerAttributeIndex),
+				joinFC.getFeatures(), joinLayerAttributeIndex,
+				joinFC.getFeatureSchema().getAttributeType(joinLayerAttributeIndex));
+		join.run(monitor, sItemsProcessed);
+		if (monitor.isCancelRequested()) return;
+
 		//-- loop over all base features (as they are our reference)
-		int i = 0;
-		int baseLayerSize = baseFC.size();
-		for (Feature baseFeature : baseFC.getFeatures()) {
-			monitor.report(i++, baseLayerSize, sItemsProcessed);
-			Object baseId = baseFeature.getAttribute(baseLayerAttributeIndex);
-
-			//-- find the base-features corresponding entry
-			//   we could optimize this procedure by removing found
-			//   table items from the list
-			//boolean notFound = true;
-			//boolean foundFirst = false;
-			//boolean foundSecond = false;
-			Feature firstJoinFeature = null;
-			List<Feature> nextJoinFeatures = new ArrayList<>();
-			int countMatches = 0;
-			//int j = 0;
-			for (Feature joinCandidateFeature : joinFC.getFeatures()) {
-			//while(notFound){
-				//Feature tmpTableItem = joinFeatures.get(j);
-				//int tableItemId = tmpTableItem.getInteger(joinLayerAttributeIndex);
-				Object joinId = joinCandidateFeature.getAttribute(joinLayerAttributeIndex);
-				if(baseId != null && joinId != null && baseId.toString().equals(joinId.toString())) {
-					if (countMatches == 0) {
-						firstJoinFeature = joinCandidateFeature;
-
-					} else {
-						nextJoinFeatures.add(joinCandidateFeature);
-						context.getWorkbenchFrame().warnUser(sMultiMatchesMsg + " : " + baseFeature.getID());
-					}
-					countMatches++;
-				}
-			} //end while loop over stop-list
+		for (int i = 0 ; i < baseFeatures.size() ; i++) {
+			Feature baseFeature = baseFeatures.get(i);
+			List<Feature> matches = join.getMatches(i);
 			// Unique join
-			if (countMatches > 0) {
-				Feature newFeature = new BasicFeature(featuresFound.getFeatureSchema());
-				mapping.transferAttributes(baseFeature, firstJoinFeature, newFeature);
-				newFeature.setGeometry((Geometry)baseFeature.getGeometry().clone());
-				if (countMatches == 1) {
-					featuresFound.add(newFeature);
-				} else {
-					featuresWithManyMatches.add(newFeature);
-					for (Feature match : nextJoinFeatures) {
-						newFeature = new BasicFeature(featuresFound.getFeatureSchema());
-						mapping.transferAttributes(baseFeature, match, newFeature);
-						newFeature.setGeometry((Geometry)baseFeature.getGeometry().clone());
-						featuresWithManyMatches.add(newFeature);
-					}
+			if (matches.size() > 0) {
+				FeatureCollection target = matches.size() == 1 ? featuresFound : featuresWithManyMatches;
+				for (Feature match : matches) {
+					Feature newFeature = new BasicFeature(featuresFound.getFeatureSchema());
+					mapping.transferAttributes(baseFeature, match, newFeature);
+					newFeature.setGeometry((Geometry)baseFeature.getGeometry().clone());
+					target.add(newFeature);
 				}
-
 			} else {
 				featuresMissing.add(baseFeature.clone(true));
 			}
 		}
+		if (join.getMultipleMatchCount() > 0) {
+			context.getWorkbenchFrame().warnUser(I18N.getMessage(
+					"org.openjump.core.ui.plugin.tools.JoinTableFromExistingLayerPlugIn.features-with-multiple-matches",
+					join.getMultipleMatchCount()));
+		}
 
 		// show results
 		if(featuresFound.size() > 0){
@@ -168,8 +168,13 @@ public class MultiRingBufferSelectedPlugIn extends AbstractPlugIn
             context.getLayerViewPanel().getSelectionManager().getFeaturesWithSelectedItems();
         Collection bufferCollection = getBuffers(featureSchema, selectedFeatures);
       
-      for (Iterator i = bufferCollection.iterator(); i.hasNext();) {
-          layer.getFeatureCollectionWrapper().add((Feature)i.next());
+      layer.getLayerManager().beginBatch();
+      try {
+          for (Iterator i = bufferCollection.iterator(); i.hasNext();) {
+              layer.getFeatureCollectionWrapper().add((Feature)i.next());
+          }
+      } finally {
+          layer.getLayerManager().endBatch();
       }
       
       if (enableLabeling) {
@@ -43,6 +43,7 @@ import org.locationtech.jts.geom.*;
 import com.vividsolutions.jump.I18N;
 import com.vividsolutions.jump.feature.Feature;
 import com.vividsolutions.jump.feature.FeatureCollection;
+import com.vividsolutions.jump.geom.GeometryStoragePolicy;
 import com.vividsolutions.jump.feature.FeatureDataset;
 import com.vividsolutions.jump.task.TaskMonitor;
 import com.vividsolutions.jump.workbench.WorkbenchContext;
@@ -189,7 +190,7 @@ public class SplitPolygonPlugIn extends AbstractPlugIn implements ThreadedPlugIn
 	            Feature fNew = polyFeature.clone(true);
 	            
 	            //snap the resulting geos to the cut line
-	            Geometry geo = (Geometry)result.getGeometryN(j).clone();
+	            Geometry geo = GeometryStoragePolicy.editableCopy(result.getGeometryN(j));
 	            
 	            geo.apply(new CoordinateFilter() {
 	                public void filter(Coordinate coordinate) {
@@ -51,6 +51,7 @@ import com.vividsolutions.jump.workbench.ui.MultiInputDialog;
 import com.vividsolutions.jump.workbench.ui.images.IconLoader;
 import com.vividsolutions.jump.workbench.ui.plugin.clipboard.PasteItemsPlugIn;
 import org.openjump.core.ui.plugin.AbstractThreadedUiPlugIn;
+import org.openjump.core.ui.plugin.tools.aggregate.GroupBy;
 
 import javax.swing.*;
 import java.awt.event.ActionEvent;
@@ -285,41 +286,36 @@ public class UnionByAttributePlugIn extends AbstractThreadedUiPlugIn {
             }
         }
         
-        // Order features by attribute value in a map
-        Map map = new HashMap();
+        // Group features by attribute value
         monitor.report(I18N.get("ui.plugin.analysis.UnionByAttributePlugIn"));
-        for (Iterator i = inputFC.iterator() ; i.hasNext() ; ) {
-            Feature f = (Feature)i.next();
+        int[] keyIndices = use_attribute ?
+            new int[]{schema.getAttributeIndex(attribute)} : new int[0];
+        GroupBy groupBy = new GroupBy(inputFC.getFeatures(), keyIndices, f -> {
+            if (!ignore_empty) return true;
             Object key = use_attribute ? f.getAttribute(attribute) : null;
-            if (ignore_empty && (key == null || key.toString().trim().length() == 0)) {
-                continue;
-            }
-            else if (!map.containsKey(key)) {
-                FeatureCollection fd = new FeatureDataset(inputFC.getFeatureSchema());
-                fd.add(f);
-                map.put(key, fd);
-            }
-            else {
-                ((FeatureCollection)map.get(key)).add(f);
-            }
-        }
+            return key != null && key.toString().trim().length() > 0;
+        });
         
-        // Computing the result
-        int count = 1;
+        // Computing the result, several groups at a time. Messages are
+        // written to the output frame afterwards, in the order of the groups
+        final FeatureSchema resultSchema = newSchema;
+        List<Object[]> groupResults = groupBy.process((key, features) -> {
+            List<String> messages = new ArrayList<String>();
+            Feature feature = union(context, features, messages);
+            if (use_attribute) feature.setAttribute(attribute, key[0]);
+            Feature newFeature = new BasicFeature(resultSchema);
+            // Copy feature attributes in newFeature
+            for (int j = 0, max = resultSchema.getAttributeCount() ; j < max ; j++) {
+                newFeature.setAttribute(j, feature.getAttribute(resultSchema.getAttributeName(j)));
+            }
+            return new Object[]{newFeature, messages};
+        }, monitor, I18N.get("ui.plugin.analysis.UnionByAttributePlugIn.computing-union"));
+        if (monitor.isCancelRequested()) return;
         FeatureCollection resultfc = new FeatureDataset(newSchema);
-        for (Iterator i = map.keySet().iterator() ; i.hasNext() ; ) {
-            monitor.report(I18N.get("ui.plugin.analysis.UnionByAttributePlugIn.computing-union") + " (" + count++ + "/" + map.size() + ")");
-            Object key = i.next();
-            FeatureCollection fca = (FeatureCollection)map.get(key);
-            if (fca.size() > 0) {
-                Feature feature = union(context, monitor, fca);
-                if (use_attribute) feature.setAttribute(attribute, key);
-                Feature newFeature = new BasicFeature(newSchema);
-                // Copy feature attributes in newFeature
-                for (int j = 0, max = newSchema.getAttributeCount() ; j < max ; j++) {
-                    newFeature.setAttribute(j, feature.getAttribute(newSchema.getAttributeName(j)));
-                }
-                resultfc.add(newFeature);
+        for (Object[] result : groupResults) {
+            resultfc.add((Feature)result[0]);
+            for (String message : (List<String>)result[1]) {
+                context.getOutputFrame().addText(message);
             }
         }
         context.getLayerManager().addCategory(StandardCategoryNames.RESULT);
@@ -335,16 +331,15 @@ public class UnionByAttributePlugIn extends AbstractThreadedUiPlugIn {
     * New method for union. Uses new UnaryUnionOp which is much more
     * efficient than Geometry.union() for large datasets.
     */
-    private Feature union(PlugInContext context, TaskMonitor monitor, FeatureCollection fc) {
+    private Feature union(PlugInContext context, List<Feature> features, List<String> messages) {
         // Eliminate invalid geomeries and log their fid
         Collection geometries  = new ArrayList();
-        for (Iterator it = fc.iterator() ; it.hasNext() ; ) {
-            Feature f = (Feature) it.next();
+        for (Feature f : features) {
             Geometry g = f.getGeometry();
             if (!g.isValid()) {
                 context.getWorkbenchFrame().warnUser(
                     I18N.get("ui.plugin.analysis.UnionByAttributePlugIn.invalid-geometry-excluded"));
-                context.getOutputFrame().addText(
+                messages.add(
                     I18N.getMessage("ui.plugin.analysis.UnionByAttributePlugIn.exclusion", new Object[]{f.getID()}));
                 continue;
             }
@@ -365,7 +360,7 @@ public class UnionByAttributePlugIn extends AbstractThreadedUiPlugIn {
             geometries.addAll(polygons);
             unioned = unioned.getFactory().buildGeometry(geometries);
         }
-        FeatureSchema schema = fc.getFeatureSchema();
+        FeatureSchema schema = features.get(0).getSchema();
         Feature feature = new BasicFeature(schema);
         if (geometries.size()==0) {
             feature.setGeometry(factory.createGeometryCollection(new Geometry[]{}));
@@ -374,7 +369,7 @@ public class UnionByAttributePlugIn extends AbstractThreadedUiPlugIn {
             feature.setGeometry(unioned);
         }
         if (aggregate_unused_fields) {
-            feature = aggregateValues(context, fc, feature);
+            feature = aggregateValues(features, feature, messages);
         }
         return feature;
     }
@@ -393,35 +388,35 @@ public class UnionByAttributePlugIn extends AbstractThreadedUiPlugIn {
         };
     }
     
-    private Feature aggregateValues(PlugInContext context, FeatureCollection fc, Feature feature) {
-        FeatureSchema schema = fc.getFeatureSchema();
+    private Feature aggregateValues(List<Feature> features, Feature feature, List<String> messages) {
+        FeatureSchema schema = feature.getSchema();
         for (int i = 0, max = schema.getAttributeCount() ; i < max ; i++) {
             if (schema.getAttributeType(i) == AttributeType.INTEGER) {
                 int total = 0;
-                for (Iterator it = fc.iterator() ; it.hasNext() ; ) {
-                    Object val = ((Feature)it.next()).getAttribute(i);
+                for (Feature f : features) {
+                    Object val = f.getAttribute(i);
                     if (val != null) total += ((Integer)val).intValue();
                 }
                 feature.setAttribute(i, new Integer(total));
             }
             else if (schema.getAttributeType(i) == AttributeType.DOUBLE) {
                 double total = 0;
-                for (Iterator it = fc.iterator() ; it.hasNext() ; ) {
-                    Object val = ((Feature)it.next()).getAttribute(i);
+                for (Feature f : features) {
+                    Object val = f.getAttribute(i);
                     if (val != null) total += ((Double)val).doubleValue();
                 }
                 feature.setAttribute(i, new Double(total));
             }
             else if (schema.getAttributeType(i) == AttributeType.STRING) {
                 java.util.Set set = new java.util.TreeSet();
-                for (Iterator it = fc.iterator() ; it.hasNext() ; ) {
-                    Object val = ((Feature)it.next()).getAttribute(i);
+                for (Feature f : features) {
+                    Object val = f.getAttribute(i);
                     if (val != null) set.add(val);
                 }
                 feature.setAttribute(i, java.util.Arrays.toString(set.toArray()));
             }
             else if (schema.getAttributeType(i) != AttributeType.GEOMETRY) {
-                context.getOutputFrame().addText(
+                messages.add(
                     I18N.getMessage("ui.plugin.analysis.UnionByAttributePlugIn.cannot-be-aggregated", 
                     new Object[]{schema.getAttributeName(i), schema.getAttributeType(i)}));
             }
@@ -2,6 +2,7 @@ package org.openjump.core.ui.plugin.tools.aggregate;
 
 import com.vividsolutions.jump.feature.*;
 import com.vividsolutions.jump.I18N;
+import com.vividsolutions.jump.task.TaskMonitor;
 
 import java.util.*;
 
@@ -47,39 +48,53 @@ public class FeatureCollectionAggregator {
      * @return the featureCollection with aggregated attributes
      */
     public FeatureCollection getAggregatedFeatureCollection() {
-        Map<Key,List<AttributeAggregator>> map = new HashMap<>();
-        // Add attribute values to features with the same key
-        for (Object object : fc.getFeatures()) {
-            Feature feature = (Feature)object;
-            Key key = new Key(feature, keyAttributes);
-            List<AttributeAggregator> featureAggregators = map.get(key);
-            if (featureAggregators == null) {
-                featureAggregators = new ArrayList<>();
-                for (AttributeAggregator agg : aggregators) {
-
-                    featureAggregators.add(new AttributeAggregator(
-                            agg.getInputName(),
-                            agg.getAggregator().clone(),
-                            agg.getOutputName()));
-                }
-                map.put(key, featureAggregators);
-            }
-            for (AttributeAggregator agg : featureAggregators) {
-                agg.getAggregator().addValue(feature.getAttribute(agg.getInputName()));
-            }
+        try {
+            return getAggregatedFeatureCollection(null, null);
+        } catch(Exception e) {
+            throw new RuntimeException(e);
         }
+    }
 
-        FeatureSchema newSchema = getFeatureSchema();
-        FeatureCollection result = new FeatureDataset(newSchema);
-        for (Map.Entry<Key,List<AttributeAggregator>> entry : map.entrySet()) {
+    /**
+     * Same as {@link #getAggregatedFeatureCollection()}, groups being
+     * aggregated in parallel.
+     * @param monitor a monitor to report progress and check for cancellation,
+     * or null
+     * @param description the description of the aggregated groups for monitor
+     * @return the featureCollection with aggregated attributes
+     */
+    public FeatureCollection getAggregatedFeatureCollection(TaskMonitor monitor, String description)
+            throws Exception {
+        FeatureSchema schema = fc.getFeatureSchema();
+        int[] keyIndices = new int[keyAttributes.size()];
+        for (int i = 0 ; i < keyIndices.length ; i++) {
+            keyIndices[i] = schema.getAttributeIndex(keyAttributes.get(i));
+        }
+        final int[] inputIndices = new int[aggregators.size()];
+        for (int i = 0 ; i < inputIndices.length ; i++) {
+            inputIndices[i] = schema.getAttributeIndex(aggregators.get(i).getInputName());
+        }
+        GroupBy groupBy = new GroupBy(new ArrayList<>(fc.getFeatures()), keyIndices);
+
+        final FeatureSchema newSchema = getFeatureSchema();
+        List<Feature> features = groupBy.process((key, groupFeatures) -> {
             Feature feature = new BasicFeature(newSchema);
-            for (String keyAtt : keyAttributes) {
-                feature.setAttribute(keyAtt, entry.getKey().map.get(keyAtt));
+            for (int i = 0 ; i < key.length ; i++) {
+                feature.setAttribute(i, key[i]);
             }
-            for (AttributeAggregator agg : entry.getValue()) {
-                feature.setAttribute(agg.getOutputName(), agg.getAggregator().getResult());
+            for (int i = 0 ; i < inputIndices.length ; i++) {
+                Aggregator aggregator = aggregators.get(i).getAggregator().clone();
+                for (Feature f : groupFeatures) {
+                    aggregator.addValue(f.getAttribute(inputIndices[i]));
+                }
+                feature.setAttribute(key.length + i, aggregator.getResult());
             }
-            result.add(feature);
+            return feature;
+        }, monitor, description);
+
+        FeatureCollection result = new FeatureDataset(newSchema);
+        for (Feature feature : features) {
+            if (feature != null) result.add(feature);
         }
         return result;
     }
@@ -97,6 +112,12 @@ public class FeatureCollectionAggregator {
         return newSchema;
     }
 
+    /**
+     * Key made of the values of some attributes of a feature.
+     * @deprecated features are now grouped by {@link GroupBy}, this class is
+     * no longer used by the aggregator and is kept for compatibility.
+     */
+    @Deprecated
     public static class Key {
 
         private Map<String,Object> map = new HashMap<>();
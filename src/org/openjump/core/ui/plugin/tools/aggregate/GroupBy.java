@@ -0,0 +1,168 @@
+package org.openjump.core.ui.plugin.tools.aggregate;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.vividsolutions.jump.feature.Feature;
+import com.vividsolutions.jump.task.TaskMonitor;
+import com.vividsolutions.jump.util.ParallelUtil;
+
+/**
+ * Groups features having the same values for a list of attributes, and
+ * processes the groups in parallel.
+ * <p>
+ * Features are bucketed by several threads, each one grouping a range of
+ * features, then the partial groups are merged in the order of the ranges.
+ * Groups are numbered in the order of their first feature, and the features
+ * of a group keep their original order.
+ * <p>
+ * Keys are compared with {@link Object#equals(Object)} : a single attribute
+ * value is used as is, values of several attributes are wrapped in a
+ * compact composite key.
+ */
+public class GroupBy {
+
+    private static final int MIN_RANGE_SIZE = 8192;
+
+    private final int[] keyAttributes;
+    private final List<Object> keys = new ArrayList<>();
+    private final List<List<Feature>> groups = new ArrayList<>();
+
+    /**
+     * Processes the features of a group.
+     */
+    public interface GroupProcessor<T> {
+        T process(Object[] key, List<Feature> features) throws Exception;
+    }
+
+    /**
+     * A filter excluding some features from the groups.
+     */
+    public interface FeatureFilter {
+        boolean accept(Feature feature);
+    }
+
+    /**
+     * Groups features on the values of attributes keyAttributes.
+     * @param filter features rejected by filter are ignored, or null
+     */
+    public GroupBy(final List<Feature> features, int[] keyAttributes,
+                   final FeatureFilter filter) throws Exception {
+        this.keyAttributes = keyAttributes.clone();
+        int rangeCount = Math.max(1, (features.size() + MIN_RANGE_SIZE - 1) / MIN_RANGE_SIZE);
+        final List<Map<Object,List<Feature>>> partialGroups = new ArrayList<>(rangeCount);
+        for (int i = 0; i < rangeCount; i++) partialGroups.add(null);
+        final int size = features.size();
+        ParallelUtil.processRanges(rangeCount, 1, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                Map<Object,List<Feature>> map = new LinkedHashMap<>();
+                for (int i = r * MIN_RANGE_SIZE, end = Math.min(i + MIN_RANGE_SIZE, size); i < end; i++) {
+                    Feature feature = features.get(i);
+                    if (filter != null && !filter.accept(feature)) continue;
+                    map.computeIfAbsent(key(feature), k -> new ArrayList<>()).add(feature);
+                }
+                partialGroups.set(r, map);
+            }
+        });
+        Map<Object,List<Feature>> merged = new LinkedHashMap<>();
+        for (Map<Object,List<Feature>> map : partialGroups) {
+            for (Map.Entry<Object,List<Feature>> entry : map.entrySet()) {
+                List<Feature> group = merged.get(entry.getKey());
+                if (group == null) merged.put(entry.getKey(), entry.getValue());
+                else group.addAll(entry.getValue());
+            }
+        }
+        for (Map.Entry<Object,List<Feature>> entry : merged.entrySet()) {
+            keys.add(entry.getKey());
+            groups.add(entry.getValue());
+        }
+    }
+
+    public GroupBy(List<Feature> features, int[] keyAttributes) throws Exception {
+        this(features, keyAttributes, null);
+    }
+
+    private Object key(Feature feature) {
+        if (keyAttributes.length == 1) return feature.getAttribute(keyAttributes[0]);
+        Object[] values = new Object[keyAttributes.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = feature.getAttribute(keyAttributes[i]);
+        }
+        return new CompositeKey(values);
+    }
+
+    /**
+     * @return the number of groups
+     */
+    public int size() {
+        return groups.size();
+    }
+
+    /**
+     * @return the values of the key attributes for group i
+     */
+    public Object[] getKey(int i) {
+        Object key = keys.get(i);
+        if (keyAttributes.length == 1) return new Object[]{key};
+        return ((CompositeKey)key).values.clone();
+    }
+
+    /**
+     * @return the features of group i
+     */
+    public List<Feature> getFeatures(int i) {
+        return Collections.unmodifiableList(groups.get(i));
+    }
+
+    /**
+     * Processes all the groups with processor, several groups at a time,
+     * starting with the largest ones so that a large group processed last
+     * does not keep a single thread busy.
+     * @param monitor a monitor to report progress and check for cancellation,
+     * or null
+     * @param description the description of the processed groups for monitor
+     * @return the results of processor, in the order of the groups (null
+     * for the groups which have not been processed if cancellation has been
+     * requested)
+     */
+    public <T> List<T> process(final GroupProcessor<T> processor,
+                               final TaskMonitor monitor, final String description) throws Exception {
+        final int size = groups.size();
+        final Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Integer.compare(groups.get(b).size(), groups.get(a).size()));
+        final List<T> results = new ArrayList<>(Collections.<T>nCopies(size, null));
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger done = new AtomicInteger();
+        // each worker takes the next largest group until all are processed
+        int workers = Math.min(size, ParallelUtil.getParallelism());
+        ParallelUtil.processRanges(workers, 1, (from, to) -> {
+            int k;
+            while ((k = next.getAndIncrement()) < size) {
+                if (monitor != null && monitor.isCancelRequested()) return;
+                int i = order[k];
+                results.set(i, processor.process(getKey(i), getFeatures(i)));
+                if (monitor != null) monitor.report(done.incrementAndGet(), size, description);
+            }
+        });
+        return results;
+    }
+
+    private static final class CompositeKey {
+        final Object[] values;
+        final int hashCode;
+        CompositeKey(Object[] values) {
+            this.values = values;
+            this.hashCode = Arrays.hashCode(values);
+        }
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CompositeKey && hashCode == ((CompositeKey)o).hashCode &&
+                    Arrays.equals(values, ((CompositeKey)o).values);
+        }
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
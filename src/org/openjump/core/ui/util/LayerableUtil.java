@@ -718,7 +718,7 @@ public abstract class LayerableUtil {
             throw new Exception(
                     I18N.get("org.openjump.core.ui.plugin.tools.statistics.StatisticOverViewPlugIn.Selected-layer-is-empty"));
         }
-        final BasicFeature bf = (BasicFeature) layer
+        final Feature bf = layer
                 .getFeatureCollectionWrapper().getFeatures().get(0);
         final Geometry geo = bf.getGeometry();
         final String geoType = geo.getGeometryType();
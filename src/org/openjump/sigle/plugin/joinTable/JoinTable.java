@@ -10,8 +10,8 @@ package org.openjump.sigle.plugin.joinTable;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Hashtable;
-import java.util.Iterator;
 import java.util.List;
 
 import com.vividsolutions.jump.feature.AttributeType;
@@ -20,6 +20,7 @@ import com.vividsolutions.jump.feature.Feature;
 import com.vividsolutions.jump.feature.FeatureCollection;
 import com.vividsolutions.jump.feature.FeatureDataset;
 import com.vividsolutions.jump.feature.FeatureSchema;
+import com.vividsolutions.jump.util.ParallelUtil;
 import com.vividsolutions.jump.workbench.model.Layer;
 
 /**
@@ -115,56 +116,54 @@ public class JoinTable {
 			}
 		}
 		
-		// parcours des entites de la couche et remplissage des nouveaux champs
-		Feature f, fNew;
-		String keyValue;
-		Object value;
-		ArrayList newFeatures;
-		String[] valeurs;
+		// index des nouveaux champs dans le schema
+		final int[] newIndexes = new int[fieldCount];
+		for (int j=0; j<fieldCount; j++) {
+			if (j!=keyIndex) newIndexes[j] = schema.getAttributeIndex((String) fieldNames.get(j));
+		}
 		
+		// parcours des entites de la couche et remplissage des nouveaux champs
+		// (par plusieurs threads, la table etant en lecture seule)
 		FeatureCollection fc = layer.getFeatureCollectionWrapper();
-		List features = fc.getFeatures(); 
-		
-		
-		newFeatures = new ArrayList(features.size());
+		final List<Feature> features = fc.getFeatures(); 
+		final Feature[] newFeatures = new Feature[features.size()];
+		final FeatureSchema newSchema = schema;
+		final int oldAttributeCount = nbOldAttributes;
 		
-		for (Iterator i = features.iterator(); i.hasNext();) {
-			f = (Feature) i.next();
-			
-			// probleme de restitution de la classe de l'objet f dans fNew --> voir methode clone
-			//Class [] parameterType = { FeatureSchema.class };
-			//Object [] parameter = { schema };
-			//Constructor c = f.getClass().getConstructor(parameterType); 
-			//fNew = (Feature) c.newInstance(parameter);
-			
-			fNew = f.clone(true);
-			fNew.setSchema(schema);
-			fNew.setAttributes(new Object[schema.getAttributeCount()]);
-			int j=0;
-			while(j<nbOldAttributes) {
-				fNew.setAttribute(j, f.getAttribute(j));
-				j++;
-			}
+		try {
+			ParallelUtil.processRanges(features.size(), 1024, (from, to) -> {
+				for (int i = from; i < to; i++) {
+					Feature f = features.get(i);
 					
-			newFeatures.add(fNew);			
-				
-			keyValue = fNew.getString(attributeIndex);
-			if (keyValue != null) keyValue = keyValue.trim();
-			valeurs = (String[]) table.get(keyValue);
-			for (j=0; j<fieldCount; j++){
-				if (j!=keyIndex) {
-					if (valeurs != null)
-						value = castValue(valeurs[j], (AttributeType) fieldTypes.get(j));
-					else 
-						value =null;					
-					fNew.setAttribute((String) fieldNames.get(j), value);
-				}
-			}
+					// probleme de restitution de la classe de l'objet f dans fNew --> voir methode clone
+					Feature fNew = f.clone(true);
+					fNew.setSchema(newSchema);
+					fNew.setAttributes(new Object[newSchema.getAttributeCount()]);
+					for (int j=0; j<oldAttributeCount; j++) {
+						fNew.setAttribute(j, f.getAttribute(j));
+					}
+					newFeatures[i] = fNew;
 					
+					String keyValue = fNew.getString(attributeIndex);
+					if (keyValue != null) keyValue = keyValue.trim();
+					String[] valeurs = keyValue == null ? null : (String[]) table.get(keyValue);
+					for (int j=0; j<fieldCount; j++){
+						if (j!=keyIndex) {
+							Object value = valeurs == null ? null :
+									castValue(valeurs[j], (AttributeType) fieldTypes.get(j));
+							fNew.setAttribute(newIndexes[j], value);
+						}
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
 		}
 		
 		// mise a jour de la couche
-		layer.setFeatureCollection(new FeatureDataset(newFeatures, schema));
+		layer.setFeatureCollection(new FeatureDataset(Arrays.asList(newFeatures), schema));
 		
 		layer.setEditable(false);
 		
@@ -12,6 +12,7 @@ import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.regex.Pattern;
 
@@ -37,7 +38,6 @@ public class JoinTableDataSourceCSV implements JoinTableDataSource {
 	private String filePath = null;
 	private int fieldCount = 0;
 	private String DEFAULT_DELEM = "\t";
-	private String DELIMITATEURS = ";|\t"; //expression reguliere de qualification des delimitateurs de champs : tab ou ;
 	
 	public JoinTableDataSourceCSV(String filePath) {
 		this.filePath = filePath;
@@ -80,7 +80,7 @@ public class JoinTableDataSourceCSV implements JoinTableDataSource {
 				nl=1;
 				while (line!=null) {
 					if (line.trim().length() > 0) {
-						valeurs = line.split(DELIMITATEURS, -1);
+						valeurs = split(line);
 						// verification de la coherence du nombre de colonnes de l'entete et de la ligne 
 						if ((valeurs.length)!=fieldCount)
 								throw (new Exception(I18N.get("org.openjump.sigle.plugin.joinTable.Field_problem_at_line") + nl));
@@ -90,7 +90,8 @@ public class JoinTableDataSourceCSV implements JoinTableDataSource {
 						    // mise a jour du type du champ
 						    if ((i+1)>fieldTypes.size())
 						    		fieldTypes.add(i,typeOfString(s));
-						    else {
+						    // un champ texte le reste
+						    else if (fieldTypes.get(i) != AttributeType.STRING) {
 						    	AttributeType newFieldType = typeOfString(s);
 						    	AttributeType fieldType = (AttributeType) fieldTypes.get(i);
 						    	if 	(newFieldType!=fieldType) {
@@ -140,7 +141,11 @@ public class JoinTableDataSourceCSV implements JoinTableDataSource {
 				firstLine = bufferedReader.readLine();
 				if (firstLine==null)
 					throw (new Exception(I18N.get("org.openjump.sigle.plugin.joinTable.Empty_file")));
-				champs = firstLine.split(DELIMITATEURS);	
+				champs = split(firstLine);
+				// comme String#split, sans les champs vides de fin de ligne
+				int n = champs.length;
+				while (champs.length > 1 && n > 0 && champs[n-1].length() == 0) n--;
+				champs = Arrays.copyOf(champs, n);
 				
 				// boucle de qualification unique des noms de colonne				
 				for (int k=0; k<champs.length; k++) { 
@@ -190,6 +195,29 @@ public class JoinTableDataSourceCSV implements JoinTableDataSource {
 
 
 	
+	/**
+	 * Splits line at each tab or semicolon, keeping empty fields (like
+	 * line.split(";|\t", -1), without the cost of a regular expression).
+	 */
+	static String[] split(String line) {
+		int count = 1;
+		for (int i = 0, n = line.length(); i < n; i++) {
+			char c = line.charAt(i);
+			if (c == ';' || c == '\t') count++;
+		}
+		String[] fields = new String[count];
+		int field = 0, start = 0;
+		for (int i = 0, n = line.length(); i < n; i++) {
+			char c = line.charAt(i);
+			if (c == ';' || c == '\t') {
+				fields[field++] = line.substring(start, i);
+				start = i + 1;
+			}
+		}
+		fields[field] = line.substring(start);
+		return fields;
+	}
+
 	// get attribute type from string value
     // @TODO try to guess date AttributeType with flexible parser
 	private AttributeType typeOfString(String s)